@@ -0,0 +1,67 @@
+package io.github.ensgijs.nbt.mca.util;
+
+import io.github.ensgijs.nbt.BenchmarkBase;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@Fork(value = 1, jvmArgsAppend = {"-Xms2G", "-Xmx2G"})
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(time = 200, timeUnit = TimeUnit.MILLISECONDS)
+public class LongArrayTagPackedIntegersJmhBenchmark extends BenchmarkBase {
+    @Param({"4", "5", "8"})
+    public int bitsPerValue;
+
+    private LongArrayTagPackedIntegers packed;
+    private int[] histogram;
+
+    @Setup
+    public void setup() {
+        // section-like data - long runs of a few values with occasional strays
+        Random rand = new Random(42);
+        int[] values = new int[4096];
+        int v = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (rand.nextInt(64) == 0) v = rand.nextInt(4);
+            values[i] = rand.nextInt(32) == 0 ? rand.nextInt(1 << bitsPerValue) : v;
+        }
+        packed = LongArrayTagPackedIntegers.builder().length(values.length).minBitsPerValue(bitsPerValue).build();
+        packed.setFromArray(values);
+        histogram = new int[1 << bitsPerValue];
+    }
+
+    @Benchmark
+    public int count() {
+        return packed.count(2);
+    }
+
+    @Benchmark
+    public boolean allMatch() {
+        return packed.allMatch(0);
+    }
+
+    @Benchmark
+    public int histogram() {
+        return packed.histogram(histogram);
+    }
+
+    @Benchmark
+    public LongArrayTagPackedIntegers replaceAll() {
+        LongArrayTagPackedIntegers copy = packed.clone();
+        copy.replaceAll(1, 3);
+        return copy;
+    }
+
+    @Benchmark
+    public int countPerIndexControl() {
+        int count = 0;
+        for (int i = 0; i < packed.length; i++) {
+            if (packed.get(i) == 2) count++;
+        }
+        return count;
+    }
+}
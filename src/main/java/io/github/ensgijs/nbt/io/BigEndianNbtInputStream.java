@@ -17,6 +17,7 @@ import io.github.ensgijs.nbt.tag.Tag;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteOrder;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -125,11 +126,15 @@ public class BigEndianNbtInputStream extends DataInputStream implements NbtInput
 
 	private static ListTag<?> readListTag(BigEndianNbtInputStream in, int maxDepth) throws IOException {
 		byte listType = in.readByte();
-		ListTag<?> list = ListTag.createUnchecked(idClassMapping.get(listType));
 		int length = in.readInt();
 		if (length < 0) {
 			length = 0;
 		}
+		if (length > 0 && PackedListIO.isPackable(listType)) {
+			in.decrementMaxDepth(maxDepth);
+			return PackedListIO.read(in, ByteOrder.BIG_ENDIAN, listType, length);
+		}
+		ListTag<?> list = ListTag.createUnchecked(idClassMapping.get(listType));
 		for (int i = 0; i < length; i++) {
 			list.addUnchecked(in.readTag(listType, in.decrementMaxDepth(maxDepth)));
 		}
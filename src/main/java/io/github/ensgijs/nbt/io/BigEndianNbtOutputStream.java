@@ -17,6 +17,7 @@ import io.github.ensgijs.nbt.tag.Tag;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteOrder;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -137,6 +138,13 @@ public class BigEndianNbtOutputStream extends DataOutputStream implements NbtOut
 	private static void writeList(BigEndianNbtOutputStream out, Tag<?> tag, int maxDepth) throws IOException {
 		out.writeByte(idFromClass(((ListTag<?>) tag).getTypeClass()));
 		out.writeInt(((ListTag<?>) tag).size());
+		if (((ListTag<?>) tag).isPacked()) {
+			if (!((ListTag<?>) tag).isEmpty()) {
+				out.decrementMaxDepth(maxDepth);
+				PackedListIO.write(out, ByteOrder.BIG_ENDIAN, (ListTag<?>) tag);
+			}
+			return;
+		}
 		for (Tag<?> t : ((ListTag<?>) tag)) {
 			out.writeRawTag(t, out.decrementMaxDepth(maxDepth));
 		}
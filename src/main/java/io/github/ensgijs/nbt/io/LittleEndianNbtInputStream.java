@@ -19,6 +19,7 @@ import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
@@ -134,11 +135,15 @@ public class LittleEndianNbtInputStream implements DataInput, NbtInput, MaxDepth
 
 	private static ListTag<?> readListTag(LittleEndianNbtInputStream in, int maxDepth) throws IOException {
 		byte listType = in.readByte();
-		ListTag<?> list = ListTag.createUnchecked(idClassMapping.get(listType));
 		int length = in.readInt();
 		if (length < 0) {
 			length = 0;
 		}
+		if (length > 0 && PackedListIO.isPackable(listType)) {
+			in.decrementMaxDepth(maxDepth);
+			return PackedListIO.read(in, ByteOrder.LITTLE_ENDIAN, listType, length);
+		}
+		ListTag<?> list = ListTag.createUnchecked(idClassMapping.get(listType));
 		for (int i = 0; i < length; i++) {
 			list.addUnchecked(in.readTag(listType, in.decrementMaxDepth(maxDepth)));
 		}
@@ -19,6 +19,7 @@ import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
@@ -144,6 +145,13 @@ public class LittleEndianNbtOutputStream implements DataOutput, NbtOutput, MaxDe
 	private static void writeList(LittleEndianNbtOutputStream out, Tag<?> tag, int maxDepth) throws IOException {
 		out.writeByte(idFromClass(((ListTag<?>) tag).getTypeClass()));
 		out.writeInt(((ListTag<?>) tag).size());
+		if (((ListTag<?>) tag).isPacked()) {
+			if (!((ListTag<?>) tag).isEmpty()) {
+				out.decrementMaxDepth(maxDepth);
+				PackedListIO.write(out, ByteOrder.LITTLE_ENDIAN, (ListTag<?>) tag);
+			}
+			return;
+		}
 		for (Tag<?> t : ((ListTag<?>) tag)) {
 			out.writeRawTag(t, out.decrementMaxDepth(maxDepth));
 		}
@@ -10,7 +10,20 @@ import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 public class NamedTag implements Cloneable, Comparable<NamedTag> {
-	private static final Pattern TAG_NAME_NON_QUOTE_PATTERN = Pattern.compile("^[a-zA-Z0-9_+\\-]+$");
+	/** ASCII chars allowed in an unquoted tag name. */
+	private static final boolean[] UNQUOTED_NAME_CHARS = new boolean[128];
+	static {
+		for (char c = 'a'; c <= 'z'; c++) {
+			UNQUOTED_NAME_CHARS[c] = true;
+			UNQUOTED_NAME_CHARS[Character.toUpperCase(c)] = true;
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			UNQUOTED_NAME_CHARS[c] = true;
+		}
+		UNQUOTED_NAME_CHARS['_'] = true;
+		UNQUOTED_NAME_CHARS['+'] = true;
+		UNQUOTED_NAME_CHARS['-'] = true;
+	}
 	private static final Predicate<String> IS_INTEGER_STRING = Pattern.compile("^(?:\\+|-)?\\d+$").asPredicate();
 
 	private String name;
@@ -80,22 +93,42 @@ public class NamedTag implements Cloneable, Comparable<NamedTag> {
 	}
 
 	public static String escapeName(String name) {
-		if (name != null && !TAG_NAME_NON_QUOTE_PATTERN.matcher(name).matches()) {
-			StringBuilder sb = new StringBuilder();
-			sb.append('"');
-			for (int i = 0; i < name.length(); i++) {
-				char c = name.charAt(i);
-				if (c == '\\' || c == '"') {
-					sb.append('\\');
-				}
-				sb.append(c);
-			}
-			sb.append('"');
-			return sb.toString();
+		if (name != null && needsQuotes(name)) {
+			return appendEscapedName(new StringBuilder(name.length() + 8), name).toString();
 		}
 		return name;
 	}
 
+	/**
+	 * Appends the escaped form of the non-null {@code name} to the given builder, see {@link #escapeName(String)}.
+	 * @return the given builder.
+	 */
+	static StringBuilder appendEscapedName(StringBuilder sb, String name) {
+		if (!needsQuotes(name)) {
+			return sb.append(name);
+		}
+		sb.append('"');
+		int copyFrom = 0;
+		for (int i = 0, len = name.length(); i < len; i++) {
+			final char c = name.charAt(i);
+			if (c == '\\' || c == '"') {
+				sb.append(name, copyFrom, i).append('\\');
+				copyFrom = i;
+			}
+		}
+		return sb.append(name, copyFrom, name.length()).append('"');
+	}
+
+	private static boolean needsQuotes(String name) {
+		final int len = name.length();
+		if (len == 0) return true;
+		for (int i = 0; i < len; i++) {
+			final char c = name.charAt(i);
+			if (c >= 128 || !UNQUOTED_NAME_CHARS[c]) return true;
+		}
+		return false;
+	}
+
 
 	@Override
 	public boolean equals(Object o) {
@@ -109,13 +142,21 @@ public class NamedTag implements Cloneable, Comparable<NamedTag> {
 		if (o1 == o2) return 0;
 		if (o1 == null) return -1;
 		if (o2 == null) return 1;
-		String n1Lower = o1.getName().toLowerCase(Locale.ENGLISH);
-		String n2Lower = o2.getName().toLowerCase(Locale.ENGLISH);
+		return compareNames(o1.getName(), o2.getName());
+	}
+
+	/**
+	 * Orders names the way {@link #compare(NamedTag, NamedTag)} orders tags: case-insensitively, with names which
+	 * are both integers compared numerically.
+	 */
+	static int compareNames(String n1, String n2) {
+		String n1Lower = n1.toLowerCase(Locale.ENGLISH);
+		String n2Lower = n2.toLowerCase(Locale.ENGLISH);
 		if (IS_INTEGER_STRING.test(n1Lower) && IS_INTEGER_STRING.test(n2Lower)) {
 			return Long.compare(Long.parseLong(n1Lower), Long.parseLong(n2Lower));
 		} else {
 			int result = n1Lower.compareTo(n2Lower);
-			return result != 0 ? result : o1.getName().compareTo(o2.getName());
+			return result != 0 ? result : n1.compareTo(n2);
 		}
 	}
 
@@ -0,0 +1,368 @@
+package io.github.ensgijs.nbt.io;
+
+import io.github.ensgijs.nbt.tag.ByteArrayTag;
+import io.github.ensgijs.nbt.tag.ByteTag;
+import io.github.ensgijs.nbt.tag.CompoundTag;
+import io.github.ensgijs.nbt.tag.DoubleTag;
+import io.github.ensgijs.nbt.tag.EndTag;
+import io.github.ensgijs.nbt.tag.FloatTag;
+import io.github.ensgijs.nbt.tag.IntArrayTag;
+import io.github.ensgijs.nbt.tag.IntTag;
+import io.github.ensgijs.nbt.tag.ListTag;
+import io.github.ensgijs.nbt.tag.LongArrayTag;
+import io.github.ensgijs.nbt.tag.LongTag;
+import io.github.ensgijs.nbt.tag.ShortTag;
+import io.github.ensgijs.nbt.tag.StringTag;
+import io.github.ensgijs.nbt.tag.Tag;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts between text nbt and big endian (Minecraft Java edition) binary nbt without building a {@link Tag} tree.
+ * The output is the same as reading the input into tags and writing them out again:
+ * <ul>
+ *     <li>Text to binary matches {@link TextNbtParser#readTag(int)} followed by {@link BinaryNbtSerializer}, with
+ *     compound entries optionally sorted the same way. The binary output is built up in a byte buffer (list lengths
+ *     are only known once a list has been read) and is written out in one piece.</li>
+ *     <li>Binary to text matches {@link BinaryNbtDeserializer} followed by {@link TextNbtWriter}, except that an empty
+ *     root name is not written; see {@link TextNbtWriter#transcode}.</li>
+ * </ul>
+ */
+public final class NbtTranscoder {
+	private NbtTranscoder() {}
+
+	/**
+	 * Converts one text nbt tag, which may be named, to binary nbt.
+	 * @return false if the input holds nothing but whitespace, in which case nothing is written.
+	 * @throws ParseException if the text nbt is invalid or is followed by anything but whitespace.
+	 */
+	public static boolean textToBinary(Reader reader, OutputStream out, CompressionType compression, boolean sortCompoundTagEntries, int maxDepth) throws IOException {
+		TextToBinary transcoder = new TextToBinary(new StringPointer(reader), sortCompoundTagEntries);
+		try {
+			if (!transcoder.transcodeRoot(maxDepth)) return false;
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+		OutputStream output = compression.compress(out);
+		transcoder.buf.writeTo(output);
+		compression.finish(output);
+		output.flush();
+		return true;
+	}
+
+	public static boolean textToBinary(Reader reader, OutputStream out, CompressionType compression, boolean sortCompoundTagEntries) throws IOException {
+		return textToBinary(reader, out, compression, sortCompoundTagEntries, Tag.DEFAULT_MAX_DEPTH);
+	}
+
+	/** @return the binary nbt, or null if the text holds nothing but whitespace. */
+	public static byte[] textToBinary(String text, CompressionType compression, boolean sortCompoundTagEntries) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		if (!textToBinary(new StringReader(text), baos, compression, sortCompoundTagEntries)) return null;
+		return baos.toByteArray();
+	}
+
+	/** Converts one binary nbt tag to text nbt. */
+	public static void binaryToText(InputStream in, CompressionType compression, Writer writer, boolean sortCompoundTagEntries, boolean prettyPrint, int maxDepth) throws IOException {
+		TextNbtWriter.transcode(new DataInputStream(compression.decompress(in)), writer, sortCompoundTagEntries, prettyPrint, maxDepth);
+		writer.flush();
+	}
+
+	public static void binaryToText(InputStream in, CompressionType compression, Writer writer, boolean sortCompoundTagEntries, boolean prettyPrint) throws IOException {
+		binaryToText(in, compression, writer, sortCompoundTagEntries, prettyPrint, Tag.DEFAULT_MAX_DEPTH);
+	}
+
+	public static String binaryToText(byte[] data, CompressionType compression, boolean sortCompoundTagEntries, boolean prettyPrint) throws IOException {
+		StringWriter writer = new StringWriter();
+		binaryToText(new ByteArrayInputStream(data), compression, writer, sortCompoundTagEntries, prettyPrint);
+		return writer.toString();
+	}
+
+	/** Byte buffer which allows already written values to be overwritten and ranges to be reordered. */
+	private static final class PatchableBuffer extends ByteArrayOutputStream {
+		PatchableBuffer() {
+			super(8192);
+		}
+
+		void patchByte(int pos, byte v) {
+			buf[pos] = v;
+		}
+
+		void patchInt(int pos, int v) {
+			buf[pos] = (byte) (v >>> 24);
+			buf[pos + 1] = (byte) (v >>> 16);
+			buf[pos + 2] = (byte) (v >>> 8);
+			buf[pos + 3] = (byte) v;
+		}
+
+		/**
+		 * Replaces everything from {@code start} to the end of the buffer with the given entries' bytes, in list
+		 * order. Entries may be left out, but must not overlap.
+		 */
+		void rewrite(int start, List<Entry> entries) {
+			final byte[] copy = Arrays.copyOfRange(buf, start, count);
+			int pos = start;
+			for (Entry entry : entries) {
+				final int length = entry.end - entry.start;
+				System.arraycopy(copy, entry.start - start, buf, pos, length);
+				pos += length;
+			}
+			count = pos;
+		}
+	}
+
+	/** Byte range of a compound entry: tag id, name and payload. */
+	private static final class Entry {
+		final String name;
+		int start;
+		int end;
+
+		Entry(String name, int start, int end) {
+			this.name = name;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	private static final class TextToBinary implements MaxDepthIO {
+		private final StringPointer ptr;
+		private final SnbtLexer.Literal literal = new SnbtLexer.Literal();
+		private final boolean sortCompoundTagEntries;
+		final PatchableBuffer buf = new PatchableBuffer();
+		private final DataOutputStream out = new DataOutputStream(buf);
+
+		TextToBinary(StringPointer ptr, boolean sortCompoundTagEntries) {
+			this.ptr = ptr;
+			this.sortCompoundTagEntries = sortCompoundTagEntries;
+		}
+
+		/** Mirrors {@link TextNbtParser#readNextTag(int)}. */
+		boolean transcodeRoot(int maxDepth) throws IOException {
+			ptr.skipWhitespace();
+			if (!ptr.hasNext()) return false;
+			ptr.mark();
+			String name = ptr.currentChar() == '"' ? ptr.parseQuotedString() : ptr.parseSimpleString();
+			ptr.skipWhitespace();
+			if (ptr.hasNext() && ptr.currentChar() == ':') {
+				ptr.clearMark();
+				ptr.skip(1);
+				ptr.skipWhitespace();
+				if (!ptr.hasNext()) {
+					throw ptr.parseException("unexpected end of input - no value after name:");
+				}
+			} else {
+				// not a name after all - parse it again as the value
+				ptr.rewindToMark();
+				name = "";
+			}
+			out.writeByte(0);
+			out.writeUTF(name);
+			buf.patchByte(0, transcodeAnything(maxDepth));
+			ptr.skipWhitespace();
+			if (ptr.hasNext()) {
+				throw ptr.parseException("invalid characters after end of text nbt");
+			}
+			return true;
+		}
+
+		/**
+		 * Writes the payload of the value at the current position.
+		 * @return the value's tag id.
+		 */
+		private byte transcodeAnything(int maxDepth) throws IOException {
+			ptr.skipWhitespace();
+			switch (ptr.currentChar()) {
+				case '{':
+					transcodeCompound(maxDepth);
+					return CompoundTag.ID;
+				case '[':
+					if (ptr.hasCharsLeft(2) && ptr.lookAhead(1) != '"' && ptr.lookAhead(2) == ';') {
+						return transcodeNumArray();
+					}
+					transcodeList(maxDepth);
+					return ListTag.ID;
+			}
+			return transcodeStringOrLiteral();
+		}
+
+		private byte transcodeStringOrLiteral() throws IOException {
+			if (ptr.currentChar() == '"') {
+				out.writeUTF(ptr.parseQuotedString());
+				return StringTag.ID;
+			}
+			final int end = ptr.skipSimpleString();
+			final int start = ptr.getTokenStart();
+			if (start == end) {
+				throw ptr.parseException("expected non empty value");
+			}
+			final byte id = SnbtLexer.parseLiteral(ptr, start, end, literal);
+			switch (id) {
+				case ByteTag.ID:
+					out.writeByte((int) literal.longValue);
+					break;
+				case ShortTag.ID:
+					out.writeShort((int) literal.longValue);
+					break;
+				case IntTag.ID:
+					out.writeInt((int) literal.longValue);
+					break;
+				case LongTag.ID:
+					out.writeLong(literal.longValue);
+					break;
+				case FloatTag.ID:
+					out.writeFloat((float) literal.doubleValue);
+					break;
+				case DoubleTag.ID:
+					out.writeDouble(literal.doubleValue);
+					break;
+				default:
+					out.writeUTF(ptr.substring(start, end));
+					break;
+			}
+			return id;
+		}
+
+		/**
+		 * Like {@link CompoundTag#put(String, Tag)}, a repeated key keeps the position of its first occurrence and
+		 * the value of its last.
+		 */
+		private void transcodeCompound(int maxDepth) throws IOException {
+			ptr.expectChar('{');
+			final int start = buf.size();
+			final List<Entry> entries = new ArrayList<>();
+			Map<String, Entry> byName = null;
+			boolean rewrite = false;
+			ptr.skipWhitespace();
+			while (ptr.hasNext() && ptr.currentChar() != '}') {
+				ptr.skipWhitespace();
+				String key = ptr.currentChar() == '"' ? ptr.parseQuotedString() : ptr.parseSimpleString();
+				if (key.isEmpty()) {
+					throw ptr.parseException("empty keys are not allowed");
+				}
+				ptr.expectChar(':');
+				final int entryStart = buf.size();
+				out.writeByte(0);
+				out.writeUTF(key);
+				buf.patchByte(entryStart, transcodeAnything(decrementMaxDepth(maxDepth)));
+
+				if (byName == null && entries.size() == 8) {
+					byName = new HashMap<>();
+					for (Entry entry : entries) byName.put(entry.name, entry);
+				}
+				Entry existing = null;
+				if (byName != null) {
+					existing = byName.get(key);
+				} else {
+					for (Entry entry : entries) {
+						if (entry.name.equals(key)) existing = entry;
+					}
+				}
+				if (existing != null) {
+					existing.start = entryStart;
+					existing.end = buf.size();
+					rewrite = true;
+				} else {
+					Entry entry = new Entry(key, entryStart, buf.size());
+					entries.add(entry);
+					if (byName != null) byName.put(key, entry);
+				}
+
+				if (!ptr.nextArrayElement()) {
+					break;
+				}
+			}
+			ptr.expectChar('}');
+			if (sortCompoundTagEntries && entries.size() > 1) {
+				// same order as BigEndianNbtOutputStream's sorted compound writer
+				entries.sort((a, b) -> a.name.compareTo(b.name));
+				rewrite = true;
+			}
+			if (rewrite) {
+				buf.rewrite(start, entries);
+			}
+			out.writeByte(EndTag.ID);
+		}
+
+		private void transcodeList(int maxDepth) throws IOException {
+			ptr.expectChar('[');
+			final int headerPos = buf.size();
+			out.writeByte(EndTag.ID);
+			out.writeInt(0);
+			byte type = EndTag.ID;
+			int length = 0;
+			ptr.skipWhitespace();
+			while (ptr.currentChar() != ']') {
+				final byte id = transcodeAnything(decrementMaxDepth(maxDepth));
+				if (length == 0) {
+					type = id;
+				} else if (id != type) {
+					throw ptr.parseException("cannot add tag id " + id + " to list of tag id " + type);
+				}
+				length++;
+				if (!ptr.nextArrayElement()) {
+					break;
+				}
+			}
+			ptr.expectChar(']');
+			buf.patchByte(headerPos, type);
+			buf.patchInt(headerPos + 1, length);
+		}
+
+		private byte transcodeNumArray() throws IOException {
+			ptr.expectChar('[');
+			char arrayType = ptr.next();
+			ptr.expectChar(';');
+			ptr.skipWhitespace();
+			final int lengthPos = buf.size();
+			out.writeInt(0);
+			int length = 0;
+			final byte id;
+			switch (arrayType) {
+				case 'B':
+					id = ByteArrayTag.ID;
+					while (ptr.currentChar() != ']') {
+						out.writeByte((int) SnbtLexer.parseArrayElement(ptr, Byte.MIN_VALUE, Byte.MAX_VALUE, "byte", "ByteArrayTag"));
+						length++;
+						if (!ptr.nextArrayElement()) break;
+					}
+					break;
+				case 'I':
+					id = IntArrayTag.ID;
+					while (ptr.currentChar() != ']') {
+						out.writeInt((int) SnbtLexer.parseArrayElement(ptr, Integer.MIN_VALUE, Integer.MAX_VALUE, "int", "IntArrayTag"));
+						length++;
+						if (!ptr.nextArrayElement()) break;
+					}
+					break;
+				case 'L':
+					id = LongArrayTag.ID;
+					while (ptr.currentChar() != ']') {
+						out.writeLong(SnbtLexer.parseArrayElement(ptr, Long.MIN_VALUE, Long.MAX_VALUE, "long", "LongArrayTag"));
+						length++;
+						if (!ptr.nextArrayElement()) break;
+					}
+					break;
+				default:
+					throw ptr.parseException("invalid array type '" + arrayType + "'");
+			}
+			ptr.expectChar(']');
+			buf.patchInt(lengthPos, length);
+			return id;
+		}
+	}
+}
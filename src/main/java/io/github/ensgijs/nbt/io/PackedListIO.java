@@ -0,0 +1,123 @@
+package io.github.ensgijs.nbt.io;
+
+import io.github.ensgijs.nbt.tag.DoubleTag;
+import io.github.ensgijs.nbt.tag.FloatTag;
+import io.github.ensgijs.nbt.tag.IntTag;
+import io.github.ensgijs.nbt.tag.ListTag;
+import io.github.ensgijs.nbt.tag.LongTag;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Bulk binary reading and writing of {@link ListTag#isPacked() packed} numeric lists, shared by the big and little
+ * endian nbt streams. Values are moved through a small byte buffer instead of one stream call and one tag per value.
+ */
+final class PackedListIO {
+	/** Values per buffer fill - keeps the buffer small no matter how long the list claims to be. */
+	private static final int BUFFER_VALUES = 512;
+
+	private PackedListIO() {}
+
+	/** @return true if lists with the given element tag id are read as packed lists. */
+	static boolean isPackable(byte listType) {
+		return listType == IntTag.ID || listType == LongTag.ID || listType == FloatTag.ID || listType == DoubleTag.ID;
+	}
+
+	private static int widthOf(byte listType) {
+		return listType == IntTag.ID || listType == FloatTag.ID ? 4 : 8;
+	}
+
+	/**
+	 * Reads {@code length} values of the given {@link #isPackable(byte) packable} type into a new packed list.
+	 * The value array grows as values are read, rather than being allocated up front, so a corrupt length fails
+	 * with an {@link java.io.EOFException} instead of allocating for values which are not there.
+	 */
+	static ListTag<?> read(DataInput in, ByteOrder order, byte listType, int length) throws IOException {
+		final int width = widthOf(listType);
+		final byte[] buf = new byte[Math.min(length, BUFFER_VALUES) * width];
+		switch (listType) {
+			case IntTag.ID -> {
+				int[] values = new int[Math.min(length, BUFFER_VALUES)];
+				for (int off = 0, n; off < length; off += n) {
+					n = fill(in, buf, width, length - off);
+					if (off + n > values.length) values = Arrays.copyOf(values, grow(values.length, off + n, length));
+					ByteBuffer.wrap(buf).order(order).asIntBuffer().get(values, off, n);
+				}
+				return ListTag.wrapInts(values);
+			}
+			case LongTag.ID -> {
+				long[] values = new long[Math.min(length, BUFFER_VALUES)];
+				for (int off = 0, n; off < length; off += n) {
+					n = fill(in, buf, width, length - off);
+					if (off + n > values.length) values = Arrays.copyOf(values, grow(values.length, off + n, length));
+					ByteBuffer.wrap(buf).order(order).asLongBuffer().get(values, off, n);
+				}
+				return ListTag.wrapLongs(values);
+			}
+			case FloatTag.ID -> {
+				float[] values = new float[Math.min(length, BUFFER_VALUES)];
+				for (int off = 0, n; off < length; off += n) {
+					n = fill(in, buf, width, length - off);
+					if (off + n > values.length) values = Arrays.copyOf(values, grow(values.length, off + n, length));
+					ByteBuffer.wrap(buf).order(order).asFloatBuffer().get(values, off, n);
+				}
+				return ListTag.wrapFloats(values);
+			}
+			case DoubleTag.ID -> {
+				double[] values = new double[Math.min(length, BUFFER_VALUES)];
+				for (int off = 0, n; off < length; off += n) {
+					n = fill(in, buf, width, length - off);
+					if (off + n > values.length) values = Arrays.copyOf(values, grow(values.length, off + n, length));
+					ByteBuffer.wrap(buf).order(order).asDoubleBuffer().get(values, off, n);
+				}
+				return ListTag.wrapDoubles(values);
+			}
+			default -> throw new IllegalArgumentException("not a packable list type " + listType);
+		}
+	}
+
+	/**
+	 * @return the new capacity of a value array of the given capacity which must hold at least {@code required}
+	 * values - at least double the capacity, but never more than the length of the list.
+	 */
+	private static int grow(int capacity, int required, int length) {
+		return Math.min(length, Math.max(required, capacity * 2));
+	}
+
+	/** Reads as many whole values as fit in the buffer, up to remaining. */
+	private static int fill(DataInput in, byte[] buf, int width, int remaining) throws IOException {
+		final int n = Math.min(remaining, buf.length / width);
+		in.readFully(buf, 0, n * width);
+		return n;
+	}
+
+	/**
+	 * Writes the values (not the element type or length) of a packed list.
+	 */
+	static void write(DataOutput out, ByteOrder order, ListTag<?> list) throws IOException {
+		final int length = list.size();
+		final Class<?> type = list.getTypeClass();
+		final int width = type == IntTag.class || type == FloatTag.class ? 4 : 8;
+		final ByteBuffer bb = ByteBuffer.allocate(Math.min(length, BUFFER_VALUES) * width).order(order);
+		for (int off = 0; off < length; ) {
+			final int end = Math.min(length, off + BUFFER_VALUES);
+			bb.clear();
+			if (type == IntTag.class) {
+				for (int i = off; i < end; i++) bb.putInt(list.getInt(i));
+			} else if (type == LongTag.class) {
+				for (int i = off; i < end; i++) bb.putLong(list.getLong(i));
+			} else if (type == FloatTag.class) {
+				for (int i = off; i < end; i++) bb.putFloat(list.getFloat(i));
+			} else {
+				for (int i = off; i < end; i++) bb.putDouble(list.getDouble(i));
+			}
+			out.write(bb.array(), 0, bb.position());
+			off = end;
+		}
+	}
+}
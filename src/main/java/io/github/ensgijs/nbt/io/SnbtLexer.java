@@ -0,0 +1,275 @@
+package io.github.ensgijs.nbt.io;
+
+import io.github.ensgijs.nbt.tag.ByteTag;
+import io.github.ensgijs.nbt.tag.DoubleTag;
+import io.github.ensgijs.nbt.tag.FloatTag;
+import io.github.ensgijs.nbt.tag.IntTag;
+import io.github.ensgijs.nbt.tag.LongTag;
+import io.github.ensgijs.nbt.tag.ShortTag;
+import io.github.ensgijs.nbt.tag.StringTag;
+
+/**
+ * Single pass classification and parsing of unquoted text nbt literals, working directly on the characters held by a
+ * {@link StringPointer} so that numeric values do not need to be copied out into strings first.
+ * <p>Recognized literals (suffixes are case-insensitive):</p>
+ * <ul>
+ *     <li>{@code [-+]?\d+} int</li>
+ *     <li>{@code [-+]?\d+[bsl]} byte, short and long</li>
+ *     <li>{@code [-+]?(\d+\.?|\d*\.\d+)(e[-+]?\d+)?[fd]} float and double</li>
+ *     <li>{@code [-+]?(\d+\.|\d*\.\d+)(e[-+]?\d+)?} double (a decimal point is required without a suffix)</li>
+ *     <li>{@code true} and {@code false} as byte 1 and 0</li>
+ * </ul>
+ * <p>Anything else is a plain string. Values are reported as primitives through a reusable {@link Literal}, so
+ * callers which do not need tags, such as {@link NbtTranscoder}, never create any.</p>
+ */
+final class SnbtLexer {
+	private static final double[] DOUBLE_POW10 = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	private static final float[] FLOAT_POW10 = {
+			1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+	};
+	/** Largest number of significant digits accumulated exactly, beyond this the JDK parsers are used. */
+	private static final int MAX_EXACT_DIGITS = 18;
+
+	private SnbtLexer() {}
+
+	/** Value of the last literal parsed into it, see {@link #parseLiteral(StringPointer, int, int, Literal)}. */
+	static final class Literal {
+		/** Value of a byte, short, int or long literal. */
+		long longValue;
+		/** Value of a float or double literal, floats widen to double and narrow back exactly. */
+		double doubleValue;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Classifies and parses the unquoted token {@code [start, end)} of the given pointer.
+	 * @param value receives the parsed value of a number or boolean literal.
+	 * @return the tag id of the literal, which is {@link StringTag#ID} if the token is a plain string.
+	 * @throws ParseException if the token is an integral literal which does not fit its type.
+	 */
+	static byte parseLiteral(StringPointer ptr, int start, int end, Literal value) throws ParseException {
+		final int len = end - start;
+		if (len == 4 && ptr.regionMatchesIgnoreCase(start, "true")) return integral(value, 1, ByteTag.ID);
+		if (len == 5 && ptr.regionMatchesIgnoreCase(start, "false")) return integral(value, 0, ByteTag.ID);
+
+		int i = start;
+		char c = ptr.charAt(i);
+		if (c == '-' || c == '+') i++;
+		final int digitsStart = i;
+		while (i < end && isDigit(ptr.charAt(i))) i++;
+		final int intDigits = i - digitsStart;
+		int dotIndex = -1;
+		int fracDigits = 0;
+		if (i < end && ptr.charAt(i) == '.') {
+			dotIndex = i++;
+			while (i < end && isDigit(ptr.charAt(i))) i++;
+			fracDigits = i - dotIndex - 1;
+		}
+		if (intDigits + fracDigits == 0) return StringTag.ID;
+		int expIndex = -1;
+		if (i < end && (ptr.charAt(i) | 0x20) == 'e') {
+			int j = i + 1;
+			if (j < end && (ptr.charAt(j) == '-' || ptr.charAt(j) == '+')) j++;
+			final int expDigitsStart = j;
+			while (j < end && isDigit(ptr.charAt(j))) j++;
+			if (j == expDigitsStart) return StringTag.ID;
+			expIndex = i;
+			i = j;
+		}
+		final int numberEnd = i;
+		final char suffix;
+		if (numberEnd == end) {
+			suffix = 0;
+		} else if (numberEnd == end - 1) {
+			suffix = (char) (ptr.charAt(numberEnd) | 0x20);
+		} else {
+			return StringTag.ID;
+		}
+		final boolean integral = dotIndex < 0 && expIndex < 0;
+		switch (suffix) {
+			case 'f':
+				value.doubleValue = parseFloat(ptr, start, numberEnd, dotIndex, expIndex);
+				return FloatTag.ID;
+			case 'd':
+				value.doubleValue = parseDouble(ptr, start, numberEnd, dotIndex, expIndex);
+				return DoubleTag.ID;
+			case 'b':
+				if (!integral) return StringTag.ID;
+				return integral(value, parseInteger(ptr, start, numberEnd, Byte.MIN_VALUE, Byte.MAX_VALUE, "byte"), ByteTag.ID);
+			case 's':
+				if (!integral) return StringTag.ID;
+				return integral(value, parseInteger(ptr, start, numberEnd, Short.MIN_VALUE, Short.MAX_VALUE, "short"), ShortTag.ID);
+			case 'l':
+				if (!integral) return StringTag.ID;
+				return integral(value, parseInteger(ptr, start, numberEnd, Long.MIN_VALUE, Long.MAX_VALUE, "long"), LongTag.ID);
+			case 0:
+				if (integral) {
+					return integral(value, parseInteger(ptr, start, numberEnd, Integer.MIN_VALUE, Integer.MAX_VALUE, "int"), IntTag.ID);
+				}
+				if (dotIndex < 0) return StringTag.ID;
+				value.doubleValue = parseDouble(ptr, start, numberEnd, dotIndex, expIndex);
+				return DoubleTag.ID;
+		}
+		return StringTag.ID;
+	}
+
+	private static byte integral(Literal value, long longValue, byte id) {
+		value.longValue = longValue;
+		return id;
+	}
+
+	/**
+	 * @return true if {@code [start, end)} is an optionally signed run of decimal digits.
+	 */
+	static boolean isInteger(StringPointer ptr, int start, int end) {
+		int i = start;
+		if (i < end && (ptr.charAt(i) == '-' || ptr.charAt(i) == '+')) i++;
+		if (i == end) return false;
+		for (; i < end; i++) {
+			if (!isDigit(ptr.charAt(i))) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Parses the optionally signed run of decimal digits {@code [start, end)}, which must be
+	 * {@link #isInteger(StringPointer, int, int) valid}.
+	 * @throws ParseException if the value is outside of {@code [min, max]}.
+	 */
+	static long parseInteger(StringPointer ptr, int start, int end, long min, long max, String typeName) throws ParseException {
+		int i = start;
+		boolean negative = false;
+		char c = ptr.charAt(i);
+		if (c == '-' || c == '+') {
+			negative = c == '-';
+			i++;
+		}
+		// accumulate negatively, as Long.parseLong does, so that the most negative value does not overflow
+		final long limit = negative ? min : -max;
+		final long multMin = limit / 10;
+		long result = 0;
+		for (; i < end; i++) {
+			final int digit = ptr.charAt(i) - '0';
+			if (result < multMin) throw outOfRange(ptr, start, end, typeName);
+			result *= 10;
+			if (result < limit + digit) throw outOfRange(ptr, start, end, typeName);
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+	/**
+	 * Parses the next element of a number array, leaving the pointer after it.
+	 * @param tagName array tag name used in error messages.
+	 */
+	static long parseArrayElement(StringPointer ptr, long min, long max, String typeName, String tagName) throws ParseException {
+		final int end = ptr.skipSimpleString();
+		final int start = ptr.getTokenStart();
+		if (!isInteger(ptr, start, end)) {
+			throw ptr.parseException("invalid " + typeName + " in " + tagName + ": \"" + ptr.substring(start, end) + "\"");
+		}
+		final long value = parseInteger(ptr, start, end, min, max, typeName);
+		ptr.skipWhitespace();
+		return value;
+	}
+
+	private static ParseException outOfRange(StringPointer ptr, int start, int end, String typeName) {
+		return ptr.parseException(typeName + " not in range: \"" + ptr.substring(start, end) + "\"");
+	}
+
+	private static double parseDouble(StringPointer ptr, int start, int end, int dotIndex, int expIndex) {
+		final Decimal d = Decimal.scan(ptr, start, end, dotIndex, expIndex);
+		if (d != null) {
+			if (d.mantissa == 0) return d.negative ? -0d : 0d;
+			// both operands are exact, so the single multiplication or division is correctly rounded
+			if (d.digits <= 15 && d.exponent >= -22 && d.exponent <= 22) {
+				final double v = d.exponent >= 0
+						? d.mantissa * DOUBLE_POW10[d.exponent]
+						: d.mantissa / DOUBLE_POW10[-d.exponent];
+				return d.negative ? -v : v;
+			}
+		}
+		return Double.parseDouble(ptr.substring(start, end));
+	}
+
+	private static float parseFloat(StringPointer ptr, int start, int end, int dotIndex, int expIndex) {
+		final Decimal d = Decimal.scan(ptr, start, end, dotIndex, expIndex);
+		if (d != null) {
+			if (d.mantissa == 0) return d.negative ? -0f : 0f;
+			if (d.digits <= 7 && d.exponent >= -10 && d.exponent <= 10) {
+				final float v = d.exponent >= 0
+						? d.mantissa * FLOAT_POW10[d.exponent]
+						: d.mantissa / FLOAT_POW10[-d.exponent];
+				return d.negative ? -v : v;
+			}
+		}
+		return Float.parseFloat(ptr.substring(start, end));
+	}
+
+	/** Decimal significand and power of ten of a float or double literal. */
+	private static final class Decimal {
+		boolean negative;
+		long mantissa;
+		/** significant digits in mantissa */
+		int digits;
+		int exponent;
+
+		/**
+		 * @return the decimal, or null if it has too many significant digits or too large an exponent to be
+		 * handled exactly.
+		 */
+		static Decimal scan(StringPointer ptr, int start, int end, int dotIndex, int expIndex) {
+			final Decimal d = new Decimal();
+			int i = start;
+			char c = ptr.charAt(i);
+			if (c == '-' || c == '+') {
+				d.negative = c == '-';
+				i++;
+			}
+			final int mantissaEnd = expIndex >= 0 ? expIndex : end;
+			long mantissa = 0;
+			int digits = 0;
+			// zeros seen after the last non-zero digit are only multiplied in once another non-zero digit follows
+			int pendingZeros = 0;
+			int scale = 0;
+			for (; i < mantissaEnd; i++) {
+				if (i == dotIndex) continue;
+				if (dotIndex >= 0 && i > dotIndex) scale--;
+				final int digit = ptr.charAt(i) - '0';
+				if (digit == 0) {
+					if (digits > 0) pendingZeros++;
+					continue;
+				}
+				digits += pendingZeros + 1;
+				if (digits > MAX_EXACT_DIGITS) return null;
+				for (; pendingZeros > 0; pendingZeros--) mantissa *= 10;
+				mantissa = mantissa * 10 + digit;
+			}
+			int exponent = 0;
+			if (expIndex >= 0) {
+				i = expIndex + 1;
+				boolean negativeExponent = false;
+				c = ptr.charAt(i);
+				if (c == '-' || c == '+') {
+					negativeExponent = c == '-';
+					i++;
+				}
+				for (; i < end; i++) {
+					exponent = exponent * 10 + (ptr.charAt(i) - '0');
+					if (exponent > 9999) return null;
+				}
+				if (negativeExponent) exponent = -exponent;
+			}
+			d.mantissa = mantissa;
+			d.digits = digits;
+			d.exponent = exponent + scale + pendingZeros;
+			return d;
+		}
+	}
+}
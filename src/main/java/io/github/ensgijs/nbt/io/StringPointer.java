@@ -1,46 +1,196 @@
 package io.github.ensgijs.nbt.io;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * Cursor over text nbt input, either a {@link String} or a {@link Reader}.
+ * <p>When reading from a {@link Reader} only a sliding window of the input is held in memory: characters before
+ * the current position are discarded as more input is read, except for the token being parsed (see
+ * {@link #getTokenStart()}), the {@link #mark() marked} position, and a little context for error messages. The
+ * window only grows beyond its initial size to hold a single token longer than that. Indexes used by this class
+ * ({@link #getIndex()}, {@link #getTokenStart()}, {@link #charAt(int)}) are relative to the window and are only
+ * stable until more input is read; for {@link String} input the window is the whole string.</p>
+ * <p>{@link IOException}s thrown by the reader are rethrown as {@link UncheckedIOException}s.</p>
+ */
 public class StringPointer {
+	private static final int DEFAULT_WINDOW_SIZE = 8192;
+	/** Chars kept before the current index when sliding the window, for error messages. */
+	private static final int ERROR_CONTEXT_CHARS = 36;
 
-	private String value;
+	/** Null if all input is in {@link #buf}. */
+	private final Reader reader;
+	private char[] buf;
+	/** Number of valid chars in buf. */
+	private int length;
+	/** Number of chars discarded from the front of the window. */
+	private long discarded;
 	private int index;
+	private int tokenStart = -1;
+	private int markIndex = -1;
 
 	public StringPointer(String value) {
-		this.value = value;
+		this.reader = null;
+		this.buf = value.toCharArray();
+		this.length = buf.length;
+		skipUtf8Bom();
+	}
+
+	/**
+	 * Creates a pointer which reads from the given reader on demand. The reader is not closed by this class.
+	 */
+	public StringPointer(Reader reader) {
+		this(reader, DEFAULT_WINDOW_SIZE);
+	}
+
+	StringPointer(Reader reader, int windowSize) {
+		this.reader = reader;
+		this.buf = new char[Math.max(windowSize, 2 * ERROR_CONTEXT_CHARS)];
 		skipUtf8Bom();
 	}
 
+	/** @return true if this pointer reads from a {@link Reader} and cannot be {@link #reset()}. */
+	public boolean isStreaming() {
+		return reader != null;
+	}
+
+	/**
+	 * Moves back to the start of the input.
+	 * @throws UnsupportedOperationException if this pointer {@link #isStreaming() is streaming}.
+	 */
 	public void reset() {
+		if (reader != null) {
+			throw new UnsupportedOperationException("cannot reset a pointer reading from a Reader");
+		}
 		index = 0;
 		skipUtf8Bom();
 	}
 
 	/** Skips the UTF8 BOM (byte order mark) if the current index is 0, else does nothing.*/
 	private void skipUtf8Bom() {
-		if (index != 0) return;
+		if (index != 0 || discarded != 0) return;
 		if (hasNext() && next() != '\uFEFF') {
 			index = 0;
 		}
 	}
 
+	/**
+	 * Makes at least {@code count} chars available from the current index, if the input has that many.
+	 * @return true if they are available.
+	 */
+	private boolean fill(int count) {
+		if (reader == null) return index + count <= length;
+		try {
+			while (index + count > length) {
+				int keepFrom = Math.max(0, index - ERROR_CONTEXT_CHARS);
+				if (tokenStart >= 0) keepFrom = Math.min(keepFrom, tokenStart);
+				if (markIndex >= 0) keepFrom = Math.min(keepFrom, markIndex);
+				if (keepFrom > 0) {
+					System.arraycopy(buf, keepFrom, buf, 0, length - keepFrom);
+					length -= keepFrom;
+					index -= keepFrom;
+					discarded += keepFrom;
+					if (tokenStart >= 0) tokenStart -= keepFrom;
+					if (markIndex >= 0) markIndex -= keepFrom;
+				}
+				if (length == buf.length || index + count > buf.length) {
+					char[] grown = new char[Math.max(buf.length * 2, index + count)];
+					System.arraycopy(buf, 0, grown, 0, length);
+					buf = grown;
+				}
+				int read = reader.read(buf, length, buf.length - length);
+				if (read < 0) return false;
+				length += read;
+			}
+			return true;
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/** @return the current index within the window. */
 	public int getIndex() {
 		return index;
 	}
 
+	/** @return the number of chars consumed from the start of the input. */
+	public long getPosition() {
+		return discarded + index;
+	}
+
+	/** @return the number of chars in the window - for {@link String} input the length of the string. */
 	public int size() {
-		return value.length();
+		return length;
+	}
+
+	/**
+	 * @return index within the window of the start of the token most recently read by
+	 * {@link #skipSimpleString()}, {@link #parseSimpleString()} or {@link #parseQuotedString()}.
+	 */
+	public int getTokenStart() {
+		return tokenStart;
+	}
+
+	/** Pins the current position so that it can be returned to with {@link #rewindToMark()}. */
+	public void mark() {
+		markIndex = index;
+	}
+
+	/** Returns to, and clears, the position saved by {@link #mark()}. */
+	public void rewindToMark() {
+		if (markIndex < 0) {
+			throw new IllegalStateException("no mark set");
+		}
+		index = markIndex;
+		markIndex = -1;
+	}
+
+	/** Clears the position saved by {@link #mark()} so the window may slide past it. */
+	public void clearMark() {
+		markIndex = -1;
 	}
 
 	public String parseSimpleString() {
-		int oldIndex = index;
-		while (hasNext() && isSimpleChar(currentChar())) {
+		skipSimpleString();
+		return substring(tokenStart, index);
+	}
+
+	/**
+	 * Advances past the simple (unquoted) string at the current position without copying it. Its start is
+	 * available from {@link #getTokenStart()}.
+	 * @return index just past the end of the simple string (the new current index).
+	 */
+	public int skipSimpleString() {
+		tokenStart = index;
+		while (hasNext() && isSimpleChar(buf[index])) {
 			index++;
 		}
-		return value.substring(oldIndex, index);
+		return index;
+	}
+
+	/** @return char at the given index within the window. */
+	char charAt(int index) {
+		return buf[index];
+	}
+
+	/** @return the chars between the given indexes within the window. */
+	String substring(int start, int end) {
+		return new String(buf, start, end - start);
+	}
+
+	/** @return true if the chars starting at the given index within the window match {@code s}, ignoring case. */
+	boolean regionMatchesIgnoreCase(int start, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char a = buf[start + i];
+			char b = s.charAt(i);
+			if (a != b && Character.toLowerCase(a) != Character.toLowerCase(b)) return false;
+		}
+		return true;
 	}
 
 	public String parseQuotedString() throws ParseException {
-		int oldIndex = ++index; //ignore beginning quotes
+		tokenStart = ++index; //ignore beginning quotes
 		StringBuilder sb = null;
 		boolean escape = false;
 		while (hasNext()) {
@@ -56,11 +206,11 @@ public class StringPointer {
 					if (sb != null) {
 						continue;
 					}
-					sb = new StringBuilder(value.substring(oldIndex, index - 1));
+					sb = new StringBuilder(substring(tokenStart, index - 1));
 					continue;
 				}
 				if (c == '"') {
-					return sb == null ? value.substring(oldIndex, index - 1) : sb.toString();
+					return sb == null ? substring(tokenStart, index - 1) : sb.toString();
 				}
 			}
 			if (sb != null) {
@@ -90,26 +240,33 @@ public class StringPointer {
 		throw parseException("expected '" + c + "' but got " + (hasNext ? "'" + currentChar() + "'" : "EOF"));
 	}
 
+	/** Skips whitespace, this also ends the current token - the window may slide past it from now on. */
 	public void skipWhitespace() {
-		while (hasNext() && Character.isWhitespace(currentChar())) {
+		tokenStart = -1;
+		while (hasNext() && Character.isWhitespace(buf[index])) {
 			index++;
 		}
 	}
 
 	public boolean hasNext() {
-		return index < value.length();
+		return index < length || fill(1);
 	}
 
 	public boolean hasCharsLeft(int num) {
-		return this.index + num < value.length();
+		return this.index + num < length || fill(num + 1);
 	}
 
 	public char currentChar() {
-		return value.charAt(index);
+		if (!hasNext()) {
+			throw new StringIndexOutOfBoundsException("index " + getPosition() + " is past the end of input");
+		}
+		return buf[index];
 	}
 
 	public char next() {
-		return value.charAt(index++);
+		char c = currentChar();
+		index++;
+		return c;
 	}
 
 	public void skip(int offset) {
@@ -117,7 +274,10 @@ public class StringPointer {
 	}
 
 	public char lookAhead(int offset) {
-		return value.charAt(index + offset);
+		if (!hasCharsLeft(offset)) {
+			throw new StringIndexOutOfBoundsException("index " + (getPosition() + offset) + " is past the end of input");
+		}
+		return buf[index + offset];
 	}
 
 	private static boolean isSimpleChar(char c) {
@@ -131,6 +291,9 @@ public class StringPointer {
 	}
 
 	public ParseException parseException(String msg) {
-		return new ParseException(msg, value, index);
+		// only the chars shortly before the index are shown
+		final int end = Math.min(index, length);
+		final int start = Math.max(0, end - ERROR_CONTEXT_CHARS);
+		return new ParseException(msg, new String(buf, start, end - start), index - start);
 	}
 }
@@ -4,18 +4,15 @@ import io.github.ensgijs.nbt.tag.Tag;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.util.stream.Collectors;
 
 public class TextNbtDeserializer implements Deserializer<NamedTag> {
 
+	/**
+	 * Reads the first tag from the reader, which is consumed in small chunks rather than read into memory whole.
+	 * @see TextNbtParser#TextNbtParser(Reader)
+	 */
 	public NamedTag fromReader(Reader reader, int maxDepth) throws IOException {
-		BufferedReader bufferedReader;
-		if (reader instanceof BufferedReader) {
-			bufferedReader = (BufferedReader) reader;
-		} else {
-			bufferedReader = new BufferedReader(reader);
-		}
-		return new TextNbtParser(bufferedReader.lines().collect(Collectors.joining())).readTag(maxDepth);
+		return new TextNbtParser(reader).readTag(maxDepth);
 	}
 
 	public NamedTag fromReader(Reader reader) throws IOException {
@@ -23,7 +20,7 @@ public class TextNbtDeserializer implements Deserializer<NamedTag> {
 	}
 
 	public NamedTag fromString(String s) throws IOException {
-		return fromReader(new StringReader(s));
+		return new TextNbtParser(s).readTag(Tag.DEFAULT_MAX_DEPTH);
 	}
 
 	@Override
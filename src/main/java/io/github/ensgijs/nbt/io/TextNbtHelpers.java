@@ -2,7 +2,6 @@ package io.github.ensgijs.nbt.io;
 
 import io.github.ensgijs.nbt.tag.Tag;
 import io.github.ensgijs.nbt.util.ArgValidator;
-import io.github.ensgijs.nbt.util.JsonPrettyPrinter;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
@@ -27,8 +26,7 @@ public final class TextNbtHelpers {
 
 	// <editor-fold desc="to/from string">
 	public static String toTextNbt(NamedTag namedTag, boolean prettyPrint, boolean sortCompoundTagEntries) {
-		String snbt = new TextNbtSerializer(sortCompoundTagEntries).toString(namedTag);
-		return !prettyPrint ? snbt : JsonPrettyPrinter.prettyPrintJson(snbt);
+		return new TextNbtSerializer(sortCompoundTagEntries, prettyPrint).toString(namedTag);
 	}
 
 	/** defaults to sortCompoundTagEntries=true */
@@ -17,53 +17,108 @@ import io.github.ensgijs.nbt.tag.StringTag;
 import io.github.ensgijs.nbt.tag.Tag;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Pattern;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 
 public final class TextNbtParser implements MaxDepthIO, NbtInput {
 
-	private static final Pattern
-			FLOAT_LITERAL_PATTERN = Pattern.compile("^[-+]?(?:\\d+\\.?|\\d*\\.\\d+)(?:e[-+]?\\d+)?f$", Pattern.CASE_INSENSITIVE),
-			DOUBLE_LITERAL_PATTERN = Pattern.compile("^[-+]?(?:\\d+\\.?|\\d*\\.\\d+)(?:e[-+]?\\d+)?d$", Pattern.CASE_INSENSITIVE),
-			DOUBLE_LITERAL_NO_SUFFIX_PATTERN = Pattern.compile("^[-+]?(?:\\d+\\.|\\d*\\.\\d+)(?:e[-+]?\\d+)?$", Pattern.CASE_INSENSITIVE),
-			BYTE_LITERAL_PATTERN = Pattern.compile("^[-+]?\\d+b$", Pattern.CASE_INSENSITIVE),
-			SHORT_LITERAL_PATTERN = Pattern.compile("^[-+]?\\d+s$", Pattern.CASE_INSENSITIVE),
-			INT_LITERAL_PATTERN = Pattern.compile("^[-+]?\\d+$", Pattern.CASE_INSENSITIVE),
-			LONG_LITERAL_PATTERN = Pattern.compile("^[-+]?\\d+l$", Pattern.CASE_INSENSITIVE),
-			NUMBER_PATTERN = Pattern.compile("^[-+]?\\d+$");
-
-	private StringPointer ptr;
+	private final StringPointer ptr;
+	private final SnbtLexer.Literal literal = new SnbtLexer.Literal();
 
 	public TextNbtParser(String string) {
 		this.ptr = new StringPointer(string);
 	}
 
+	/**
+	 * Creates a parser which reads text nbt from the given reader as it goes, holding only a small window of the
+	 * input in memory. Such a parser reads the input only once, so {@link #readTag(int)} and
+	 * {@link #readRawTag(int)} read the next tag instead of starting over; see {@link #hasNextTag()} for reading a
+	 * sequence of tags. The reader is not closed by the parser.
+	 */
+	public TextNbtParser(Reader reader) {
+		this.ptr = new StringPointer(reader);
+	}
+
+	TextNbtParser(StringPointer ptr) {
+		this.ptr = ptr;
+	}
+
+	/**
+	 * Reads a tag, which may be named, from the start of the input - or for a parser reading from a {@link Reader},
+	 * the next tag.
+	 */
 	@Override
 	public NamedTag readTag(int maxDepth) throws IOException {
-		ptr.reset();
-		ptr.skipWhitespace();
-		if (!ptr.hasNext()) return null;
-		String name = ptr.currentChar() == '"' ? ptr.parseQuotedString() : ptr.parseSimpleString();
-		// note to future self: if you're ever compelled to set NamedTag's name to null if it's empty
-		// consider changing TextNbtWriter#writeAnything(NamedTag, int)'s behavior to match
-		ptr.skipWhitespace();
-		if (ptr.hasNext() && ptr.next() ==':') {
+		if (!ptr.isStreaming()) ptr.reset();
+		return readNextTag(maxDepth);
+	}
+
+	/**
+	 * Reads an unnamed tag from the start of the input - or for a parser reading from a {@link Reader}, the next tag.
+	 */
+	@Override
+	public Tag<?> readRawTag(int maxDepth) throws IOException {
+		if (!ptr.isStreaming()) ptr.reset();
+		return readNextRawTag(maxDepth);
+	}
+
+	/**
+	 * @return true if there is anything but whitespace left to read after the previously read tag.
+	 * @throws IOException if the underlying reader throws.
+	 */
+	public boolean hasNextTag() throws IOException {
+		try {
+			ptr.skipWhitespace();
+			return ptr.hasNext();
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	/**
+	 * Reads the tag, which may be named, following the previously read tag. Together with {@link #hasNextTag()} this
+	 * reads a sequence of whitespace separated tags, such as several {@code .snbt} files concatenated together.
+	 * @return the tag, or null if only whitespace is left.
+	 */
+	public NamedTag readNextTag(int maxDepth) throws IOException {
+		try {
 			ptr.skipWhitespace();
-			if (!ptr.hasNext()) {
-				throw ptr.parseException("unexpected end of input - no value after name:");
+			if (!ptr.hasNext()) return null;
+			ptr.mark();
+			String name = ptr.currentChar() == '"' ? ptr.parseQuotedString() : ptr.parseSimpleString();
+			// note to future self: if you're ever compelled to set NamedTag's name to null if it's empty
+			// consider changing TextNbtWriter#writeAnything(NamedTag, int)'s behavior to match
+			ptr.skipWhitespace();
+			if (ptr.hasNext() && ptr.currentChar() == ':') {
+				ptr.clearMark();
+				ptr.skip(1);
+				ptr.skipWhitespace();
+				if (!ptr.hasNext()) {
+					throw ptr.parseException("unexpected end of input - no value after name:");
+				}
+				return new NamedTag(name, parseAnything(maxDepth));
 			}
-			return new NamedTag(name, parseAnything(maxDepth));
+			// not a name after all - parse it again as the value
+			ptr.rewindToMark();
+			return new NamedTag(null, parseAnything(maxDepth));
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
 		}
-		return new NamedTag(null, readRawTag(maxDepth));
 	}
 
-	@Override
-	public Tag<?> readRawTag(int maxDepth) throws IOException {
-		ptr.reset();
-		ptr.skipWhitespace();
-		if (!ptr.hasNext()) return null;
-		return parseAnything(maxDepth);
+	/**
+	 * Reads the unnamed tag following the previously read tag, see {@link #readNextTag(int)}.
+	 * @return the tag, or null if only whitespace is left.
+	 */
+	public Tag<?> readNextRawTag(int maxDepth) throws IOException {
+		try {
+			ptr.skipWhitespace();
+			if (!ptr.hasNext()) return null;
+			return parseAnything(maxDepth);
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
 	}
 
 	/**
@@ -109,7 +164,7 @@ public final class TextNbtParser implements MaxDepthIO, NbtInput {
 	}
 
 	public int getReadChars() {
-		return ptr.getIndex() + 1;
+		return (int) ptr.getPosition() + 1;
 	}
 
 	private Tag<?> parseAnything(int maxDepth) throws ParseException {
@@ -131,46 +186,27 @@ public final class TextNbtParser implements MaxDepthIO, NbtInput {
 		if (ptr.currentChar() == '"') {
 			return new StringTag(ptr.parseQuotedString());
 		}
-		String s = ptr.parseSimpleString();
-		if (s.isEmpty()) {
+		final int end = ptr.skipSimpleString();
+		final int start = ptr.getTokenStart();
+		if (start == end) {
 			throw ptr.parseException("expected non empty value");
 		}
-		if (FLOAT_LITERAL_PATTERN.matcher(s).matches()) {
-			return new FloatTag(Float.parseFloat(s.substring(0, s.length() - 1)));
-		} else if (BYTE_LITERAL_PATTERN.matcher(s).matches()) {
-			try {
-				return new ByteTag(Byte.parseByte(s.substring(0, s.length() - 1)));
-			} catch (NumberFormatException ex) {
-				throw ptr.parseException("byte not in range: \"" + s.substring(0, s.length() - 1) + "\"");
-			}
-		} else if (SHORT_LITERAL_PATTERN.matcher(s).matches()) {
-			try {
-				return new ShortTag(Short.parseShort(s.substring(0, s.length() - 1)));
-			} catch (NumberFormatException ex) {
-				throw ptr.parseException("short not in range: \"" + s.substring(0, s.length() - 1) + "\"");
-			}
-		} else if (LONG_LITERAL_PATTERN.matcher(s).matches()) {
-			try {
-				return new LongTag(Long.parseLong(s.substring(0, s.length() - 1)));
-			} catch (NumberFormatException ex) {
-				throw ptr.parseException("long not in range: \"" + s.substring(0, s.length() - 1) + "\"");
-			}
-		} else if (INT_LITERAL_PATTERN.matcher(s).matches()) {
-			try {
-				return new IntTag(Integer.parseInt(s));
-			} catch (NumberFormatException ex) {
-				throw ptr.parseException("int not in range: \"" + s.substring(0, s.length() - 1) + "\"");
-			}
-		} else if (DOUBLE_LITERAL_PATTERN.matcher(s).matches()) {
-			return new DoubleTag(Double.parseDouble(s.substring(0, s.length() - 1)));
-		} else if (DOUBLE_LITERAL_NO_SUFFIX_PATTERN.matcher(s).matches()) {
-			return new DoubleTag(Double.parseDouble(s));
-		} else if ("true".equalsIgnoreCase(s)) {
-			return new ByteTag(true);
-		} else if ("false".equalsIgnoreCase(s)) {
-			return new ByteTag(false);
+		switch (SnbtLexer.parseLiteral(ptr, start, end, literal)) {
+			case ByteTag.ID:
+				return new ByteTag((byte) literal.longValue);
+			case ShortTag.ID:
+				return new ShortTag((short) literal.longValue);
+			case IntTag.ID:
+				return new IntTag((int) literal.longValue);
+			case LongTag.ID:
+				return new LongTag(literal.longValue);
+			case FloatTag.ID:
+				return new FloatTag((float) literal.doubleValue);
+			case DoubleTag.ID:
+				return new DoubleTag(literal.doubleValue);
+			default:
+				return new StringTag(ptr.substring(start, end));
 		}
-		return new StringTag(s);
 	}
 
 	private CompoundTag parseCompoundTag(int maxDepth) throws ParseException {
@@ -233,72 +269,44 @@ public final class TextNbtParser implements MaxDepthIO, NbtInput {
 	}
 
 	private ByteArrayTag parseByteArrayTag() throws ParseException {
-		List<Byte> byteList = new ArrayList<>();
+		byte[] values = new byte[16];
+		int size = 0;
 		while (ptr.currentChar() != ']') {
-			String s = ptr.parseSimpleString();
-			ptr.skipWhitespace();
-			if (NUMBER_PATTERN.matcher(s).matches()) {
-				try {
-					byteList.add(Byte.parseByte(s));
-				} catch (NumberFormatException ex) {
-					throw ptr.parseException("byte not in range: \"" + s + "\"");
-				}
-			} else {
-				throw ptr.parseException("invalid byte in ByteArrayTag: \"" + s + "\"");
-			}
+			if (size == values.length) values = Arrays.copyOf(values, size * 2);
+			values[size++] = (byte) SnbtLexer.parseArrayElement(ptr, Byte.MIN_VALUE, Byte.MAX_VALUE, "byte", "ByteArrayTag");
 			if (!ptr.nextArrayElement()) {
 				break;
 			}
 		}
 		ptr.expectChar(']');
-		byte[] bytes = new byte[byteList.size()];
-		for (int i = 0; i < byteList.size(); i++) {
-			bytes[i] = byteList.get(i);
-		}
-		return new ByteArrayTag(bytes);
+		return new ByteArrayTag(Arrays.copyOf(values, size));
 	}
 
 	private IntArrayTag parseIntArrayTag() throws ParseException {
-		List<Integer> intList = new ArrayList<>();
+		int[] values = new int[16];
+		int size = 0;
 		while (ptr.currentChar() != ']') {
-			String s = ptr.parseSimpleString();
-			ptr.skipWhitespace();
-			if (NUMBER_PATTERN.matcher(s).matches()) {
-				try {
-					intList.add(Integer.parseInt(s));
-				} catch (NumberFormatException ex) {
-					throw ptr.parseException("int not in range: \"" + s + "\"");
-				}
-			} else {
-				throw ptr.parseException("invalid int in IntArrayTag: \"" + s + "\"");
-			}
+			if (size == values.length) values = Arrays.copyOf(values, size * 2);
+			values[size++] = (int) SnbtLexer.parseArrayElement(ptr, Integer.MIN_VALUE, Integer.MAX_VALUE, "int", "IntArrayTag");
 			if (!ptr.nextArrayElement()) {
 				break;
 			}
 		}
 		ptr.expectChar(']');
-		return new IntArrayTag(intList.stream().mapToInt(i -> i).toArray());
+		return new IntArrayTag(Arrays.copyOf(values, size));
 	}
 
 	private LongArrayTag parseLongArrayTag() throws ParseException {
-		List<Long> longList = new ArrayList<>();
+		long[] values = new long[16];
+		int size = 0;
 		while (ptr.currentChar() != ']') {
-			String s = ptr.parseSimpleString();
-			ptr.skipWhitespace();
-			if (NUMBER_PATTERN.matcher(s).matches()) {
-				try {
-					longList.add(Long.parseLong(s));
-				} catch (NumberFormatException ex) {
-					throw ptr.parseException("long not in range: \"" + s + "\"");
-				}
-			} else {
-				throw ptr.parseException("invalid long in LongArrayTag: \"" + s + "\"");
-			}
+			if (size == values.length) values = Arrays.copyOf(values, size * 2);
+			values[size++] = SnbtLexer.parseArrayElement(ptr, Long.MIN_VALUE, Long.MAX_VALUE, "long", "LongArrayTag");
 			if (!ptr.nextArrayElement()) {
 				break;
 			}
 		}
 		ptr.expectChar(']');
-		return new LongArrayTag(longList.stream().mapToLong(l -> l).toArray());
+		return new LongArrayTag(Arrays.copyOf(values, size));
 	}
 }
@@ -6,17 +6,23 @@ import java.io.*;
 
 public class TextNbtSerializer implements Serializer<NamedTag> {
 	private boolean sortCompoundTagEntries;
+	private boolean prettyPrint;
 
 	public TextNbtSerializer(boolean sortCompoundTagEntries) {
 		this.sortCompoundTagEntries = sortCompoundTagEntries;
 	}
 
+	public TextNbtSerializer(boolean sortCompoundTagEntries, boolean prettyPrint) {
+		this.sortCompoundTagEntries = sortCompoundTagEntries;
+		this.prettyPrint = prettyPrint;
+	}
+
 	public void toWriter(NamedTag tag, Writer writer) throws IOException {
-		TextNbtWriter.write(tag, writer, sortCompoundTagEntries, Tag.DEFAULT_MAX_DEPTH);
+		TextNbtWriter.write(tag, writer, sortCompoundTagEntries, prettyPrint, Tag.DEFAULT_MAX_DEPTH);
 	}
 
 	public void toWriter(NamedTag tag, Writer writer, int maxDepth) throws IOException {
-		TextNbtWriter.write(tag, writer, sortCompoundTagEntries, maxDepth);
+		TextNbtWriter.write(tag, writer, sortCompoundTagEntries, prettyPrint, maxDepth);
 	}
 
 	public String toString(NamedTag object) {
@@ -24,15 +30,12 @@ public class TextNbtSerializer implements Serializer<NamedTag> {
 	}
 
 	public String toString(NamedTag object, int maxDepth) {
-		Writer writer = new StringWriter();
 		try {
-			toWriter(object, writer, maxDepth);
-			writer.flush();
+			return TextNbtWriter.write(object, new StringBuilder(), sortCompoundTagEntries, prettyPrint, maxDepth).toString();
 		} catch (IOException ex) {
 			// this case should (probably) never happen so just wrap and toss if it ever does
 			throw new RuntimeException(ex);
 		}
-		return writer.toString();
 	}
 
 	@Override
@@ -49,6 +52,14 @@ public class TextNbtSerializer implements Serializer<NamedTag> {
 		}
 	}
 
+	public boolean getPrettyPrint() {
+		return prettyPrint;
+	}
+
+	public void setPrettyPrint(boolean prettyPrint) {
+		this.prettyPrint = prettyPrint;
+	}
+
 	@Override
 	public boolean getSortCompoundTagEntries() {
 		return sortCompoundTagEntries;
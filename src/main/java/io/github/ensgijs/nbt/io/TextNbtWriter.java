@@ -14,28 +14,56 @@ import io.github.ensgijs.nbt.tag.LongTag;
 import io.github.ensgijs.nbt.tag.ShortTag;
 import io.github.ensgijs.nbt.tag.StringTag;
 import io.github.ensgijs.nbt.tag.Tag;
+
+import java.io.DataInput;
 import java.io.IOException;
 import java.io.Writer;
-import java.lang.reflect.Array;
+import java.util.Arrays;
 import java.util.Iterator;
 
 /**
  * TextNbtWriter creates a text NBT String.
+ * <p>Text is built up in a {@link StringBuilder}, which is handed to the {@link Writer} in large blocks. When pretty
+ * printing, the output is the same as passing the compact output through
+ * {@link io.github.ensgijs.nbt.util.JsonPrettyPrinter#prettyPrintJson(String)}, but produced in a single pass.
+ * The one exception is a quoted string starting with {@code ';'} as the first entry of a list or compound, which
+ * {@code JsonPrettyPrinter} mistakes for an array type hint such as {@code [I;} and splits across lines, mangling
+ * the output. Here such strings are written intact, like any other string.</p>
  */
 public final class TextNbtWriter implements MaxDepthIO {
+	/** Buffered chars are passed on to the writer once there are at least this many. */
+	private static final int FLUSH_THRESHOLD = 8192;
+	private static final int INDENT_WIDTH = 2;
+	/** Newline followed by enough spaces for the most common indentation depths. */
+	private static final String NEWLINE_INDENT = "\n" + " ".repeat(64);
 
-	private Writer writer;
+	/** Null when writing directly into {@link #sb}. */
+	private final Writer writer;
+	/** Output buffer, temporarily swapped for a fragment buffer while collecting the entries of a sorted compound. */
+	private StringBuilder sb;
+	private final boolean prettyPrint;
+	private int indentLevel;
+	/** Greater than zero while writing into a fragment buffer, which must not be flushed. */
+	private int fragmentDepth;
 
-	private TextNbtWriter(Writer writer) {
+	private TextNbtWriter(Writer writer, StringBuilder sb, boolean prettyPrint) {
 		this.writer = writer;
+		this.sb = sb;
+		this.prettyPrint = prettyPrint;
+	}
+
+	public static void write(NamedTag tag, Writer writer, boolean sortCompoundTagEntries, boolean prettyPrint, int maxDepth) throws IOException {
+		TextNbtWriter w = new TextNbtWriter(writer, new StringBuilder(FLUSH_THRESHOLD + 1024), prettyPrint);
+		w.writeAnything(tag, sortCompoundTagEntries, maxDepth);
+		w.flush();
 	}
 
 	public static void write(NamedTag tag, Writer writer, boolean sortCompoundTagEntries, int maxDepth) throws IOException {
-		new TextNbtWriter(writer).writeAnything(tag, sortCompoundTagEntries, maxDepth);
+		write(tag, writer, sortCompoundTagEntries, false, maxDepth);
 	}
 
 	public static void write(NamedTag tag, Writer writer, int maxDepth) throws IOException {
-		new TextNbtWriter(writer).writeAnything(tag, false, maxDepth);
+		write(tag, writer, false, false, maxDepth);
 	}
 
 	public static void write(NamedTag tag, Writer writer) throws IOException {
@@ -43,19 +71,118 @@ public final class TextNbtWriter implements MaxDepthIO {
 	}
 
 	public static void write(Tag<?> tag, Writer writer, int maxDepth) throws IOException {
-		new TextNbtWriter(writer).writeAnything(tag, false, maxDepth);
+		TextNbtWriter w = new TextNbtWriter(writer, new StringBuilder(FLUSH_THRESHOLD + 1024), false);
+		w.writeAnything(tag, false, maxDepth);
+		w.flush();
 	}
 
 	public static void write(Tag<?> tag, Writer writer) throws IOException {
 		write(tag, writer, Tag.DEFAULT_MAX_DEPTH);
 	}
 
+	/**
+	 * Appends the text nbt of the given tag to a string builder, which may be reused across calls to avoid
+	 * growing a new one for every tag.
+	 * @return the given builder.
+	 */
+	public static StringBuilder write(NamedTag tag, StringBuilder sb, boolean sortCompoundTagEntries, boolean prettyPrint, int maxDepth) throws IOException {
+		new TextNbtWriter(null, sb, prettyPrint).writeAnything(tag, sortCompoundTagEntries, maxDepth);
+		return sb;
+	}
+
+	/**
+	 * Reads one big endian binary nbt tag (tag id, name, payload) from the given input and writes it as text nbt,
+	 * without creating any {@link Tag}s. The output is the same as reading the tag with
+	 * {@link BigEndianNbtInputStream#readTag(int)} and writing it with
+	 * {@link #write(NamedTag, Writer, boolean, boolean, int)}, except that an empty root name is not written.
+	 * <p>Only the entries of a compound being sorted are buffered (as text) so they can be reordered.</p>
+	 */
+	public static void transcode(DataInput in, Writer writer, boolean sortCompoundTagEntries, boolean prettyPrint, int maxDepth) throws IOException {
+		TextNbtWriter w = new TextNbtWriter(writer, new StringBuilder(FLUSH_THRESHOLD + 1024), prettyPrint);
+		final byte id = in.readByte();
+		if (id != EndTag.ID) {
+			final String name = in.readUTF();
+			if (!name.isEmpty()) {
+				w.writeName(name);
+			}
+			w.transcodeAnything(in, id, sortCompoundTagEntries, maxDepth);
+		}
+		w.flush();
+	}
+
+	private void flush() throws IOException {
+		writer.append(sb);
+		sb.setLength(0);
+	}
+
+	private void flushIfFull() throws IOException {
+		if (writer != null && fragmentDepth == 0 && sb.length() >= FLUSH_THRESHOLD) {
+			flush();
+		}
+	}
+
+	private void newlineIndent() {
+		int spaces = indentLevel * INDENT_WIDTH;
+		sb.append(NEWLINE_INDENT, 0, Math.min(spaces, NEWLINE_INDENT.length() - 1) + 1);
+		for (spaces -= NEWLINE_INDENT.length() - 1; spaces > 0; spaces--) {
+			sb.append(' ');
+		}
+	}
+
+	/** Opens a non-empty list, compound or array. */
+	private void open(char c) {
+		sb.append(c);
+		if (prettyPrint) {
+			indentLevel++;
+			newlineIndent();
+		}
+	}
+
+	/** Separates elements of a list, compound or array. */
+	private void separator() {
+		sb.append(',');
+		if (prettyPrint) {
+			newlineIndent();
+		}
+	}
+
+	/** Closes a non-empty list, compound or array. */
+	private void close(char c) {
+		if (prettyPrint) {
+			indentLevel--;
+			newlineIndent();
+		}
+		sb.append(c);
+	}
+
+	private void writeName(String name) {
+		if (!prettyPrint) {
+			NamedTag.appendEscapedName(sb, name);
+		} else {
+			// the pretty printer writes newlines within quoted strings as "\n" and drops carriage returns
+			int start = sb.length();
+			NamedTag.appendEscapedName(sb, name);
+			for (int i = start; i < sb.length(); i++) {
+				char c = sb.charAt(i);
+				if (c == '\n') {
+					sb.replace(i, i + 1, "\\n");
+					i++;
+				} else if (c == '\r') {
+					sb.deleteCharAt(i--);
+				}
+			}
+		}
+		sb.append(':');
+		if (prettyPrint) {
+			sb.append(' ');
+		}
+	}
+
 	private void writeAnything(NamedTag tag, boolean sortCompoundTagEntries, int maxDepth) throws IOException {
 		// note to future self: if you're ever compelled not write an empty name be sure to
 		// consider what that means for TextNbtParser#readTag(int)
 		if (tag.getName() != null) {
-			writer.write(tag.getEscapedName());
-			writer.write(':');
+			writeName(tag.getName());
 		}
 		writeAnything(tag.getTag(), sortCompoundTagEntries, maxDepth);
 	}
@@ -66,68 +193,283 @@ public final class TextNbtWriter implements MaxDepthIO {
 			//do nothing
 			break;
 		case ByteTag.ID:
-			writer.append(Byte.toString(((ByteTag) tag).asByte())).write('b');
+			sb.append(((ByteTag) tag).asByte()).append('b');
 			break;
 		case ShortTag.ID:
-			writer.append(Short.toString(((ShortTag) tag).asShort())).write('s');
+			sb.append(((ShortTag) tag).asShort()).append('s');
 			break;
 		case IntTag.ID:
-			writer.write(Integer.toString(((IntTag) tag).asInt()));
+			sb.append(((IntTag) tag).asInt());
 			break;
 		case LongTag.ID:
-			writer.append(Long.toString(((LongTag) tag).asLong())).write('l');
+			sb.append(((LongTag) tag).asLong()).append('l');
 			break;
 		case FloatTag.ID:
-			writer.append(Float.toString(((FloatTag) tag).asFloat())).write('f');
+			sb.append(((FloatTag) tag).asFloat()).append('f');
 			break;
 		case DoubleTag.ID:
-			writer.append(Double.toString(((DoubleTag) tag).asDouble())).write('d');
+			sb.append(((DoubleTag) tag).asDouble()).append('d');
 			break;
 		case ByteArrayTag.ID:
-			writeArray(((ByteArrayTag) tag).getValue(), ((ByteArrayTag) tag).length(), "B");
+			writeByteArray(((ByteArrayTag) tag).getValue());
 			break;
 		case StringTag.ID:
-			writer.write(StringTag.escapeString(((StringTag) tag).getValue(), true));
+			StringTag.appendEscapedString(sb, ((StringTag) tag).getValue(), true);
 			break;
 		case ListTag.ID:
-			writer.write('[');
-			for (int i = 0; i < ((ListTag<?>) tag).size(); i++) {
-				writer.write(i == 0 ? "" : ",");
-				writeAnything(((ListTag<?>) tag).get(i), sortCompoundTagEntries, decrementMaxDepth(maxDepth));
+			ListTag<?> list = (ListTag<?>) tag;
+			if (list.isEmpty()) {
+				sb.append("[]");
+				break;
+			}
+			open('[');
+			if (list.isPacked()) {
+				writePackedList(list);
+			} else {
+				for (int i = 0; i < list.size(); i++) {
+					if (i > 0) separator();
+					writeAnything(list.get(i), sortCompoundTagEntries, decrementMaxDepth(maxDepth));
+					flushIfFull();
+				}
 			}
-			writer.write(']');
+			close(']');
 			break;
 		case CompoundTag.ID:
-			writer.write('{');
+			CompoundTag compound = (CompoundTag) tag;
+			if (compound.isEmpty()) {
+				sb.append("{}");
+				break;
+			}
+			open('{');
 			boolean first = true;
 			Iterator<NamedTag> iter;
-			if (sortCompoundTagEntries) iter = ((CompoundTag) tag).stream().sorted(NamedTag::compare).iterator();
-			else iter = ((CompoundTag) tag).iterator();
+			if (sortCompoundTagEntries) iter = compound.stream().sorted(NamedTag::compare).iterator();
+			else iter = compound.iterator();
 			while (iter.hasNext()) {
 				NamedTag entry = iter.next();
-				writer.write(first ? "" : ",");
-				writer.append(NamedTag.escapeName(entry.getName())).write(':');
+				if (!first) separator();
+				writeName(entry.getName());
 				writeAnything(entry.getTag(), sortCompoundTagEntries, decrementMaxDepth(maxDepth));
+				flushIfFull();
 				first = false;
 			}
-			writer.write('}');
+			close('}');
 			break;
 		case IntArrayTag.ID:
-			writeArray(((IntArrayTag) tag).getValue(), ((IntArrayTag) tag).length(), "I");
+			writeIntArray(((IntArrayTag) tag).getValue());
 			break;
 		case LongArrayTag.ID:
-			writeArray(((LongArrayTag) tag).getValue(), ((LongArrayTag) tag).length(), "L");
+			writeLongArray(((LongArrayTag) tag).getValue());
 			break;
 		default:
 			throw new IOException("unknown tag with id \"" + tag.getID() + "\"");
 		}
 	}
 
-	private void writeArray(Object array, int length, String prefix) throws IOException {
-		writer.append('[').append(prefix).write(';');
-		for (int i = 0; i < length; i++) {
-			writer.append(i == 0 ? "" : ",").write(Array.get(array, i).toString());
+	/** Writes the elements of a packed numeric list without creating a tag for each. */
+	private void writePackedList(ListTag<?> list) throws IOException {
+		final Class<?> type = list.getTypeClass();
+		for (int i = 0, size = list.size(); i < size; i++) {
+			if (i > 0) separator();
+			if (type == IntTag.class) {
+				sb.append(list.getInt(i));
+			} else if (type == LongTag.class) {
+				sb.append(list.getLong(i)).append('l');
+			} else if (type == FloatTag.class) {
+				sb.append(list.getFloat(i)).append('f');
+			} else {
+				sb.append(list.getDouble(i)).append('d');
+			}
+			flushIfFull();
+		}
+	}
+
+	/** Writes the "[X;" array prefix, or the whole array if it is empty. @return false if the array was empty. */
+	private boolean openArray(char type, int length) {
+		sb.append('[').append(type).append(';');
+		if (length == 0) {
+			sb.append(']');
+			return false;
+		}
+		if (prettyPrint) {
+			indentLevel++;
+			newlineIndent();
+		}
+		return true;
+	}
+
+	private void writeByteArray(byte[] array) throws IOException {
+		if (!openArray('B', array.length)) return;
+		for (int i = 0; i < array.length; i++) {
+			if (i > 0) separator();
+			sb.append(array[i]);
+		}
+		close(']');
+		flushIfFull();
+	}
+
+	private void writeIntArray(int[] array) throws IOException {
+		if (!openArray('I', array.length)) return;
+		for (int i = 0; i < array.length; i++) {
+			if (i > 0) separator();
+			sb.append(array[i]);
+		}
+		close(']');
+		flushIfFull();
+	}
+
+	private void writeLongArray(long[] array) throws IOException {
+		if (!openArray('L', array.length)) return;
+		for (int i = 0; i < array.length; i++) {
+			if (i > 0) separator();
+			sb.append(array[i]);
+		}
+		close(']');
+		flushIfFull();
+	}
+
+	private void transcodeAnything(DataInput in, byte id, boolean sortCompoundTagEntries, int maxDepth) throws IOException {
+		switch (id) {
+		case EndTag.ID:
+			//do nothing
+			break;
+		case ByteTag.ID:
+			sb.append(in.readByte()).append('b');
+			break;
+		case ShortTag.ID:
+			sb.append(in.readShort()).append('s');
+			break;
+		case IntTag.ID:
+			sb.append(in.readInt());
+			break;
+		case LongTag.ID:
+			sb.append(in.readLong()).append('l');
+			break;
+		case FloatTag.ID:
+			sb.append(in.readFloat()).append('f');
+			break;
+		case DoubleTag.ID:
+			sb.append(in.readDouble()).append('d');
+			break;
+		case ByteArrayTag.ID: {
+			final int length = in.readInt();
+			if (!openArray('B', length)) break;
+			for (int i = 0; i < length; i++) {
+				if (i > 0) separator();
+				sb.append(in.readByte());
+			}
+			close(']');
+			flushIfFull();
+			break;
+		}
+		case StringTag.ID:
+			StringTag.appendEscapedString(sb, in.readUTF(), true);
+			break;
+		case ListTag.ID: {
+			final byte type = in.readByte();
+			final int length = in.readInt();
+			if (length <= 0) {
+				sb.append("[]");
+				break;
+			}
+			open('[');
+			for (int i = 0; i < length; i++) {
+				if (i > 0) separator();
+				transcodeAnything(in, type, sortCompoundTagEntries, decrementMaxDepth(maxDepth));
+				flushIfFull();
+			}
+			close(']');
+			break;
+		}
+		case CompoundTag.ID:
+			if (sortCompoundTagEntries) {
+				transcodeSortedCompound(in, maxDepth);
+				break;
+			}
+			boolean first = true;
+			for (byte entryId = in.readByte(); entryId != EndTag.ID; entryId = in.readByte()) {
+				if (first) open('{');
+				else separator();
+				writeName(in.readUTF());
+				transcodeAnything(in, entryId, false, decrementMaxDepth(maxDepth));
+				flushIfFull();
+				first = false;
+			}
+			if (first) sb.append("{}");
+			else close('}');
+			break;
+		case IntArrayTag.ID: {
+			final int length = in.readInt();
+			if (!openArray('I', length)) break;
+			for (int i = 0; i < length; i++) {
+				if (i > 0) separator();
+				sb.append(in.readInt());
+			}
+			close(']');
+			flushIfFull();
+			break;
+		}
+		case LongArrayTag.ID: {
+			final int length = in.readInt();
+			if (!openArray('L', length)) break;
+			for (int i = 0; i < length; i++) {
+				if (i > 0) separator();
+				sb.append(in.readLong());
+			}
+			close(']');
+			flushIfFull();
+			break;
+		}
+		default:
+			throw new IOException("invalid tag id \"" + id + "\"");
+		}
+	}
+
+	/**
+	 * Writes the values of all entries of a compound into one fragment buffer, at the indentation they will have in
+	 * the output, then appends them in {@link NamedTag#compare(NamedTag, NamedTag) sorted} order.
+	 */
+	private void transcodeSortedCompound(DataInput in, int maxDepth) throws IOException {
+		final StringBuilder out = sb;
+		final StringBuilder fragments = new StringBuilder();
+		String[] names = new String[8];
+		// value i spans fragments [bounds[i], bounds[i + 1])
+		int[] bounds = new int[names.length + 1];
+		int count = 0;
+		sb = fragments;
+		fragmentDepth++;
+		indentLevel++;
+		try {
+			for (byte entryId = in.readByte(); entryId != EndTag.ID; entryId = in.readByte()) {
+				if (count == names.length) {
+					names = Arrays.copyOf(names, count * 2);
+					bounds = Arrays.copyOf(bounds, count * 2 + 1);
+				}
+				names[count] = in.readUTF();
+				transcodeAnything(in, entryId, true, decrementMaxDepth(maxDepth));
+				bounds[++count] = fragments.length();
+			}
+		} finally {
+			sb = out;
+			fragmentDepth--;
+			indentLevel--;
+		}
+		if (count == 0) {
+			sb.append("{}");
+			return;
+		}
+		final String[] sortedNames = names;
+		final Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) order[i] = i;
+		Arrays.sort(order, (a, b) -> NamedTag.compareNames(sortedNames[a], sortedNames[b]));
+		open('{');
+		for (int i = 0; i < count; i++) {
+			if (i > 0) separator();
+			final int entry = order[i];
+			writeName(names[entry]);
+			sb.append(fragments, bounds[entry], bounds[entry + 1]);
+			flushIfFull();
 		}
-		writer.write(']');
+		close('}');
 	}
 }
@@ -10,6 +10,7 @@ import io.github.ensgijs.nbt.mca.util.*;
 import io.github.ensgijs.nbt.tag.CompoundTag;
 import io.github.ensgijs.nbt.tag.Tag;
 import io.github.ensgijs.nbt.util.ObservedCompoundTag;
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
 import io.github.ensgijs.nbt.query.NbtPath;
 
 import java.io.*;
@@ -59,6 +60,44 @@ public abstract class ChunkBase implements VersionedDataContainer, TagWrapper<Co
 		return unreadDataTagKeys;
 	}
 
+	/**
+	 * Estimates the heap retained by this chunk - its tag data and the structures parsed from it, counting what
+	 * they share only once. Intended for weighing chunks in caches and for memory reports.
+	 * @return estimated size in bytes.
+	 * @see Tag#estimateRetainedBytes()
+	 */
+	public final long estimateRetainedBytes() {
+		return estimateRetainedBytes(new RetainedSizeEstimator());
+	}
+
+	/**
+	 * Adds the heap retained by this chunk to the given estimator, skipping anything the estimator already counted.
+	 * @return number of bytes this call added to the estimator.
+	 */
+	public final long estimateRetainedBytes(RetainedSizeEstimator estimator) {
+		final long before = estimator.total();
+		if (estimator.visit(this)) {
+			addRetainedBytes(estimator);
+		}
+		return estimator.total() - before;
+	}
+
+	/**
+	 * Adds the size of this chunk and everything it references to the estimator. Called at most once per estimator.
+	 * Subclasses which declare fields of their own should override this, call super, and add only the size of the
+	 * fields they declare (see {@link RetainedSizeEstimator#fieldsSize(int, int)}) and what those fields reference.
+	 */
+	protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+		// data, unreadDataTagKeys; originalLoadFlags, dataVersion, chunkX, chunkZ, partial, raw, lastMCAUpdate
+		estimator.add(RetainedSizeEstimator.shallowSize(2, 8 + 4 * 4 + 2));
+		if (data != null) {
+			data.estimateRetainedBytes(estimator);
+		}
+		if (unreadDataTagKeys != null) {
+			estimator.addStringSet(unreadDataTagKeys);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @return NotNull - if LoadFlags specified {@link LoadFlags#RAW} then the raw data is returned - else a new
@@ -14,6 +14,7 @@ import io.github.ensgijs.nbt.mca.entities.EntityFactory;
 import io.github.ensgijs.nbt.mca.entities.EntityUtil;
 import io.github.ensgijs.nbt.mca.util.RegionBoundingRectangle;
 import io.github.ensgijs.nbt.util.ArgValidator;
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
 import io.github.ensgijs.nbt.mca.util.ChunkBoundingRectangle;
 import io.github.ensgijs.nbt.mca.util.VersionAware;
 
@@ -95,6 +96,23 @@ public abstract class EntitiesChunkBase<ET extends Entity> extends ChunkBase imp
         entities = EntityFactory.fromListTag(entitiesTag, dataVersion);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>Wrapped {@link Entity} objects created by {@link #getEntities()} are only counted as list slots, the tags
+     * they were created from are counted in full.</p>
+     */
+    @Override
+    protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+        super.addRetainedBytes(estimator);
+        estimator.add(RetainedSizeEstimator.fieldsSize(2, 0));
+        if (entities != null) {
+            estimator.add(RetainedSizeEstimator.arrayListSize(entities.size()));
+        }
+        if (entitiesTag != null) {
+            entitiesTag.estimateRetainedBytes(estimator);
+        }
+    }
+
     /** {@inheritDoc} */
     public String getMcaType() {
         return "entities";
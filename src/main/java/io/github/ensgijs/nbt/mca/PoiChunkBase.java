@@ -9,6 +9,7 @@ import io.github.ensgijs.nbt.tag.IntArrayTag;
 import io.github.ensgijs.nbt.tag.ListTag;
 import io.github.ensgijs.nbt.mca.util.ChunkBoundingRectangle;
 import io.github.ensgijs.nbt.mca.util.RegionBoundingRectangle;
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -35,6 +36,22 @@ public abstract class PoiChunkBase<T extends PoiRecord> extends ChunkBase implem
         poiSectionValidity = new HashMap<>();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+        super.addRetainedBytes(estimator);
+        estimator.add(RetainedSizeEstimator.fieldsSize(2, 0)
+                + RetainedSizeEstimator.linkedHashMapSize(poiSectionValidity.size()));
+        if (records != null) {
+            estimator.add(RetainedSizeEstimator.arrayListSize(records.size()));
+            for (T record : records) {
+                // type; freeTickets, x, y, z
+                estimator.addShallow(record, 1, 4 * 4);
+                estimator.addValue(record.getType());
+            }
+        }
+    }
+
     protected PoiChunkBase(int dataVersion) {
         super(dataVersion);
         records = new ArrayList<>();
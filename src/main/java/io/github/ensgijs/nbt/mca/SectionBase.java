@@ -2,6 +2,7 @@ package io.github.ensgijs.nbt.mca;
 
 import io.github.ensgijs.nbt.tag.CompoundTag;
 import io.github.ensgijs.nbt.util.ObservedCompoundTag;
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
 import io.github.ensgijs.nbt.mca.io.LoadFlags;
 import io.github.ensgijs.nbt.mca.util.TagWrapper;
 import io.github.ensgijs.nbt.mca.util.TracksUnreadDataTags;
@@ -66,6 +67,34 @@ public abstract class SectionBase<T extends SectionBase<?>> implements Comparabl
 	 */
 	protected void initMembers() { }
 
+	/**
+	 * Adds the heap retained by this section to the given estimator, skipping anything the estimator already
+	 * counted. See {@link ChunkBase#estimateRetainedBytes()}.
+	 * @return number of bytes this call added to the estimator.
+	 */
+	public final long estimateRetainedBytes(RetainedSizeEstimator estimator) {
+		final long before = estimator.total();
+		if (estimator.visit(this)) {
+			addRetainedBytes(estimator);
+		}
+		return estimator.total() - before;
+	}
+
+	/**
+	 * Adds the size of this section and everything it references to the estimator, see
+	 * {@link ChunkBase#addRetainedBytes(RetainedSizeEstimator)}.
+	 */
+	protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+		// data, unreadDataTagKeys; dataVersion, raw, sectionY
+		estimator.add(RetainedSizeEstimator.shallowSize(2, 4 + 1 + 4));
+		if (data != null) {
+			data.estimateRetainedBytes(estimator);
+		}
+		if (unreadDataTagKeys != null) {
+			estimator.addStringSet(unreadDataTagKeys);
+		}
+	}
+
 	protected SectionBase(int dataVersion) {
 		data = new CompoundTag();
 		this.dataVersion = dataVersion;
@@ -2,6 +2,7 @@ package io.github.ensgijs.nbt.mca;
 
 import io.github.ensgijs.nbt.tag.CompoundTag;
 import io.github.ensgijs.nbt.mca.util.SectionIterator;
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
 
 import java.util.*;
 import java.util.stream.Stream;
@@ -12,8 +13,8 @@ import java.util.stream.StreamSupport;
  * @param <T> Concrete type of section.
  */
 public abstract class SectionedChunkBase<T extends SectionBase<?>> extends ChunkBase implements Iterable<T> {
-	private final TreeMap<Integer, T> sections = new TreeMap<>();
-	private final Map<T, Integer> sectionHeightLookup = new HashMap<>();
+	private TreeMap<Integer, T> sections;
+	private Map<T, Integer> sectionHeightLookup;
 
 	protected SectionedChunkBase(int dataVersion) {
 		super(dataVersion);
@@ -31,6 +32,27 @@ public abstract class SectionedChunkBase<T extends SectionBase<?>> extends Chunk
 		super(data, loadFlags);
 	}
 
+	@Override
+	protected void initMembers() {
+		sections = new TreeMap<>();
+		sectionHeightLookup = new HashMap<>();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+		super.addRetainedBytes(estimator);
+		estimator.add(RetainedSizeEstimator.fieldsSize(2, 0));
+		// TreeMap: comparator, root, entrySet, navigableKeySet, descendingMap, keySet, values; size, modCount
+		// entries: key, value, left, right, parent; color - section Y keys are cached Integers
+		estimator.add(RetainedSizeEstimator.shallowSize(7, 8)
+				+ sections.size() * RetainedSizeEstimator.shallowSize(5, 1)
+				+ RetainedSizeEstimator.linkedHashMapSize(sectionHeightLookup.size()));
+		for (T section : sections.values()) {
+			section.estimateRetainedBytes(estimator);
+		}
+	}
+
 	public boolean hasSections() {
 		return !sections.isEmpty();
 	}
@@ -6,8 +6,10 @@ import io.github.ensgijs.nbt.tag.*;
 import io.github.ensgijs.nbt.mca.io.MoveChunkFlags;
 import io.github.ensgijs.nbt.query.NbtPath;
 import io.github.ensgijs.nbt.util.ArgValidator;
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
 
 import java.util.*;
+import java.util.function.Function;
 
 import static io.github.ensgijs.nbt.mca.DataVersion.*;
 import static io.github.ensgijs.nbt.mca.io.LoadFlags.*;
@@ -174,7 +176,7 @@ public abstract class TerrainChunkBase<T extends TerrainSectionBase> extends Sec
 	 * Represents world bottom - note there may exist a dummy chunk -1 below this depending on MC flavor and current chunk state.
 	 * @since {@link DataVersion#JAVA_1_18_21W43A}
 	 */
-	protected int yPos = NO_CHUNK_COORD_SENTINEL;
+	protected int yPos;
 	public static final VersionAware<NbtPath> Y_POS_PATH = new VersionAware<NbtPath>()
 			.register(JAVA_1_18_21W43A.id(), NbtPath.of("yPos"));
 	public static final VersionAware<Integer> DEFAULT_WORLD_BOTTOM_Y_POS = new VersionAware<Integer>()
@@ -210,10 +212,28 @@ public abstract class TerrainChunkBase<T extends TerrainSectionBase> extends Sec
 
 	@Override
 	protected void initMembers() {
+		super.initMembers();
 		// give this a reasonable default
 		yPos = DEFAULT_WORLD_BOTTOM_Y_POS.get(dataVersion);
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+		super.addRetainedBytes(estimator);
+		// 20 references; lastUpdateTick, inhabitedTimeTicks, yPos - the Boolean fields reference cached instances
+		estimator.add(RetainedSizeEstimator.fieldsSize(20, 8 + 8 + 4));
+		estimator.addValue(legacyBiomes);
+		estimator.addValue(status);
+		for (Tag<?> tag : new Tag<?>[] {legacyHeightMap, heightMaps, carvingMasks, entities, tileEntities, tileTicks,
+				toBeTicked, liquidTicks, liquidsToBeTicked, lights, postProcessing, structures, upgradeData,
+				belowZeroRetrogen, blendingData}) {
+			if (tag != null) {
+				tag.estimateRetainedBytes(estimator);
+			}
+		}
+	}
+
 	@Override
 	protected void initReferences(final long loadFlags) {
 		if (dataVersion < JAVA_1_18_21W39A.id()) {
@@ -735,6 +755,66 @@ public abstract class TerrainChunkBase<T extends TerrainSectionBase> extends Sec
 		return false;
 	}
 
+	/**
+	 * Compares the block states of this chunk with those of another chunk section by section, see
+	 * {@link PalettizedCuboid#diff(PalettizedCuboid)}.
+	 * <p>A section which has block states in only one of the chunks is reported as entirely changed.</p>
+	 * @return section-y to the changes found in that section, in section-y order. Sections without changes, and
+	 * sections without block states in either chunk, are omitted.
+	 * @since {@link DataVersion#JAVA_1_13_17W47A}
+	 */
+	public SortedMap<Integer, CuboidDiff> diffBlockStates(TerrainChunkBase<?> other) {
+		checkRaw();
+		if (dataVersion < JAVA_1_13_17W47A.id())
+			throw new VersionLacksSupportException(dataVersion, JAVA_1_13_17W47A, null, "block palettes");
+		return diffSections(other, 16, TerrainSectionBase::getBlockStates);
+	}
+
+	/**
+	 * Compares the biomes of this chunk with those of another chunk section by section, see
+	 * {@link #diffBlockStates(TerrainChunkBase)}.
+	 * @since {@link DataVersion#JAVA_1_18_21W37A}
+	 */
+	public SortedMap<Integer, CuboidDiff> diffBiomes(TerrainChunkBase<?> other) {
+		checkRaw();
+		if (dataVersion < JAVA_1_18_21W37A.id())
+			throw new VersionLacksSupportException(dataVersion, JAVA_1_18_21W37A, null, "palettized biomes");
+		return diffSections(other, 4, TerrainSectionBase::getBiomes);
+	}
+
+	private <E extends Tag<?>> SortedMap<Integer, CuboidDiff> diffSections(
+			TerrainChunkBase<?> other, int cubeEdgeLength, Function<TerrainSectionBase, PalettizedCuboid<E>> getter) {
+		ArgValidator.requireValue(other, "other");
+		SortedMap<Integer, CuboidDiff> diffs = new TreeMap<>();
+		if (!hasSections() && !other.hasSections()) {
+			return diffs;
+		}
+		int minY = hasSections() ? getMinSectionY() : other.getMinSectionY();
+		int maxY = hasSections() ? getMaxSectionY() : other.getMaxSectionY();
+		if (other.hasSections()) {
+			minY = Math.min(minY, other.getMinSectionY());
+			maxY = Math.max(maxY, other.getMaxSectionY());
+		}
+		for (int sectionY = minY; sectionY <= maxY; sectionY++) {
+			TerrainSectionBase mine = getSection(sectionY);
+			TerrainSectionBase theirs = other.getSection(sectionY);
+			PalettizedCuboid<E> a = mine != null ? getter.apply(mine) : null;
+			PalettizedCuboid<E> b = theirs != null ? getter.apply(theirs) : null;
+			CuboidDiff diff;
+			if (a != null && b != null) {
+				diff = a.diff(b);
+			} else if (a != null || b != null) {
+				diff = CuboidDiff.allChanged(cubeEdgeLength);
+			} else {
+				continue;
+			}
+			if (!diff.isEmpty()) {
+				diffs.put(sectionY, diff);
+			}
+		}
+		return diffs;
+	}
+
 	/**
 	 * @return The carving masks of this chunk.
 	 */
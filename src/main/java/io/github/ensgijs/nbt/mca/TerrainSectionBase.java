@@ -3,6 +3,7 @@ package io.github.ensgijs.nbt.mca;
 import io.github.ensgijs.nbt.io.TextNbtParser;
 import io.github.ensgijs.nbt.tag.*;
 import io.github.ensgijs.nbt.mca.util.PalettizedCuboid;
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
 
 import static io.github.ensgijs.nbt.mca.DataVersion.*;
 import static io.github.ensgijs.nbt.mca.io.LoadFlags.*;
@@ -11,11 +12,12 @@ import static io.github.ensgijs.nbt.mca.io.LoadFlags.*;
  * Provides the base for all terrain section classes.
  */
 public abstract class TerrainSectionBase extends SectionBase<TerrainSectionBase> {
-    protected static final CompoundTag AIR_PALETTE_TAG = TextNbtParser.parseInline("{Name: \"minecraft:air\"}");
-    /** Use with care! Be sure to clone this value when used or really bad bugs are going to happen. */
-    protected static final CompoundTag DEFAULT_BLOCK_SATES_TAG = new PalettizedCuboid<>(16, AIR_PALETTE_TAG).toCompoundTag();
-    /** Use with care! Be sure to clone this value when used or really bad bugs are going to happen. */
-    protected static final CompoundTag DEFAULT_BIOMES_TAG = new PalettizedCuboid<>(4, new StringTag("minecraft:plains")).toCompoundTag();
+    /** Frozen, see {@link Tag#freeze()}. */
+    protected static final CompoundTag AIR_PALETTE_TAG = TextNbtParser.<CompoundTag>parseInline("{Name: \"minecraft:air\"}").freeze();
+    /** Frozen - use {@link CompoundTag#thaw()} to get a copy which can be handed to a {@link PalettizedCuboid}. */
+    protected static final CompoundTag DEFAULT_BLOCK_SATES_TAG = new PalettizedCuboid<>(16, AIR_PALETTE_TAG).toCompoundTag().freeze();
+    /** Frozen - use {@link CompoundTag#thaw()} to get a copy which can be handed to a {@link PalettizedCuboid}. */
+    protected static final CompoundTag DEFAULT_BIOMES_TAG = new PalettizedCuboid<>(4, new StringTag("minecraft:plains")).toCompoundTag().freeze();
 
     /** Only populated for MC version &lt; 1.13  - 4096 (16^3) block id's */
     protected byte[] legacyBlockIds;
@@ -97,6 +99,23 @@ public abstract class TerrainSectionBase extends SectionBase<TerrainSectionBase>
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+        super.addRetainedBytes(estimator);
+        estimator.add(RetainedSizeEstimator.fieldsSize(6, 0));
+        estimator.addValue(legacyBlockIds);
+        estimator.addValue(legacyBlockDataValues);
+        estimator.addValue(blockLight);
+        estimator.addValue(skyLight);
+        if (blockStates != null) {
+            blockStates.estimateRetainedBytes(estimator);
+        }
+        if (biomes != null) {
+            biomes.estimateRetainedBytes(estimator);
+        }
+    }
+
     public TerrainSectionBase(int dataVersion) {
         super(dataVersion);
         blockLight = createBlockLightBuffer();
@@ -104,13 +123,13 @@ public abstract class TerrainSectionBase extends SectionBase<TerrainSectionBase>
 
         if (dataVersion >= JAVA_1_13_17W47A.id()) {
             // blockStatesTag normalized to 1.18+
-            blockStates = PalettizedCuboid.fromCompoundTag(DEFAULT_BLOCK_SATES_TAG.clone(), 16, dataVersion);
+            blockStates = PalettizedCuboid.fromCompoundTag(DEFAULT_BLOCK_SATES_TAG.thaw(), 16, dataVersion);
         } else {
             legacyBlockIds = new byte[2048];
             legacyBlockDataValues = new byte[2048];
         }
         if (dataVersion >= JAVA_1_18_21W37A.id()) {
-            biomes = PalettizedCuboid.fromCompoundTag(DEFAULT_BIOMES_TAG.clone(), 4, dataVersion);
+            biomes = PalettizedCuboid.fromCompoundTag(DEFAULT_BIOMES_TAG.thaw(), 4, dataVersion);
         }
     }
 
@@ -545,20 +545,7 @@ public class RandomAccessMcaFile<T extends ChunkBase> implements Closeable, Iter
             throw new IndexOutOfBoundsException();
         ensureFileInitialized();
         try (var lap = totalReadStopwatch.startLap()) {
-            int sectorOffset = chunkSectors[chunkIndex] >>> 8;
-            int sectorSize = chunkSectors[chunkIndex] & 0xFF;
-            if (sectorSize == 0) return null;
-            if (raf.length() < (sectorOffset + sectorSize) * 4096L) {
-                throw new EOFException();
-            }
-            raf.seek(sectorOffset * 4096L);  // +2 for the file header
-            int chunkByteSize = raf.readInt();
-            if (chunkByteSize > (sectorSize * 4096) - 4) {
-                throw new CorruptMcaFileException(String.format(
-                        "MCA file header sector size %d (%d bytes) for chunk %04d (at 0x%X) is too small to hold %d bytes!",
-                        sectorSize, sectorSize * 4096, chunkIndex, sectorOffset * 4096L, chunkByteSize));
-            }
-
+            if (seekChunkData(chunkIndex) < 0) return null;
             T chunk;
             try {
                 chunk = chunkClass.getDeclaredConstructor().newInstance();
@@ -574,6 +561,47 @@ public class RandomAccessMcaFile<T extends ChunkBase> implements Closeable, Iter
         }
     }
 
+    /**
+     * Reads the specified chunk's bytes exactly as they are stored in the mca file without decompressing or
+     * deserializing them. The first byte is the {@link io.github.ensgijs.nbt.io.CompressionType} id and the
+     * remaining bytes are the compressed nbt data.
+     * @return The raw chunk bytes if the chunk exists, else null.
+     */
+    public byte[] readRaw(int chunkIndex) throws IOException {
+        if (chunkIndex < 0 || chunkIndex >= 1024)
+            throw new IndexOutOfBoundsException();
+        ensureFileInitialized();
+        try (Stopwatch.LapToken lap = totalReadStopwatch.startLap()) {
+            int chunkByteSize = seekChunkData(chunkIndex);
+            if (chunkByteSize < 0) return null;
+            byte[] bytes = new byte[chunkByteSize];
+            raf.readFully(bytes);
+            return bytes;
+        }
+    }
+
+    /**
+     * Validates the sectors of the specified chunk and positions the file just past the chunk's byte length prefix,
+     * at the compression type byte.
+     * @return the chunk's byte length (compression type byte plus compressed data), or -1 if the chunk does not exist.
+     */
+    private int seekChunkData(int chunkIndex) throws IOException {
+        int sectorOffset = chunkSectors[chunkIndex] >>> 8;
+        int sectorSize = chunkSectors[chunkIndex] & 0xFF;
+        if (sectorSize == 0) return -1;
+        if (raf.length() < (sectorOffset + sectorSize) * 4096L) {
+            throw new EOFException();
+        }
+        raf.seek(sectorOffset * 4096L);
+        int chunkByteSize = raf.readInt();
+        if (chunkByteSize <= 0 || chunkByteSize > (sectorSize * 4096) - 4) {
+            throw new CorruptMcaFileException(String.format(
+                    "MCA file header sector size %d (%d bytes) for chunk %04d (at 0x%X) cannot hold %d bytes!",
+                    sectorSize, sectorSize * 4096, chunkIndex, sectorOffset * 4096L, chunkByteSize));
+        }
+        return chunkByteSize;
+    }
+
     /**
      * Reads the specified chunk if it exists.
      * @return The chunk if it exists, else null.
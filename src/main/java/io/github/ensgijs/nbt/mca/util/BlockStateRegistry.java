@@ -0,0 +1,46 @@
+package io.github.ensgijs.nbt.mca.util;
+
+import io.github.ensgijs.nbt.tag.CompoundTag;
+import io.github.ensgijs.nbt.util.ArgValidator;
+
+/**
+ * Interns block state {@link CompoundTag}s into stable integer ids so block states can be compared and replaced
+ * as ints rather than as deep-equal tag trees.
+ *
+ * <p>Example</p>
+ * <pre>{@code
+ * PalettizedCuboid<CompoundTag> blocks = section.getBlockStates();
+ * blocks.setIdRegistry(BlockStateRegistry.GLOBAL);
+ * int air = BlockStateRegistry.GLOBAL.idOf(new BlockStateTag("minecraft:air"));
+ * int[] ids = blocks.toIdArray();
+ * for (int i = 0; i < ids.length; i++) {
+ *     if (ids[i] == air) ...
+ * }
+ * }</pre>
+ *
+ * @see TagRegistry
+ */
+public class BlockStateRegistry extends TagRegistry<CompoundTag> {
+    /**
+     * Process wide registry. Note that it only ever grows, which is fine for block states as there are a limited
+     * number of them, but consider creating your own registry for short-lived or unusual workloads.
+     */
+    public static final BlockStateRegistry GLOBAL = new BlockStateRegistry();
+
+    /** Gets the id of the given block state, registering it if it has not been seen before. */
+    public int idOf(BlockStateTag blockState) {
+        ArgValidator.requireValue(blockState, "blockState");
+        return idOf(blockState.updateHandle());
+    }
+
+    /** Gets the id of the given block state without registering it. Returns -1 if it is not registered. */
+    public int lookupId(BlockStateTag blockState) {
+        ArgValidator.requireValue(blockState, "blockState");
+        return lookupId(blockState.updateHandle());
+    }
+
+    /** Gets a new, modifiable, {@link BlockStateTag} wrapping a copy of the block state with the given id. */
+    public BlockStateTag getBlockState(int id) {
+        return new BlockStateTag(get(id).clone());
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.ensgijs.nbt.mca.util;
+
+import io.github.ensgijs.nbt.io.BinaryNbtHelpers;
+import io.github.ensgijs.nbt.io.CompressionType;
+import io.github.ensgijs.nbt.tag.CompoundTag;
+import io.github.ensgijs.nbt.tag.ListTag;
+import io.github.ensgijs.nbt.tag.Tag;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Records, per chunk, the mca header timestamp and a content hash of the chunk as it was last processed.
+ * Used by {@link IncrementalMcaJob} to skip chunks which have not changed since the previous run.
+ *
+ * <p>Checkpoints are persisted as gzip compressed binary nbt, see {@link #save(Path)} and {@link #load(Path)}.</p>
+ */
+public class ChunkCheckpoints {
+    public static final int FORMAT_VERSION = 1;
+    /** Timestamp value returned for chunks which have no checkpoint. */
+    public static final int NO_CHECKPOINT = Integer.MIN_VALUE;
+
+    private final Map<IntPointXZ, RegionCheckpoints> regions = new HashMap<>();
+
+    static final class RegionCheckpoints {
+        final int[] timestamps = new int[1024];
+        final long[] hashes = new long[1024];
+        int count;
+
+        RegionCheckpoints() {
+            Arrays.fill(timestamps, NO_CHECKPOINT);
+        }
+    }
+
+    /** Creates a new, empty, set of checkpoints. */
+    public ChunkCheckpoints() {}
+
+    /**
+     * Loads checkpoints previously written by {@link #save(Path)}. If the file does not exist an empty set of
+     * checkpoints is returned.
+     * @throws IOException if the file could not be read or is not a checkpoint file.
+     */
+    public static ChunkCheckpoints load(Path checkpointFile) throws IOException {
+        ChunkCheckpoints checkpoints = new ChunkCheckpoints();
+        if (!Files.exists(checkpointFile)) return checkpoints;
+        Tag<?> root = BinaryNbtHelpers.read(checkpointFile).getTag();
+        if (!(root instanceof CompoundTag rootTag) || rootTag.getInt("FormatVersion", -1) != FORMAT_VERSION) {
+            throw new IOException("Not a version " + FORMAT_VERSION + " chunk checkpoint file: " + checkpointFile);
+        }
+        ListTag<CompoundTag> regionsTag = rootTag.getCompoundList("regions");
+        if (regionsTag == null) {
+            throw new IOException("Corrupt chunk checkpoint file: " + checkpointFile);
+        }
+        for (CompoundTag regionTag : regionsTag) {
+            int[] timestamps = regionTag.getIntArray("timestamps");
+            long[] hashes = regionTag.getLongArray("hashes");
+            if (timestamps == null || timestamps.length != 1024 || hashes == null || hashes.length != 1024) {
+                throw new IOException("Corrupt chunk checkpoint file: " + checkpointFile);
+            }
+            RegionCheckpoints region = new RegionCheckpoints();
+            System.arraycopy(timestamps, 0, region.timestamps, 0, 1024);
+            System.arraycopy(hashes, 0, region.hashes, 0, 1024);
+            for (int ts : timestamps) {
+                if (ts != NO_CHECKPOINT) region.count++;
+            }
+            if (region.count > 0)
+                checkpoints.regions.put(new IntPointXZ(regionTag.getInt("x"), regionTag.getInt("z")), region);
+        }
+        return checkpoints;
+    }
+
+    /** Writes these checkpoints to disk as gzip compressed binary nbt. */
+    public void save(Path checkpointFile) throws IOException {
+        CompoundTag root = new CompoundTag();
+        root.putInt("FormatVersion", FORMAT_VERSION);
+        ListTag<CompoundTag> regionsTag = new ListTag<>(CompoundTag.class, regions.size());
+        for (var entry : regions.entrySet()) {
+            CompoundTag regionTag = new CompoundTag();
+            regionTag.putInt("x", entry.getKey().getX());
+            regionTag.putInt("z", entry.getKey().getZ());
+            regionTag.putIntArray("timestamps", entry.getValue().timestamps.clone());
+            regionTag.putLongArray("hashes", entry.getValue().hashes.clone());
+            regionsTag.add(regionTag);
+        }
+        root.put("regions", regionsTag);
+        BinaryNbtHelpers.write(root, checkpointFile, CompressionType.GZIP);
+    }
+
+    /** @return the region XZ locations which have at least one chunk checkpoint. */
+    public Set<IntPointXZ> regions() {
+        return Collections.unmodifiableSet(regions.keySet());
+    }
+
+    /** @return number of chunks which have a checkpoint. */
+    public int size() {
+        int size = 0;
+        for (RegionCheckpoints region : regions.values()) {
+            size += region.count;
+        }
+        return size;
+    }
+
+    /** @return the recorded mca timestamp of the chunk or {@link #NO_CHECKPOINT} if there is no checkpoint. */
+    public int getTimestamp(IntPointXZ regionXZ, int chunkIndex) {
+        checkChunkIndex(chunkIndex);
+        RegionCheckpoints region = regions.get(regionXZ);
+        return region != null ? region.timestamps[chunkIndex] : NO_CHECKPOINT;
+    }
+
+    /** @return the recorded content hash of the chunk, only meaningful if {@link #contains} is true. */
+    public long getContentHash(IntPointXZ regionXZ, int chunkIndex) {
+        checkChunkIndex(chunkIndex);
+        RegionCheckpoints region = regions.get(regionXZ);
+        return region != null ? region.hashes[chunkIndex] : 0;
+    }
+
+    public boolean contains(IntPointXZ regionXZ, int chunkIndex) {
+        return getTimestamp(regionXZ, chunkIndex) != NO_CHECKPOINT;
+    }
+
+    /**
+     * Records a chunk checkpoint.
+     * @param timestamp mca header timestamp of the chunk, must not be {@link #NO_CHECKPOINT}.
+     * @param contentHash hash of the chunk's raw (compressed) mca bytes.
+     */
+    public void put(IntPointXZ regionXZ, int chunkIndex, int timestamp, long contentHash) {
+        checkChunkIndex(chunkIndex);
+        if (timestamp == NO_CHECKPOINT) throw new IllegalArgumentException("invalid timestamp");
+        RegionCheckpoints region = regions.computeIfAbsent(regionXZ, k -> new RegionCheckpoints());
+        if (region.timestamps[chunkIndex] == NO_CHECKPOINT) region.count++;
+        region.timestamps[chunkIndex] = timestamp;
+        region.hashes[chunkIndex] = contentHash;
+    }
+
+    /** @return true if a checkpoint existed and was removed. */
+    public boolean remove(IntPointXZ regionXZ, int chunkIndex) {
+        checkChunkIndex(chunkIndex);
+        RegionCheckpoints region = regions.get(regionXZ);
+        if (region == null || region.timestamps[chunkIndex] == NO_CHECKPOINT) return false;
+        region.timestamps[chunkIndex] = NO_CHECKPOINT;
+        region.hashes[chunkIndex] = 0;
+        if (--region.count == 0) regions.remove(regionXZ);
+        return true;
+    }
+
+    /** @return number of chunk checkpoints removed. */
+    public int removeRegion(IntPointXZ regionXZ) {
+        RegionCheckpoints region = regions.remove(regionXZ);
+        return region != null ? region.count : 0;
+    }
+
+    private static void checkChunkIndex(int chunkIndex) {
+        if (chunkIndex < 0 || chunkIndex >= 1024)
+            throw new IndexOutOfBoundsException();
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.ensgijs.nbt.mca.util;
+
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * The cells which differ between two equally sized cuboids, as produced by
+ * {@link PalettizedCuboid#diff(PalettizedCuboid)}. Cells are identified by their data index, which can be converted
+ * to xyz with {@link #xOf(int)}, {@link #yOf(int)}, and {@link #zOf(int)}.
+ */
+public class CuboidDiff {
+    private final int cubeEdgeLength;
+    private final int edgeBits;
+    private final BitSet changed;
+    private IntPointXYZ min;
+    private IntPointXYZ max;
+
+    /**
+     * @param cubeEdgeLength edge length of the compared cuboids, must be a power of 2.
+     * @param changed data indices of the changed cells, taken by reference.
+     */
+    public CuboidDiff(int cubeEdgeLength, BitSet changed) {
+        this.cubeEdgeLength = cubeEdgeLength;
+        this.edgeBits = PalettizedCuboid.calculatePowerOfTwoExponent(cubeEdgeLength, true);
+        this.changed = changed;
+    }
+
+    /** Creates a diff in which every cell has changed. */
+    public static CuboidDiff allChanged(int cubeEdgeLength) {
+        BitSet changed = new BitSet();
+        changed.set(0, cubeEdgeLength * cubeEdgeLength * cubeEdgeLength);
+        return new CuboidDiff(cubeEdgeLength, changed);
+    }
+
+    public int cubeEdgeLength() {
+        return cubeEdgeLength;
+    }
+
+    /** True if no cells differ. */
+    public boolean isEmpty() {
+        return changed.isEmpty();
+    }
+
+    /** Number of cells which differ. */
+    public int changedCount() {
+        return changed.cardinality();
+    }
+
+    public boolean isChanged(int index) {
+        return changed.get(index);
+    }
+
+    public boolean isChanged(int x, int y, int z) {
+        return changed.get((((y << edgeBits) | z) << edgeBits) | x);
+    }
+
+    /** Gets a copy of the data indices of the changed cells. */
+    public BitSet changedIndices() {
+        return (BitSet) changed.clone();
+    }
+
+    /** Passes the data index of each changed cell to the consumer, in index order. */
+    public void forEachChanged(IntConsumer consumer) {
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            consumer.accept(i);
+        }
+    }
+
+    public int xOf(int index) {
+        return index & (cubeEdgeLength - 1);
+    }
+
+    public int yOf(int index) {
+        return index >> (edgeBits * 2);
+    }
+
+    public int zOf(int index) {
+        return (index >> edgeBits) & (cubeEdgeLength - 1);
+    }
+
+    /** Minimum corner (inclusive) of the bounding box of all changed cells, or null if nothing changed. */
+    public IntPointXYZ getMin() {
+        computeBounds();
+        return min;
+    }
+
+    /** Maximum corner (inclusive) of the bounding box of all changed cells, or null if nothing changed. */
+    public IntPointXYZ getMax() {
+        computeBounds();
+        return max;
+    }
+
+    private void computeBounds() {
+        if (min != null || changed.isEmpty()) {
+            return;
+        }
+        // indices are ordered by y so the y bounds come straight from the first and last set bits
+        final int minY = yOf(changed.nextSetBit(0));
+        final int maxY = yOf(changed.length() - 1);
+        int minX = cubeEdgeLength, minZ = cubeEdgeLength, maxX = -1, maxZ = -1;
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            final int x = xOf(i);
+            final int z = zOf(i);
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (z < minZ) minZ = z;
+            if (z > maxZ) maxZ = z;
+        }
+        max = new IntPointXYZ(maxX, maxY, maxZ);
+        min = new IntPointXYZ(minX, minY, minZ);
+    }
+
+    @Override
+    public String toString() {
+        return isEmpty() ? "CuboidDiff{unchanged}"
+                : "CuboidDiff{changed=" + changedCount() + ", min=" + getMin() + ", max=" + getMax() + "}";
+    }
+}
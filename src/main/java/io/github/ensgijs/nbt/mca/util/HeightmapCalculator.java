@@ -0,0 +1,282 @@
+package io.github.ensgijs.nbt.mca.util;
+
+import io.github.ensgijs.nbt.mca.DataVersion;
+import io.github.ensgijs.nbt.mca.TerrainChunkBase;
+import io.github.ensgijs.nbt.mca.TerrainSectionBase;
+import io.github.ensgijs.nbt.mca.VersionLacksSupportException;
+import io.github.ensgijs.nbt.tag.CompoundTag;
+import io.github.ensgijs.nbt.tag.StringTag;
+import io.github.ensgijs.nbt.util.ArgValidator;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import static io.github.ensgijs.nbt.mca.DataVersion.JAVA_1_13_18W06A;
+
+/**
+ * Recomputes the heightmaps of a {@link TerrainChunkBase terrain chunk} from its block states, for example after
+ * bulk edits made with {@link McaWorld#setBlockAt} or {@link TerrainChunkBase#setBlockAt} which do not update them.
+ *
+ * <p>Each palette entry of each section is classified once, then every column is scanned top-down, section by
+ * section, and each heightmap stops scanning a column at the first block which counts towards it. Scanning ends as
+ * soon as every column of every requested heightmap has been resolved, so typically only the top few sections of a
+ * chunk are ever looked at. Uniform sections are resolved for all columns at once.</p>
+ *
+ * <p>Whether a block counts towards a heightmap is decided by a {@link BlockClassifier}. As this library has no
+ * knowledge of block collision shapes the {@link #DEFAULT_CLASSIFIER} is a name based approximation of vanilla
+ * behavior, supply your own classifier if you need to handle modded blocks or need exact results.</p>
+ *
+ * <p>Instances reuse internal buffers and are not thread safe, but may be reused for any number of chunks.</p>
+ *
+ * <p>Example</p>
+ * <pre>{@code
+ * HeightmapCalculator calculator = new HeightmapCalculator();
+ * for (TerrainChunk chunk : editedChunks) {
+ *     calculator.recompute(chunk);
+ * }
+ * }</pre>
+ */
+public class HeightmapCalculator {
+
+    /** The heightmaps which can be computed from block states alone. */
+    public enum Heightmap {
+        /** Highest block which is not air. */
+        WORLD_SURFACE,
+        /** Highest block which blocks motion. */
+        OCEAN_FLOOR,
+        /** Highest block which blocks motion or contains a fluid. */
+        MOTION_BLOCKING,
+        /** Same as {@link #MOTION_BLOCKING} except leaves are ignored. */
+        MOTION_BLOCKING_NO_LEAVES;
+
+        /** Bit of this heightmap in the value returned by a {@link BlockClassifier}. */
+        public int bit() {
+            return 1 << ordinal();
+        }
+    }
+
+    /** Decides which heightmaps a block state counts towards. */
+    @FunctionalInterface
+    public interface BlockClassifier {
+        /**
+         * @param blockState block palette entry, must not be modified.
+         * @return bitwise OR of the {@link Heightmap#bit()} of every heightmap the block state counts towards,
+         * 0 for air.
+         */
+        int classify(CompoundTag blockState);
+    }
+
+    /**
+     * Name based approximation of vanilla behavior. Blocks without a collision shape (plants, torches, rails,
+     * buttons, etc.) do not block motion - except signs, banners and pressure plates which vanilla treats as solid.
+     * Fluids and waterlogged blocks count towards {@link Heightmap#MOTION_BLOCKING}, and blocks whose name ends in
+     * {@code _leaves} are left out of {@link Heightmap#MOTION_BLOCKING_NO_LEAVES}.
+     */
+    public static final BlockClassifier DEFAULT_CLASSIFIER = new DefaultBlockClassifier();
+
+    private static final int ALL_BITS = (1 << Heightmap.values().length) - 1;
+
+    private final BlockClassifier classifier;
+    /** Heightmap bits still unresolved, per column (z * 16 + x). */
+    private final int[] pending = new int[256];
+    /** Block y of each resolved column, per heightmap. */
+    private final int[][] heights = new int[Heightmap.values().length][256];
+    private final int[] sectionData = new int[4096];
+    private int[] classes = new int[16];
+
+    public HeightmapCalculator() {
+        this(DEFAULT_CLASSIFIER);
+    }
+
+    public HeightmapCalculator(BlockClassifier classifier) {
+        this.classifier = ArgValidator.requireValue(classifier, "classifier");
+    }
+
+    public BlockClassifier getClassifier() {
+        return classifier;
+    }
+
+    /**
+     * Recomputes all {@link Heightmap heightmaps} of the given chunk and stores them in its
+     * {@link TerrainChunkBase#getHeightMaps() height maps tag}, creating the tag if needed. Other heightmaps in
+     * the tag, such as the world generation ones, are left as they are.
+     * @throws VersionLacksSupportException if the chunk's data version predates
+     * {@link DataVersion#JAVA_1_13_18W06A}.
+     */
+    public void recompute(TerrainChunkBase<?> chunk) {
+        recompute(chunk, Heightmap.values());
+    }
+
+    /**
+     * Recomputes the given heightmaps of the given chunk, see {@link #recompute(TerrainChunkBase)}.
+     */
+    public void recompute(TerrainChunkBase<?> chunk, Heightmap... heightmaps) {
+        ArgValidator.requireValue(chunk, "chunk");
+        ArgValidator.requireValue(heightmaps, "heightmaps");
+        if (chunk.getDataVersion() < JAVA_1_13_18W06A.id())
+            throw new VersionLacksSupportException(chunk.getDataVersion(), JAVA_1_13_18W06A, null, "heightmaps");
+        int requested = 0;
+        for (Heightmap heightmap : heightmaps) {
+            requested |= heightmap.bit();
+        }
+        if (requested == 0)
+            return;
+        compute(chunk, requested);
+
+        CompoundTag heightMapsTag = chunk.getHeightMaps();
+        if (heightMapsTag == null) {
+            heightMapsTag = new CompoundTag();
+            chunk.setHeightMaps(heightMapsTag);
+        }
+        final int minY = chunk.getWorldMinBlockY() - 1;
+        final int maxY = chunk.hasSections() ? chunk.getWorldMaxBlockY() : minY;
+        for (Heightmap heightmap : Heightmap.values()) {
+            if ((requested & heightmap.bit()) == 0)
+                continue;
+            LongArrayTagPackedIntegers packed = LongArrayTagPackedIntegers.builder()
+                    .dataVersion(chunk.getDataVersion())
+                    .minBitsPerValue(Math.max(9, LongArrayTagPackedIntegers.calculateBitsRequired(maxY - minY)))
+                    .valueOffset(minY)
+                    .length(256)
+                    .build();
+            packed.setFromArray(heights[heightmap.ordinal()]);
+            heightMapsTag.put(heightmap.name(), packed.getHandle());
+        }
+    }
+
+    /**
+     * Computes the block y of the highest block counting towards each requested heightmap for each column
+     * into {@link #heights}. Columns without any such block are set to the world bottom minus one.
+     */
+    private void compute(TerrainChunkBase<?> chunk, final int requested) {
+        final int voidY = chunk.getWorldMinBlockY() - 1;
+        for (int[] h : heights) {
+            Arrays.fill(h, voidY);
+        }
+        Arrays.fill(pending, requested);
+        int unresolvedColumns = 256;
+        if (!chunk.hasSections())
+            return;
+        for (int sectionY = chunk.getMaxSectionY(); sectionY >= chunk.getMinSectionY() && unresolvedColumns > 0; sectionY--) {
+            final TerrainSectionBase section = chunk.getSection(sectionY);
+            final PalettizedCuboid<CompoundTag> blockStates = section != null ? section.getBlockStates() : null;
+            if (blockStates == null)
+                continue;
+            final int[] classes = classifyPalette(blockStates);
+            final int baseY = sectionY * 16;
+            if (blockStates.isUniform()) {
+                final int cls = classes[0];
+                if (cls != 0) {
+                    for (int column = 0; column < 256; column++) {
+                        unresolvedColumns -= resolve(column, cls, baseY + 15);
+                    }
+                }
+                continue;
+            }
+            boolean anySolid = false;
+            for (int i = 0; i < blockStates.paletteSize(); i++) {
+                anySolid |= (classes[i] & requested) != 0;
+            }
+            if (!anySolid)
+                continue;
+            blockStates.packedData.toArray(sectionData);
+            for (int y = 15; y >= 0 && unresolvedColumns > 0; y--) {
+                final int rowBase = y << 8;
+                for (int column = 0; column < 256; column++) {
+                    if (pending[column] != 0) {
+                        unresolvedColumns -= resolve(column, classes[sectionData[rowBase | column]], baseY + y);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the pending heightmaps of the given column which the given block class counts towards.
+     * @return 1 if this resolved the last pending heightmap of the column, otherwise 0.
+     */
+    private int resolve(int column, int cls, int blockY) {
+        final int p = pending[column];
+        int hits = cls & p;
+        if (hits == 0)
+            return 0;
+        pending[column] = p & ~hits;
+        while (hits != 0) {
+            heights[Integer.numberOfTrailingZeros(hits)][column] = blockY;
+            hits &= hits - 1;
+        }
+        return pending[column] == 0 ? 1 : 0;
+    }
+
+    /** Classifies each palette entry once, unused palette slots classify as 0 (air). */
+    private int[] classifyPalette(PalettizedCuboid<CompoundTag> blockStates) {
+        final int size = blockStates.paletteSize();
+        if (classes.length < size) {
+            classes = new int[Math.max(size, classes.length * 2)];
+        }
+        final CompoundTag nilValue = PalettizedCuboid.nilSentinelFor(CompoundTag.class);
+        for (int i = 0; i < size; i++) {
+            final CompoundTag blockState = blockStates.palette.get(i);
+            classes[i] = blockState == nilValue ? 0 : classifier.classify(blockState) & ALL_BITS;
+        }
+        return classes;
+    }
+
+    private static class DefaultBlockClassifier implements BlockClassifier {
+        private static final Set<String> AIR = Set.of(
+                "minecraft:air", "minecraft:cave_air", "minecraft:void_air");
+        /** Fluids and always-submerged plants - they contain a fluid but do not block motion. */
+        private static final Set<String> FLUIDS = Set.of(
+                "minecraft:water", "minecraft:lava", "minecraft:bubble_column", "minecraft:kelp",
+                "minecraft:kelp_plant", "minecraft:seagrass", "minecraft:tall_seagrass");
+        private static final Set<String> NON_BLOCKING = Set.of(
+                "minecraft:grass", "minecraft:short_grass", "minecraft:tall_grass", "minecraft:fern",
+                "minecraft:large_fern", "minecraft:dead_bush", "minecraft:dandelion", "minecraft:poppy",
+                "minecraft:blue_orchid", "minecraft:allium", "minecraft:azure_bluet", "minecraft:oxeye_daisy",
+                "minecraft:cornflower", "minecraft:lily_of_the_valley", "minecraft:wither_rose",
+                "minecraft:sunflower", "minecraft:lilac", "minecraft:rose_bush", "minecraft:peony",
+                "minecraft:torchflower", "minecraft:pitcher_plant", "minecraft:pink_petals",
+                "minecraft:brown_mushroom", "minecraft:red_mushroom", "minecraft:crimson_fungus",
+                "minecraft:warped_fungus", "minecraft:crimson_roots", "minecraft:warped_roots",
+                "minecraft:nether_sprouts", "minecraft:sugar_cane", "minecraft:vine", "minecraft:glow_lichen",
+                "minecraft:sculk_vein", "minecraft:weeping_vines", "minecraft:weeping_vines_plant",
+                "minecraft:twisting_vines", "minecraft:twisting_vines_plant", "minecraft:cave_vines",
+                "minecraft:cave_vines_plant", "minecraft:hanging_roots", "minecraft:spore_blossom",
+                "minecraft:wheat", "minecraft:carrots", "minecraft:potatoes", "minecraft:beetroots",
+                "minecraft:melon_stem", "minecraft:pumpkin_stem", "minecraft:attached_melon_stem",
+                "minecraft:attached_pumpkin_stem", "minecraft:sweet_berry_bush", "minecraft:nether_wart",
+                "minecraft:torch", "minecraft:wall_torch", "minecraft:soul_torch", "minecraft:soul_wall_torch",
+                "minecraft:redstone_torch", "minecraft:redstone_wall_torch", "minecraft:redstone_wire",
+                "minecraft:lever", "minecraft:tripwire", "minecraft:tripwire_hook", "minecraft:fire",
+                "minecraft:soul_fire", "minecraft:cobweb", "minecraft:nether_portal", "minecraft:end_portal",
+                "minecraft:end_gateway", "minecraft:structure_void", "minecraft:light", "minecraft:snow",
+                "minecraft:lily_pad");
+
+        @Override
+        public int classify(CompoundTag blockState) {
+            final String name = blockState.getString("Name");
+            if (AIR.contains(name))
+                return 0;
+            int cls = Heightmap.WORLD_SURFACE.bit();
+            final boolean fluid = FLUIDS.contains(name) || isWaterlogged(blockState);
+            final boolean blocksMotion = !FLUIDS.contains(name) && !NON_BLOCKING.contains(name)
+                    && !name.endsWith("_sapling") && !name.endsWith("_rail") && !name.equals("minecraft:rail")
+                    && !name.endsWith("_button") && !name.endsWith("_tulip")
+                    && !name.endsWith("_coral") && !name.endsWith("_coral_fan");
+            if (blocksMotion)
+                cls |= Heightmap.OCEAN_FLOOR.bit();
+            if (blocksMotion || fluid) {
+                cls |= Heightmap.MOTION_BLOCKING.bit();
+                if (!name.endsWith("_leaves"))
+                    cls |= Heightmap.MOTION_BLOCKING_NO_LEAVES.bit();
+            }
+            return cls;
+        }
+
+        private static boolean isWaterlogged(CompoundTag blockState) {
+            final CompoundTag properties = blockState.getCompoundTag("Properties");
+            return properties != null && properties.get("waterlogged") instanceof StringTag waterlogged
+                    && "true".equals(waterlogged.getValue());
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package io.github.ensgijs.nbt.mca.util;
+
+import io.github.ensgijs.nbt.mca.ChunkBase;
+import io.github.ensgijs.nbt.mca.io.LoadFlags;
+import io.github.ensgijs.nbt.mca.io.McaFileHelpers;
+import io.github.ensgijs.nbt.mca.io.RandomAccessMcaFile;
+import io.github.ensgijs.nbt.util.ArgValidator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * Runs a chunk processing job over every chunk of a set of mca files while skipping chunks which have not
+ * changed since the job last visited them.
+ *
+ * <p>Change detection happens in two stages. First the chunk's mca header timestamp is compared against its
+ * {@link ChunkCheckpoints checkpoint}, this only uses the header tables which are read when the mca file is opened
+ * so unchanged chunks cost nothing to skip. If the timestamp changed the chunk's raw, still compressed, bytes are
+ * hashed and compared to the checkpoint's content hash - this catches chunks which were re-saved without being
+ * modified. Only chunks which fail both checks are decompressed, deserialized, and passed to the visitor.</p>
+ *
+ * <p>A chunk's checkpoint is only updated after the visitor returns normally, so a chunk whose visit threw will be
+ * visited again on the next run. Chunks the visitor writes back (when running in "rw" mode) are checkpointed with
+ * their post-write timestamp and hash so the job's own writes do not cause the chunk to be revisited.</p>
+ *
+ * <p>Example</p>
+ * <pre>{@code
+ * ChunkCheckpoints checkpoints = ChunkCheckpoints.load(checkpointFile);
+ * var job = new IncrementalMcaJob<>(TerrainChunk.class, checkpoints).setLoadFlags(LoadFlags.BLOCK_STATES);
+ * var stats = job.run(new File(worldDir, "region"), (chunk, mcaFile) -> doWork(chunk));
+ * checkpoints.save(checkpointFile);
+ * }</pre>
+ *
+ * @param <T> chunk type
+ */
+public class IncrementalMcaJob<T extends ChunkBase> {
+    private final Class<T> chunkClass;
+    private final ChunkCheckpoints checkpoints;
+    private long loadFlags = LoadFlags.LOAD_ALL_DATA;
+    private String mode = "r";
+    private boolean verifyContentHash = true;
+
+    @FunctionalInterface
+    public interface ChunkVisitor<T extends ChunkBase> {
+        /**
+         * @param chunk changed chunk
+         * @param mcaFile the mca file the chunk was read from, may be used to write the chunk back if the job
+         *                was configured with {@link #setMode(String) mode} "rw".
+         */
+        void visit(T chunk, RandomAccessMcaFile<T> mcaFile) throws IOException;
+    }
+
+    /**
+     * @param chunksVisited chunks which were read and passed to the visitor.
+     * @param chunksUnchanged chunks skipped because their mca timestamp matched their checkpoint.
+     * @param chunksResaved chunks skipped because, while their timestamp changed, their content did not.
+     * @param chunksRemoved checkpoints dropped because the chunk, or its mca file, no longer exists.
+     */
+    public record RunStats(int chunksVisited, int chunksUnchanged, int chunksResaved, int chunksRemoved) {
+        RunStats add(RunStats other) {
+            return new RunStats(
+                    chunksVisited + other.chunksVisited,
+                    chunksUnchanged + other.chunksUnchanged,
+                    chunksResaved + other.chunksResaved,
+                    chunksRemoved + other.chunksRemoved);
+        }
+    }
+
+    public IncrementalMcaJob(Class<T> chunkClass, ChunkCheckpoints checkpoints) {
+        this.chunkClass = ArgValidator.requireValue(chunkClass, "chunkClass");
+        this.checkpoints = ArgValidator.requireValue(checkpoints, "checkpoints");
+    }
+
+    public ChunkCheckpoints getCheckpoints() {
+        return checkpoints;
+    }
+
+    public long getLoadFlags() {
+        return loadFlags;
+    }
+
+    /** LoadFlags which are passed to the chunk deserialization method. */
+    public IncrementalMcaJob<T> setLoadFlags(long loadFlags) {
+        this.loadFlags = loadFlags;
+        return this;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    /** @param mode "r" (default) or "rw" if the visitor will write chunks back to their mca file. */
+    public IncrementalMcaJob<T> setMode(String mode) {
+        ArgValidator.check("r".equals(mode) || "rw".equals(mode), "mode must be 'r' or 'rw'");
+        this.mode = mode;
+        return this;
+    }
+
+    public boolean isVerifyContentHash() {
+        return verifyContentHash;
+    }
+
+    /**
+     * When true (default) chunks whose timestamp changed but whose raw bytes hash to the checkpointed value are
+     * skipped. When false every chunk with a changed timestamp is visited.
+     */
+    public IncrementalMcaJob<T> setVerifyContentHash(boolean verifyContentHash) {
+        this.verifyContentHash = verifyContentHash;
+        return this;
+    }
+
+    /**
+     * Runs the job over every mca file in the given directory. Checkpoints for regions whose mca file no longer
+     * exists are dropped.
+     */
+    public RunStats run(File mcaDirectory, ChunkVisitor<T> visitor) throws IOException {
+        ArgValidator.check(mcaDirectory.isDirectory(), "Not a directory: " + mcaDirectory);
+        File[] mcaFiles = mcaDirectory.listFiles((dir, name) -> McaFileHelpers.isValidMcaFileName(name));
+        RunStats stats = new RunStats(0, 0, 0, 0);
+        Set<IntPointXZ> present = new HashSet<>();
+        if (mcaFiles != null) {
+            for (File mcaFile : mcaFiles) {
+                present.add(McaFileHelpers.regionXZFromFileName(mcaFile.getName()));
+                stats = stats.add(runRegion(mcaFile, visitor));
+            }
+        }
+        int removed = 0;
+        for (IntPointXZ regionXZ : new HashSet<>(checkpoints.regions())) {
+            if (!present.contains(regionXZ)) {
+                removed += checkpoints.removeRegion(regionXZ);
+            }
+        }
+        return stats.add(new RunStats(0, 0, 0, removed));
+    }
+
+    /** Runs the job over the chunks of a single mca file. */
+    public RunStats runRegion(File mcaFile, ChunkVisitor<T> visitor) throws IOException {
+        ArgValidator.requireValue(visitor, "visitor");
+        final IntPointXZ regionXZ = McaFileHelpers.regionXZFromFileName(mcaFile.getName());
+        int visited = 0, unchanged = 0, resaved = 0, removed = 0;
+        if (mcaFile.length() == 0) {
+            return new RunStats(0, 0, 0, checkpoints.removeRegion(regionXZ));
+        }
+        try (RandomAccessMcaFile<T> ramf = new RandomAccessMcaFile<>(chunkClass, mcaFile, mode)) {
+            for (int i = 0; i < 1024; i++) {
+                final int timestamp = ramf.getChunkTimestamp(i);
+                if (timestamp < 0) {
+                    if (checkpoints.remove(regionXZ, i)) removed++;
+                    continue;
+                }
+                final boolean hasCheckpoint = checkpoints.contains(regionXZ, i);
+                if (hasCheckpoint && checkpoints.getTimestamp(regionXZ, i) == timestamp) {
+                    unchanged++;
+                    continue;
+                }
+                long hash = 0;
+                if (verifyContentHash) {
+                    hash = contentHash(ramf.readRaw(i));
+                    if (hasCheckpoint && checkpoints.getContentHash(regionXZ, i) == hash) {
+                        checkpoints.put(regionXZ, i, timestamp, hash);
+                        resaved++;
+                        continue;
+                    }
+                }
+                T chunk = ramf.read(i, loadFlags);
+                visitor.visit(chunk, ramf);
+                visited++;
+                final int postVisitTimestamp = ramf.getChunkTimestamp(i);
+                if (postVisitTimestamp < 0) {
+                    checkpoints.remove(regionXZ, i);
+                    continue;
+                }
+                if (postVisitTimestamp != timestamp && verifyContentHash) {
+                    hash = contentHash(ramf.readRaw(i));
+                }
+                checkpoints.put(regionXZ, i, postVisitTimestamp, hash);
+            }
+        }
+        return new RunStats(visited, unchanged, resaved, removed);
+    }
+
+    /**
+     * Hash of raw mca chunk bytes as returned by {@link RandomAccessMcaFile#readRaw(int)}. The byte length is
+     * mixed into the high bits so that equal CRCs of different length payloads are distinguished.
+     */
+    static long contentHash(byte[] raw) {
+        CRC32C crc = new CRC32C();
+        crc.update(raw, 0, raw.length);
+        return ((long) raw.length << 32) | crc.getValue();
+    }
+}
@@ -3,14 +3,18 @@ package io.github.ensgijs.nbt.mca.util;
 import io.github.ensgijs.nbt.mca.DataVersion;
 import io.github.ensgijs.nbt.mca.TerrainChunk;
 import io.github.ensgijs.nbt.tag.LongArrayTag;
+import io.github.ensgijs.nbt.tag.Tag;
 import io.github.ensgijs.nbt.util.ArgValidator;
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
 
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
 import java.util.function.IntPredicate;
 
 import static io.github.ensgijs.nbt.mca.DataVersion.JAVA_1_16_20W17A;
@@ -42,6 +46,10 @@ import static io.github.ensgijs.nbt.mca.DataVersion.UNKNOWN;
  * <p>The packing strategy may be changed to facilitate upgrade/downgrade operations by calling
  * {@link #setPackingStrategy(PackingStrategy)}</p>
  *
+ * <p>When every value is zero (equal to the value offset) and no long[] has been given, no long[] is allocated
+ * at all until the first non-zero value is stored, see {@link #isUniform()}. Vanilla omits the packed data of
+ * single valued palettes, which is a large share of all sections, so this saves both memory and time.</p>
+ *
  * <p>Tip: If you are using this class to create packed ints from scratch it is recommended to add values in
  * descending order (or at least start with larger values rather than smaller ones) to minimize the number
  * of resizes that occur. OR to take advantage of the {@link Builder#initializeForStoring(int)} which will
@@ -72,23 +80,36 @@ import static io.github.ensgijs.nbt.mca.DataVersion.UNKNOWN;
  */
 public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Iterable<Integer>, Cloneable {
 
+    private static final long[] EMPTY_LONGS = new long[0];
+
     public static final VersionAware<PackingStrategy> MOJANG_PACKING_STRATEGY = new VersionAware<PackingStrategy>()
             // technically, I don't believe long packing was used in any form until JAVA_1_12_2... or was it JAVA_1_13_17W47A
             .register(UNKNOWN.next().id(), PackingStrategy.SPLIT_VALUES_ACROSS_LONGS)
             .register(JAVA_1_16_20W17A.id(), PackingStrategy.NO_SPLIT_VALUES_ACROSS_LONGS);
 
-    // <editor-fold desc="RemapFunction, PackingStrategy, Builder" defaultstate="collapsed">
+    // <editor-fold desc="RemapFunction, RunConsumer, PackingStrategy, Builder" defaultstate="collapsed">
     @FunctionalInterface
     public interface RemapFunction {
         int remap(int value);
     }
 
+    /** @see #forEachRun(RunConsumer) */
+    @FunctionalInterface
+    public interface RunConsumer {
+        /**
+         * @param value value shared by every index of the run.
+         * @param startIndex index of the first value of the run.
+         * @param length number of consecutive indices in the run, always GE 1.
+         */
+        void accept(int value, int startIndex, int length);
+    }
+
     public enum PackingStrategy {
         /**
          * Values are never split across longs resulting in unused bits in every backing long if 64 is not
          * evenly divisible by the bits per value
          * <p>While this strategy wastes more bits, it is computationally
-         * simpler, uses no floating point math, and is therefore faster.</p>
+         * simpler and is therefore faster.</p>
          * @since {@link io.github.ensgijs.nbt.mca.DataVersion#JAVA_1_16_20W17A}
          */
         NO_SPLIT_VALUES_ACROSS_LONGS,
@@ -270,13 +291,13 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
     private int valueOffset;
 
     private PackingStrategy packingStrategy;
+    /** Null while every value is zero and no long[] is allocated, see {@link #isUniform()}. */
     private long[] packedBits;
     private int minBitsPerValue;
     private int bitsPerValue;
     /** Inclusive bound, does NOT include valueOffset */
     private int currentMaxPackableValue;
     private int noSplitIndicesPerLong;
-    private double splitIndicesPerLong;
 
     /** set to -1 if length does not have an integer cube root */
     public int cubeEdgeLength() {
@@ -297,8 +318,9 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
     }
 
     /**
-     * @param tag Tag with existing longs. If this tag's {@link LongArrayTag#getValue()#length} is 0 it is initialized
-     *            with an appropriately sized long[], otherwise this length is validated based on the other provided arguments.
+     * @param tag Tag with existing longs. If this tag's {@link LongArrayTag#getValue()#length} is 0 all values are
+     *            zero and the tag is given an appropriately sized long[] once one is needed, otherwise this length is
+     *            validated based on the other provided arguments.
      * @param packingStrategy Controls how values are packed into the long array.
      *                       Prior to {@link io.github.ensgijs.nbt.mca.DataVersion#JAVA_1_16_20W17A}
      *                       {@link PackingStrategy#SPLIT_VALUES_ACROSS_LONGS} was used, from this version on
@@ -327,24 +349,18 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
         this.bitsPerValue = Math.max(minBitsPerValue, initialBitsPerValue);
         this.valueOffset = valueOffset;
         this.packedBitsTag = tag;
-        int expectLongCount;
+        int expectLongCount = longsRequired(packingStrategy, bitsPerValue, length);
         if (packingStrategy == PackingStrategy.NO_SPLIT_VALUES_ACROSS_LONGS) {
-            expectLongCount = (int) Math.ceil(length / (double) (64 / bitsPerValue));
             this.noSplitIndicesPerLong = 64 / bitsPerValue;
-        } else {
-            expectLongCount = (int) Math.ceil(bitsPerValue * length / 64d);
-            this.splitIndicesPerLong = 64D / bitsPerValue;
         }
-        if (tag.getValue().length == 0) {
-            tag.setValue(new long[expectLongCount]);
-        } else {
+        if (tag.getValue().length != 0) {
             if (expectLongCount != tag.getValue().length) {
                 throw new IllegalArgumentException(String.format(
                         "long array tag has %d longs, but expected %d longs",
                         tag.getValue().length, expectLongCount));
             }
+            packedBits = tag.getValue();
         }
-        packedBits = tag.getValue();
         this.currentMaxPackableValue = (1 << bitsPerValue) - 1;
     }
 
@@ -355,12 +371,31 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
         this.bitsPerValue = other.bitsPerValue;
         this.currentMaxPackableValue = other.currentMaxPackableValue;
         this.noSplitIndicesPerLong = other.noSplitIndicesPerLong;
-        this.splitIndicesPerLong = other.splitIndicesPerLong;
         this.packingStrategy = other.packingStrategy;
-        this.packedBitsTag = other.packedBitsTag.clone();
-        this.packedBits = this.packedBitsTag.getValue();
+        this.packedBits = other.packedBits != null ? other.packedBits.clone() : null;
+        this.packedBitsTag = new LongArrayTag(packedBits != null ? packedBits : EMPTY_LONGS);
     }
 
+    /**
+     * Adds the heap retained by this instance to the estimator, see {@link Tag#estimateRetainedBytes()}.
+     * @return number of bytes this call added to the estimator.
+     */
+    public long estimateRetainedBytes(RetainedSizeEstimator estimator) {
+        final long before = estimator.total();
+        if (estimator.visit(this)) {
+            // packedBitsTag, packingStrategy, packedBits; length, 8 ints
+            estimator.add(RetainedSizeEstimator.shallowSize(3, 4 * 9));
+            packedBitsTag.estimateRetainedBytes(estimator);
+            estimator.addValue(packedBits);
+        }
+        return estimator.total() - before;
+    }
+
+    /**
+     * Creates a deep copy. A {@link #isUniform() uniform} instance is cloned without allocating a long[].
+     * <p>This instance is only read, never modified, by cloning. The long[] is copied eagerly rather than shared
+     * until the first write, as sharing would require cloning to mark this instance as shared.</p>
+     */
     @Override
     public LongArrayTagPackedIntegers clone() {
         return new LongArrayTagPackedIntegers(this);
@@ -372,9 +407,11 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
      * longs[]. However, the user is responsible for calling {@link #compact()} before storing this tag in
      * MCA data!</p>
      * <p>Generally, if you are getting the tag to store it <b>use {@link #updateHandle()} instead</b>.</p>
+     * <p>Allocates the long[] if this instance {@link #isUniform() is uniform}.</p>
      */
     @Override
     public LongArrayTag getHandle() {
+        mutableBits();
         return packedBitsTag;
     }
 
@@ -387,11 +424,56 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
         return compact();
     }
 
-    /** Returns the actual longs array - modifying the values in this array will modify the stored values. */
+    /**
+     * Returns the actual longs array - modifying the values in this array will modify the stored values.
+     * <p>Allocates the long[] if this instance {@link #isUniform() is uniform}.</p>
+     */
     public long[] longs() {
+        return mutableBits();
+    }
+
+    /**
+     * True if every value is zero, that is equal to {@link #getValueOffset()}, and no long[] is currently allocated.
+     * While uniform, reads are answered without touching any long[] and the long[] is only allocated once a
+     * non-zero value is stored or the long[] is requested via {@link #longs()}, {@link #getHandle()},
+     * or {@link #updateHandle()}.
+     * <p>Note that an allocated long[] containing only zeros is not considered uniform.</p>
+     */
+    public boolean isUniform() {
+        return packedBits == null;
+    }
+
+    /** Returns the long[] ready to be written to, allocates the long[] if uniform. */
+    private long[] mutableBits() {
+        if (packedBits == null) {
+            packedBitsTag.setValue(packedBits = new long[longsRequired(packingStrategy, bitsPerValue, length)]);
+        }
         return packedBits;
     }
 
+    /** Sets all values to zero by releasing the long[]. */
+    private void deflate() {
+        packedBits = null;
+        packedBitsTag.setValue(EMPTY_LONGS);
+    }
+
+    /** Updates bits per value and packing strategy and their derived fields, does not touch the long[]. */
+    private void setPacking(int bitsPerValue, PackingStrategy packingStrategy) {
+        this.bitsPerValue = bitsPerValue;
+        this.packingStrategy = packingStrategy;
+        noSplitIndicesPerLong = packingStrategy == PackingStrategy.NO_SPLIT_VALUES_ACROSS_LONGS ? 64 / bitsPerValue : 0;
+        currentMaxPackableValue = (1 << bitsPerValue) - 1;
+    }
+
+    /** Decodes all values into dst starting at dstOffset, adding addend to each value. */
+    private void decode(int[] dst, int dstOffset, int addend) {
+        if (packedBits == null) {
+            Arrays.fill(dst, dstOffset, dstOffset + length, addend);
+        } else {
+            unpack(packedBits, packingStrategy, bitsPerValue, length, dst, dstOffset, addend);
+        }
+    }
+
     /**
      * The packing strategy controls how bits are packed into longs. Changing the packing strategy results
      * in the backing long array being recomputed to use the new strategy.
@@ -415,11 +497,10 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
      * @see #shouldCompact()
      */
     public int getActualUsedBitsPerValue() {
-        int maxValue = 0;
-        for (int i = 0; i < length; i++) {
-            maxValue = Math.max(maxValue, getRaw(i));
-        }
-        return calculateBitsRequired(maxValue);
+        if (packedBits == null)
+            return 0;
+        // OR-ing all values together yields the same highest set bit as the max value would
+        return calculateBitsRequired(orRaw(packedBits, packingStrategy, bitsPerValue, length));
     }
 
     /** The minimum bits per value used to store data. {@link #compact()} will respect this setting. */
@@ -504,21 +585,22 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
     private int getRaw(int index) {
         if (index < 0 || index >= length)
             throw new IndexOutOfBoundsException();
+        if (packedBits == null)
+            return 0;
+        final long mask = (1L << bitsPerValue) - 1;
         if (packingStrategy == PackingStrategy.NO_SPLIT_VALUES_ACROSS_LONGS) {
             int longIndex = index / noSplitIndicesPerLong;
-            int startBit = (index % noSplitIndicesPerLong) * bitsPerValue;
-            return (int) bitRange(packedBits[longIndex], startBit, startBit + bitsPerValue);
+            int startBit = (index - longIndex * noSplitIndicesPerLong) * bitsPerValue;
+            return (int) ((packedBits[longIndex] >>> startBit) & mask);
         } else {
-            double floatingIndex = index / splitIndicesPerLong;
-            int longIndex = (int) floatingIndex;
-            int startBit = (int) ((floatingIndex - longIndex) * 64D);
+            long bitIndex = (long) index * bitsPerValue;
+            int longIndex = (int) (bitIndex >>> 6);
+            int startBit = (int) (bitIndex & 63);
+            long value = packedBits[longIndex] >>> startBit;
             if (startBit + bitsPerValue > 64) {
-                long prev = bitRange(packedBits[longIndex], startBit, 64);
-                long next = bitRange(packedBits[longIndex + 1], 0, startBit + bitsPerValue - 64);
-                return (int) ((next << 64 - startBit) + prev);
-            } else {
-                return (int) bitRange(packedBits[longIndex], startBit, startBit + bitsPerValue);
+                value |= packedBits[longIndex + 1] << (64 - startBit);
             }
+            return (int) (value & mask);
         }
     }
 
@@ -544,20 +626,100 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
         if (rawValue > currentMaxPackableValue) {
             resize(calculateBitsRequired(rawValue), packingStrategy);
         }
+        if (packedBits == null && rawValue == 0)
+            return;
+        mutableBits();
         if (packingStrategy == PackingStrategy.NO_SPLIT_VALUES_ACROSS_LONGS) {
             setNoSplitIndices(index, rawValue, noSplitIndicesPerLong, bitsPerValue, packedBits);
         } else {
-            setSplitIndices(index, rawValue, splitIndicesPerLong, bitsPerValue, packedBits);
+            setSplitIndices(index, rawValue, bitsPerValue, packedBits);
         }
     }
 
-    /** Sets all values to the zero value and shrinks the longs array if appropriate and if autoShrink is true. */
+    /**
+     * Assigns the given value to each index in the range [fromIndex, toIndex). Whole longs are written at once
+     * where the range covers them, only partially covered longs at the ends of the range are bit-masked.
+     * @param fromIndex inclusive
+     * @param toIndex exclusive
+     * @throws IndexOutOfBoundsException if fromIndex &lt; 0, toIndex &gt; {@link #length} or fromIndex &gt; toIndex
+     * @throws IllegalArgumentException if value is LT {@link #getValueOffset()}
+     */
+    public void fill(int fromIndex, int toIndex, int value) {
+        if (fromIndex < 0 || toIndex > length || fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("fromIndex " + fromIndex + ", toIndex " + toIndex + ", length " + length);
+        final int rawValue = value - valueOffset;
+        if (rawValue < 0)
+            throw new IllegalArgumentException("value must be GE " + valueOffset);
+        if (fromIndex == toIndex || (rawValue == 0 && packedBits == null))
+            return;
+        if (rawValue == 0 && fromIndex == 0 && toIndex == length) {
+            deflate();
+            return;
+        }
+        if (rawValue > currentMaxPackableValue) {
+            resize(calculateBitsRequired(rawValue), packingStrategy);
+        }
+        mutableBits();
+        if (!isWordAligned(packingStrategy, bitsPerValue)) {
+            for (int i = fromIndex; i < toIndex; i++) {
+                setSplitIndices(i, rawValue, bitsPerValue, packedBits);
+            }
+            return;
+        }
+        fillAligned(packedBits, bitsPerValue, fromIndex, toIndex, rawValue);
+    }
+
+    /**
+     * Copies count values from the source, which must be a different instance with the same packing strategy,
+     * bits per value and value offset, without decoding them. Whole longs are copied where the source and
+     * destination ranges sit at the same position within their longs, the remaining values one at a time.
+     * @throws IllegalArgumentException if the source is this instance or its packing differs from this one.
+     * @throws IndexOutOfBoundsException if either range is not within bounds.
+     */
+    void copyPackedFrom(LongArrayTagPackedIntegers source, int sourceIndex, int index, int count) {
+        ArgValidator.check(source != this, "source must not be this instance");
+        ArgValidator.check(source.packingStrategy == packingStrategy && source.bitsPerValue == bitsPerValue
+                && source.valueOffset == valueOffset, "source packing must match");
+        if (sourceIndex < 0 || index < 0 || count < 0 || sourceIndex + count > source.length || index + count > length)
+            throw new IndexOutOfBoundsException();
+        if (count == 0 || (source.packedBits == null && packedBits == null))
+            return;
+        if (sourceIndex == 0 && index == 0 && count == length && source.length == length) {
+            if (source.packedBits == null) {
+                deflate();
+            } else {
+                System.arraycopy(source.packedBits, 0, mutableBits(), 0, packedBits.length);
+            }
+            return;
+        }
+        int i = 0;
+        if (source.packedBits != null && isWordAligned(packingStrategy, bitsPerValue)) {
+            final int valuesPerLong = 64 / bitsPerValue;
+            if (sourceIndex % valuesPerLong == index % valuesPerLong) {
+                final int head = Math.min(count, (valuesPerLong - index % valuesPerLong) % valuesPerLong);
+                for (; i < head; i++) {
+                    setRaw(index + i, source.getRaw(sourceIndex + i));
+                }
+                final int words = (count - i) / valuesPerLong;
+                System.arraycopy(source.packedBits, (sourceIndex + i) / valuesPerLong,
+                        mutableBits(), (index + i) / valuesPerLong, words);
+                i += words * valuesPerLong;
+            }
+        }
+        for (; i < count; i++) {
+            setRaw(index + i, source.getRaw(sourceIndex + i));
+        }
+    }
+
+    /**
+     * Sets all values to the zero value and shrinks the bits per value to {@link #getMinBitsPerValue()} if
+     * autoShrink is true. The long[] is released, after this call this instance {@link #isUniform() is uniform}.
+     */
     public void clear(boolean autoShrink) {
-        if (!autoShrink || bitsPerValue == minBitsPerValue) {
-            Arrays.fill(packedBits, 0L);
-        } else {
-            reallocateCapacity(minBitsPerValue);
+        if (autoShrink && bitsPerValue != minBitsPerValue) {
+            setPacking(minBitsPerValue, packingStrategy);
         }
+        deflate();
     }
 
     /**
@@ -566,21 +728,12 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
      * <p>WARNING: does NOT enforce minBitsPerValue!</p>
      */
     private void reallocateCapacity(int requiredBitsPerValue) {
-        if (bitsPerValue == requiredBitsPerValue)
+        if (bitsPerValue == requiredBitsPerValue) {
+            mutableBits();
             return;
-        bitsPerValue = requiredBitsPerValue;
-        if (packingStrategy == PackingStrategy.NO_SPLIT_VALUES_ACROSS_LONGS) {
-            final int newLength = (int) Math.ceil(length / (double) (64 / bitsPerValue));
-            packedBitsTag.setValue(packedBits = new long[newLength]);
-            noSplitIndicesPerLong = 64 / bitsPerValue;
-            splitIndicesPerLong = 0;
-        } else {
-            final int newLength = (int) Math.ceil((bitsPerValue * length) / 64d);
-            packedBitsTag.setValue(packedBits = new long[newLength]);
-            splitIndicesPerLong = 64D / bitsPerValue;
-            noSplitIndicesPerLong = 0;
         }
-        currentMaxPackableValue = (1 << bitsPerValue) - 1;
+        setPacking(requiredBitsPerValue, packingStrategy);
+        packedBitsTag.setValue(packedBits = new long[longsRequired(packingStrategy, bitsPerValue, length)]);
     }
 
     /** True if the given value is found in the current set of values. */
@@ -588,13 +741,9 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
         value -= valueOffset;
         if (value < 0 || value > currentMaxPackableValue)
             return false;
-
-        for (int i = 0; i < length; i++) {
-            if (value == getRaw(i)) {
-                return true;
-            }
-        }
-        return false;
+        if (packedBits == null)
+            return value == 0;
+        return countRaw(packedBits, packingStrategy, bitsPerValue, length, value, true) > 0;
     }
 
     /** Counts the number of occurrences of the given value. */
@@ -602,20 +751,141 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
         value -= valueOffset;
         if (value < 0 || value > currentMaxPackableValue)
             return 0;
-        int count = 0;
+        if (packedBits == null)
+            return value == 0 ? length : 0;
+        return countRaw(packedBits, packingStrategy, bitsPerValue, length, value, false);
+    }
+
+    /**
+     * Adds the number of occurrences of each value to histogram, which is indexed by value minus
+     * {@link #getValueOffset()}. Values which fall outside the histogram are not counted, but they are
+     * reflected in the return value.
+     * @param histogram counts are added to, not assigned to, the existing entries.
+     * @return the largest value found.
+     */
+    public int histogram(int[] histogram) {
+        ArgValidator.requireValue(histogram);
+        if (packedBits == null) {
+            if (histogram.length > 0)
+                histogram[0] += length;
+            return valueOffset;
+        }
+        return histogramRaw(packedBits, packingStrategy, bitsPerValue, length, histogram) + valueOffset;
+    }
+
+    /**
+     * Visits every run of equal consecutive values in index order. Whole longs holding a single repeated value are
+     * consumed without decoding their individual values, making this considerably faster than iterating indices
+     * for data with long runs. Does not allocate.
+     */
+    public void forEachRun(RunConsumer consumer) {
+        ArgValidator.requireValue(consumer);
+        if (packedBits == null) {
+            consumer.accept(valueOffset, 0, length);
+        } else if (isWordAligned(packingStrategy, bitsPerValue)) {
+            forEachRunAligned(packedBits, bitsPerValue, length, valueOffset, consumer);
+        } else {
+            int runValue = getRaw(0);
+            int runStart = 0;
+            for (int i = 1; i < length; i++) {
+                final int v = getRaw(i);
+                if (v != runValue) {
+                    consumer.accept(runValue + valueOffset, runStart, i - runStart);
+                    runValue = v;
+                    runStart = i;
+                }
+            }
+            consumer.accept(runValue + valueOffset, runStart, length - runStart);
+        }
+    }
+
+    /**
+     * Gets the exclusive end index of the run of equal consecutive values which contains the given index. Whole longs
+     * holding a single repeated value are skipped without decoding their individual values.
+     * @throws IndexOutOfBoundsException if the index is out of range (index &lt; 0 || index &gt;= length)
+     */
+    public int runEnd(int index) {
+        final int rawValue = getRaw(index);
+        if (packedBits == null)
+            return length;
+        if (isWordAligned(packingStrategy, bitsPerValue))
+            return runEndAligned(packedBits, bitsPerValue, length, index, rawValue);
+        int i = index + 1;
+        while (i < length && getRaw(i) == rawValue) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Passes each index holding the given value to the consumer, in index order. Longs which do not contain
+     * the value are skipped without decoding their individual values. Does not allocate.
+     */
+    public void forEachIndexOf(int value, IntConsumer consumer) {
+        ArgValidator.requireValue(consumer);
+        value -= valueOffset;
+        if (value < 0 || value > currentMaxPackableValue)
+            return;
+        if (packedBits == null) {
+            if (value == 0) {
+                for (int i = 0; i < length; i++) {
+                    consumer.accept(i);
+                }
+            }
+        } else if (isWordAligned(packingStrategy, bitsPerValue)) {
+            forEachIndexOfAligned(packedBits, bitsPerValue, length, value, consumer);
+        } else {
+            for (int i = 0; i < length; i++) {
+                if (getRaw(i) == value) {
+                    consumer.accept(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds every index whose value differs between this and the other instance. When both instances use the same
+     * packing, longs are compared whole and only those which differ are inspected, so the cost is mostly
+     * proportional to the number of changed longs. Two {@link #isUniform() uniform} instances are compared without
+     * any long[].
+     * @return indices of the differing values, empty if there are none.
+     * @throws IllegalArgumentException if the lengths differ.
+     */
+    public BitSet diff(LongArrayTagPackedIntegers other) {
+        ArgValidator.requireValue(other, "other");
+        ArgValidator.check(length == other.length, "lengths must match");
+        final BitSet changed = new BitSet(length);
+        final boolean sameLayout = valueOffset == other.valueOffset && bitsPerValue == other.bitsPerValue
+                && packingStrategy == other.packingStrategy;
+        if (packedBits == other.packedBits && (sameLayout || packedBits == null)) {
+            if (valueOffset != other.valueOffset)
+                changed.set(0, length);
+            return changed;
+        }
+        if (sameLayout && packedBits != null && other.packedBits != null
+                && isWordAligned(packingStrategy, bitsPerValue)) {
+            diffAligned(packedBits, other.packedBits, bitsPerValue, length, changed);
+            return changed;
+        }
+        final int[] mine = new int[length];
+        final int[] theirs = new int[length];
+        decode(mine, 0, valueOffset);
+        other.decode(theirs, 0, other.valueOffset);
         for (int i = 0; i < length; i++) {
-            if (value == getRaw(i)) {
-                count ++;
+            if (mine[i] != theirs[i]) {
+                changed.set(i);
             }
         }
-        return count;
+        return changed;
     }
 
     /** Counts the number of times the given tester returns true while being passed the entire set of values. */
     public int count(IntPredicate tester) {
+        if (packedBits == null)
+            return tester.test(valueOffset) ? length : 0;
         int count = 0;
-        for (int i = 0; i < length; i++) {
-            if (tester.test(get(i))) {
+        for (int v : toArray()) {
+            if (tester.test(v)) {
                 count ++;
             }
         }
@@ -628,7 +898,14 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
      * determining the result.
      */
     public boolean allMatch(int value) {
-        return length == count(value);
+        value -= valueOffset;
+        if (value < 0 || value > currentMaxPackableValue)
+            return false;
+        if (packedBits == null)
+            return value == 0;
+        if (isWordAligned(packingStrategy, bitsPerValue))
+            return allMatchAligned(packedBits, bitsPerValue, length, value);
+        return length == countRaw(packedBits, packingStrategy, bitsPerValue, length, value, false);
     }
 
     /**
@@ -651,10 +928,26 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
             throw new IllegalArgumentException("oldValue must be GE " + valueOffset);
         if (newValue < 0)
             throw new IllegalArgumentException("newValue must be GE " + valueOffset);
-        for (int i = 0; i < length; i++) {
-            int v = getRaw(i);
-            if (v == oldValue) {
-                setRaw(i, newValue);
+        if (oldValue > currentMaxPackableValue)
+            return;
+        if (packedBits == null) {
+            if (oldValue == 0)
+                fill(0, length, newValue + valueOffset);
+            return;
+        }
+        if (newValue > currentMaxPackableValue) {
+            if (countRaw(packedBits, packingStrategy, bitsPerValue, length, oldValue, true) == 0)
+                return;
+            resize(calculateBitsRequired(newValue), packingStrategy);
+        }
+        mutableBits();
+        if (isWordAligned(packingStrategy, bitsPerValue)) {
+            replaceAligned(packedBits, bitsPerValue, length, oldValue, newValue);
+        } else {
+            for (int i = 0; i < length; i++) {
+                if (getRaw(i) == oldValue) {
+                    setSplitIndices(i, newValue, bitsPerValue, packedBits);
+                }
             }
         }
     }
@@ -666,15 +959,79 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
      */
     public void remap(RemapFunction remapFunction) {
         ArgValidator.requireValue(remapFunction);
+        if (packedBits == null) {
+            int newOffsetValue = remapFunction.remap(valueOffset);
+            if (newOffsetValue < valueOffset)
+                throw new IllegalArgumentException("remapped value must be GE " + valueOffset);
+            fill(0, length, newOffsetValue);
+            return;
+        }
+        final int[] values = toArray();
+        int maxRaw = 0;
         for (int i = 0; i < length; i++) {
-            int oldOffsetValue = get(i);
-            int newOffsetValue = remapFunction.remap(oldOffsetValue);
+            int newOffsetValue = remapFunction.remap(values[i]);
             if (newOffsetValue < valueOffset)
                 throw new IllegalArgumentException("remapped value must be GE " + valueOffset);
-            if (oldOffsetValue != newOffsetValue) {
-                set(i, newOffsetValue);
+            values[i] = newOffsetValue - valueOffset;
+            maxRaw = Math.max(maxRaw, values[i]);
+        }
+        repackRaw(values, maxRaw);
+    }
+
+    /**
+     * Remaps all values using a lookup table. Each value {@code v} is replaced by
+     * {@code remapTable[v - getValueOffset()]}, values which fall outside of the table are left unchanged.
+     * <p>This is considerably faster than the other remap variants as no boxing or function calls are involved
+     * and, when the remapped values fit the current bits per value, the longs are rewritten in place.</p>
+     * @param remapTable remapping table, indexed by value minus {@link #getValueOffset()}.
+     * @throws IllegalArgumentException if any table entry is LT {@link #getValueOffset()}.
+     */
+    public void remap(int[] remapTable) {
+        ArgValidator.requireValue(remapTable);
+        final int[] rawTable = new int[Math.min(remapTable.length, currentMaxPackableValue + 1)];
+        int maxRaw = 0;
+        for (int i = 0; i < rawTable.length; i++) {
+            if (remapTable[i] < valueOffset)
+                throw new IllegalArgumentException("remapped value must be GE " + valueOffset);
+            rawTable[i] = remapTable[i] - valueOffset;
+            maxRaw = Math.max(maxRaw, rawTable[i]);
+        }
+        if (packedBits == null) {
+            if (rawTable.length > 0)
+                fill(0, length, rawTable[0] + valueOffset);
+            return;
+        }
+        if (maxRaw <= currentMaxPackableValue && isWordAligned(packingStrategy, bitsPerValue)) {
+            remapAligned(mutableBits(), bitsPerValue, length, rawTable);
+            return;
+        }
+        final int[] values = new int[length];
+        decode(values, 0, 0);
+        maxRaw = 0;
+        for (int i = 0; i < length; i++) {
+            int v = values[i];
+            if (v < rawTable.length) {
+                values[i] = v = rawTable[v];
             }
+            maxRaw = Math.max(maxRaw, v);
+        }
+        repackRaw(values, maxRaw);
+    }
+
+    /**
+     * Packs the given raw values (offset already removed) growing, but never shrinking, bits per value as needed.
+     */
+    private void repackRaw(int[] rawValues, int maxRaw) {
+        if (maxRaw == 0) {
+            deflate();
+            return;
         }
+        if (maxRaw > currentMaxPackableValue) {
+            reallocateCapacity(calculateBitsRequired(maxRaw));
+        } else {
+            mutableBits();
+        }
+        pack(rawValues, 0, 0, length, packingStrategy, bitsPerValue, packedBits);
     }
 
     /**
@@ -701,43 +1058,63 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
      * @return tag containing long[]
      */
     public LongArrayTag compact() {
+        compactValues();
+        return getHandle();
+    }
+
+    /** Same as {@link #compact()} but does not allocate the long[] if uniform. */
+    void compactValues() {
         resize(getActualUsedBitsPerValue(), packingStrategy);
-        return packedBitsTag;
     }
 
-    /** Creates a new int[] and populates it by calling {@link #get(int)} successively. */
+    /** Creates a new int[] and populates it with all values. */
     public int[] toArray() {
         int[] values = new int[length];
-        for (int i = 0; i < length; i++) {
-            values[i] = get(i);
-        }
+        decode(values, 0, valueOffset);
         return values;
     }
 
     /**
-     * Populates the given array by calling {@link #get(int)} successively.
+     * Populates the given array with all values.
      * @param array must be exactly {@link #length} in size.
      * @return the same array that was passed as an argument.
      */
     public int[] toArray(int[] array) {
         ArgValidator.check(array.length == length,
                 String.format("Expected array to be of length %d but it was %d", length, array.length));
-        for (int i = 0; i < length; i++) {
-            array[i] = get(i);
-        }
+        decode(array, 0, valueOffset);
         return array;
     }
 
     /**
-     * Populates the given array from startIndex by calling {@link #get(int)} successively.
+     * Populates the given array, from startIndex, with all values.
      * @param array receives values from startIndex to startIndex + capacity - 1
      * @param startIndex the index to start copying values into.
      * @return the same array that was passed as an argument.
      */
     public int[] toArray(int[] array, int startIndex) {
         ArgValidator.check(startIndex >= 0 && (startIndex + length) <= array.length);
-        for (int i = 0; i < length; i++) {
-            array[i + startIndex] = get(i);
+        decode(array, startIndex, valueOffset);
+        return array;
+    }
+
+    /**
+     * Populates the given array, from startIndex, with all values. Halves the memory of the int[] variants
+     * and is intended for palette indices which never exceed {@link Short#MAX_VALUE}.
+     * @param array receives values from startIndex to startIndex + capacity - 1
+     * @param startIndex the index to start copying values into.
+     * @return the same array that was passed as an argument.
+     * @throws IllegalStateException if the current value range cannot be represented as shorts.
+     */
+    public short[] toArray(short[] array, int startIndex) {
+        ArgValidator.check(startIndex >= 0 && (startIndex + length) <= array.length);
+        if (valueOffset < Short.MIN_VALUE || (long) currentMaxPackableValue + valueOffset > Short.MAX_VALUE)
+            throw new IllegalStateException("values in range [" + valueOffset + ".." + getCurrentMaxPackableValue()
+                    + "] cannot be represented as shorts");
+        if (packedBits == null) {
+            Arrays.fill(array, startIndex, startIndex + length, (short) valueOffset);
+        } else {
+            unpack(packedBits, packingStrategy, bitsPerValue, length, array, startIndex, (short) valueOffset);
         }
         return array;
     }
@@ -758,8 +1135,7 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
 
     /**
      * Resizes the long[] to exactly hold the range of values given, respecting {@link #getMinBitsPerValue()},
-     * checks that all values are in the allowed range (GE {@link #getValueOffset()}), then calls {@link #set}
-     * successively for each value.
+     * checks that all values are in the allowed range (GE {@link #getValueOffset()}), then packs all values.
      * <p>There is never a need to call {@link #compact()} immediately following this call.</p>
      * @param values must be at least {@link #length} in size.
      * @param startIndex the index to start copying values from.
@@ -776,10 +1152,13 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
                                 "(minimum allowed value) of %d", v, valueOffset));
             maxVal = Math.max(maxVal, v);
         }
-        reallocateCapacity(Math.max(minBitsPerValue, calculateBitsRequired(maxVal - valueOffset)));
-        for (int i = 0; i < length; i++) {
-            set(i, values[i + startIndex]);
+        if (maxVal == valueOffset) {
+            setPacking(minBitsPerValue, packingStrategy);
+            deflate();
+            return;
         }
+        reallocateCapacity(Math.max(minBitsPerValue, calculateBitsRequired(maxVal - valueOffset)));
+        pack(values, startIndex, valueOffset, length, packingStrategy, bitsPerValue, packedBits);
     }
 
     @Override
@@ -871,8 +1250,12 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
      * @return given digest.
      */
     public MessageDigest accumulateChecksum(MessageDigest digest) {
-        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * longs().length);
-        for (long l : longs()) {
+        if (packedBits == null) {
+            digest.update(new byte[Long.BYTES * longsRequired(packingStrategy, bitsPerValue, length)]);
+            return digest;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * packedBits.length);
+        for (long l : packedBits) {
             buffer.putLong(l);
         }
         buffer.position(0);
@@ -886,10 +1269,10 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
         packedBits[blockStatesIndex] = updateBits(packedBits[blockStatesIndex], value, startBit, startBit + bitsPerValue);
     }
 
-    static void setSplitIndices(int index, int value, double splitIndicesPerLong, int bitsPerValue, long[] packedBits) {
-        double floatingIndex = index / splitIndicesPerLong;
-        int longIndex = (int) floatingIndex;
-        int startBit = (int) ((floatingIndex - longIndex) * 64D);
+    static void setSplitIndices(int index, int value, int bitsPerValue, long[] packedBits) {
+        long bitIndex = (long) index * bitsPerValue;
+        int longIndex = (int) (bitIndex >>> 6);
+        int startBit = (int) (bitIndex & 63);
         if (startBit + bitsPerValue > 64) {
             packedBits[longIndex] = updateBits(packedBits[longIndex], value, startBit, 64);
             packedBits[longIndex + 1] = updateBits(packedBits[longIndex + 1], value, startBit - 64, startBit + bitsPerValue - 64);
@@ -908,45 +1291,551 @@ public class LongArrayTagPackedIntegers implements TagWrapper<LongArrayTag>, Ite
         if (newBitsPerValue == bitsPerValue && newPackingStrategy == packingStrategy)
             return;
 
-        final int newMaxValidValue = (int) Math.pow(2, newBitsPerValue) - 1;
-        if (newPackingStrategy == PackingStrategy.NO_SPLIT_VALUES_ACROSS_LONGS) {
-            final int newLength = (int) Math.ceil(length / (double) (64 / newBitsPerValue));
-            final long[] newLongs = new long[newLength];
-            final int newNoSplitIndicesPerLong = 64 / newBitsPerValue;
-
-            for (int i = 0; i < length; i++) {
-                int value = getRaw(i);
+        if (packedBits == null) {
+            setPacking(newBitsPerValue, newPackingStrategy);
+            return;
+        }
+        final int[] values = new int[length];
+        unpack(packedBits, packingStrategy, bitsPerValue, length, values, 0, 0);
+        if (newBitsPerValue < bitsPerValue) {
+            final int newMaxValidValue = (1 << newBitsPerValue) - 1;
+            for (int value : values) {
                 if (value > newMaxValidValue) {
                     throw new IllegalArgumentException(
-                            "newBitsPerValue is too small to hold existing value " + value + valueOffset);
+                            "newBitsPerValue is too small to hold existing value " + (value + valueOffset));
                 }
-                setNoSplitIndices(i, value, newNoSplitIndicesPerLong, newBitsPerValue, newLongs);
             }
-            noSplitIndicesPerLong = newNoSplitIndicesPerLong;
-            splitIndicesPerLong = 0;
-            packedBits = newLongs;
+        }
+        packedBits = new long[longsRequired(newPackingStrategy, newBitsPerValue, length)];
+        pack(values, 0, 0, length, newPackingStrategy, newBitsPerValue, packedBits);
+        setPacking(newBitsPerValue, newPackingStrategy);
+        packedBitsTag.setValue(packedBits);
+    }
+
+    // <editor-fold desc="Bulk kernels" defaultstate="collapsed">
+    // The bulk kernels below operate on raw values (valueOffset removed) and walk the long[] word by word using
+    // only integer math. Bit widths which evenly divide 64 produce the exact same layout under both packing
+    // strategies so those are always handled by the (simpler and faster) word aligned kernels.
+
+    /** Number of longs required to hold length values of the given bit width. */
+    static int longsRequired(PackingStrategy packingStrategy, int bitsPerValue, int length) {
+        if (packingStrategy == PackingStrategy.NO_SPLIT_VALUES_ACROSS_LONGS) {
+            final int valuesPerLong = 64 / bitsPerValue;
+            return (length + valuesPerLong - 1) / valuesPerLong;
+        }
+        return (int) (((long) bitsPerValue * length + 63) >>> 6);
+    }
+
+    /** True if no value straddles two longs. */
+    static boolean isWordAligned(PackingStrategy packingStrategy, int bitsPerValue) {
+        return packingStrategy == PackingStrategy.NO_SPLIT_VALUES_ACROSS_LONGS || (64 % bitsPerValue) == 0;
+    }
+
+    /** Decodes length values from words into dst starting at dstOffset, adding addend to each value. */
+    static void unpack(long[] words, PackingStrategy packingStrategy, int bitsPerValue, int length,
+                       int[] dst, int dstOffset, int addend) {
+        if (!isWordAligned(packingStrategy, bitsPerValue)) {
+            unpackSplit(words, bitsPerValue, length, dst, dstOffset, addend);
+        } else if (bitsPerValue == 4) {
+            unpack4(words, length, dst, dstOffset, addend);
+        } else if (bitsPerValue == 8) {
+            unpack8(words, length, dst, dstOffset, addend);
         } else {
-            final int newLength = (int) Math.ceil((newBitsPerValue * length) / 64d);
-            final long[] newLongs = new long[newLength];
-            final double newSplitIndicesPerLong = 64D / newBitsPerValue;
+            unpackAligned(words, bitsPerValue, 0, length, dst, dstOffset, addend);
+        }
+    }
+
+    /** Decodes length values from words into dst starting at dstOffset, adding addend to each value. */
+    static void unpack(long[] words, PackingStrategy packingStrategy, int bitsPerValue, int length,
+                       short[] dst, int dstOffset, short addend) {
+        final long mask = (1L << bitsPerValue) - 1;
+        if (isWordAligned(packingStrategy, bitsPerValue)) {
+            final int valuesPerLong = 64 / bitsPerValue;
+            int i = 0;
+            for (int li = 0; i < length; li++) {
+                long word = words[li];
+                final int end = Math.min(length, i + valuesPerLong);
+                for (; i < end; i++, word >>>= bitsPerValue) {
+                    dst[dstOffset + i] = (short) ((word & mask) + addend);
+                }
+            }
+        } else {
+            int li = 0, bit = 0;
+            long word = words[0];
             for (int i = 0; i < length; i++) {
-                int value = getRaw(i);
-                if (value > newMaxValidValue) {
-                    throw new IllegalArgumentException(
-                            "newBitsPerValue is too small to hold existing value " + value + valueOffset);
+                long value = word >>> bit;
+                bit += bitsPerValue;
+                if (bit >= 64) {
+                    bit -= 64;
+                    if (++li < words.length) {
+                        word = words[li];
+                        if (bit > 0) value |= word << (bitsPerValue - bit);
+                    }
                 }
-                setSplitIndices(i, value, newSplitIndicesPerLong, newBitsPerValue, newLongs);
+                dst[dstOffset + i] = (short) ((value & mask) + addend);
+            }
+        }
+    }
+
+    /** Decodes values [from, length) of a word aligned layout. from must be a multiple of 64 / bitsPerValue. */
+    private static void unpackAligned(long[] words, int bitsPerValue, int from, int length,
+                                      int[] dst, int dstOffset, int addend) {
+        final int valuesPerLong = 64 / bitsPerValue;
+        final long mask = (1L << bitsPerValue) - 1;
+        int i = from;
+        for (int li = from / valuesPerLong; i < length; li++) {
+            long word = words[li];
+            final int end = Math.min(length, i + valuesPerLong);
+            for (; i < end; i++, word >>>= bitsPerValue) {
+                dst[dstOffset + i] = (int) (word & mask) + addend;
+            }
+        }
+    }
+
+    private static void unpack4(long[] words, int length, int[] dst, int dstOffset, int addend) {
+        final int fullWords = length >>> 4;
+        for (int li = 0; li < fullWords; li++) {
+            final long w = words[li];
+            final int o = dstOffset + (li << 4);
+            dst[o] = (int) (w & 0xF) + addend;
+            dst[o + 1] = (int) (w >>> 4 & 0xF) + addend;
+            dst[o + 2] = (int) (w >>> 8 & 0xF) + addend;
+            dst[o + 3] = (int) (w >>> 12 & 0xF) + addend;
+            dst[o + 4] = (int) (w >>> 16 & 0xF) + addend;
+            dst[o + 5] = (int) (w >>> 20 & 0xF) + addend;
+            dst[o + 6] = (int) (w >>> 24 & 0xF) + addend;
+            dst[o + 7] = (int) (w >>> 28 & 0xF) + addend;
+            dst[o + 8] = (int) (w >>> 32 & 0xF) + addend;
+            dst[o + 9] = (int) (w >>> 36 & 0xF) + addend;
+            dst[o + 10] = (int) (w >>> 40 & 0xF) + addend;
+            dst[o + 11] = (int) (w >>> 44 & 0xF) + addend;
+            dst[o + 12] = (int) (w >>> 48 & 0xF) + addend;
+            dst[o + 13] = (int) (w >>> 52 & 0xF) + addend;
+            dst[o + 14] = (int) (w >>> 56 & 0xF) + addend;
+            dst[o + 15] = (int) (w >>> 60) + addend;
+        }
+        if ((length & 15) != 0) {
+            unpackAligned(words, 4, fullWords << 4, length, dst, dstOffset, addend);
+        }
+    }
+
+    private static void unpack8(long[] words, int length, int[] dst, int dstOffset, int addend) {
+        final int fullWords = length >>> 3;
+        for (int li = 0; li < fullWords; li++) {
+            final long w = words[li];
+            final int o = dstOffset + (li << 3);
+            dst[o] = (int) (w & 0xFF) + addend;
+            dst[o + 1] = (int) (w >>> 8 & 0xFF) + addend;
+            dst[o + 2] = (int) (w >>> 16 & 0xFF) + addend;
+            dst[o + 3] = (int) (w >>> 24 & 0xFF) + addend;
+            dst[o + 4] = (int) (w >>> 32 & 0xFF) + addend;
+            dst[o + 5] = (int) (w >>> 40 & 0xFF) + addend;
+            dst[o + 6] = (int) (w >>> 48 & 0xFF) + addend;
+            dst[o + 7] = (int) (w >>> 56) + addend;
+        }
+        if ((length & 7) != 0) {
+            unpackAligned(words, 8, fullWords << 3, length, dst, dstOffset, addend);
+        }
+    }
+
+    private static void unpackSplit(long[] words, int bitsPerValue, int length, int[] dst, int dstOffset, int addend) {
+        final long mask = (1L << bitsPerValue) - 1;
+        int li = 0, bit = 0;
+        long word = words[0];
+        for (int i = 0; i < length; i++) {
+            long value = word >>> bit;
+            bit += bitsPerValue;
+            if (bit >= 64) {
+                bit -= 64;
+                if (++li < words.length) {
+                    word = words[li];
+                    // pick up the high bits of a value which straddles two longs
+                    if (bit > 0) value |= word << (bitsPerValue - bit);
+                }
+            }
+            dst[dstOffset + i] = (int) (value & mask) + addend;
+        }
+    }
+
+    /**
+     * Encodes length values from src, starting at srcOffset, into words after subtracting subtrahend from each.
+     * Every long in words is overwritten. Values are not range checked!
+     */
+    static void pack(int[] src, int srcOffset, int subtrahend, int length,
+                     PackingStrategy packingStrategy, int bitsPerValue, long[] words) {
+        if (isWordAligned(packingStrategy, bitsPerValue)) {
+            final int valuesPerLong = 64 / bitsPerValue;
+            int i = 0;
+            int li = 0;
+            for (; i < length; li++) {
+                long word = 0;
+                final int end = Math.min(length, i + valuesPerLong);
+                for (int shift = 0; i < end; i++, shift += bitsPerValue) {
+                    word |= (long) (src[srcOffset + i] - subtrahend) << shift;
+                }
+                words[li] = word;
+            }
+            for (; li < words.length; li++) {
+                words[li] = 0;
+            }
+        } else {
+            int li = 0, bit = 0;
+            long word = 0;
+            for (int i = 0; i < length; i++) {
+                final long value = src[srcOffset + i] - subtrahend;
+                word |= value << bit;
+                bit += bitsPerValue;
+                if (bit >= 64) {
+                    words[li++] = word;
+                    bit -= 64;
+                    // carry the high bits of a value which straddles two longs
+                    word = bit > 0 ? value >>> (bitsPerValue - bit) : 0;
+                }
+            }
+            for (; li < words.length; li++) {
+                words[li] = word;
+                word = 0;
             }
-            noSplitIndicesPerLong = 0;
-            splitIndicesPerLong = newSplitIndicesPerLong;
-            packedBits = newLongs;
         }
-        bitsPerValue = newBitsPerValue;
-        packingStrategy = newPackingStrategy;
-        packedBitsTag.setValue(packedBits);
-        currentMaxPackableValue = (1 << newBitsPerValue) - 1;
     }
 
+    /** Bitwise OR of all raw values. */
+    static int orRaw(long[] words, PackingStrategy packingStrategy, int bitsPerValue, int length) {
+        if (!isWordAligned(packingStrategy, bitsPerValue)) {
+            final int[] values = new int[length];
+            unpackSplit(words, bitsPerValue, length, values, 0, 0);
+            int acc = 0;
+            for (int v : values) acc |= v;
+            return acc;
+        }
+        // all fields occupy the same bit positions in every long so OR the longs first, then the fields
+        final int valuesPerLong = 64 / bitsPerValue;
+        final int fullWords = length / valuesPerLong;
+        final long mask = (1L << bitsPerValue) - 1;
+        long accWord = 0;
+        for (int li = 0; li < fullWords; li++) {
+            accWord |= words[li];
+        }
+        int acc = 0;
+        for (int j = 0; j < valuesPerLong; j++, accWord >>>= bitsPerValue) {
+            acc |= (int) (accWord & mask);
+        }
+        long tail = fullWords < words.length ? words[fullWords] : 0;
+        for (int j = fullWords * valuesPerLong; j < length; j++, tail >>>= bitsPerValue) {
+            acc |= (int) (tail & mask);
+        }
+        return acc;
+    }
+
+    /** Counts occurrences of the given raw value, if stopAtFirst is true returns 0 or 1. */
+    static int countRaw(long[] words, PackingStrategy packingStrategy, int bitsPerValue, int length,
+                        int rawValue, boolean stopAtFirst) {
+        final long mask = (1L << bitsPerValue) - 1;
+        int count = 0;
+        if (isWordAligned(packingStrategy, bitsPerValue)) {
+            // SWAR - all fields of a long are tested at once, see nonZeroFields
+            final int valuesPerLong = 64 / bitsPerValue;
+            final long ones = fieldOnes(bitsPerValue);
+            final long highBits = ones << (bitsPerValue - 1);
+            final long lowBits = highBits - ones;
+            final long pattern = rawValue * ones;
+            final int fullWords = length / valuesPerLong;
+            for (int li = 0; li < fullWords; li++) {
+                final long matches = ~nonZeroFields(words[li] ^ pattern, lowBits, highBits) & highBits;
+                if (matches != 0) {
+                    if (stopAtFirst) return 1;
+                    count += Long.bitCount(matches);
+                }
+            }
+            final int tailFields = length - fullWords * valuesPerLong;
+            if (tailFields > 0) {
+                final long matches = ~nonZeroFields(words[fullWords] ^ pattern, lowBits, highBits)
+                        & highBits & fieldMask(bitsPerValue, 0, tailFields);
+                if (matches != 0) {
+                    if (stopAtFirst) return 1;
+                    count += Long.bitCount(matches);
+                }
+            }
+        } else {
+            int li = 0, bit = 0;
+            long word = words[0];
+            for (int i = 0; i < length; i++) {
+                long value = word >>> bit;
+                bit += bitsPerValue;
+                if (bit >= 64) {
+                    bit -= 64;
+                    if (++li < words.length) {
+                        word = words[li];
+                        if (bit > 0) value |= word << (bitsPerValue - bit);
+                    }
+                }
+                if ((value & mask) == rawValue) {
+                    if (stopAtFirst) return 1;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Fills raw values [fromIndex, toIndex) of a word aligned layout. */
+    static void fillAligned(long[] words, int bitsPerValue, int fromIndex, int toIndex, int rawValue) {
+        final int valuesPerLong = 64 / bitsPerValue;
+        long pattern = 0;
+        for (int j = 0, shift = 0; j < valuesPerLong; j++, shift += bitsPerValue) {
+            pattern |= (long) rawValue << shift;
+        }
+        int li = fromIndex / valuesPerLong;
+        final int headField = fromIndex - li * valuesPerLong;
+        if (headField != 0) {
+            final int endField = Math.min(toIndex - li * valuesPerLong, valuesPerLong);
+            final long m = fieldMask(bitsPerValue, headField, endField);
+            words[li] = (words[li] & ~m) | (pattern & m);
+            li++;
+        }
+        final int fullWordsEnd = toIndex / valuesPerLong;
+        for (; li < fullWordsEnd; li++) {
+            words[li] = pattern;
+        }
+        final int tailFields = toIndex - li * valuesPerLong;
+        if (tailFields > 0) {
+            final long m = fieldMask(bitsPerValue, 0, tailFields);
+            words[li] = (words[li] & ~m) | (pattern & m);
+        }
+    }
+
+    /** A long with the lowest bit of each of its fields set, multiply by a raw value to replicate it into every field. */
+    private static long fieldOnes(int bitsPerValue) {
+        long ones = 0;
+        for (int shift = 0; shift + bitsPerValue <= 64; shift += bitsPerValue) {
+            ones |= 1L << shift;
+        }
+        return ones;
+    }
+
+    /** See {@link #forEachRun(RunConsumer)}, word aligned layouts only. */
+    private static void forEachRunAligned(long[] words, int bitsPerValue, int length, int addend, RunConsumer consumer) {
+        final int valuesPerLong = 64 / bitsPerValue;
+        final long mask = (1L << bitsPerValue) - 1;
+        final long ones = fieldOnes(bitsPerValue);
+        int runValue = (int) (words[0] & mask);
+        long runPattern = runValue * ones;
+        int runStart = 0;
+        int index = 0;
+        for (int li = 0; index < length; li++) {
+            final long word = words[li];
+            final int fields = Math.min(valuesPerLong, length - index);
+            if (word == runPattern && fields == valuesPerLong) {
+                index += valuesPerLong;
+                continue;
+            }
+            for (int j = 0, shift = 0; j < fields; j++, shift += bitsPerValue, index++) {
+                final int v = (int) ((word >>> shift) & mask);
+                if (v != runValue) {
+                    consumer.accept(runValue + addend, runStart, index - runStart);
+                    runValue = v;
+                    runPattern = v * ones;
+                    runStart = index;
+                }
+            }
+        }
+        consumer.accept(runValue + addend, runStart, length - runStart);
+    }
+
+    /** See {@link #runEnd(int)}, word aligned layouts only. */
+    private static int runEndAligned(long[] words, int bitsPerValue, int length, int index, int rawValue) {
+        final int valuesPerLong = 64 / bitsPerValue;
+        final long mask = (1L << bitsPerValue) - 1;
+        final long pattern = rawValue * fieldOnes(bitsPerValue);
+        int i = index + 1;
+        while (i < length) {
+            final int li = i / valuesPerLong;
+            int field = i - li * valuesPerLong;
+            final long word = words[li];
+            if (field == 0 && word == pattern && i + valuesPerLong <= length) {
+                i += valuesPerLong;
+                continue;
+            }
+            for (; field < valuesPerLong && i < length; field++, i++) {
+                if (((word >>> (field * bitsPerValue)) & mask) != rawValue)
+                    return i;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * See {@link #forEachIndexOf(int, IntConsumer)}, word aligned layouts only. XOR-ing a long with the value
+     * replicated into every field zeroes the matching fields, which are then found for the whole long at once
+     * with {@link #nonZeroFields}.
+     */
+    private static void forEachIndexOfAligned(long[] words, int bitsPerValue, int length, int rawValue, IntConsumer consumer) {
+        final int valuesPerLong = 64 / bitsPerValue;
+        final long ones = fieldOnes(bitsPerValue);
+        final long highBits = ones << (bitsPerValue - 1);
+        final long lowBits = highBits - ones;  // every field bit except its high bit
+        final long pattern = rawValue * ones;
+        for (int li = 0, base = 0; base < length; li++, base += valuesPerLong) {
+            long matches = ~nonZeroFields(words[li] ^ pattern, lowBits, highBits) & highBits;
+            while (matches != 0) {
+                final int index = base + Long.numberOfTrailingZeros(matches) / bitsPerValue;
+                if (index >= length)
+                    return;
+                consumer.accept(index);
+                matches &= matches - 1;
+            }
+        }
+    }
+
+    /**
+     * Returns a long with the high bit of each field set iff that field of x is non-zero. Adding the low bits of a
+     * field to themselves carries into the field's high bit iff any of them is set, and fields cannot carry into
+     * their neighbours as their high bits are excluded.
+     * @param lowBits every field bit except the high bit of each field.
+     * @param highBits the high bit of each field.
+     */
+    private static long nonZeroFields(long x, long lowBits, long highBits) {
+        return (((x & lowBits) + lowBits) | x) & highBits;
+    }
+
+    /** See {@link #diff(LongArrayTagPackedIntegers)}, both arrays must have the same word aligned layout. */
+    private static void diffAligned(long[] a, long[] b, int bitsPerValue, int length, BitSet changed) {
+        final int valuesPerLong = 64 / bitsPerValue;
+        final long ones = fieldOnes(bitsPerValue);
+        final long highBits = ones << (bitsPerValue - 1);
+        final long lowBits = highBits - ones;
+        for (int li = 0, base = 0; base < length; li++, base += valuesPerLong) {
+            final long x = a[li] ^ b[li];
+            if (x == 0)
+                continue;
+            long differing = nonZeroFields(x, lowBits, highBits);
+            while (differing != 0) {
+                final int index = base + Long.numberOfTrailingZeros(differing) / bitsPerValue;
+                if (index >= length)
+                    return;
+                changed.set(index);
+                differing &= differing - 1;
+            }
+        }
+    }
+
+    /** Bit mask covering the fields [fromField, toField) of a long holding values of the given bit width. */
+    private static long fieldMask(int bitsPerValue, int fromField, int toField) {
+        final int width = (toField - fromField) * bitsPerValue;
+        return (width >= 64 ? -1L : (1L << width) - 1) << (fromField * bitsPerValue);
+    }
+
+    /** Adds raw value occurrence counts to histogram, ignoring values GE histogram.length. Returns the max raw value. */
+    static int histogramRaw(long[] words, PackingStrategy packingStrategy, int bitsPerValue, int length, int[] histogram) {
+        final long mask = (1L << bitsPerValue) - 1;
+        final int bound = histogram.length;
+        int max = 0;
+        if (isWordAligned(packingStrategy, bitsPerValue)) {
+            final int valuesPerLong = 64 / bitsPerValue;
+            final long ones = fieldOnes(bitsPerValue);
+            int i = 0;
+            for (int li = 0; i < length; li++) {
+                long word = words[li];
+                final int end = Math.min(length, i + valuesPerLong);
+                final int first = (int) (word & mask);
+                if (end - i == valuesPerLong && word == first * ones) {
+                    // a long holding a single repeated value, common in real terrain, is a single increment
+                    if (first < bound) histogram[first] += valuesPerLong;
+                    if (first > max) max = first;
+                    i = end;
+                    continue;
+                }
+                for (; i < end; i++, word >>>= bitsPerValue) {
+                    final int v = (int) (word & mask);
+                    if (v < bound) histogram[v]++;
+                    if (v > max) max = v;
+                }
+            }
+        } else {
+            int li = 0, bit = 0;
+            long word = words[0];
+            for (int i = 0; i < length; i++) {
+                long value = word >>> bit;
+                bit += bitsPerValue;
+                if (bit >= 64) {
+                    bit -= 64;
+                    if (++li < words.length) {
+                        word = words[li];
+                        if (bit > 0) value |= word << (bitsPerValue - bit);
+                    }
+                }
+                final int v = (int) (value & mask);
+                if (v < bound) histogram[v]++;
+                if (v > max) max = v;
+            }
+        }
+        return max;
+    }
+
+    /** In place replacement of raw values for word aligned layouts. */
+    private static void replaceAligned(long[] words, int bitsPerValue, int length, int oldRawValue, int newRawValue) {
+        // SWAR - matching fields are found for the whole long at once, see nonZeroFields, then widened from
+        // their high bit to a full field mask and flipped from the old to the new value
+        final int valuesPerLong = 64 / bitsPerValue;
+        final long mask = (1L << bitsPerValue) - 1;
+        final long ones = fieldOnes(bitsPerValue);
+        final long highBits = ones << (bitsPerValue - 1);
+        final long lowBits = highBits - ones;
+        final long oldPattern = oldRawValue * ones;
+        final long delta = ((long) newRawValue ^ oldRawValue) * ones;
+        for (int li = 0, base = 0; base < length; li++, base += valuesPerLong) {
+            final long word = words[li];
+            long matches = ~nonZeroFields(word ^ oldPattern, lowBits, highBits) & highBits;
+            if (length - base < valuesPerLong) {
+                matches &= fieldMask(bitsPerValue, 0, length - base);
+            }
+            if (matches != 0) {
+                words[li] = word ^ (((matches >>> (bitsPerValue - 1)) * mask) & delta);
+            }
+        }
+    }
+
+    /** True if every one of the first length values of a word aligned layout equals rawValue. */
+    private static boolean allMatchAligned(long[] words, int bitsPerValue, int length, int rawValue) {
+        final int valuesPerLong = 64 / bitsPerValue;
+        final long pattern = rawValue * fieldOnes(bitsPerValue);
+        final long fieldsMask = fieldMask(bitsPerValue, 0, valuesPerLong);  // excludes padding bits
+        final int fullWords = length / valuesPerLong;
+        for (int li = 0; li < fullWords; li++) {
+            if ((words[li] & fieldsMask) != pattern)
+                return false;
+        }
+        final int tailFields = length - fullWords * valuesPerLong;
+        if (tailFields > 0) {
+            final long m = fieldMask(bitsPerValue, 0, tailFields);
+            return (words[fullWords] & m) == (pattern & m);
+        }
+        return true;
+    }
+
+    /**
+     * In place remap of raw values for word aligned layouts. Values GE rawTable.length are left unchanged,
+     * all table entries must fit in bitsPerValue.
+     */
+    private static void remapAligned(long[] words, int bitsPerValue, int length, int[] rawTable) {
+        final int valuesPerLong = 64 / bitsPerValue;
+        final long mask = (1L << bitsPerValue) - 1;
+        int i = 0;
+        for (int li = 0; i < length; li++) {
+            final long word = words[li];
+            long remapped = word;
+            final int end = Math.min(length, i + valuesPerLong);
+            for (int shift = 0; i < end; i++, shift += bitsPerValue) {
+                final int v = (int) (word >>> shift & mask);
+                if (v < rawTable.length) {
+                    remapped = (remapped & ~(mask << shift)) | ((long) rawTable[v] << shift);
+                }
+            }
+            words[li] = remapped;
+        }
+    }
+    // </editor-fold>
+
     /** replace i to j bits in n with j - i bits of m */
     static long updateBits(long n, long m, int i, int j) {
         // updateBits(longs[longIndex], value, startBit, startBit + bits)
@@ -35,6 +35,10 @@ public class McaWorld implements Closeable {
     // TODO: use region/poi/entities abstraction chunk type (once one exists)
     private final Map<IntPointXZ, RandomAccessMcaFile<TerrainChunk>> regionCache = new HashMap<>();
     private final Map<IntPointXZ, TerrainChunk> chunkCache;
+    // Only populated while a byte budget is set, see setChunkCacheMaxBytes
+    private final Map<IntPointXZ, Long> chunkCacheWeights = new HashMap<>();
+    private long chunkCacheMaxBytes = Long.MAX_VALUE;
+    private long chunkCacheBytes;
     private long loadFlags = LoadFlags.LOAD_ALL_DATA;
 
     public McaWorld(String worldRootDir, String mode, int chunkCacheSize) throws FileNotFoundException {
@@ -48,8 +52,12 @@ public class McaWorld implements Closeable {
         chunkCache = new LinkedHashMap<>(16, 0.75F, true) {
             // This method is called just after a new entry has been added
             // Note access order = true is specified to the map ctor so this is an LRU
-            public boolean removeEldestEntry(Map.Entry eldest) {
-                return size() > chunkCacheSize;
+            public boolean removeEldestEntry(Map.Entry<IntPointXZ, TerrainChunk> eldest) {
+                if (size() > chunkCacheSize) {
+                    releaseChunkCacheWeight(eldest.getKey());
+                    return true;
+                }
+                return false;
             }
         };
     }
@@ -79,6 +87,61 @@ public class McaWorld implements Closeable {
         this.loadFlags = loadFlags;
     }
 
+    /**
+     * Limits the chunk cache by the {@link TerrainChunk#estimateRetainedBytes() estimated heap} the cached chunks
+     * retain, in addition to the entry count given to the constructor. Least recently used chunks are evicted
+     * until the cache fits (the most recently loaded chunk is always kept). Chunks are weighed when they are loaded,
+     * later edits to a cached chunk are not reflected in its weight.
+     * @param maxBytes byte budget, or {@link Long#MAX_VALUE} (the default) to only limit by entry count.
+     */
+    public void setChunkCacheMaxBytes(long maxBytes) {
+        ArgValidator.check(maxBytes > 0, "maxBytes must be > 0");
+        if (chunkCacheMaxBytes == Long.MAX_VALUE && maxBytes != Long.MAX_VALUE) {
+            for (Map.Entry<IntPointXZ, TerrainChunk> entry : chunkCache.entrySet()) {
+                weighChunk(entry.getKey(), entry.getValue());
+            }
+        }
+        chunkCacheMaxBytes = maxBytes;
+        if (maxBytes == Long.MAX_VALUE) {
+            chunkCacheWeights.clear();
+            chunkCacheBytes = 0;
+        } else {
+            trimChunkCache();
+        }
+    }
+
+    public long chunkCacheMaxBytes() {
+        return chunkCacheMaxBytes;
+    }
+
+    /**
+     * @return estimated heap retained by the cached chunks, as weighed when they were loaded - always 0 while no
+     * byte budget is set.
+     */
+    public long chunkCacheBytes() {
+        return chunkCacheBytes;
+    }
+
+    private void weighChunk(IntPointXZ chunkXZ, TerrainChunk chunk) {
+        final long weight = chunk != null ? chunk.estimateRetainedBytes() : 0;
+        final Long previous = chunkCacheWeights.put(chunkXZ, weight);
+        chunkCacheBytes += weight - (previous != null ? previous : 0);
+    }
+
+    private void releaseChunkCacheWeight(IntPointXZ chunkXZ) {
+        final Long weight = chunkCacheWeights.remove(chunkXZ);
+        if (weight != null) chunkCacheBytes -= weight;
+    }
+
+    private void trimChunkCache() {
+        Iterator<IntPointXZ> iter = chunkCache.keySet().iterator();
+        while (chunkCacheBytes > chunkCacheMaxBytes && chunkCache.size() > 1) {
+            IntPointXZ eldest = iter.next();
+            releaseChunkCacheWeight(eldest);
+            iter.remove();
+        }
+    }
+
     public boolean isReadonly() {
         return isReadonly;
     }
@@ -103,6 +166,8 @@ public class McaWorld implements Closeable {
     @Override
     public void close() throws IOException {
         chunkCache.clear();
+        chunkCacheWeights.clear();
+        chunkCacheBytes = 0;
         List<IOException> closeExceptions = new ArrayList<>();
         for (RandomAccessMcaFile<?> ramf : regionCache.values()) {
             try {
@@ -157,6 +222,10 @@ public class McaWorld implements Closeable {
         }
         // TODO: mode != "r" - create new chunk
         chunkCache.put(chunkXZ, chunk);
+        if (chunkCacheMaxBytes != Long.MAX_VALUE) {
+            weighChunk(chunkXZ, chunk);
+            trimChunkCache();
+        }
         return chunk;
     }
 
@@ -0,0 +1,262 @@
+package io.github.ensgijs.nbt.mca.util;
+
+import io.github.ensgijs.nbt.io.TextNbtHelpers;
+import io.github.ensgijs.nbt.mca.ChunkBase;
+import io.github.ensgijs.nbt.mca.McaRegionFile;
+import io.github.ensgijs.nbt.mca.io.LoadFlags;
+import io.github.ensgijs.nbt.mca.io.McaFileChunkIterator;
+import io.github.ensgijs.nbt.mca.io.McaFileHelpers;
+import io.github.ensgijs.nbt.mca.io.RandomAccessMcaFile;
+import io.github.ensgijs.nbt.util.ArgValidator;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Dumps every chunk of every mca file found in a directory tree (such as a world save directory) to pretty printed,
+ * sorted, text nbt files. The output uses the same layout as {@link McaDumper}:
+ * "&lt;mca directory, relative to the input root&gt;/r.X.Z/&lt;chunk index&gt;.X.Z.snbt".
+ *
+ * <p>The calling thread only reads the raw, still compressed, chunk bytes from each mca file. Decompressing,
+ * deserializing, formatting and writing happen on a pool of worker threads. The compressed bytes of chunks which
+ * have been read but not yet written are bounded by {@link #setMaxInFlightBytes(int)}; once the bound is reached
+ * reading blocks until workers catch up, so memory use does not grow with the size of the world.</p>
+ *
+ * <p>In {@link #setIncremental(boolean) incremental} mode each written file has its last modified time set to the
+ * chunk's mca timestamp, and chunks whose existing .snbt file carries that same timestamp are skipped without being
+ * read. A file is only stamped after it was completely written, so an interrupted run is picked up by the next one.
+ * Incremental mode also deletes .snbt files of chunks which no longer exist in their mca file, but only once every
+ * chunk of that mca file was scanned without any failure.</p>
+ *
+ * <p>Example</p>
+ * <pre>{@code
+ * var stats = new McaWorldDumper()
+ *         .setIncremental(true)
+ *         .dump(Path.of("saves/world"), Path.of("dump/world"));
+ * }</pre>
+ */
+public class McaWorldDumper {
+    private static final Pattern SNBT_FILE_PATTERN = Pattern.compile("^(?<index>\\d{4})\\.-?\\d+\\.-?\\d+\\.snbt$");
+
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private int maxInFlightBytes = 64 * 1024 * 1024;
+    private boolean incremental;
+
+    /**
+     * @param regionsDumped mca files which were scanned.
+     * @param chunksWritten chunks which were decoded and written.
+     * @param chunksUnchanged chunks skipped because their .snbt file carries their current mca timestamp.
+     * @param chunksRemoved .snbt files deleted because their chunk no longer exists.
+     */
+    public record DumpStats(int regionsDumped, int chunksWritten, int chunksUnchanged, int chunksRemoved) {
+        DumpStats add(DumpStats other) {
+            return new DumpStats(
+                    regionsDumped + other.regionsDumped,
+                    chunksWritten + other.chunksWritten,
+                    chunksUnchanged + other.chunksUnchanged,
+                    chunksRemoved + other.chunksRemoved);
+        }
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /** Number of worker threads decoding and writing chunks, defaults to the number of available processors. */
+    public McaWorldDumper setThreadCount(int threadCount) {
+        ArgValidator.check(threadCount > 0, "threadCount must be GT0");
+        this.threadCount = threadCount;
+        return this;
+    }
+
+    public int getMaxInFlightBytes() {
+        return maxInFlightBytes;
+    }
+
+    /**
+     * Bound on the compressed size of chunks which have been read but not yet written, defaults to 64 MiB. A single
+     * chunk larger than this is still dumped, on its own.
+     */
+    public McaWorldDumper setMaxInFlightBytes(int maxInFlightBytes) {
+        ArgValidator.check(maxInFlightBytes > 0, "maxInFlightBytes must be GT0");
+        this.maxInFlightBytes = maxInFlightBytes;
+        return this;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /** When true chunks whose mca timestamp has not changed since they were last dumped are skipped. */
+    public McaWorldDumper setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    /**
+     * Dumps every mca file found under the given input root. Only mca files within a directory known to
+     * {@link McaFileChunkIterator#DEFAULT_CHUNK_CREATORS} ("region", "poi", "entities" by default) are dumped.
+     * @param inputRoot directory to search for mca files, such as a world save directory.
+     * @param outputRoot directory to dump into.
+     * @throws IOException if any mca file could not be read or any chunk could not be written. Chunks already
+     * submitted to the workers are finished before the exception is thrown.
+     */
+    public DumpStats dump(Path inputRoot, Path outputRoot) throws IOException {
+        ArgValidator.check(Files.isDirectory(inputRoot), "Not a directory: " + inputRoot);
+        ArgValidator.requireValue(outputRoot, "outputRoot");
+        final List<Path> mcaFiles;
+        try (Stream<Path> paths = Files.walk(inputRoot)) {
+            mcaFiles = paths
+                    .filter(p -> McaFileHelpers.isValidMcaFileName(p.getFileName().toString()))
+                    .filter(p -> p.getParent() != null
+                            && McaFileChunkIterator.DEFAULT_CHUNK_CREATORS.containsKey(p.getParent().getFileName().toString()))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        final AtomicInteger workerCounter = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount, r -> {
+            Thread thread = new Thread(r, "McaWorldDumper-" + workerCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        final Pipeline pipeline = new Pipeline(executor, new Semaphore(maxInFlightBytes));
+        DumpStats stats = new DumpStats(0, 0, 0, 0);
+        try {
+            for (Path mcaFile : mcaFiles) {
+                if (pipeline.failure.get() != null) break;
+                Path relativeDir = inputRoot.relativize(mcaFile.getParent());
+                if (relativeDir.toString().isEmpty()) {
+                    relativeDir = mcaFile.getParent().getFileName();
+                }
+                stats = stats.add(dumpRegion(mcaFile.toFile(), outputRoot.resolve(relativeDir), pipeline));
+            }
+        } finally {
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    // keep waiting for the workers to drain
+                }
+            } catch (InterruptedException ex) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        Throwable failure = pipeline.failure.get();
+        if (failure instanceof IOException ioe) throw ioe;
+        if (failure instanceof UncheckedIOException uioe) throw uioe.getCause();
+        if (failure instanceof RuntimeException re) throw re;
+        if (failure instanceof Error err) throw err;
+        return stats.add(new DumpStats(0, pipeline.written.get(), 0, 0));
+    }
+
+    /** State shared between the reading thread and the workers. */
+    private static final class Pipeline {
+        final ExecutorService executor;
+        final Semaphore inFlightBytes;
+        final AtomicInteger written = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Pipeline(ExecutorService executor, Semaphore inFlightBytes) {
+            this.executor = executor;
+            this.inFlightBytes = inFlightBytes;
+        }
+    }
+
+    /**
+     * Reads the chunks of one mca file and submits those which need to be dumped.
+     * @return stats, excluding {@link DumpStats#chunksWritten()} which is only known once the workers finished.
+     */
+    private DumpStats dumpRegion(File mcaFile, Path outputDir, Pipeline pipeline) throws IOException {
+        @SuppressWarnings("unchecked")
+        final Supplier<ChunkBase> chunkCreator = (Supplier<ChunkBase>)
+                McaFileChunkIterator.DEFAULT_CHUNK_CREATORS.get(mcaFile.getParentFile().getName());
+        final IntPointXZ regionXZ = McaFileHelpers.regionXZFromFileName(mcaFile.getName());
+        final IntPointXZ chunkOffsetXZ = regionXZ.transformRegionToChunk();
+        final File dir = outputDir.resolve(regionXZ.toString("r.%d.%d")).toFile();
+        // created up front as concurrent workers creating it would race
+        if (!dir.isDirectory()) {
+            ArgValidator.check(dir.mkdirs() || dir.isDirectory(), "Failed to create directory " + dir.getAbsolutePath());
+        }
+        final boolean[] present = new boolean[1024];
+        int unchanged = 0;
+        // chunk headers scanned, all of them unless the scan stopped on a failure
+        int scanned = 1024;
+        if (mcaFile.length() > 0) {
+            // the chunk class is never instantiated by the mca file as only raw chunk bytes are read from it
+            try (RandomAccessMcaFile<ChunkBase> ramf = new RandomAccessMcaFile<>(ChunkBase.class, mcaFile, "r")) {
+                for (scanned = 0; scanned < 1024 && pipeline.failure.get() == null; scanned++) {
+                    final int i = scanned;
+                    final int timestamp = ramf.getChunkTimestamp(i);
+                    if (timestamp < 0) continue;
+                    present[i] = true;
+                    final IntPointXZ chunkXZ = McaRegionFile.getRelativeChunkXZ(i).add(chunkOffsetXZ);
+                    final File outFile = new File(dir, String.format("%04d.%d.%d.snbt", i, chunkXZ.getX(), chunkXZ.getZ()));
+                    if (incremental && outFile.lastModified() == timestamp * 1000L && outFile.isFile()) {
+                        unchanged++;
+                        continue;
+                    }
+                    final byte[] raw = ramf.readRaw(i);
+                    final int permits = Math.min(raw.length, maxInFlightBytes);
+                    try {
+                        pipeline.inFlightBytes.acquire(permits);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("interrupted while waiting for workers");
+                    }
+                    pipeline.executor.execute(() -> {
+                        try {
+                            if (pipeline.failure.get() != null) return;
+                            ChunkBase chunk = chunkCreator.get();
+                            chunk.deserialize(new ByteArrayInputStream(raw), LoadFlags.RAW, timestamp,
+                                    chunkXZ.getX(), chunkXZ.getZ());
+                            TextNbtHelpers.writeTextNbtFile(outFile.toPath(), chunk.getHandle(), /*pretty print*/ true, /*sorted*/ true);
+                            if (incremental && !outFile.setLastModified(timestamp * 1000L)) {
+                                throw new IOException("Failed to set last modified time of " + outFile.getAbsolutePath());
+                            }
+                            pipeline.written.incrementAndGet();
+                        } catch (Throwable t) {
+                            pipeline.failure.compareAndSet(null, t);
+                        } finally {
+                            pipeline.inFlightBytes.release(permits);
+                        }
+                    });
+                }
+            }
+        }
+        int removed = 0;
+        // chunks which were not scanned are not known to be gone, so only clean up after a complete scan
+        if (incremental && scanned == 1024 && pipeline.failure.get() == null) {
+            File[] existing = dir.listFiles();
+            if (existing != null) {
+                for (File file : existing) {
+                    Matcher m = SNBT_FILE_PATTERN.matcher(file.getName());
+                    if (!m.matches()) continue;
+                    int index = Integer.parseInt(m.group("index"));
+                    if (index < 1024 && !present[index] && file.delete()) {
+                        removed++;
+                    }
+                }
+            }
+        }
+        return new DumpStats(1, 0, unchanged, removed);
+    }
+}
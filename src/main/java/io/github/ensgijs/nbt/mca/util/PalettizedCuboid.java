@@ -2,8 +2,10 @@ package io.github.ensgijs.nbt.mca.util;
 
 import io.github.ensgijs.nbt.io.TextNbtHelpers;
 import io.github.ensgijs.nbt.tag.*;
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
 
 import java.util.*;
+import java.util.function.IntConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -99,6 +101,22 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
     protected final CompoundTag paletteContainerTag;
     protected final ListTag<E> palette;
     protected final LongArrayTagPackedIntegers packedData;
+    /**
+     * Palette value to palette index lookup, lazily (re)built by {@link #paletteLookup()}. Only valid while
+     * {@link #paletteLookupModCount} equals {@link #paletteModCount}.
+     */
+    private transient Map<E, Integer> paletteLookup;
+    private transient int paletteLookupModCount;
+    /** Optional, see {@link #setIdRegistry(TagRegistry)}. */
+    private TagRegistry<E> idRegistry;
+    /**
+     * Palette index to registry id table, lazily (re)built by {@link #paletteIds()}. Only valid while
+     * {@link #paletteIdsModCount} equals {@link #paletteModCount}.
+     */
+    private transient int[] paletteIds;
+    private transient int paletteIdsModCount;
+    /** Value of {@link #paletteModCount} as of the last {@link #optimizePalette()}. */
+    private transient int optimizedPaletteModCount = -1;
 
     @SuppressWarnings("unchecked")
     protected static <T extends Tag<?>> T nilSentinelFor(Class<T> clazz) {
@@ -133,17 +151,28 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
         this(cubeEdgeLength, (Class<E>) fillWith.getClass(), fillWith, false);
     }
 
+    /**
+     * Deep copy constructor, see {@link #clone()}.
+     */
     @SuppressWarnings("unchecked")
     public PalettizedCuboid(PalettizedCuboid<E> other) {
         this.cubeInfo = other.cubeInfo;
         this.paletteEntryClass = other.paletteEntryClass;
         paletteContainerTag = new CompoundTag();
-        palette = new ListTag<>(paletteEntryClass, other.size());
+        palette = new ListTag<>(paletteEntryClass, other.palette.size());
         paletteContainerTag.put("palette", palette);
+        final E nilValue = nilSentinelFor(paletteEntryClass);
         for (E e : other.palette) {
-            this.palette.add((E) e.clone());
+            // sentinels are recognized by identity so they are kept as-is
+            this.palette.add(e == nilValue ? e : (E) e.clone());
         }
         this.packedData = other.packedData.clone();
+        this.idRegistry = other.idRegistry;
+        // palette derived state is equally valid for the copy, the id table is never modified in place
+        this.paletteModCount = other.paletteModCount;
+        this.optimizedPaletteModCount = other.optimizedPaletteModCount;
+        this.paletteIds = other.paletteIds;
+        this.paletteIdsModCount = other.paletteIdsModCount;
     }
 
     @SuppressWarnings("unchecked")
@@ -271,6 +300,15 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
         return cubeInfo.edgeLength;
     }
 
+    /**
+     * True if every entry of this cuboid is known to be the same value without scanning the data. This is the
+     * case for cuboids read without a {@code data} tag and for cuboids which have been {@link #fill filled}, until a
+     * differing value is set. While uniform no packed data is allocated and reads are O(1).
+     */
+    public boolean isUniform() {
+        return packedData.isUniform();
+    }
+
     /** The current palette size. Note for an exact accurate palette count call {@link #optimizePalette()} first. */
     public int paletteSize() {
         return palette.size();
@@ -280,7 +318,31 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
      * @see #countIf(Predicate)
      */
     public boolean contains(E o) {
-        return palette.contains(o);
+        return paletteIndexOf(o) >= 0;
+    }
+
+    /**
+     * Returns the distinct palette values which are referenced by at least one entry of this cuboid, in palette order.
+     * Unlike iterating the palette directly, values which are no longer referenced (such as those left behind by
+     * {@link #set(int, Tag)}) are never included.
+     * <p><b>WARNING the returned values are palette references - if they are modified it modifies every value
+     * which references the same palette entry!</b></p>
+     */
+    public List<E> distinctValuesByRef() {
+        final boolean[] seen = new boolean[palette.size()];
+        int seenCount = 0;
+        for (int i = 0; i < packedData.length && seenCount < seen.length; i++) {
+            int id = packedData.get(i);
+            if (!seen[id]) {
+                seen[id] = true;
+                seenCount++;
+            }
+        }
+        List<E> values = new ArrayList<>(seenCount);
+        for (int i = 0; i < seen.length; i++) {
+            if (seen[i]) values.add(palette.get(i));
+        }
+        return values;
     }
 
     /**
@@ -352,7 +414,7 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
         if (replacing.isEmpty()) {
             return false;
         }
-        int replacementPaletteIndex = palette.indexOf(replacement);
+        int replacementPaletteIndex = paletteIndexOf(replacement);
         boolean addReplacementToPaletteIfDataModified;
         if (replacementPaletteIndex < 0) {
             replacementPaletteIndex = palette.size();
@@ -390,6 +452,7 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
             }
             if (addReplacementToPaletteIfDataModified)
                 palette.add((E) replacement.clone());  // paletteModCount incremented at top of method
+            paletteLookup = null;  // lookup may have been (re)built after paletteModCount was incremented
         }
         return modified;
     }
@@ -404,7 +467,7 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
             return false;
         }
         // Don't pass a singleton list/set type - they are immutable and will cause errors.
-        return replace(new ArrayList<>(Collections.singletonList(palette.indexOf(oldValue))), newValue);
+        return replace(new ArrayList<>(Collections.singletonList(paletteIndexOf(oldValue))), newValue);
     }
 
     public final boolean replaceAll(E[] a, E replacement) {
@@ -418,7 +481,7 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
         }
         Set<Integer> replacing = new HashSet<>();
         for (E e : c) {
-            int i = palette.indexOf(e);
+            int i = paletteIndexOf(e);
             if (i >= 0) {
                 replacing.add(i);
             }
@@ -456,6 +519,9 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
 
     public boolean retainAll(Collection<E> c, E replacement) {
         requireValue(replacement, "replacement");
+        if (!(c instanceof Set) && c.size() > 4) {
+            c = new HashSet<>(c);
+        }
         Set<Integer> replacing = new HashSet<>();
         final var nilValue = nilSentinelFor(paletteEntryClass);
         for (int i = 0; i < palette.size(); i++) {
@@ -588,17 +654,16 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
      * @param element element to be stored at the specified position
      * @throws IndexOutOfBoundsException if the index is out of range (index &lt; 0 || index &gt;= size())
      */
-    @SuppressWarnings("unchecked")
     public void set(int index, E element) {
         requireValue(element, "element");
         if (index < 0 || index >= packedData.length) {
             throw new IndexOutOfBoundsException();
         }
-        paletteModCount ++;
-        int paletteIndex = palette.indexOf(element);
+        int paletteIndex = paletteIndexOf(element);
         if (paletteIndex < 0) {
-            paletteIndex = palette.size();
-            palette.add((E) element.clone());  // paletteModCount incremented at top of method
+            paletteIndex = appendToPalette(element);
+        } else {
+            dataModified();
         }
         packedData.set(index, paletteIndex);
     }
@@ -632,7 +697,6 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
      * @param y2 inclusive bound
      * @param z2 inclusive bound
      */
-    @SuppressWarnings("unchecked")
     public void set(int x1, int y1, int z1, E element, int x2, int y2, int z2 ) {
         requireValue(element, "element");
         checkBounds(x1, y1, z1);
@@ -645,28 +709,30 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
             return;
         }
 
-        int paletteIndex = palette.indexOf(element);
+        int paletteIndex = paletteIndexOf(element);
         if (paletteIndex < 0) {
-            paletteModCount ++;
-            paletteIndex = palette.size();
-            palette.add((E) element.clone());
+            paletteIndex = appendToPalette(element);
+        } else {
+            dataModified();
         }
 
-        // detect and optimize XZ plain fills
-        if (x1 == 0 && z1 == 0 && x2 == cubeInfo.edgeLength && z2 == cubeInfo.edgeLength) {
-            final int endIndex = indexOf(x2 - 1, y2 - 1, z2 - 1);
-            for (int i = indexOf(x1, y1, z1); i <= endIndex; i++) {
-                packedData.set(i, paletteIndex);
+        final int edgeLength = cubeInfo.edgeLength;
+        // full XZ planes are contiguous in the data - fill them all in one go
+        if (x1 == 0 && z1 == 0 && x2 == edgeLength && z2 == edgeLength) {
+            packedData.fill(indexOf(0, y1, 0), indexOf(0, y2 - 1, 0) + edgeLength * edgeLength, paletteIndex);
+            return;
+        }
+        // full X rows are contiguous per Y layer
+        if (x1 == 0 && x2 == edgeLength) {
+            for (int y = y1; y < y2; y++) {
+                packedData.fill(indexOf(0, y, z1), indexOf(0, y, z2 - 1) + edgeLength, paletteIndex);
             }
             return;
         }
-
-        // iteration order x, z, y
+        // iteration order x (as row fills), z, y
         for (int y = y1; y < y2; y++) {
             for (int z = z1; z < z2; z++) {
-                for (int x = x1; x < x2; x++) {
-                    packedData.set(indexOf(x, y , z), paletteIndex);
-                }
+                packedData.fill(indexOf(x1, y, z), indexOf(x2 - 1, y, z) + 1, paletteIndex);
             }
         }
     }
@@ -682,70 +748,585 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
         set(xyz1.x, xyz1.y, xyz1.z, element, xyz2.x, xyz2.y, xyz2.z);
     }
 
-    protected void checkBounds(int x, int y, int z) {
-        if (x < 0 || y < 0 || z < 0 || x >= cubeInfo.edgeLength || y >= cubeInfo.edgeLength || z >= cubeInfo.edgeLength) {
+    /**
+     * Copies the entire contents of the given cuboid into this one, the palettes do not need to match.
+     * @param source cuboid to copy from, must be the same size as this cuboid. May be this cuboid.
+     */
+    public void copyFrom(PalettizedCuboid<E> source) {
+        requireValue(source, "source");
+        check(source.cubeInfo.edgeLength == cubeInfo.edgeLength, "source must be the same size as this cuboid");
+        final int maxXYZ = cubeInfo.edgeLength - 1;
+        copyFrom(source, 0, 0, 0, maxXYZ, maxXYZ, maxXYZ, 0, 0, 0);
+    }
+
+    /**
+     * Copies a region of the given cuboid into this one. Source palette entries are translated through a
+     * palette remap table, built once, and the copy itself is performed on decoded int arrays with the packed data
+     * being decoded and re-encoded a whole long at a time. When the source palette is a prefix of this palette
+     * and both use the same packing the packed longs are copied directly, without remapping or decoding. The
+     * palettes do not need to match and the source cuboid may be of a different size than this one.
+     * <p>All coordinates are in cuboid space and must be within bounds, they are not wrapped.</p>
+     * @param source cuboid to copy from. May be this cuboid, overlapping regions copy as if through a temporary copy.
+     * @param sx1 source inclusive bound
+     * @param sy1 source inclusive bound
+     * @param sz1 source inclusive bound
+     * @param sx2 source inclusive bound
+     * @param sy2 source inclusive bound
+     * @param sz2 source inclusive bound
+     * @param dx destination x of the region's min corner
+     * @param dy destination y of the region's min corner
+     * @param dz destination z of the region's min corner
+     * @throws IndexOutOfBoundsException if the source or destination region is not within bounds.
+     */
+    public void copyFrom(PalettizedCuboid<E> source, int sx1, int sy1, int sz1, int sx2, int sy2, int sz2,
+                         int dx, int dy, int dz) {
+        requireValue(source, "source");
+        source.checkBounds(sx1, sy1, sz1);
+        source.checkBounds(sx2, sy2, sz2);
+        if (sx1 > sx2) { int t = sx2; sx2 = sx1; sx1 = t; }
+        if (sy1 > sy2) { int t = sy2; sy2 = sy1; sy1 = t; }
+        if (sz1 > sz2) { int t = sz2; sz2 = sz1; sz1 = t; }
+        checkBounds(dx, dy, dz);
+        checkBounds(dx + sx2 - sx1, dy + sy2 - sy1, dz + sz2 - sz1);
+
+        if (source != this && copyPackedFrom(source, sx1, sy1, sz1, sx2, sy2, sz2, dx, dy, dz)) {
+            return;
+        }
+        final int[] sourceData = source.packedData.toArray();
+        // 1. build the palette remap table for source palette entries referenced by the region
+        final int[] remap = new int[source.palette.size()];
+        Arrays.fill(remap, -1);
+        final List<E> sourcePalette = new ArrayList<>(source.palette);
+        for (int y = sy1; y <= sy2; y++) {
+            for (int z = sz1; z <= sz2; z++) {
+                final int rowStart = source.indexOf(sx1, y, z);
+                final int rowEnd = rowStart + sx2 - sx1;
+                for (int i = rowStart; i <= rowEnd; i++) {
+                    final int sourcePaletteIndex = sourceData[i];
+                    if (remap[sourcePaletteIndex] < 0) {
+                        final E value = sourcePalette.get(sourcePaletteIndex);
+                        final int paletteIndex = paletteIndexOf(value);
+                        remap[sourcePaletteIndex] = paletteIndex >= 0 ? paletteIndex : appendToPalette(value);
+                    }
+                }
+            }
+        }
+        dataModified();
+
+        // 2. copy rows through the remap table
+        final int[] data = source == this ? sourceData.clone() : packedData.toArray();
+        for (int y = sy1; y <= sy2; y++) {
+            for (int z = sz1; z <= sz2; z++) {
+                final int sourceRowStart = source.indexOf(sx1, y, z);
+                final int rowStart = indexOf(dx, dy + y - sy1, dz + z - sz1);
+                for (int x = 0; x <= sx2 - sx1; x++) {
+                    data[rowStart + x] = remap[sourceData[sourceRowStart + x]];
+                }
+            }
+        }
+        packedData.setFromArray(data);
+    }
+
+    /**
+     * Fast path of {@link #copyFrom(PalettizedCuboid, int, int, int, int, int, int, int, int, int)}, copies packed
+     * longs if every source palette index refers to an equal value in this palette and the packing matches.
+     * @return false, without modifying anything, if the palettes or packing do not allow this.
+     */
+    private boolean copyPackedFrom(PalettizedCuboid<E> source, int sx1, int sy1, int sz1, int sx2, int sy2, int sz2,
+                                   int dx, int dy, int dz) {
+        final LongArrayTagPackedIntegers sourceData = source.packedData;
+        if (sourceData.getBitsPerValue() != packedData.getBitsPerValue()
+                || sourceData.getPackingStrategy() != packedData.getPackingStrategy()
+                || source.palette.size() > palette.size()) {
+            return false;
+        }
+        final E nilValue = nilSentinelFor(paletteEntryClass);
+        for (int i = 0; i < source.palette.size(); i++) {
+            final E sourceValue = source.palette.get(i);
+            final E value = palette.get(i);
+            if (sourceValue != value && (sourceValue == nilValue || !sourceValue.equals(value))) {
+                return false;
+            }
+        }
+        dataModified();
+        if (source.cubeInfo.edgeLength == cubeInfo.edgeLength && sx1 == 0 && sy1 == 0 && sz1 == 0
+                && dx == 0 && dy == 0 && dz == 0 && sx2 == cubeInfo.edgeLength - 1
+                && sy2 == cubeInfo.edgeLength - 1 && sz2 == cubeInfo.edgeLength - 1) {
+            packedData.copyPackedFrom(sourceData, 0, 0, packedData.length);
+            return true;
+        }
+        final int rowLength = sx2 - sx1 + 1;
+        for (int y = sy1; y <= sy2; y++) {
+            for (int z = sz1; z <= sz2; z++) {
+                packedData.copyPackedFrom(sourceData, source.indexOf(sx1, y, z),
+                        indexOf(dx, dy + y - sy1, dz + z - sz1), rowLength);
+            }
+        }
+        return true;
+    }
+
+    // <editor-fold desc="Palette Index Access" defaultstate="collapsed">
+    /**
+     * Visits every run of consecutive entries which share a palette index, in data index order. Never touches
+     * palette values and does not allocate.
+     * <p>Example - find the y range spanned by water in a 16^3 cuboid</p>
+     * <pre>{@code
+     * int water = cuboid.paletteIndexOf(waterTag);
+     * int[] minMaxY = {Integer.MAX_VALUE, -1};
+     * cuboid.forEachRun((paletteIndex, start, length) -> {
+     *     if (paletteIndex == water) {
+     *         minMaxY[0] = Math.min(minMaxY[0], cuboid.yOf(start));
+     *         minMaxY[1] = Math.max(minMaxY[1], cuboid.yOf(start + length - 1));
+     *     }
+     * });
+     * }</pre>
+     * @param consumer passed the palette index, first data index, and length of each run.
+     * @see #paletteIndexOf(Tag)
+     */
+    public void forEachRun(LongArrayTagPackedIntegers.RunConsumer consumer) {
+        packedData.forEachRun(consumer);
+    }
+
+    /**
+     * Passes each data index whose entry has the given palette index to the consumer, in index order. Never touches
+     * palette values and does not allocate.
+     * @see #paletteIndexOf(Tag)
+     * @see #xOf(int)
+     */
+    public void forEachIndexOf(int paletteIndex, IntConsumer consumer) {
+        packedData.forEachIndexOf(paletteIndex, consumer);
+    }
+
+    /** Gets the palette index of the entry at the given data index. */
+    public int paletteIndexAt(int index) {
+        return packedData.get(index);
+    }
+
+    /** Gets the x coordinate of the given data index. */
+    public int xOf(int index) {
+        return index & cubeInfo.cordBitMask;
+    }
+
+    /** Gets the y coordinate of the given data index. */
+    public int yOf(int index) {
+        return (index >> cubeInfo.yShift) & cubeInfo.cordBitMask;
+    }
+
+    /** Gets the z coordinate of the given data index. */
+    public int zOf(int index) {
+        return (index >> cubeInfo.zShift) & cubeInfo.cordBitMask;
+    }
+
+    /**
+     * Finds every cell whose value differs between this and the other cuboid, comparing values by equality.
+     * <p>The other cuboid's palette indexes are first translated into this cuboid's palette indexes, a remap
+     * which only touches the palettes when they are already the same, then the packed data is compared a long
+     * at a time and only longs which differ are inspected.</p>
+     * @throws IllegalArgumentException if the cuboids are not the same size.
+     */
+    public CuboidDiff diff(PalettizedCuboid<E> other) {
+        requireValue(other, "other");
+        check(other.cubeInfo.edgeLength == cubeInfo.edgeLength, "cuboids must be the same size");
+        // remapping this cuboid onto its own palette folds duplicate entries into their first occurrence
+        final int[] remap = paletteRemapTo(this);
+        final LongArrayTagPackedIntegers mine = remapData(remap);
+        final LongArrayTagPackedIntegers theirs = other.remapData(other.paletteRemapTo(this));
+        return new CuboidDiff(cubeInfo.edgeLength, mine.diff(theirs));
+    }
+
+    /**
+     * Computes the table which translates this cuboid's palette indexes into target's palette indexes, each
+     * entry maps to the index of the first equal entry of target's palette. Entries missing from target's palette
+     * map to target's palette size.
+     * @return the table or null if it would be the identity.
+     */
+    private int[] paletteRemapTo(PalettizedCuboid<E> target) {
+        final E nilValue = nilSentinelFor(paletteEntryClass);
+        final int[] remap = new int[palette.size()];
+        boolean identity = true;
+        for (int i = 0; i < remap.length; i++) {
+            final E paletteValue = palette.get(i);
+            // unused slots are never referenced, leave them in place
+            int targetIndex = paletteValue == nilValue ? i : target.paletteIndexOf(paletteValue);
+            if (targetIndex < 0) {
+                targetIndex = target.palette.size();
+            }
+            remap[i] = targetIndex;
+            identity &= targetIndex == i;
+        }
+        return identity ? null : remap;
+    }
+
+    /** Returns {@link #packedData} if remap is null, otherwise a remapped clone of it. */
+    private LongArrayTagPackedIntegers remapData(int[] remap) {
+        if (remap == null) {
+            return packedData;
+        }
+        final LongArrayTagPackedIntegers remapped = packedData.clone();
+        remapped.remap(remap);
+        return remapped;
+    }
+
+    /**
+     * Creates a cursor over the palette indexes of this cuboid.
+     * @see PaletteIndexCursor
+     */
+    public PaletteIndexCursor paletteIndexCursor() {
+        return new PaletteIndexCursor();
+    }
+    // </editor-fold>
+
+    // <editor-fold desc="Registry Id Access" defaultstate="collapsed">
+    /** @see #setIdRegistry(TagRegistry) */
+    public TagRegistry<E> getIdRegistry() {
+        return idRegistry;
+    }
+
+    /**
+     * Sets the registry used to translate palette values to and from integer ids by {@link #getId(int)},
+     * {@link #setId(int, int)}, {@link #toIdArray()}, {@link #setFromIdArray(int[])}, and {@link #internPalette()}.
+     * Using ids lets callers compare and replace values as ints rather than as deep-equal tag trees.
+     * <p>For block states use {@link BlockStateRegistry#GLOBAL}. Clones share this cuboid's registry.</p>
+     * @param idRegistry registry to use, or null to disable id access.
+     */
+    public void setIdRegistry(TagRegistry<E> idRegistry) {
+        this.idRegistry = idRegistry;
+        this.paletteIds = null;
+    }
+
+    private TagRegistry<E> requireIdRegistry() {
+        checkState(idRegistry != null, "no id registry has been set - see setIdRegistry()");
+        return idRegistry;
+    }
+
+    /**
+     * Returns the palette index to registry id table, rebuilding it if the palette was modified since it was
+     * last built. Unused palette slots map to -1.
+     */
+    private int[] paletteIds() {
+        final TagRegistry<E> registry = requireIdRegistry();
+        if (paletteIds == null || paletteIdsModCount != paletteModCount) {
+            final E nilValue = nilSentinelFor(paletteEntryClass);
+            final int[] ids = new int[palette.size()];
+            for (int i = 0; i < ids.length; i++) {
+                E paletteValue = palette.get(i);
+                ids[i] = paletteValue != nilValue ? registry.idOf(paletteValue) : -1;
+            }
+            paletteIds = ids;
+            paletteIdsModCount = paletteModCount;
+        }
+        return paletteIds;
+    }
+
+    /**
+     * Gets the registry id of the value at the given index.
+     * @throws IllegalStateException if no id registry has been set.
+     * @throws IndexOutOfBoundsException if the index is out of range (index &lt; 0 || index &gt;= size())
+     * @see #setIdRegistry(TagRegistry)
+     */
+    public int getId(int index) {
+        return paletteIds()[packedData.get(index)];
+    }
+
+    /**
+     * Gets the registry id of the value at the given position.
+     * <p>Never throws IndexOutOfBoundsException. XYZ are always wrapped into bounds.</p>
+     * @throws IllegalStateException if no id registry has been set.
+     */
+    public int getId(int x, int y, int z) {
+        return getId(indexOf(x, y, z));
+    }
+
+    /**
+     * Sets the value at the given index to the registry value with the given id.
+     * @throws IllegalStateException if no id registry has been set.
+     * @throws IndexOutOfBoundsException if the index is out of range or the id is not registered.
+     */
+    public void setId(int index, int id) {
+        if (index < 0 || index >= packedData.length) {
             throw new IndexOutOfBoundsException();
         }
+        final int[] ids = paletteIds();
+        int paletteIndex = -1;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                paletteIndex = i;
+                break;
+            }
+        }
+        if (paletteIndex < 0) {
+            paletteIndex = appendToPalette(idRegistry.get(id));
+        } else {
+            dataModified();
+        }
+        packedData.set(index, paletteIndex);
     }
 
     /**
-     * Removes empty value sentinels from the palette and remaps value references as-needed.
-     * @return true if any modifications were made
+     * Sets the value at the given position to the registry value with the given id.
+     * <p>Never throws IndexOutOfBoundsException for XYZ, they are always wrapped into bounds.</p>
+     * @throws IllegalStateException if no id registry has been set.
+     * @throws IndexOutOfBoundsException if the id is not registered.
      */
-    protected boolean optimizePalette() {
+    public void setId(int x, int y, int z, int id) {
+        setId(indexOf(x, y, z), id);
+    }
+
+    /**
+     * Returns the registry id of every position in this cuboid.
+     * @throws IllegalStateException if no id registry has been set.
+     */
+    public int[] toIdArray() {
+        final int[] ids = paletteIds();
+        final int[] a = packedData.toArray();
+        for (int i = 0; i < a.length; i++) {
+            a[i] = ids[a[i]];
+        }
+        return a;
+    }
+
+    /**
+     * Replaces the entire contents of this cuboid with the registry values of the given ids. The palette is
+     * rebuilt to contain exactly the distinct values given.
+     * @param ids must be exactly {@link #size()} in length.
+     * @throws IllegalStateException if no id registry has been set.
+     * @throws IndexOutOfBoundsException if any id is not registered.
+     */
+    @SuppressWarnings("unchecked")
+    public void setFromIdArray(int[] ids) {
+        final TagRegistry<E> registry = requireIdRegistry();
+        check(ids.length == packedData.length,
+                String.format("Expected array to be of length %d but it was %d", packedData.length, ids.length));
+        final int registrySize = registry.size();
+        for (int id : ids) {
+            if (id < 0 || id >= registrySize)
+                throw new IndexOutOfBoundsException("id " + id + " is not registered");
+        }
+        final int[] paletteIndices = new int[ids.length];
+        final Map<Integer, Integer> idToPaletteIndex = new HashMap<>();
+        int[] newPaletteIds = new int[16];
         paletteModCount ++;
-        // 1. identify unused palette id's & remove them from palette
-        Set<Integer> seenIds = new HashSet<>();
-        for (int id : packedData) {
-            seenIds.add(id);
-        }
-        int maxId = seenIds.stream().mapToInt(v -> v).max().getAsInt();
-        if (maxId >= palette.size()) {
-//            String dataStr = Arrays.stream(data)
-//                    .mapToObj(String::valueOf)
-//                    .collect(Collectors.joining(", "));
-            throw new IllegalStateException("data[" + /*dataStr +*/ "] contained an out of bounds palette id " + maxId + " palette size " + palette.size());
+        palette.clear();
+        int lastId = -1, lastPaletteIndex = -1;
+        for (int i = 0; i < ids.length; i++) {
+            final int id = ids[i];
+            if (id != lastId) {
+                Integer paletteIndex = idToPaletteIndex.get(id);
+                if (paletteIndex == null) {
+                    paletteIndex = palette.size();
+                    palette.add((E) registry.get(id).clone());
+                    idToPaletteIndex.put(id, paletteIndex);
+                    if (paletteIndex == newPaletteIds.length) {
+                        newPaletteIds = Arrays.copyOf(newPaletteIds, paletteIndex * 2);
+                    }
+                    newPaletteIds[paletteIndex] = id;
+                }
+                lastId = id;
+                lastPaletteIndex = paletteIndex;
+            }
+            paletteIndices[i] = lastPaletteIndex;
         }
+        packedData.setFromArray(paletteIndices);
+        paletteLookup = null;
+        paletteIds = Arrays.copyOf(newPaletteIds, palette.size());
+        paletteIdsModCount = paletteModCount;
+    }
+
+    /**
+     * Replaces every palette entry with the registry's canonical instance of it so that equal values share
+     * a single instance across all cuboids interned with the same registry, which can significantly reduce
+     * heap usage when many chunks are kept in memory.
+     * <p><b>WARNING after interning, values obtained by reference (such as from {@link #getByRef(int)}) are shared
+     * across cuboids and with the registry - modifying them corrupts all of them!</b> The by-value accessors are
+     * unaffected and a {@link #clone()} deep copies its palette.</p>
+     * @throws IllegalStateException if no id registry has been set.
+     */
+    public void internPalette() {
+        final TagRegistry<E> registry = requireIdRegistry();
         final E nilValue = nilSentinelFor(paletteEntryClass);
         for (int i = 0; i < palette.size(); i++) {
-            if (!seenIds.contains(i)) {
-                palette.set(i, nilValue);  // paletteModCount at top of function
+            E paletteValue = palette.get(i);
+            if (paletteValue != nilValue) {
+                palette.set(i, registry.intern(paletteValue));
             }
         }
+        // equal values were swapped for equal values so the id table remains valid, but the lookup would
+        // otherwise keep the replaced instances alive
+        dataModified();
+        paletteLookup = null;
+    }
+    // </editor-fold>
 
-        // 2. calculate palette defragmentation
-        int cursor = 0;
-        Map<Integer, Integer> remapping = new HashMap<>();
+    /**
+     * Finds the palette index of the given value with a hash lookup instead of a linear scan of the palette.
+     * Palette entries modified by reference (such as via {@link #getByRef(int)}) go unnoticed by the lookup, so
+     * a hit is verified against the palette and a miss is confirmed by a linear scan, which also discards the
+     * lookup if it turns out to be stale. Empty value sentinels (unused palette slots) are never matched.
+     * <p>Palette indexes are only stable until this cuboid is modified or serialized, as either may reorganize
+     * the palette.</p>
+     * @return palette index of the first palette entry equal to the given value, or -1 if there is none.
+     * @see #forEachIndexOf(int, IntConsumer)
+     */
+    public int paletteIndexOf(E value) {
+        final Integer paletteIndex = paletteLookup().get(value);
+        if (paletteIndex != null && palette.get(paletteIndex).equals(value)) {
+            return paletteIndex;
+        }
+        final E nilValue = nilSentinelFor(paletteEntryClass);
         for (int i = 0; i < palette.size(); i++) {
-            if (palette.get(i) != nilValue) {
-                if (i != cursor) {
-                    remapping.put(i, cursor);
+            E paletteValue = palette.get(i);
+            if (paletteValue != nilValue && paletteValue.equals(value)) {
+                paletteLookup = null;
+                return i;
+            }
+        }
+        if (paletteIndex != null) {
+            paletteLookup = null;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the palette value to palette index lookup, rebuilding it if the palette was modified since it was
+     * last built. Methods which only append to the palette may keep the lookup valid by adding the new entry and
+     * then syncing {@link #paletteLookupModCount} with {@link #paletteModCount}.
+     */
+    private Map<E, Integer> paletteLookup() {
+        if (paletteLookup == null || paletteLookupModCount != paletteModCount) {
+            final E nilValue = nilSentinelFor(paletteEntryClass);
+            paletteLookup = new HashMap<>(Math.max(16, (int) (palette.size() / 0.75f) + 1));
+            for (int i = 0; i < palette.size(); i++) {
+                E paletteValue = palette.get(i);
+                if (paletteValue != nilValue) {
+                    paletteLookup.putIfAbsent(paletteValue, i);
                 }
-                cursor++;
             }
+            paletteLookupModCount = paletteModCount;
+        }
+        return paletteLookup;
+    }
+
+    /** Appends a copy of the given value to the palette while keeping the palette lookup valid. */
+    @SuppressWarnings("unchecked")
+    private int appendToPalette(E value) {
+        final Map<E, Integer> lookup = paletteLookup();
+        final boolean idsValid = paletteIds != null && paletteIdsModCount == paletteModCount;
+        final int paletteIndex = palette.size();
+        final E copy = (E) value.clone();
+        paletteModCount ++;
+        palette.add(copy);
+        lookup.put(copy, paletteIndex);
+        paletteLookupModCount = paletteModCount;
+        if (idsValid && idRegistry != null) {
+            paletteIds = Arrays.copyOf(paletteIds, paletteIndex + 1);
+            paletteIds[paletteIndex] = idRegistry.idOf(copy);
+            paletteIdsModCount = paletteModCount;
         }
+        return paletteIndex;
+    }
 
-        // 3. remove nilValue's from palette
-        palette.removeAll(Collections.singletonList(nilValue));  // paletteModCount at top of function
+    /**
+     * Records a modification of the data which did not modify the palette itself. The data change may orphan a
+     * palette entry so this still counts as a palette modification, but palette caches which were valid remain so.
+     */
+    private void dataModified() {
+        final boolean lookupValid = paletteLookup != null && paletteLookupModCount == paletteModCount;
+        final boolean idsValid = paletteIds != null && paletteIdsModCount == paletteModCount;
+        paletteModCount ++;
+        if (lookupValid) paletteLookupModCount = paletteModCount;
+        if (idsValid) paletteIdsModCount = paletteModCount;
+    }
 
-        // 4. perform id remapping
-        if (remapping.isEmpty()) {
-            packedData.compact();
+    protected void checkBounds(int x, int y, int z) {
+        if (x < 0 || y < 0 || z < 0 || x >= cubeInfo.edgeLength || y >= cubeInfo.edgeLength || z >= cubeInfo.edgeLength) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Removes unused palette entries (including empty value sentinels) from the palette, remaps value references
+     * as-needed, and compacts the packed data.
+     * <p>This is a no-op if nothing was modified since the last time the palette was optimized.</p>
+     * @return true if any modifications were made
+     */
+    protected boolean optimizePalette() {
+        if (optimizedPaletteModCount == paletteModCount) {
             return false;
-        } else {
-            packedData.remap(remapping);
-            packedData.compact();
-            return true;
         }
+        // 1. count references to each palette id in a single pass over the packed data
+        final int paletteSize = palette.size();
+        final int[] histogram = new int[paletteSize];
+        final int maxId = packedData.histogram(histogram);
+        if (maxId >= paletteSize) {
+            throw new IllegalStateException("data contained an out of bounds palette id " + maxId + " palette size " + paletteSize);
+        }
+
+        // 2. calculate palette defragmentation - entries are matched by use, not by equality
+        final int[] remap = new int[paletteSize];
+        int cursor = 0;
+        boolean remapNeeded = false;
+        for (int i = 0; i < paletteSize; i++) {
+            if (histogram[i] > 0) {
+                if (i != cursor) {
+                    remapNeeded = true;
+                    palette.set(cursor, palette.get(i));
+                }
+                remap[i] = cursor++;
+            }
+        }
+        final boolean modified = cursor != paletteSize;
+
+        // 3. drop the now unused tail of the palette and perform id remapping
+        if (modified) {
+            paletteModCount ++;
+            while (palette.size() > cursor) {
+                palette.remove(palette.size() - 1);
+            }
+            if (remapNeeded) {
+                packedData.remap(remap);
+            }
+        }
+        packedData.compactValues();
+        optimizedPaletteModCount = paletteModCount;
+        return modified;
     }
 
+    /**
+     * Creates a deep copy, values obtained by reference from the clone are never shared with this cuboid.
+     * <p>The palette is copied as-is rather than optimized first, and palette derived state (such as the id table)
+     * carries over, so nothing needs to be recomputed. This cuboid is only read, never modified, by cloning.</p>
+     * <p>Clones are not copy-on-write: palette entries are mutable tags handed out by reference, so sharing them
+     * would let edits leak between a clone and its source, and tracking the sharing would mean writing to this
+     * cuboid from {@code clone()}. A clone costs one pass over the palette plus one copy of the packed long[].</p>
+     */
     @Override
-    @SuppressWarnings("unchecked")
     public PalettizedCuboid<E> clone() {
-        optimizePalette();
         return new PalettizedCuboid<>(this);
     }
 
+    /**
+     * Adds the heap retained by this cuboid to the estimator, see {@link Tag#estimateRetainedBytes()}. Palette
+     * entries shared with other cuboids (see {@link #internPalette()}) are only counted once per estimator.
+     * @return number of bytes this call added to the estimator.
+     */
+    public long estimateRetainedBytes(RetainedSizeEstimator estimator) {
+        final long before = estimator.total();
+        if (estimator.visit(this)) {
+            // cubeInfo, paletteEntryClass, paletteContainerTag, palette, packedData, paletteLookup, idRegistry,
+            // paletteIds; 5 ints
+            estimator.add(RetainedSizeEstimator.shallowSize(8, 4 * 5));
+            paletteContainerTag.estimateRetainedBytes(estimator);
+            palette.estimateRetainedBytes(estimator);
+            packedData.estimateRetainedBytes(estimator);
+            if (estimator.visit(paletteLookup)) {
+                // keys are the palette entries, values are mostly cached small Integers
+                estimator.add(RetainedSizeEstimator.linkedHashMapSize(paletteLookup.size()));
+            }
+            estimator.addValue(paletteIds);
+        }
+        return estimator.total() - before;
+    }
+
     /** Serializes this cuboid to a {@link CompoundTag} assuming the latest data version (fine if only working with &gt;= JAVA_1_16_20W17A). */
     public CompoundTag toCompoundTag() {
         return toCompoundTag(0);
@@ -773,7 +1354,7 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
                 if (dataVersion > 0) {
                     packedData.setPackingStrategy(LongArrayTagPackedIntegers.MOJANG_PACKING_STRATEGY.get(dataVersion));
                 }
-                packedData.compact();
+                packedData.compactValues();
             }
             // don't need to call packedData.updateHandle() because we already compacted in optimizePalette() - or above
             paletteContainerTag.put("data", packedData.getHandle());
@@ -919,6 +1500,13 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
             if (filter == null) {
                 return currentIndex < packedData.length - 1;
             }
+            if (nextIndex < packedData.length && packedData.isUniform()) {
+                // every entry is the same value - test it once
+                if (filter.test(get(nextIndex))) {
+                    return true;
+                }
+                nextIndex = packedData.length;
+            }
             while (nextIndex < packedData.length) {
                 if (filter.test(get(nextIndex))) {
                     return true;
@@ -999,6 +1587,102 @@ public class PalettizedCuboid<E extends Tag<?>> implements TagWrapper<CompoundTa
         }
     }
 
+    /**
+     * A primitive cursor which yields palette indexes and xyz positions without touching palette values or
+     * allocating. Unlike {@link CursorIterator} this can skip to the start of the next run of a different palette
+     * index, which lets scanners searching for a few values pass over large uniform regions quickly.
+     * <pre>{@code
+     * int diamond = cuboid.paletteIndexOf(diamondOreTag);
+     * var cursor = cuboid.paletteIndexCursor();
+     * while (cursor.nextRun()) {
+     *     if (cursor.paletteIndex() == diamond) {
+     *         foundAt(cursor.x(), cursor.y(), cursor.z());
+     *     }
+     * }
+     * }</pre>
+     */
+    public class PaletteIndexCursor {
+        private int index = -1;
+        private int paletteIndex = -1;
+        private final int expectPaletteModCount = paletteModCount;
+
+        PaletteIndexCursor() {}
+
+        private void checkNotModified() {
+            if (expectPaletteModCount != paletteModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        private void checkCurrentIndex() {
+            if (index < 0 || index >= packedData.length) {
+                throw new NoSuchElementException();
+            }
+        }
+
+        /**
+         * Advances to the next data index.
+         * @return false, and moves past the end, if there is no next index.
+         */
+        public boolean next() {
+            checkNotModified();
+            if (index + 1 >= packedData.length) {
+                index = packedData.length;
+                return false;
+            }
+            paletteIndex = packedData.get(++index);
+            return true;
+        }
+
+        /**
+         * Advances to the first data index whose palette index differs from the current one, or to the first
+         * index if {@link #next()} has not yet been called.
+         * @return false, and moves past the end, if the current run extends to the end of the data.
+         */
+        public boolean nextRun() {
+            checkNotModified();
+            if (index < 0) {
+                return next();
+            }
+            if (index >= packedData.length) {
+                return false;
+            }
+            index = packedData.runEnd(index);
+            if (index >= packedData.length) {
+                return false;
+            }
+            paletteIndex = packedData.get(index);
+            return true;
+        }
+
+        /** Data index of the current position. */
+        public int index() {
+            checkCurrentIndex();
+            return index;
+        }
+
+        /** Palette index of the entry at the current position. */
+        public int paletteIndex() {
+            checkCurrentIndex();
+            return paletteIndex;
+        }
+
+        public int x() {
+            checkCurrentIndex();
+            return index & cubeInfo.cordBitMask;
+        }
+
+        public int y() {
+            checkCurrentIndex();
+            return (index >> cubeInfo.yShift) & cubeInfo.cordBitMask;
+        }
+
+        public int z() {
+            checkCurrentIndex();
+            return (index >> cubeInfo.zShift) & cubeInfo.cordBitMask;
+        }
+    }
+
     public static class PaletteCorruptedException extends RuntimeException {
         public PaletteCorruptedException(String message) {
             super(message);
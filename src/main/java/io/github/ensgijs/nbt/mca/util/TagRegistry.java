@@ -0,0 +1,114 @@
+package io.github.ensgijs.nbt.mca.util;
+
+import io.github.ensgijs.nbt.tag.Tag;
+import io.github.ensgijs.nbt.util.ArgValidator;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns tags into stable integer ids. Ids are assigned sequentially, starting at 0, in the order tags are first
+ * seen and never change for the lifetime of the registry. Two tags receive the same id iff they are
+ * {@link Tag#equals(Object) equal}.
+ *
+ * <p>The registry keeps its own copy of each distinct tag, the canonical instance, along with its hash code so
+ * that lookups only compute the hash of the tag being looked up and only deep compare on hash matches.</p>
+ *
+ * <p>Lookups are lock free and registration is synchronized, it is safe to share a registry between threads.</p>
+ *
+ * <p><b>WARNING canonical instances returned by {@link #get(int)} and {@link #intern(Tag)} are shared - modifying
+ * them corrupts the registry!</b></p>
+ *
+ * @param <E> type of tag being registered
+ * @see BlockStateRegistry
+ * @see PalettizedCuboid#setIdRegistry(TagRegistry)
+ */
+public class TagRegistry<E extends Tag<?>> {
+    private final Map<Key, Integer> ids = new ConcurrentHashMap<>();
+    private volatile Object[] values = new Object[64];
+    private volatile int size;
+
+    /** Wraps a canonical tag with its precomputed hash. */
+    private static final class Key {
+        final Tag<?> tag;
+        final int hash;
+
+        Key(Tag<?> tag) {
+            this.tag = tag;
+            this.hash = tag.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            return obj instanceof Key other && other.hash == hash && other.tag.equals(tag);
+        }
+    }
+
+    /** Number of distinct tags registered, ids are in the range [0..size). */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the id of the given tag, registering it if it has not been seen before.
+     * @param tag not modified and not taken by reference.
+     */
+    public int idOf(E tag) {
+        ArgValidator.requireValue(tag, "tag");
+        final Key probe = new Key(tag);
+        Integer id = ids.get(probe);
+        return id != null ? id : register(probe);
+    }
+
+    /** Gets the id of the given tag without registering it. Returns -1 if the tag is not registered. */
+    public int lookupId(E tag) {
+        ArgValidator.requireValue(tag, "tag");
+        Integer id = ids.get(new Key(tag));
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Gets the canonical instance of the tag with the given id.
+     * <p><b>WARNING the returned tag is shared, do not modify it!</b> Clone it first if you need to.</p>
+     * @throws IndexOutOfBoundsException if no tag has the given id.
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int id) {
+        if (id < 0 || id >= size)
+            throw new IndexOutOfBoundsException("id " + id + " is not registered");
+        return (E) values[id];
+    }
+
+    /**
+     * Gets the canonical instance equal to the given tag, registering it if needed. Replacing equal tags
+     * with their canonical instance lets them share memory.
+     * <p><b>WARNING the returned tag is shared, do not modify it!</b> Clone it first if you need to.</p>
+     */
+    public E intern(E tag) {
+        return get(idOf(tag));
+    }
+
+    private synchronized int register(Key probe) {
+        Integer id = ids.get(probe);
+        if (id != null)
+            return id;
+        final int newId = size;
+        final Key key = new Key(probe.tag.clone());
+        Object[] values = this.values;
+        if (newId == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[newId] = key.tag;
+        this.values = values;
+        size = newId + 1;  // publishes values[newId]
+        ids.put(key, newId);
+        return newId;
+    }
+}
@@ -0,0 +1,299 @@
+package io.github.ensgijs.nbt.mca.util;
+
+import io.github.ensgijs.nbt.io.BinaryNbtHelpers;
+import io.github.ensgijs.nbt.io.CompressionType;
+import io.github.ensgijs.nbt.mca.McaFileBase;
+import io.github.ensgijs.nbt.mca.TerrainChunk;
+import io.github.ensgijs.nbt.mca.TerrainSection;
+import io.github.ensgijs.nbt.mca.io.LoadFlags;
+import io.github.ensgijs.nbt.mca.io.McaFileHelpers;
+import io.github.ensgijs.nbt.mca.io.RandomAccessMcaFile;
+import io.github.ensgijs.nbt.tag.CompoundTag;
+import io.github.ensgijs.nbt.tag.ListTag;
+import io.github.ensgijs.nbt.tag.LongArrayTag;
+import io.github.ensgijs.nbt.tag.StringTag;
+import io.github.ensgijs.nbt.tag.Tag;
+import io.github.ensgijs.nbt.util.ArgValidator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Inverted index from block names and biome names to the chunks which contain them. Answers questions such as
+ * "which chunks contain minecraft:ancient_debris" without opening any region file.
+ *
+ * <p>The index is built from section palettes only, block and biome data is never unpacked, and each region is
+ * represented by one 1024 bit chunk bitmap per name. An index can be {@link #save saved} to and {@link #load loaded}
+ * from disk (as gzip compressed binary nbt) and brought up to date with {@link #update(File)} which only re-reads
+ * chunks whose mca header timestamp changed since they were last indexed.</p>
+ *
+ * <p>Limitations:</p>
+ * <ul>
+ *     <li>Block names are only indexed for palette based chunks (MC 1.13+).</li>
+ *     <li>Biome names are only indexed for chunks with biome palettes (MC 1.18+).</li>
+ *     <li>MCA timestamps have a resolution of one second; a chunk rewritten multiple times within the same second
+ *     as it was indexed will not be detected as changed.</li>
+ * </ul>
+ */
+public class WorldPaletteIndex {
+    public static final int FORMAT_VERSION = 1;
+    /** Timestamp value used for chunks which have never been indexed. */
+    private static final int NOT_INDEXED = Integer.MIN_VALUE;
+    private static final long LOAD_FLAGS = LoadFlags.BLOCK_STATES | LoadFlags.BIOMES | LoadFlags.RELEASE_CHUNK_DATA_TAG;
+
+    private final Map<IntPointXZ, RegionIndex> regions = new HashMap<>();
+
+    /** Per region state - timestamps of the chunks as they were when indexed and name to chunk bitmaps. */
+    static final class RegionIndex {
+        final int[] timestamps = new int[1024];
+        final Map<String, BitSet> blocks = new HashMap<>();
+        final Map<String, BitSet> biomes = new HashMap<>();
+
+        RegionIndex() {
+            Arrays.fill(timestamps, NOT_INDEXED);
+        }
+
+        void clearChunk(int chunkIndex) {
+            clearBit(blocks, chunkIndex);
+            clearBit(biomes, chunkIndex);
+        }
+
+        private static void clearBit(Map<String, BitSet> bitmaps, int chunkIndex) {
+            var iter = bitmaps.values().iterator();
+            while (iter.hasNext()) {
+                BitSet bits = iter.next();
+                bits.clear(chunkIndex);
+                if (bits.isEmpty()) iter.remove();
+            }
+        }
+    }
+
+    /** Creates a new, empty, index. */
+    public WorldPaletteIndex() {}
+
+    /**
+     * Loads an index previously written by {@link #save(Path)}. If the file does not exist an empty index is returned.
+     * @throws IOException if the file could not be read or is not a palette index file.
+     */
+    public static WorldPaletteIndex load(Path indexFile) throws IOException {
+        WorldPaletteIndex index = new WorldPaletteIndex();
+        if (!Files.exists(indexFile)) return index;
+        Tag<?> root = BinaryNbtHelpers.read(indexFile).getTag();
+        if (!(root instanceof CompoundTag rootTag) || rootTag.getInt("FormatVersion", -1) != FORMAT_VERSION) {
+            throw new IOException("Not a version " + FORMAT_VERSION + " palette index file: " + indexFile);
+        }
+        ListTag<CompoundTag> regionsTag = rootTag.getCompoundList("regions");
+        if (regionsTag == null) {
+            throw new IOException("Corrupt palette index file: " + indexFile);
+        }
+        for (CompoundTag regionTag : regionsTag) {
+            RegionIndex region = new RegionIndex();
+            int[] timestamps = regionTag.getIntArray("timestamps");
+            if (timestamps == null || timestamps.length != 1024) {
+                throw new IOException("Corrupt palette index file: " + indexFile);
+            }
+            System.arraycopy(timestamps, 0, region.timestamps, 0, 1024);
+            readBitmaps(regionTag.getCompoundTag("blocks"), region.blocks);
+            readBitmaps(regionTag.getCompoundTag("biomes"), region.biomes);
+            index.regions.put(new IntPointXZ(regionTag.getInt("x"), regionTag.getInt("z")), region);
+        }
+        return index;
+    }
+
+    private static void readBitmaps(CompoundTag tag, Map<String, BitSet> into) {
+        if (tag == null) return;
+        for (var entry : tag.entrySet()) {
+            into.put(entry.getKey(), BitSet.valueOf(((LongArrayTag) entry.getValue()).getValue()));
+        }
+    }
+
+    /**
+     * Writes this index to disk as gzip compressed binary nbt. Bitmaps are stored trimmed of trailing zero words.
+     */
+    public void save(Path indexFile) throws IOException {
+        CompoundTag root = new CompoundTag();
+        root.putInt("FormatVersion", FORMAT_VERSION);
+        ListTag<CompoundTag> regionsTag = new ListTag<>(CompoundTag.class, regions.size());
+        for (var entry : regions.entrySet()) {
+            RegionIndex region = entry.getValue();
+            CompoundTag regionTag = new CompoundTag();
+            regionTag.putInt("x", entry.getKey().getX());
+            regionTag.putInt("z", entry.getKey().getZ());
+            regionTag.putIntArray("timestamps", region.timestamps.clone());
+            regionTag.put("blocks", writeBitmaps(region.blocks));
+            regionTag.put("biomes", writeBitmaps(region.biomes));
+            regionsTag.add(regionTag);
+        }
+        root.put("regions", regionsTag);
+        BinaryNbtHelpers.write(root, indexFile, CompressionType.GZIP);
+    }
+
+    private static CompoundTag writeBitmaps(Map<String, BitSet> bitmaps) {
+        CompoundTag tag = new CompoundTag(bitmaps.size());
+        for (var entry : bitmaps.entrySet()) {
+            tag.putLongArray(entry.getKey(), entry.getValue().toLongArray());
+        }
+        return tag;
+    }
+
+    /**
+     * Brings the index up to date with every {@code r.X.Z.mca} file in the given region directory. Regions which
+     * no longer exist on disk are dropped from the index.
+     * @param regionDirectory directory containing terrain mca files (typically {@code <world>/region}).
+     * @return number of chunks which were (re)indexed or removed from the index.
+     */
+    public int update(File regionDirectory) throws IOException {
+        ArgValidator.check(regionDirectory.isDirectory(), "Not a directory: " + regionDirectory);
+        File[] mcaFiles = regionDirectory.listFiles((dir, name) -> McaFileHelpers.isValidMcaFileName(name));
+        int changed = 0;
+        Set<IntPointXZ> present = new HashSet<>();
+        if (mcaFiles != null) {
+            for (File mcaFile : mcaFiles) {
+                present.add(McaFileHelpers.regionXZFromFileName(mcaFile.getName()));
+                changed += updateRegion(mcaFile);
+            }
+        }
+        var iter = regions.entrySet().iterator();
+        while (iter.hasNext()) {
+            var entry = iter.next();
+            if (!present.contains(entry.getKey())) {
+                for (int ts : entry.getValue().timestamps) {
+                    if (ts >= 0) changed++;
+                }
+                iter.remove();
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Brings the index up to date with the given mca file. Only chunks whose header timestamp differs from the
+     * timestamp recorded when they were last indexed are read.
+     * @return number of chunks which were (re)indexed or removed from the index.
+     */
+    public int updateRegion(File mcaFile) throws IOException {
+        IntPointXZ regionXZ = McaFileHelpers.regionXZFromFileName(mcaFile.getName());
+        RegionIndex region = regions.computeIfAbsent(regionXZ, k -> new RegionIndex());
+        if (mcaFile.length() == 0) {
+            return dropMissingChunks(region);
+        }
+        int changed = 0;
+        try (RandomAccessMcaFile<TerrainChunk> ramf = new RandomAccessMcaFile<>(TerrainChunk.class, mcaFile, "r")) {
+            for (int i = 0; i < 1024; i++) {
+                final int timestamp = ramf.getChunkTimestamp(i);
+                if (timestamp == region.timestamps[i]) continue;
+                if (timestamp >= 0 || region.timestamps[i] >= 0) changed++;
+                region.clearChunk(i);
+                region.timestamps[i] = timestamp;
+                if (timestamp >= 0) {
+                    TerrainChunk chunk = ramf.read(i, LOAD_FLAGS);
+                    if (chunk != null) indexChunk(region, i, chunk);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static int dropMissingChunks(RegionIndex region) {
+        int changed = 0;
+        for (int i = 0; i < 1024; i++) {
+            if (region.timestamps[i] != -1) {
+                if (region.timestamps[i] >= 0) changed++;
+                region.clearChunk(i);
+                region.timestamps[i] = -1;
+            }
+        }
+        return changed;
+    }
+
+    private static void indexChunk(RegionIndex region, int chunkIndex, TerrainChunk chunk) {
+        for (TerrainSection section : chunk) {
+            PalettizedCuboid<CompoundTag> blockStates = section.getBlockStates();
+            if (blockStates != null) {
+                for (CompoundTag blockState : blockStates.distinctValuesByRef()) {
+                    String name = blockState.getString("Name", null);
+                    if (name != null) {
+                        region.blocks.computeIfAbsent(name, k -> new BitSet(1024)).set(chunkIndex);
+                    }
+                }
+            }
+            PalettizedCuboid<StringTag> biomes = section.getBiomes();
+            if (biomes != null) {
+                for (StringTag biome : biomes.distinctValuesByRef()) {
+                    region.biomes.computeIfAbsent(biome.getValue(), k -> new BitSet(1024)).set(chunkIndex);
+                }
+            }
+        }
+    }
+
+    /** @return the region XZ locations which are currently part of this index. */
+    public Set<IntPointXZ> indexedRegions() {
+        return Collections.unmodifiableSet(regions.keySet());
+    }
+
+    /** @return every block name present anywhere in the index, sorted. */
+    public SortedSet<String> blockNames() {
+        SortedSet<String> names = new TreeSet<>();
+        regions.values().forEach(r -> names.addAll(r.blocks.keySet()));
+        return names;
+    }
+
+    /** @return every biome name present anywhere in the index, sorted. */
+    public SortedSet<String> biomeNames() {
+        SortedSet<String> names = new TreeSet<>();
+        regions.values().forEach(r -> names.addAll(r.biomes.keySet()));
+        return names;
+    }
+
+    /**
+     * @param blockName block name, should include "minecraft:" prefix - one will not be added.
+     * @return absolute chunk XZ locations of every chunk which contains the given block in any of its sections.
+     */
+    public List<IntPointXZ> findChunksContainingBlock(String blockName) {
+        return findChunks(blockName, true);
+    }
+
+    /**
+     * @param biomeName biome name, should include "minecraft:" prefix - one will not be added.
+     * @return absolute chunk XZ locations of every chunk which contains the given biome in any of its sections.
+     */
+    public List<IntPointXZ> findChunksContainingBiome(String biomeName) {
+        return findChunks(biomeName, false);
+    }
+
+    /** @return true if the chunk at the given absolute chunk XZ was indexed as containing the given block. */
+    public boolean chunkContainsBlock(IntPointXZ chunkXZ, String blockName) {
+        return chunkContains(chunkXZ, blockName, true);
+    }
+
+    /** @return true if the chunk at the given absolute chunk XZ was indexed as containing the given biome. */
+    public boolean chunkContainsBiome(IntPointXZ chunkXZ, String biomeName) {
+        return chunkContains(chunkXZ, biomeName, false);
+    }
+
+    private boolean chunkContains(IntPointXZ chunkXZ, String name, boolean blocks) {
+        RegionIndex region = regions.get(chunkXZ.transformChunkToRegion());
+        if (region == null) return false;
+        BitSet bits = (blocks ? region.blocks : region.biomes).get(name);
+        return bits != null && bits.get(McaFileBase.getChunkIndex(chunkXZ.getX(), chunkXZ.getZ()));
+    }
+
+    private List<IntPointXZ> findChunks(String name, boolean blocks) {
+        ArgValidator.requireValue(name, "name");
+        List<IntPointXZ> found = new ArrayList<>();
+        regions.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.comparingInt(IntPointXZ::getZ).thenComparingInt(IntPointXZ::getX)))
+                .forEach(entry -> {
+                    BitSet bits = (blocks ? entry.getValue().blocks : entry.getValue().biomes).get(name);
+                    if (bits == null) return;
+                    IntPointXZ chunkOffset = entry.getKey().transformRegionToChunk();
+                    for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                        found.add(McaFileBase.getRelativeChunkXZ(i).add(chunkOffset));
+                    }
+                });
+        return found;
+    }
+}
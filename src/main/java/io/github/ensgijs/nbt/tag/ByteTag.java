@@ -1,20 +1,24 @@
 package io.github.ensgijs.nbt.tag;
 
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
+
 public class ByteTag extends NumberTag<Byte> implements Comparable<ByteTag> {
 
 	public static final byte ID = 1;
 	public static final byte ZERO_VALUE = 0;
 
+	private byte value;
+
 	public ByteTag() {
-		super(ZERO_VALUE);
+		this(ZERO_VALUE);
 	}
 
 	public ByteTag(byte value) {
-		super(value);
+		this.value = value;
 	}
 
 	public ByteTag(boolean value) {
-		super((byte) (value ? 1 : 0));
+		this((byte) (value ? 1 : 0));
 	}
 
 	/** {@inheritDoc} */
@@ -25,7 +29,13 @@ public class ByteTag extends NumberTag<Byte> implements Comparable<ByteTag> {
 
 	public boolean asBoolean() {
 		// TODO(bug): MC uses `.asByte() != 0` for truthiness - and asBoolean is valid on all NumberTags (even float and double)
-		return getValue() > 0;
+		return value > 0;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected Byte getValue() {
+		return value;
 	}
 
 	/**
@@ -33,24 +43,89 @@ public class ByteTag extends NumberTag<Byte> implements Comparable<ByteTag> {
 	 * @param value The value to be set.
 	 */
 	public void setValue(byte value) {
-		super.setValue(value);
+		checkNotFrozen();
+		this.value = value;
+		markMutated();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void setValue(Byte value) {
+		checkNotFrozen();
+		this.value = checkValue(value);
+		markMutated();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public byte asByte() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public short asShort() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int asInt() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long asLong() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public float asFloat() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double asDouble() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String valueToString(int maxDepth) {
+		return Byte.toString(value);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public boolean equals(Object other) {
-		return super.equals(other) && asByte() == ((ByteTag) other).asByte();
+		return super.equals(other) && value == ((ByteTag) other).value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int hashCode() {
+		return Byte.hashCode(value);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public int compareTo(ByteTag other) {
-		return getValue().compareTo(other.getValue());
+		return Byte.compare(value, other.value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+		// inherited value (unused), frozen, hashObserved; value
+		estimator.add(RetainedSizeEstimator.shallowSize(1, 2 + Byte.BYTES));
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public ByteTag clone() {
-		return new ByteTag(getValue());
+		return new ByteTag(value);
 	}
 }
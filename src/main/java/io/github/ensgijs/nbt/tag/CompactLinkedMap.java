@@ -0,0 +1,306 @@
+package io.github.ensgijs.nbt.tag;
+
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Insertion ordered map for the small maps which make up most {@link CompoundTag}s (block states, palette entries,
+ * item and entity sub-compounds). Up to {@link #MAX_COMPACT_SIZE} entries are kept in two parallel arrays which are
+ * searched linearly, comparing keys by identity first (deserialized and literal keys are usually interned), which
+ * avoids the per-entry node objects of a {@link LinkedHashMap}. When the map grows beyond that it moves its entries
+ * into a {@link LinkedHashMap} for good.
+ * <p>Iteration order is insertion order, and replacing the value of an existing key does not change its position,
+ * exactly as for a {@link LinkedHashMap}. Null keys are not supported.</p>
+ */
+final class CompactLinkedMap<K, V> extends AbstractMap<K, V> {
+	/** Largest size stored in the compact representation. */
+	static final int MAX_COMPACT_SIZE = 8;
+
+	private Object[] keys;
+	private Object[] values;
+	private int size;
+	/** Non-null once this map has outgrown the compact representation. */
+	private LinkedHashMap<K, V> map;
+	/** Structural modification count of the compact representation, for fail-fast iterators. */
+	private int modCount;
+	private Set<Map.Entry<K, V>> entrySet;
+
+	CompactLinkedMap() {
+		this(4);
+	}
+
+	CompactLinkedMap(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("initialCapacity must be >= 0");
+		}
+		initialCapacity = Math.min(Math.max(initialCapacity, 1), MAX_COMPACT_SIZE);
+		keys = new Object[initialCapacity];
+		values = new Object[initialCapacity];
+	}
+
+	private int indexOf(Object key) {
+		final Object[] keys = this.keys;
+		for (int i = 0; i < size; i++) {
+			if (keys[i] == key) return i;
+		}
+		if (key != null) {
+			for (int i = 0; i < size; i++) {
+				if (key.equals(keys[i])) return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int size() {
+		return map != null ? map.size() : size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return map != null ? map.containsKey(key) : indexOf(key) >= 0;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		if (map != null) return map.containsValue(value);
+		for (int i = 0; i < size; i++) {
+			if (Objects.equals(value, values[i])) return true;
+		}
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V get(Object key) {
+		if (map != null) return map.get(key);
+		final int i = indexOf(key);
+		return i >= 0 ? (V) values[i] : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V put(K key, V value) {
+		if (map != null) return map.put(key, value);
+		Objects.requireNonNull(key);
+		final int i = indexOf(key);
+		if (i >= 0) {
+			final V previous = (V) values[i];
+			values[i] = value;
+			return previous;
+		}
+		if (size == keys.length) {
+			if (size == MAX_COMPACT_SIZE) {
+				inflate().put(key, value);
+				return null;
+			}
+			final int capacity = Math.min(size * 2, MAX_COMPACT_SIZE);
+			keys = Arrays.copyOf(keys, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		keys[size] = key;
+		values[size] = value;
+		size++;
+		modCount++;
+		return null;
+	}
+
+	/** Moves all entries into a {@link LinkedHashMap}, which is used from now on. */
+	@SuppressWarnings("unchecked")
+	private LinkedHashMap<K, V> inflate() {
+		// capacity chosen so twice the compact size fits without resizing (default load factor is 0.75)
+		map = new LinkedHashMap<>(MAX_COMPACT_SIZE * 3);
+		for (int i = 0; i < size; i++) {
+			map.put((K) keys[i], (V) values[i]);
+		}
+		keys = null;
+		values = null;
+		size = 0;
+		modCount++;
+		return map;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V remove(Object key) {
+		if (map != null) return map.remove(key);
+		final int i = indexOf(key);
+		if (i < 0) return null;
+		final V previous = (V) values[i];
+		removeAt(i);
+		return previous;
+	}
+
+	private void removeAt(int i) {
+		final int tail = size - i - 1;
+		if (tail > 0) {
+			System.arraycopy(keys, i + 1, keys, i, tail);
+			System.arraycopy(values, i + 1, values, i, tail);
+		}
+		size--;
+		keys[size] = null;
+		values[size] = null;
+		modCount++;
+	}
+
+	@Override
+	public void clear() {
+		if (map != null) {
+			map.clear();
+			return;
+		}
+		Arrays.fill(keys, 0, size, null);
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+		modCount++;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		if (map != null) {
+			map.forEach(action);
+			return;
+		}
+		final int expectedModCount = modCount;
+		for (int i = 0; i < size; i++) {
+			action.accept((K) keys[i], (V) values[i]);
+			if (modCount != expectedModCount) throw new ConcurrentModificationException();
+		}
+	}
+
+	/** @return estimated size of a compact map holding the given number of entries, excluding keys and values. */
+	static long estimateSize(int size) {
+		// keys, values, map, entrySet; size, modCount
+		return RetainedSizeEstimator.shallowSize(4, 8)
+				+ 2 * RetainedSizeEstimator.arraySize(size, RetainedSizeEstimator.REFERENCE_BYTES);
+	}
+
+	/** Adds the size of this map, but not of its keys and values, to the estimator. */
+	void addRetainedBytes(RetainedSizeEstimator estimator) {
+		if (!estimator.visit(this)) return;
+		// keys, values, map, entrySet; size, modCount
+		estimator.add(RetainedSizeEstimator.shallowSize(4, 8));
+		if (map != null) {
+			estimator.add(RetainedSizeEstimator.linkedHashMapSize(map.size()));
+		} else {
+			estimator.addArray(keys);
+			estimator.addArray(values);
+		}
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new AbstractSet<>() {
+				@Override
+				public Iterator<Map.Entry<K, V>> iterator() {
+					return map != null ? map.entrySet().iterator() : new CompactIterator(null);
+				}
+
+				@Override
+				public int size() {
+					return CompactLinkedMap.this.size();
+				}
+
+				@Override
+				public void clear() {
+					CompactLinkedMap.this.clear();
+				}
+			};
+		}
+		return entrySet;
+	}
+
+	/**
+	 * Iterates the entries like {@link #entrySet()}, but the {@link Map.Entry#setValue(Object)} of each entry also
+	 * reports the change to {@code owner}, without wrapping the entries once more.
+	 */
+	Iterator<Map.Entry<K, V>> entryIterator(Tag<?> owner) {
+		if (map == null) {
+			return new CompactIterator(owner);
+		}
+		final Iterator<Map.Entry<K, V>> iter = map.entrySet().iterator();
+		return new Iterator<>() {
+			@Override
+			public boolean hasNext() {
+				return iter.hasNext();
+			}
+
+			@Override
+			public Map.Entry<K, V> next() {
+				final Map.Entry<K, V> entry = iter.next();
+				return new CompactEntry(entry.getKey(), entry.getValue(), owner);
+			}
+
+			@Override
+			public void remove() {
+				iter.remove();
+			}
+		};
+	}
+
+	private class CompactIterator implements Iterator<Map.Entry<K, V>> {
+		private final Tag<?> owner;
+		private int next;
+		private int last = -1;
+		private int expectedModCount = modCount;
+
+		CompactIterator(Tag<?> owner) {
+			this.owner = owner;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < size;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Map.Entry<K, V> next() {
+			if (modCount != expectedModCount) throw new ConcurrentModificationException();
+			if (next >= size) throw new NoSuchElementException();
+			last = next++;
+			return new CompactEntry((K) keys[last], (V) values[last], owner);
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) throw new IllegalStateException();
+			if (modCount != expectedModCount) throw new ConcurrentModificationException();
+			removeAt(last);
+			next = last;
+			last = -1;
+			expectedModCount = modCount;
+		}
+	}
+
+	/**
+	 * Entry which writes {@link #setValue(Object)} through to the map by key, and reports it to the owning tag, if
+	 * any - see {@link #entryIterator(Tag)}.
+	 */
+	private class CompactEntry extends AbstractMap.SimpleEntry<K, V> {
+		private static final long serialVersionUID = 1L;
+
+		private final transient Tag<?> owner;
+
+		CompactEntry(K key, V value, Tag<?> owner) {
+			super(key, value);
+			this.owner = owner;
+		}
+
+		@Override
+		public V setValue(V value) {
+			replace(getKey(), value);
+			if (owner != null) owner.markMutated();
+			return super.setValue(value);
+		}
+	}
+}
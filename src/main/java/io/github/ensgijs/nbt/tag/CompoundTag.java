@@ -9,6 +9,7 @@ import java.util.stream.Stream;
 import io.github.ensgijs.nbt.io.MaxDepthIO;
 import io.github.ensgijs.nbt.io.NamedTag;
 import io.github.ensgijs.nbt.util.ArgValidator;
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
 
 import static io.github.ensgijs.nbt.tag.StringTag.escapeString;
 
@@ -17,12 +18,27 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>>
 
 	public static final byte ID = 10;
 
+	/**
+	 * Structural hash and the hash epoch stamp it is valid for - see {@link #hashCode()}. The stamp is written after
+	 * the hash and read before it, so a thread which sees a stamp also sees the hash it was written with.
+	 */
+	private int cachedHash;
+	private volatile long cachedHashEpoch;
+	/** True while this is a {@link #thaw() thawed} copy still sharing the value map of a frozen compound. */
+	private boolean sharedValue;
+
 	public CompoundTag() {
 		super(createEmptyValue());
 	}
 
+	/**
+	 * @param initialCapacity initial capacity of the backing map. Small compounds are stored in a compact array
+	 *                        backed map and only switch to a {@link LinkedHashMap} once they grow.
+	 */
 	public CompoundTag(int initialCapacity) {
-		super(new LinkedHashMap<>(initialCapacity));
+		super(initialCapacity <= CompactLinkedMap.MAX_COMPACT_SIZE
+				? new CompactLinkedMap<>(initialCapacity)
+				: new LinkedHashMap<>(initialCapacity));
 	}
 
 	/**
@@ -39,27 +55,66 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>>
 	}
 
 	private static Map<String, Tag<?>> createEmptyValue() {
-		return new LinkedHashMap<>(8);
+		return new CompactLinkedMap<>();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>A {@link #thaw() thawed} copy of a frozen compound takes its own copy of the map here, the first time it is
+	 * needed. Each value is replaced by a thawed copy of itself, so tags reached through this compound are always
+	 * mutable, while the tags nested deeper stay shared until they are reached in turn.</p>
+	 */
+	@Override
+	protected Map<String, Tag<?>> getValue() {
+		if (sharedValue && !isFrozen()) {
+			unshare();
+		}
+		return super.getValue();
+	}
+
+	/** The value map without unsharing it - only for operations which neither modify nor hand out any tags. */
+	private Map<String, Tag<?>> peekValue() {
+		return super.getValue();
+	}
+
+	private void unshare() {
+		final Map<String, Tag<?>> shared = super.getValue();
+		final Map<String, Tag<?>> copy = shared.size() <= CompactLinkedMap.MAX_COMPACT_SIZE
+				? new CompactLinkedMap<>(shared.size())
+				// Choose initial capacity based on default load factor (0.75) so all entries fit in map without resizing
+				: new LinkedHashMap<>((int) Math.ceil(shared.size() / 0.75f));
+		for (Map.Entry<String, Tag<?>> e : shared.entrySet()) {
+			final Tag<?> value = e.getValue().thaw();
+			// the copies are part of the hash this compound kept from the frozen one
+			value.markHashObserved();
+			copy.put(e.getKey(), value);
+		}
+		sharedValue = false;
+		// an equal value, so any cached hash stays valid
+		replaceValue(copy);
 	}
 
 	public int size() {
-		return getValue().size();
+		return peekValue().size();
 	}
 
 	public boolean isEmpty() {
-		return getValue().isEmpty();
+		return peekValue().isEmpty();
 	}
 
 	public Tag<?> remove(String key) {
-		return getValue().remove(key);
+		Tag<?> removed = getValue().remove(key);
+		if (removed != null) markMutated();
+		return removed;
 	}
 
 	public void clear() {
 		getValue().clear();
+		markMutated();
 	}
 
 	public boolean containsKey(String key) {
-		return getValue().containsKey(key);
+		return peekValue().containsKey(key);
 	}
 
 	/**
@@ -71,30 +126,108 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>>
 	 * @return true if the given key is found and the value is of the expected type.
 	 */
 	public boolean containsKey(String key, Class<?> tagType) {
-		var v = getValue().get(key);
+		var v = peekValue().get(key);
 		return v != null && tagType.isAssignableFrom(v.getClass());
 	}
 
 	public boolean containsValue(Tag<?> value) {
-		return getValue().containsValue(value);
+		return peekValue().containsValue(value);
 	}
 
 	public Collection<Tag<?>> values() {
-		return getValue().values();
+		final Collection<Tag<?>> values = getValue().values();
+		return new AbstractCollection<>() {
+			public Iterator<Tag<?>> iterator() {
+				return new MutationTrackingIterator<>(CompoundTag.this, values.iterator());
+			}
+
+			public int size() {
+				return values.size();
+			}
+
+			public boolean contains(Object o) {
+				return values.contains(o);
+			}
+
+			public void clear() {
+				values.clear();
+				markMutated();
+			}
+		};
 	}
 
 	public Set<String> keySet() {
-		return getValue().keySet();
+		final Set<String> keys = getValue().keySet();
+		return new AbstractSet<>() {
+			public Iterator<String> iterator() {
+				return new MutationTrackingIterator<>(CompoundTag.this, keys.iterator());
+			}
+
+			public int size() {
+				return keys.size();
+			}
+
+			public boolean contains(Object o) {
+				return keys.contains(o);
+			}
+
+			public boolean remove(Object o) {
+				if (!keys.remove(o)) return false;
+				markMutated();
+				return true;
+			}
+
+			public void clear() {
+				keys.clear();
+				markMutated();
+			}
+		};
 	}
 
 	public Set<Map.Entry<String, Tag<?>>> entrySet() {
-		return getValue().entrySet();
+		final Map<String, Tag<?>> map = getValue();
+		final Set<Map.Entry<String, Tag<?>>> entries = map.entrySet();
+		return new AbstractSet<>() {
+			public Iterator<Map.Entry<String, Tag<?>>> iterator() {
+				if (map instanceof CompactLinkedMap<String, Tag<?>> compact) {
+					// its entries report setValue themselves
+					return new MutationTrackingIterator<>(CompoundTag.this, compact.entryIterator(CompoundTag.this));
+				}
+				final Iterator<Map.Entry<String, Tag<?>>> iter = entries.iterator();
+				return new MutationTrackingIterator<>(CompoundTag.this, iter) {
+					public Map.Entry<String, Tag<?>> next() {
+						final Map.Entry<String, Tag<?>> entry = iter.next();
+						return new AbstractMap.SimpleEntry<>(entry) {
+							public Tag<?> setValue(Tag<?> value) {
+								final Tag<?> previous = entry.setValue(value);
+								super.setValue(value);
+								CompoundTag.this.markMutated();
+								return previous;
+							}
+						};
+					}
+				};
+			}
+
+			public int size() {
+				return entries.size();
+			}
+
+			public boolean contains(Object o) {
+				return entries.contains(o);
+			}
+
+			public void clear() {
+				entries.clear();
+				markMutated();
+			}
+		};
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public Iterator<NamedTag> iterator() {
-		return new CompoundTagIterator(getValue().entrySet());
+		return new CompoundTagIterator(this, getValue().entrySet());
 	}
 
 	public Stream<NamedTag> stream() {
@@ -337,12 +470,7 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>>
 	public float[] getFloatTagListAsArray(String key) {
 		ListTag<FloatTag> t = getListTagAutoCast(key);
 		if (t == null) return null;
-		List<FloatTag> floatTagList = t.getValue();
-		float[] floats = new float[floatTagList.size()];
-		for (int i = 0; i < floats.length; i++) {
-			floats[i] = floatTagList.get(i).asFloat();
-		}
-		return floats;
+		return t.toFloatArray();
 	}
 
 	/**
@@ -353,12 +481,7 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>>
 	public double[] getDoubleTagListAsArray(String key) {
 		ListTag<DoubleTag> t = getListTagAutoCast(key);
 		if (t == null) return null;
-		List<DoubleTag> doubleTagList = t.getValue();
-		double[] doubles = new double[doubleTagList.size()];
-		for (int i = 0; i < doubles.length; i++) {
-			doubles[i] = doubleTagList.get(i).asDouble();
-		}
-		return doubles;
+		return t.toDoubleArray();
 	}
 
 	/**
@@ -382,7 +505,9 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>>
 
 	 /** @return the previous value associated with key or null if there was none. */
 	public Tag<?> put(String key, Tag<?> tag) {
-		return getValue().put(Objects.requireNonNull(key), Objects.requireNonNull(tag));
+		Tag<?> previous = getValue().put(Objects.requireNonNull(key), Objects.requireNonNull(tag));
+		markMutated();
+		return previous;
 	}
 
 	/**
@@ -496,11 +621,7 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>>
 			remove(key);
 			return null;
 		}
-		ListTag<FloatTag> listTag = new ListTag<>(FloatTag.class, values.length);
-		for (float v : values) {
-			listTag.addFloat(v);
-		}
-		return put(key, listTag);
+		return put(key, ListTag.ofFloats(values));
 	}
 
 	/**
@@ -515,11 +636,7 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>>
 			remove(key);
 			return null;
 		}
-		ListTag<DoubleTag> listTag = new ListTag<>(DoubleTag.class, values.length);
-		for (double v : values) {
-			listTag.addDouble(v);
-		}
-		return put(key, listTag);
+		return put(key, ListTag.ofDoubles(values));
 	}
 
 	/**
@@ -548,7 +665,7 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>>
 	public String valueToString(int maxDepth) {
 		StringBuilder sb = new StringBuilder("{");
 		boolean first = true;
-		Iterator<Map.Entry<String, Tag<?>>> iter = getValue().entrySet().stream()
+		Iterator<Map.Entry<String, Tag<?>>> iter = peekValue().entrySet().stream()
 				.sorted(Map.Entry.comparingByKey())
 				.iterator();
 		while (iter.hasNext()) {
@@ -571,15 +688,117 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>>
 		if (!super.equals(other) || size() != ((CompoundTag) other).size()) {
 			return false;
 		}
-		for (Map.Entry<String, Tag<?>> e : getValue().entrySet()) {
+		if (hasCachedHash() && ((CompoundTag) other).hasCachedHash()
+				&& cachedHash != ((CompoundTag) other).cachedHash) {
+			return false;
+		}
+		for (Map.Entry<String, Tag<?>> e : peekValue().entrySet()) {
 			Tag<?> v;
-			if ((v = ((CompoundTag) other).get(e.getKey())) == null || !e.getValue().equals(v)) {
+			if ((v = ((CompoundTag) other).peekValue().get(e.getKey())) == null || !e.getValue().equals(v)) {
 				return false;
 			}
 		}
 		return true;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>The hash is cached until the next mutation of any tag which is part of a cached hash, so repeated hashing
+	 * of an unchanged tree, and {@link #equals(Object)} of trees with known and differing hashes, are cheap.
+	 * Building, reading or modifying tags which are not part of any cached hash leaves cached hashes valid. The hash is not cached while
+	 * this compound holds any tag which can be modified without notice, such as an {@link ArrayTag}.</p>
+	 */
+	@Override
+	public int hashCode() {
+		if (hasCachedHash()) {
+			return cachedHash;
+		}
+		final long epoch = currentHashEpoch();
+		int hash = 0;
+		boolean cacheable = true;
+		for (Map.Entry<String, Tag<?>> e : peekValue().entrySet()) {
+			hash += e.getKey().hashCode() ^ e.getValue().hashCode();
+			cacheable &= isHashCacheable(e.getValue());
+		}
+		if (cacheable) {
+			// from here on mutations of this compound, or of its values, must invalidate the cached hash
+			markHashObserved();
+			for (Tag<?> value : peekValue().values()) {
+				value.markHashObserved();
+			}
+			cachedHash = hash;
+			cachedHashEpoch = claimHashEpoch(epoch);
+		}
+		return hash;
+	}
+
+	/** @return true if {@link #hashCode()} is cached and still valid. */
+	boolean hasCachedHash() {
+		return isHashEpochCurrent(cachedHashEpoch);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>The hash code of a frozen compound is computed once, here.</p>
+	 */
+	@Override
+	public CompoundTag freeze() {
+		if (!isFrozen()) {
+			if (!sharedValue) {
+				for (Tag<?> tag : getValue().values()) {
+					tag.freeze();
+				}
+				setValue(Collections.unmodifiableMap(getValue()));
+			}
+			cachedHash = hashCode();
+			super.freeze();
+			cachedHashEpoch = FROZEN_HASH_STAMP;
+		}
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>Thawing is O(1): the copy shares the frozen tags, and copies them lazily, level by level, only as they
+	 * are accessed. See {@link #getValue()}.</p>
+	 */
+	@Override
+	public CompoundTag thaw() {
+		if (!isFrozen()) {
+			return this;
+		}
+		CompoundTag copy = new CompoundTag(peekValue());
+		copy.sharedValue = true;
+		copy.markHashObserved();
+		copy.cachedHash = cachedHash;
+		copy.cachedHashEpoch = claimHashEpoch(currentHashEpoch());
+		return copy;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+		// value, frozen, hashObserved, cachedHash, cachedHashEpoch, sharedValue
+		estimator.add(RetainedSizeEstimator.shallowSize(1, 2 + 4 + 8 + 1));
+		final Map<String, Tag<?>> map = peekValue();
+		if (map instanceof CompactLinkedMap<String, Tag<?>> compact) {
+			compact.addRetainedBytes(estimator);
+		} else if (estimator.visit(map)) {
+			final int size = map.size();
+			if (!(map instanceof HashMap)) {
+				// a wrapper, such as the unmodifiable view of a frozen compound, around a map we cannot see
+				estimator.add(RetainedSizeEstimator.shallowSize(4, 0));
+			}
+			estimator.add(map instanceof HashMap || size > CompactLinkedMap.MAX_COMPACT_SIZE
+					? RetainedSizeEstimator.linkedHashMapSize(size)
+					: CompactLinkedMap.estimateSize(size));
+		}
+		for (Map.Entry<String, Tag<?>> e : map.entrySet()) {
+			estimator.addString(e.getKey());
+			e.getValue().estimateRetainedBytes(estimator);
+		}
+	}
+
 	/**
 	 * Compares this compound tag to another one.
 	 * <p>Comparison sequence:</p>
@@ -591,8 +810,8 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>>
 	 */
 	@Override
 	public int compareTo(CompoundTag o) {
-		final var thisMap = getValue();
-		final var otherMap = o.getValue();
+		final var thisMap = peekValue();
+		final var otherMap = o.peekValue();
 		int k = Integer.compare(size(), otherMap.size());
 		if (k != 0) return k;
 		if (!thisMap.keySet().containsAll(otherMap.keySet())) {
@@ -611,21 +830,31 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>>
 		return 0;
 	}
 
-	/** {@inheritDoc} */
+	/**
+	 * {@inheritDoc}
+	 * <p>The clone of a frozen compound, and of any frozen tags nested in this one, is a lazy copy-on-write copy -
+	 * see {@link #thaw()}.</p>
+	 */
 	@Override
 	public CompoundTag clone() {
+		if (isFrozen()) {
+			return thaw();
+		}
+		final int size = peekValue().size();
 		// Choose initial capacity based on default load factor (0.75) so all entries fit in map without resizing
-		CompoundTag copy = new CompoundTag((int) Math.ceil(getValue().size() / 0.75f));
-		for (Map.Entry<String, Tag<?>> e : getValue().entrySet()) {
+		CompoundTag copy = new CompoundTag(size <= CompactLinkedMap.MAX_COMPACT_SIZE ? size : (int) Math.ceil(size / 0.75f));
+		for (Map.Entry<String, Tag<?>> e : peekValue().entrySet()) {
 			copy.put(e.getKey(), e.getValue().clone());
 		}
 		return copy;
 	}
 
     private static class CompoundTagIterator implements Iterator<NamedTag> {
+		private final CompoundTag owner;
 		private final Iterator<Map.Entry<String, Tag<?>>> iterator;
 
-		CompoundTagIterator(Set<Map.Entry<String, Tag<?>>> set) {
+		CompoundTagIterator(CompoundTag owner, Set<Map.Entry<String, Tag<?>>> set) {
+			this.owner = owner;
 			this.iterator = set.iterator();
 		}
 
@@ -636,18 +865,48 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>>
 
 		@Override
 		public NamedTag next() {
-			return new MappedNamedTag(iterator.next());
+			return new MappedNamedTag(owner, iterator.next());
+		}
+
+		@Override
+		public void remove() {
+			iterator.remove();
+			owner.markMutated();
+		}
+	}
+
+	/** Iterator of a view of this compound's map which reports removals. */
+	private static class MutationTrackingIterator<E> implements Iterator<E> {
+		private final CompoundTag owner;
+		private final Iterator<E> iterator;
+
+		MutationTrackingIterator(CompoundTag owner, Iterator<E> iterator) {
+			this.owner = owner;
+			this.iterator = iterator;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iterator.hasNext();
+		}
+
+		@Override
+		public E next() {
+			return iterator.next();
 		}
 
 		@Override
 		public void remove() {
 			iterator.remove();
+			owner.markMutated();
 		}
 	}
 
 	private static class MappedNamedTag extends NamedTag {
+		private final CompoundTag owner;
 		private final Map.Entry<String, Tag<?>> entry;
-		public MappedNamedTag(Map.Entry<String, Tag<?>> entry) {
+		public MappedNamedTag(CompoundTag owner, Map.Entry<String, Tag<?>> entry) {
+			this.owner = owner;
 			this.entry = entry;
 		}
 
@@ -658,6 +917,7 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>>
 		public void setTag(Tag<?> tag) {
 			ArgValidator.requireValue(tag, "tag");
 			entry.setValue(tag);
+			owner.markMutated();
 		}
 
 		public String getName() {
@@ -1,16 +1,20 @@
 package io.github.ensgijs.nbt.tag;
 
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
+
 public class DoubleTag extends NumberTag<Double> implements Comparable<DoubleTag> {
 
 	public static final byte ID = 6;
 	public static final double ZERO_VALUE = 0.0D;
 
+	private double value;
+
 	public DoubleTag() {
-		super(ZERO_VALUE);
+		this(ZERO_VALUE);
 	}
 
 	public DoubleTag(double value) {
-		super(value);
+		this.value = value;
 	}
 
 	/** {@inheritDoc} */
@@ -19,29 +23,100 @@ public class DoubleTag extends NumberTag<Double> implements Comparable<DoubleTag
 		return ID;
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	protected Double getValue() {
+		return value;
+	}
+
 	/**
 	 * Sets the value for this Tag directly.
 	 * @param value The value to be set.
 	 */
 	public void setValue(double value) {
-		super.setValue(value);
+		checkNotFrozen();
+		this.value = value;
+		markMutated();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void setValue(Double value) {
+		checkNotFrozen();
+		this.value = checkValue(value);
+		markMutated();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public byte asByte() {
+		return (byte) value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public short asShort() {
+		return (short) value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int asInt() {
+		return (int) value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long asLong() {
+		return (long) value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public float asFloat() {
+		return (float) value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double asDouble() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String valueToString(int maxDepth) {
+		return Double.toString(value);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public boolean equals(Object other) {
-		return super.equals(other) && getValue().equals(((DoubleTag) other).getValue());
+		return super.equals(other) && Double.doubleToLongBits(value) == Double.doubleToLongBits(((DoubleTag) other).value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int hashCode() {
+		return Double.hashCode(value);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public int compareTo(DoubleTag other) {
-		return getValue().compareTo(other.getValue());
+		return Double.compare(value, other.value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+		// inherited value (unused), frozen, hashObserved; value
+		estimator.add(RetainedSizeEstimator.shallowSize(1, 2 + Double.BYTES));
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public DoubleTag clone() {
-		return new DoubleTag(getValue());
+		return new DoubleTag(value);
 	}
 }
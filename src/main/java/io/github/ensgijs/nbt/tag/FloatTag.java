@@ -1,16 +1,20 @@
 package io.github.ensgijs.nbt.tag;
 
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
+
 public class FloatTag extends NumberTag<Float> implements Comparable<FloatTag> {
 
 	public static final byte ID = 5;
 	public static final float ZERO_VALUE = 0.0F;
 
+	private float value;
+
 	public FloatTag() {
-		super(ZERO_VALUE);
+		this(ZERO_VALUE);
 	}
 
 	public FloatTag(float value) {
-		super(value);
+		this.value = value;
 	}
 
 	/** {@inheritDoc} */
@@ -19,29 +23,100 @@ public class FloatTag extends NumberTag<Float> implements Comparable<FloatTag> {
 		return ID;
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	protected Float getValue() {
+		return value;
+	}
+
 	/**
 	 * Sets the value for this Tag directly.
 	 * @param value The value to be set.
 	 */
 	public void setValue(float value) {
-		super.setValue(value);
+		checkNotFrozen();
+		this.value = value;
+		markMutated();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void setValue(Float value) {
+		checkNotFrozen();
+		this.value = checkValue(value);
+		markMutated();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public byte asByte() {
+		return (byte) value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public short asShort() {
+		return (short) value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int asInt() {
+		return (int) value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long asLong() {
+		return (long) value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public float asFloat() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double asDouble() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String valueToString(int maxDepth) {
+		return Float.toString(value);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public boolean equals(Object other) {
-		return super.equals(other) && getValue().equals(((FloatTag) other).getValue());
+		return super.equals(other) && Float.floatToIntBits(value) == Float.floatToIntBits(((FloatTag) other).value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int hashCode() {
+		return Float.hashCode(value);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public int compareTo(FloatTag other) {
-		return getValue().compareTo(other.getValue());
+		return Float.compare(value, other.value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+		// inherited value (unused), frozen, hashObserved; value
+		estimator.add(RetainedSizeEstimator.shallowSize(1, 2 + Float.BYTES));
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public FloatTag clone() {
-		return new FloatTag(getValue());
+		return new FloatTag(value);
 	}
 }
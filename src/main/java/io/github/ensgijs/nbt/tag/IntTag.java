@@ -1,16 +1,20 @@
 package io.github.ensgijs.nbt.tag;
 
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
+
 public class IntTag extends NumberTag<Integer> implements Comparable<IntTag> {
 
 	public static final byte ID = 3;
 	public static final int ZERO_VALUE = 0;
 
+	private int value;
+
 	public IntTag() {
-		super(ZERO_VALUE);
+		this(ZERO_VALUE);
 	}
 
 	public IntTag(int value) {
-		super(value);
+		this.value = value;
 	}
 
 	/** {@inheritDoc} */
@@ -19,29 +23,100 @@ public class IntTag extends NumberTag<Integer> implements Comparable<IntTag> {
 		return ID;
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	protected Integer getValue() {
+		return value;
+	}
+
 	/**
 	 * Sets the value for this Tag directly.
 	 * @param value The value to be set.
 	 */
 	public void setValue(int value) {
-		super.setValue(value);
+		checkNotFrozen();
+		this.value = value;
+		markMutated();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void setValue(Integer value) {
+		checkNotFrozen();
+		this.value = checkValue(value);
+		markMutated();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public byte asByte() {
+		return (byte) value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public short asShort() {
+		return (short) value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int asInt() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long asLong() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public float asFloat() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double asDouble() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String valueToString(int maxDepth) {
+		return Integer.toString(value);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public boolean equals(Object other) {
-		return super.equals(other) && asInt() == ((IntTag) other).asInt();
+		return super.equals(other) && value == ((IntTag) other).value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int hashCode() {
+		return Integer.hashCode(value);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public int compareTo(IntTag other) {
-		return getValue().compareTo(other.getValue());
+		return Integer.compare(value, other.value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+		// inherited value (unused), frozen, hashObserved; value
+		estimator.add(RetainedSizeEstimator.shallowSize(1, 2 + Integer.BYTES));
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public IntTag clone() {
-		return new IntTag(getValue());
+		return new IntTag(value);
 	}
 }
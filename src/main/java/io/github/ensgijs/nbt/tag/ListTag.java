@@ -1,16 +1,38 @@
 package io.github.ensgijs.nbt.tag;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.*;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import io.github.ensgijs.nbt.io.MaxDepthIO;
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
 
 /**
  * ListTag represents a typed List in the nbt structure.
  * An empty {@link ListTag} will be of type {@link EndTag} (unknown type).
  * The type of an empty untyped {@link ListTag} can be set by using any of the {@code add()}
  * methods or any of the {@code as...List()} methods.
+ *
+ * <h2>Packed numeric lists</h2>
+ * <p>Lists of {@link IntTag}, {@link LongTag}, {@link FloatTag} or {@link DoubleTag} created by
+ * {@link #ofDoubles(double...)} and friends, filled only through {@link #addDouble(double)} and friends, or read
+ * from binary nbt, store their values in a primitive array instead of as individual tags. Such a list is
+ * transparently unpacked into element tags the first time an element tag is needed, for example by
+ * {@link #get(int)} or {@link #iterator()}. {@link #size()}, {@link #equals(Object)}, {@link #hashCode()},
+ * {@link #compareTo(ListTag)}, {@link #clone()} and the primitive accessors such as {@link #getDouble(int)}
+ * and {@link #toDoubleArray()} never unpack.</p>
+ *
+ * <p>Unpacking does not modify the packed state, the element tags are built privately and then published
+ * atomically, so concurrent reads of a packed list are as safe as those of any other list. If two threads race
+ * to unpack, both get the element tags of whichever published first.</p>
+ *
+ * <h2>Hash code caching</h2>
+ * <p>{@link #hashCode()} is cached until the next mutation of any tag which is part of a cached hash, as described
+ * by {@link CompoundTag#hashCode()}.
+ * Lists created by {@link #ListTag(List)} or {@link #subList(int, int)}, and lists a sub list was taken from, never
+ * cache their hash, as the backing list may be modified directly.</p>
  */
 public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>, Comparable<ListTag<E>>, MaxDepthIO {
 
@@ -18,6 +40,43 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 
 	private Class<?> typeClass = null;
 
+	private static final VarHandle UNPACKED;
+	static {
+		try {
+			UNPACKED = MethodHandles.lookup().findVarHandle(ListTag.class, "unpacked", List.class);
+		} catch (ReflectiveOperationException ex) {
+			throw new ExceptionInInitializerError(ex);
+		}
+	}
+
+	// At most one of these is non-null, and only while the list is packed or its unpacked element tags are not yet
+	// settled - in either case super.getValue() is empty.
+	private int[] packedInts;
+	private long[] packedLongs;
+	private float[] packedFloats;
+	private double[] packedDoubles;
+	/** Number of values in use in the packed array. */
+	private int packedSize;
+	/**
+	 * Element tags of a packed list, published by the first read which needs them - see {@link #unpack()}. Once
+	 * set, this is the value of the list and the packed array is stale until {@link #settle() settled}.
+	 */
+	private volatile List<E> unpacked;
+
+	/**
+	 * Structural hash and the hash epoch stamp it is valid for - see {@link #hashCode()}. The stamp is written after
+	 * the hash and read before it, so a thread which sees a stamp also sees the hash it was written with.
+	 */
+	private int cachedHash;
+	private volatile long cachedHashEpoch;
+	/**
+	 * True if the backing list was provided by the caller, who may modify it without notice, or is shared with a
+	 * {@link #subList(int, int)} view.
+	 */
+	private boolean externalList;
+	/** True while this is a {@link #thaw() thawed} copy still sharing the list of a frozen list tag. */
+	private boolean sharedValue;
+
 	private ListTag(int initialCapacity) {
 		super(createEmptyValue(initialCapacity));
 	}
@@ -32,6 +91,7 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 		super(usingList);
 		validateContainsNoNullsAndTypeOk(usingList);
 		assignTypeClassIfNeeded(usingList);
+		externalList = true;
 	}
 
 	protected Collection<? extends E> validateContainsNoNullsAndTypeOk(Collection<? extends E> c) {
@@ -140,13 +200,13 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 	/** {@inheritDoc} */
 	@Override
 	public int size() {
-		return getValue().size();
+		return isPacked() ? packedSize : peekValue().size();
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public boolean isEmpty() {
-		return getValue().isEmpty();
+		return size() == 0;
 	}
 
 	/** {@inheritDoc} */
@@ -158,7 +218,9 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 	/** {@inheritDoc} */
 	@Override
 	public E remove(int index) {
-		return getValue().remove(index);
+		E removed = getValue().remove(index);
+		markMutated();
+		return removed;
 	}
 
 	/** {@inheritDoc} */
@@ -176,13 +238,13 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 	/** {@inheritDoc} */
 	@Override
 	public ListIterator<E> listIterator() {
-		return new NullRejectingListIterator<>(getValue().listIterator());
+		return new NullRejectingListIterator<>(this, getValue().listIterator());
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public ListIterator<E> listIterator(int index) {
-		return new NullRejectingListIterator<>(getValue().listIterator(index));
+		return new NullRejectingListIterator<>(this, getValue().listIterator(index));
 	}
 
 	/** {@inheritDoc}
@@ -196,13 +258,22 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 	 */
 	@Override
 	public ListTag<E> subList(int fromIndex, int toIndex) {
-		return new ListTag<>(getValue().subList(fromIndex, toIndex));
+		final ListTag<E> view = new ListTag<>(getValue().subList(fromIndex, toIndex));
+		if (!isFrozen()) {
+			// writes through the view modify this list without notice, so it can no longer cache its hash
+			externalList = true;
+			markMutated();
+		}
+		return view;
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public void clear() {
+		checkNotFrozen();
+		dropPacked();
 		getValue().clear();
+		markMutated();
 	}
 
 	/** {@inheritDoc} */
@@ -247,7 +318,9 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 	 */
 	@Override
 	public E set(int index, E element) {
-		return getValue().set(index, Objects.requireNonNull(element));
+		E previous = getValue().set(index, Objects.requireNonNull(element));
+		markMutated();
+		return previous;
 	}
 
 	/**
@@ -256,6 +329,7 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 	 */
 	@Override
 	public boolean add(E element) {
+		checkNotFrozen();
 		Objects.requireNonNull(element);
 		if (getTypeClass() == EndTag.class) {
 			typeClass = checkTypeClass(element.getClass());
@@ -265,13 +339,13 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 							element.getClass().getSimpleName(),
 							typeClass.getSimpleName()));
 		}
-		return getValue().add(element);
+		return markMutatedIf(getValue().add(element));
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public boolean remove(Object o) {
-		return getValue().remove(o);
+		return markMutatedIf(getValue().remove(o));
 	}
 
 	/**
@@ -280,6 +354,7 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 	 */
 	@Override
 	public void add(int index, E element) {
+		checkNotFrozen();
 		Objects.requireNonNull(element);
 		if (getTypeClass() == EndTag.class) {
 			typeClass = checkTypeClass(element.getClass());
@@ -290,6 +365,7 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 							typeClass.getSimpleName()));
 		}
 		getValue().add(index, element);
+		markMutated();
 	}
 
 	/**
@@ -298,7 +374,8 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 	 */
 	@Override
 	public boolean addAll(Collection<? extends E> c) {
-		return getValue().addAll(assignTypeClassIfNeeded(validateContainsNoNullsAndTypeOk(c)));
+		checkNotFrozen();
+		return markMutatedIf(getValue().addAll(assignTypeClassIfNeeded(validateContainsNoNullsAndTypeOk(c))));
 	}
 
 	/**
@@ -307,31 +384,33 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 	 */
 	@Override
 	public boolean addAll(int index, Collection<? extends E> c) {
-		return getValue().addAll(index, assignTypeClassIfNeeded(validateContainsNoNullsAndTypeOk(c)));
+		checkNotFrozen();
+		return markMutatedIf(getValue().addAll(index, assignTypeClassIfNeeded(validateContainsNoNullsAndTypeOk(c))));
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public boolean removeAll(Collection<?> c) {
-		return getValue().removeAll(c);
+		return markMutatedIf(getValue().removeAll(c));
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public boolean removeIf(Predicate<? super E> filter) {
-		return getValue().removeIf(filter);
+		return markMutatedIf(getValue().removeIf(filter));
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public boolean retainAll(Collection<?> c) {
-		return getValue().retainAll(c);
+		return markMutatedIf(getValue().retainAll(c));
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public void sort(Comparator<? super E> c) {
 		getValue().sort(c);
+		markMutated();
 	}
 
 	public void addBoolean(boolean value) {
@@ -347,19 +426,55 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 	}
 
 	public void addInt(int value) {
-		addUnchecked(new IntTag(value));
+		settle();
+		if (packedInts == null && !startPacking(IntTag.class)) {
+			addUnchecked(new IntTag(value));
+			return;
+		}
+		if (packedSize == packedInts.length) {
+			packedInts = Arrays.copyOf(packedInts, packedSize * 2);
+		}
+		packedInts[packedSize++] = value;
+		markMutated();
 	}
 
 	public void addLong(long value) {
-		addUnchecked(new LongTag(value));
+		settle();
+		if (packedLongs == null && !startPacking(LongTag.class)) {
+			addUnchecked(new LongTag(value));
+			return;
+		}
+		if (packedSize == packedLongs.length) {
+			packedLongs = Arrays.copyOf(packedLongs, packedSize * 2);
+		}
+		packedLongs[packedSize++] = value;
+		markMutated();
 	}
 
 	public void addFloat(float value) {
-		addUnchecked(new FloatTag(value));
+		settle();
+		if (packedFloats == null && !startPacking(FloatTag.class)) {
+			addUnchecked(new FloatTag(value));
+			return;
+		}
+		if (packedSize == packedFloats.length) {
+			packedFloats = Arrays.copyOf(packedFloats, packedSize * 2);
+		}
+		packedFloats[packedSize++] = value;
+		markMutated();
 	}
 
 	public void addDouble(double value) {
-		addUnchecked(new DoubleTag(value));
+		settle();
+		if (packedDoubles == null && !startPacking(DoubleTag.class)) {
+			addUnchecked(new DoubleTag(value));
+			return;
+		}
+		if (packedSize == packedDoubles.length) {
+			packedDoubles = Arrays.copyOf(packedDoubles, packedSize * 2);
+		}
+		packedDoubles[packedSize++] = value;
+		markMutated();
 	}
 
 	public void addString(String value) {
@@ -384,6 +499,217 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 		return getValue().get(index);
 	}
 
+	/**
+	 * Gets the value at the given index of a list of {@link NumberTag}s, converted as by {@link NumberTag#asInt()}.
+	 * Does not unpack a packed list.
+	 * @throws ClassCastException if this is not a list of number tags.
+	 */
+	public int getInt(int index) {
+		if (!isPacked())
+			return ((NumberTag<?>) get(index)).asInt();
+		Objects.checkIndex(index, packedSize);
+		if (packedInts != null) return packedInts[index];
+		if (packedLongs != null) return (int) packedLongs[index];
+		if (packedFloats != null) return (int) packedFloats[index];
+		return (int) packedDoubles[index];
+	}
+
+	/**
+	 * Gets the value at the given index of a list of {@link NumberTag}s, converted as by {@link NumberTag#asLong()}.
+	 * Does not unpack a packed list.
+	 * @throws ClassCastException if this is not a list of number tags.
+	 */
+	public long getLong(int index) {
+		if (!isPacked())
+			return ((NumberTag<?>) get(index)).asLong();
+		Objects.checkIndex(index, packedSize);
+		if (packedInts != null) return packedInts[index];
+		if (packedLongs != null) return packedLongs[index];
+		if (packedFloats != null) return (long) packedFloats[index];
+		return (long) packedDoubles[index];
+	}
+
+	/**
+	 * Gets the value at the given index of a list of {@link NumberTag}s, converted as by {@link NumberTag#asFloat()}.
+	 * Does not unpack a packed list.
+	 * @throws ClassCastException if this is not a list of number tags.
+	 */
+	public float getFloat(int index) {
+		if (!isPacked())
+			return ((NumberTag<?>) get(index)).asFloat();
+		Objects.checkIndex(index, packedSize);
+		if (packedInts != null) return packedInts[index];
+		if (packedLongs != null) return packedLongs[index];
+		if (packedFloats != null) return packedFloats[index];
+		return (float) packedDoubles[index];
+	}
+
+	/**
+	 * Gets the value at the given index of a list of {@link NumberTag}s, converted as by {@link NumberTag#asDouble()}.
+	 * Does not unpack a packed list.
+	 * @throws ClassCastException if this is not a list of number tags.
+	 */
+	public double getDouble(int index) {
+		if (!isPacked())
+			return ((NumberTag<?>) get(index)).asDouble();
+		Objects.checkIndex(index, packedSize);
+		if (packedInts != null) return packedInts[index];
+		if (packedLongs != null) return packedLongs[index];
+		if (packedFloats != null) return packedFloats[index];
+		return packedDoubles[index];
+	}
+
+	/** @return a new array of all values, see {@link #getInt(int)}. */
+	public int[] toIntArray() {
+		if (packedInts != null && isPacked()) return Arrays.copyOf(packedInts, packedSize);
+		int[] values = new int[size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = getInt(i);
+		}
+		return values;
+	}
+
+	/** @return a new array of all values, see {@link #getLong(int)}. */
+	public long[] toLongArray() {
+		if (packedLongs != null && isPacked()) return Arrays.copyOf(packedLongs, packedSize);
+		long[] values = new long[size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = getLong(i);
+		}
+		return values;
+	}
+
+	/** @return a new array of all values, see {@link #getFloat(int)}. */
+	public float[] toFloatArray() {
+		if (packedFloats != null && isPacked()) return Arrays.copyOf(packedFloats, packedSize);
+		float[] values = new float[size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = getFloat(i);
+		}
+		return values;
+	}
+
+	/** @return a new array of all values, see {@link #getDouble(int)}. */
+	public double[] toDoubleArray() {
+		if (packedDoubles != null && isPacked()) return Arrays.copyOf(packedDoubles, packedSize);
+		double[] values = new double[size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = getDouble(i);
+		}
+		return values;
+	}
+
+	/**
+	 * True if this list currently stores its values in a primitive array rather than as element tags,
+	 * see the class documentation.
+	 */
+	public boolean isPacked() {
+		return (packedInts != null || packedLongs != null || packedFloats != null || packedDoubles != null)
+				&& unpacked == null;
+	}
+
+	/** {@inheritDoc}
+	 * <p>Unpacks a packed list into element tags. A {@link #thaw() thawed} copy of a frozen list takes its own copy
+	 * of the list here, the first time it is needed, in which each element is replaced by a thawed copy of itself.</p>
+	 */
+	@Override
+	protected List<E> getValue() {
+		if (isPacked()) {
+			return unpack();
+		} else if (sharedValue && !isFrozen()) {
+			unshare();
+		}
+		return peekValue();
+	}
+
+	/** The element list without unpacking or unsharing it - only for operations which neither modify nor hand out
+	 * any tags, and only while not packed. */
+	private List<E> peekValue() {
+		final List<E> list = unpacked;
+		return list != null ? list : super.getValue();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void unshare() {
+		final List<E> shared = super.getValue();
+		final List<E> copy = new ArrayList<>(shared.size());
+		for (E e : shared) {
+			final E value = (E) e.thaw();
+			// the copies are part of the hash this list kept from the frozen one
+			value.markHashObserved();
+			copy.add(value);
+		}
+		sharedValue = false;
+		// an equal value, so any cached hash stays valid
+		replaceValue(copy);
+	}
+
+	/**
+	 * Builds element tags for the packed values and publishes them as {@link #unpacked}, without modifying any
+	 * other state, so that concurrent reads of a packed list do not race.
+	 * @return the published element tags, which are those of another thread if it published first.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<E> unpack() {
+		final List<E> list = new ArrayList<>(Math.max(packedSize, 3));
+		// a cached hash covering this list also covers the elements, so modifying them must invalidate it
+		final boolean observed = isHashObserved();
+		for (int i = 0; i < packedSize; i++) {
+			final E e = (E) packedTagAt(i);
+			if (observed) e.markHashObserved();
+			list.add(e);
+		}
+		final List<E> published = (List<E>) UNPACKED.compareAndExchange(this, null, list);
+		return published != null ? published : list;
+	}
+
+	/**
+	 * Makes the {@link #unpacked} element tags, if any, the value of this list and drops the stale packed array.
+	 * Only for operations which modify this list.
+	 */
+	private void settle() {
+		final List<E> list = unpacked;
+		if (list != null) {
+			dropPacked();
+			// holds the same values, so any cached hash stays valid
+			replaceValue(list);
+		}
+	}
+
+	private void dropPacked() {
+		packedInts = null;
+		packedLongs = null;
+		packedFloats = null;
+		packedDoubles = null;
+		packedSize = 0;
+		unpacked = null;
+	}
+
+	/** Creates a new tag for the packed value at the given index. */
+	private Tag<?> packedTagAt(int index) {
+		if (packedInts != null) return new IntTag(packedInts[index]);
+		if (packedLongs != null) return new LongTag(packedLongs[index]);
+		if (packedFloats != null) return new FloatTag(packedFloats[index]);
+		return new DoubleTag(packedDoubles[index]);
+	}
+
+	/**
+	 * Switches an empty list of the given (or unknown) type to packed storage. Lists backed by a caller provided
+	 * list, such as a {@link #subList(int, int)} view, are never packed as their values must be written through.
+	 * @return false if this list is not empty, is of a different type or is backed by a caller provided list.
+	 */
+	private boolean startPacking(Class<?> type) {
+		if (isFrozen() || sharedValue || externalList || isPacked() || !peekValue().isEmpty()
+				|| (getTypeClass() != EndTag.class && typeClass != type))
+			return false;
+		typeClass = type;
+		if (type == IntTag.class) packedInts = new int[3];
+		else if (type == LongTag.class) packedLongs = new long[3];
+		else if (type == FloatTag.class) packedFloats = new float[3];
+		else packedDoubles = new double[3];
+		return true;
+	}
+
 	@SuppressWarnings("unchecked")
 	public <L extends Tag<?>> ListTag<L> asTypedList(Class<L> type) {
 		checkTypeClass(type);
@@ -433,7 +759,11 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 	@SuppressWarnings("unchecked")
 	public <T extends Tag<?>> ListTag<ListTag<T>> asListTagList() {
 		checkTypeClass(ListTag.class);
-		typeClass = ListTag.class;
+		if (typeClass != ListTag.class) {
+			checkNotFrozen();
+			typeClass = ListTag.class;
+			markMutated();
+		}
 		return (ListTag<ListTag<T>>) this;
 	}
 
@@ -489,6 +819,67 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 		return tag;
 	}
 
+	/**
+	 * Creates a packed list of the given values. The array is copied.
+	 */
+	public static ListTag<IntTag> ofInts(int... values) {
+		return wrapInts(values.clone());
+	}
+
+	/**
+	 * Creates a packed list backed by the given array. The array is NOT copied and must not be modified by
+	 * the caller afterwards.
+	 */
+	public static ListTag<IntTag> wrapInts(int[] values) {
+		ListTag<IntTag> tag = new ListTag<>(0);
+		tag.typeClass = IntTag.class;
+		tag.packedInts = values.length > 0 ? values : new int[3];
+		tag.packedSize = values.length;
+		return tag;
+	}
+
+	/** Creates a packed list of the given values. The array is copied. */
+	public static ListTag<LongTag> ofLongs(long... values) {
+		return wrapLongs(values.clone());
+	}
+
+	/** Creates a packed list backed by the given array, see {@link #wrapInts(int[])}. */
+	public static ListTag<LongTag> wrapLongs(long[] values) {
+		ListTag<LongTag> tag = new ListTag<>(0);
+		tag.typeClass = LongTag.class;
+		tag.packedLongs = values.length > 0 ? values : new long[3];
+		tag.packedSize = values.length;
+		return tag;
+	}
+
+	/** Creates a packed list of the given values. The array is copied. */
+	public static ListTag<FloatTag> ofFloats(float... values) {
+		return wrapFloats(values.clone());
+	}
+
+	/** Creates a packed list backed by the given array, see {@link #wrapInts(int[])}. */
+	public static ListTag<FloatTag> wrapFloats(float[] values) {
+		ListTag<FloatTag> tag = new ListTag<>(0);
+		tag.typeClass = FloatTag.class;
+		tag.packedFloats = values.length > 0 ? values : new float[3];
+		tag.packedSize = values.length;
+		return tag;
+	}
+
+	/** Creates a packed list of the given values. The array is copied. */
+	public static ListTag<DoubleTag> ofDoubles(double... values) {
+		return wrapDoubles(values.clone());
+	}
+
+	/** Creates a packed list backed by the given array, see {@link #wrapInts(int[])}. */
+	public static ListTag<DoubleTag> wrapDoubles(double[] values) {
+		ListTag<DoubleTag> tag = new ListTag<>(0);
+		tag.typeClass = DoubleTag.class;
+		tag.packedDoubles = values.length > 0 ? values : new double[3];
+		tag.packedSize = values.length;
+		return tag;
+	}
+
 	public static ListTag<StringTag> ofStrings(List<String> values) {
 		var tag = new ListTag<>(StringTag.class);
 		for (var v : values) {
@@ -502,7 +893,8 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 	public String valueToString(int maxDepth) {
 		StringBuilder sb = new StringBuilder("{\"type\":\"").append(getTypeClass().getSimpleName()).append("\",\"list\":[");
 		for (int i = 0; i < size(); i++) {
-			sb.append(i > 0 ? "," : "").append(get(i).valueToString(decrementMaxDepth(maxDepth)));
+			final Tag<?> element = isPacked() ? packedTagAt(i) : peekValue().get(i);
+			sb.append(i > 0 ? "," : "").append(element.valueToString(decrementMaxDepth(maxDepth)));
 		}
 		sb.append("]}");
 		return sb.toString();
@@ -518,18 +910,156 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 				.getTypeClass()) {
 			return false;
 		}
+		if (hasCachedHash() && ((ListTag<?>) other).hasCachedHash() && cachedHash != ((ListTag<?>) other).cachedHash) {
+			return false;
+		}
+		if (isPacked() || ((ListTag<?>) other).isPacked()) {
+			return packedEquals((ListTag<?>) other);
+		}
 		for (int i = 0; i < size(); i++) {
-			if (!get(i).equals(((ListTag<?>) other).get(i))) {
+			if (!peekValue().get(i).equals(((ListTag<?>) other).peekValue().get(i))) {
 				return false;
 			}
 		}
 		return true;
 	}
 
+	/**
+	 * Compares this list to another list of the same numeric element type and size, at least one of which is packed,
+	 * using the same semantics as the element tags' equals.
+	 */
+	private boolean packedEquals(ListTag<?> other) {
+		final int size = size();
+		if (typeClass == FloatTag.class) {
+			for (int i = 0; i < size; i++) {
+				if (Float.floatToIntBits(getFloat(i)) != Float.floatToIntBits(other.getFloat(i))) return false;
+			}
+		} else if (typeClass == DoubleTag.class) {
+			for (int i = 0; i < size; i++) {
+				if (Double.doubleToLongBits(getDouble(i)) != Double.doubleToLongBits(other.getDouble(i))) return false;
+			}
+		} else {
+			for (int i = 0; i < size; i++) {
+				if (getLong(i) != other.getLong(i)) return false;
+			}
+		}
+		return true;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public int hashCode() {
-		return Objects.hash(getTypeClass().hashCode(), getValue().hashCode());
+		if (hasCachedHash()) {
+			return cachedHash;
+		}
+		final long epoch = currentHashEpoch();
+		boolean cacheable = !externalList;
+		// same result as List.hashCode() over the element tags
+		int h = 1;
+		if (!isPacked()) {
+			for (E e : peekValue()) {
+				h = 31 * h + e.hashCode();
+				cacheable &= isHashCacheable(e);
+			}
+		} else {
+			for (int i = 0; i < packedSize; i++) {
+				final int eh;
+				if (packedInts != null) eh = Integer.hashCode(packedInts[i]);
+				else if (packedLongs != null) eh = Long.hashCode(packedLongs[i]);
+				else if (packedFloats != null) eh = Float.hashCode(packedFloats[i]);
+				else eh = Double.hashCode(packedDoubles[i]);
+				h = 31 * h + eh;
+			}
+		}
+		final int hash = Objects.hash(getTypeClass().hashCode(), h);
+		if (cacheable) {
+			// from here on mutations of this list, or of its elements, must invalidate the cached hash
+			markHashObserved();
+			if (!isPacked()) {
+				for (E e : peekValue()) {
+					e.markHashObserved();
+				}
+			}
+			cachedHash = hash;
+			cachedHashEpoch = claimHashEpoch(epoch);
+		}
+		return hash;
+	}
+
+	/** @return true if {@link #hashCode()} is cached and still valid. */
+	boolean hasCachedHash() {
+		return isHashEpochCurrent(cachedHashEpoch);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>A packed list is unpacked, and the hash code of a frozen list is computed once, here.</p>
+	 */
+	@Override
+	public ListTag<E> freeze() {
+		if (!isFrozen()) {
+			if (!sharedValue) {
+				final List<E> list = getValue();
+				settle();
+				for (E tag : list) {
+					tag.freeze();
+				}
+				setValue(Collections.unmodifiableList(externalList ? new ArrayList<>(list) : list));
+				externalList = false;
+			}
+			cachedHash = hashCode();
+			super.freeze();
+			cachedHashEpoch = FROZEN_HASH_STAMP;
+		}
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>Thawing is O(1): the copy shares the frozen tags, and copies them lazily, level by level, only as they
+	 * are accessed. See {@link #getValue()}.</p>
+	 */
+	@Override
+	public ListTag<E> thaw() {
+		if (!isFrozen()) {
+			return this;
+		}
+		ListTag<E> copy = new ListTag<>(0);
+		copy.typeClass = typeClass;
+		copy.setValue(peekValue());
+		copy.sharedValue = true;
+		copy.markHashObserved();
+		copy.cachedHash = cachedHash;
+		copy.cachedHashEpoch = claimHashEpoch(currentHashEpoch());
+		return copy;
+	}
+
+	private boolean markMutatedIf(boolean modified) {
+		if (modified) markMutated();
+		return modified;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+		// value, typeClass, 4 packed arrays, unpacked; frozen, hashObserved, packedSize, cachedHash, cachedHashEpoch,
+		// externalList, sharedValue
+		estimator.add(RetainedSizeEstimator.shallowSize(7, 2 + 4 + 4 + 8 + 1 + 1));
+		estimator.addValue(packedInts);
+		estimator.addValue(packedLongs);
+		estimator.addValue(packedFloats);
+		estimator.addValue(packedDoubles);
+		final List<E> list = peekValue();
+		if (estimator.visit(list)) {
+			if (!(list instanceof ArrayList)) {
+				// a wrapper, such as the unmodifiable view of a frozen list or a sub list, around a list we cannot see
+				estimator.add(RetainedSizeEstimator.shallowSize(2, 0));
+			}
+			estimator.add(RetainedSizeEstimator.arrayListSize(list.size()));
+		}
+		for (E e : list) {
+			e.estimateRetainedBytes(estimator);
+		}
 	}
 
 	/** {@inheritDoc} */
@@ -538,20 +1068,51 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 		int k = Integer.compare(this.size(), o.size());
 		if (k != 0) return k;
 		k = this.typeClass == o.typeClass ? 0 : this.typeClass.getName().compareTo(o.typeClass.getName());
+		if (k == 0 && (isPacked() || o.isPacked())) {
+			return packedCompareTo(o);
+		}
 		for (int i = 0, len = size(); k == 0 && i < len; i++) {
-			k = Tag.compare(this.get(i), o.get(i));
+			k = Tag.compare(this.peekValue().get(i), o.peekValue().get(i));
 		}
 		return k;
 	}
 
-	/** {@inheritDoc} */
+	/** Same as {@link #packedEquals(ListTag)} but for {@link #compareTo(ListTag)}. */
+	private int packedCompareTo(ListTag<?> o) {
+		int k = 0;
+		for (int i = 0, len = size(); k == 0 && i < len; i++) {
+			if (typeClass == FloatTag.class) k = Float.compare(getFloat(i), o.getFloat(i));
+			else if (typeClass == DoubleTag.class) k = Double.compare(getDouble(i), o.getDouble(i));
+			else k = Long.compare(getLong(i), o.getLong(i));
+		}
+		return k;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>The clone of a frozen list, and of any frozen tags nested in this one, is a lazy copy-on-write copy -
+	 * see {@link #thaw()}.</p>
+	 */
 	@SuppressWarnings("unchecked")
 	@Override
 	public ListTag<E> clone() {
+		if (isFrozen()) {
+			return thaw();
+		}
+		if (isPacked()) {
+			ListTag<E> copy = new ListTag<>(0);
+			copy.typeClass = typeClass;
+			copy.packedSize = packedSize;
+			if (packedInts != null) copy.packedInts = packedInts.clone();
+			if (packedLongs != null) copy.packedLongs = packedLongs.clone();
+			if (packedFloats != null) copy.packedFloats = packedFloats.clone();
+			if (packedDoubles != null) copy.packedDoubles = packedDoubles.clone();
+			return copy;
+		}
 		ListTag<E> copy = new ListTag<>(this.size());
 		// assure type safety for clone
 		copy.typeClass = typeClass;
-		for (E e : getValue()) {
+		for (E e : peekValue()) {
 			copy.add((E) e.clone());
 		}
 		return copy;
@@ -578,8 +1139,10 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 	}
 
 	private static class NullRejectingListIterator<E extends Tag<?>> implements ListIterator<E> {
+		private final ListTag<E> owner;
 		private final ListIterator<E> iter;
-		public NullRejectingListIterator(ListIterator<E> iter) {
+		public NullRejectingListIterator(ListTag<E> owner, ListIterator<E> iter) {
+			this.owner = owner;
 			this.iter = iter;
 		}
 
@@ -616,16 +1179,19 @@ public class ListTag<E extends Tag<?>> extends Tag<List<E>> implements List<E>,
 		@Override
 		public void remove() {
 			iter.remove();
+			owner.markMutated();
 		}
 
 		@Override
 		public void set(E e) {
 			iter.set(Objects.requireNonNull(e));
+			owner.markMutated();
 		}
 
 		@Override
 		public void add(E e) {
 			iter.add(Objects.requireNonNull(e));
+			owner.markMutated();
 		}
 	}
 }
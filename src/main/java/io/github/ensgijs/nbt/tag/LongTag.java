@@ -1,16 +1,20 @@
 package io.github.ensgijs.nbt.tag;
 
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
+
 public class LongTag extends NumberTag<Long> implements Comparable<LongTag> {
 
 	public static final byte ID = 4;
 	public static final long ZERO_VALUE = 0L;
 
+	private long value;
+
 	public LongTag() {
-		super(ZERO_VALUE);
+		this(ZERO_VALUE);
 	}
 
 	public LongTag(long value) {
-		super(value);
+		this.value = value;
 	}
 
 	/** {@inheritDoc} */
@@ -19,29 +23,100 @@ public class LongTag extends NumberTag<Long> implements Comparable<LongTag> {
 		return ID;
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	protected Long getValue() {
+		return value;
+	}
+
 	/**
 	 * Sets the value for this Tag directly.
 	 * @param value The value to be set.
 	 */
 	public void setValue(long value) {
-		super.setValue(value);
+		checkNotFrozen();
+		this.value = value;
+		markMutated();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void setValue(Long value) {
+		checkNotFrozen();
+		this.value = checkValue(value);
+		markMutated();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public byte asByte() {
+		return (byte) value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public short asShort() {
+		return (short) value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int asInt() {
+		return (int) value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long asLong() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public float asFloat() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double asDouble() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String valueToString(int maxDepth) {
+		return Long.toString(value);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public boolean equals(Object other) {
-		return super.equals(other) && asLong() == ((LongTag) other).asLong();
+		return super.equals(other) && value == ((LongTag) other).value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int hashCode() {
+		return Long.hashCode(value);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public int compareTo(LongTag other) {
-		return getValue().compareTo(other.getValue());
+		return Long.compare(value, other.value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+		// inherited value (unused), frozen, hashObserved; value
+		estimator.add(RetainedSizeEstimator.shallowSize(1, 2 + Long.BYTES));
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public LongTag clone() {
-		return new LongTag(getValue());
+		return new LongTag(value);
 	}
 }
@@ -2,6 +2,8 @@ package io.github.ensgijs.nbt.tag;
 
 /**
  * NumberTag is an abstract representation of any {@link Number} tag.
+ * <p>The built-in number tags store their value as a primitive and override every accessor, so reading or writing
+ * them through the primitive methods ({@link #asInt()}, {@code IntTag#setValue(int)}, etc.) never boxes.</p>
  *
  * @param <T> The array type.
  */
@@ -11,6 +13,9 @@ public abstract class NumberTag<T extends Number & Comparable<T>> extends Tag<T>
 		super(value);
 	}
 
+	/** For subclasses which store a primitive value, see {@link Tag#Tag()}. */
+	protected NumberTag() {}
+
 	public byte asByte() {
 		return getValue().byteValue();
 	}
@@ -1,16 +1,20 @@
 package io.github.ensgijs.nbt.tag;
 
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
+
 public class ShortTag extends NumberTag<Short> implements Comparable<ShortTag> {
 
 	public static final byte ID = 2;
 	public static final short ZERO_VALUE = 0;
 
+	private short value;
+
 	public ShortTag() {
-		super(ZERO_VALUE);
+		this(ZERO_VALUE);
 	}
 
 	public ShortTag(short value) {
-		super(value);
+		this.value = value;
 	}
 
 	/** {@inheritDoc} */
@@ -19,29 +23,100 @@ public class ShortTag extends NumberTag<Short> implements Comparable<ShortTag> {
 		return ID;
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	protected Short getValue() {
+		return value;
+	}
+
 	/**
 	 * Sets the value for this Tag directly.
 	 * @param value The value to be set.
 	 */
 	public void setValue(short value) {
-		super.setValue(value);
+		checkNotFrozen();
+		this.value = value;
+		markMutated();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void setValue(Short value) {
+		checkNotFrozen();
+		this.value = checkValue(value);
+		markMutated();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public byte asByte() {
+		return (byte) value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public short asShort() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int asInt() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long asLong() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public float asFloat() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double asDouble() {
+		return value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String valueToString(int maxDepth) {
+		return Short.toString(value);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public boolean equals(Object other) {
-		return super.equals(other) && asShort() == ((ShortTag) other).asShort();
+		return super.equals(other) && value == ((ShortTag) other).value;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int hashCode() {
+		return Short.hashCode(value);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public int compareTo(ShortTag other) {
-		return getValue().compareTo(other.getValue());
+		return Short.compare(value, other.value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+		// inherited value (unused), frozen, hashObserved; value
+		estimator.add(RetainedSizeEstimator.shallowSize(1, 2 + Short.BYTES));
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public ShortTag clone() {
-		return new ShortTag(getValue());
+		return new ShortTag(value);
 	}
 }
@@ -1,24 +1,26 @@
 package io.github.ensgijs.nbt.tag;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 public class StringTag extends Tag<String> implements Comparable<StringTag> {
 
-	private static final Pattern ESCAPE_PATTERN = Pattern.compile("[\\\\\n\t\r\"]");
-	private static final Pattern LENIENT_NON_QUOTE_PATTERN = Pattern.compile("(?!true|false)[a-z_][a-z0-9_\\-]*", Pattern.CASE_INSENSITIVE);
-
-	private static final Map<String, String> ESCAPE_CHARACTERS;
+	/** Escape sequence for each ASCII char which must be escaped in a quoted string, null for all other chars. */
+	private static final String[] ESCAPES = new String[128];
+	/** ASCII chars allowed in an unquoted string - the first char must also not be a digit or '-'. */
+	private static final boolean[] UNQUOTED_CHARS = new boolean[128];
 	static {
-        ESCAPE_CHARACTERS = Map.of(
-				"\\", "\\\\\\\\",
-				"\n", "\\\\n",
-				"\t", "\\\\t",
-				"\r", "\\\\r",
-				"\"", "\\\\\"");
+		ESCAPES['\\'] = "\\\\";
+		ESCAPES['\n'] = "\\n";
+		ESCAPES['\t'] = "\\t";
+		ESCAPES['\r'] = "\\r";
+		ESCAPES['"'] = "\\\"";
+		for (char c = 'a'; c <= 'z'; c++) {
+			UNQUOTED_CHARS[c] = true;
+			UNQUOTED_CHARS[Character.toUpperCase(c)] = true;
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			UNQUOTED_CHARS[c] = true;
+		}
+		UNQUOTED_CHARS['_'] = true;
+		UNQUOTED_CHARS['-'] = true;
 	}
 
 	public static final byte ID = 8;
@@ -61,17 +63,48 @@ public class StringTag extends Tag<String> implements Comparable<StringTag> {
 	 * @return The escaped string.
 	 * */
 	public static String escapeString(String s, boolean lenient) {
-		StringBuffer sb = new StringBuffer();
-		Matcher m = ESCAPE_PATTERN.matcher(s);
-		while (m.find()) {
-			m.appendReplacement(sb, ESCAPE_CHARACTERS.get(m.group()));
+		if (lenient && isUnquotedString(s)) {
+			return s;
+		}
+		return appendEscapedString(new StringBuilder(s.length() + 8), s, false).toString();
+	}
+
+	/**
+	 * Appends the escaped form of {@code s} to the given builder, see {@link #escapeString(String, boolean)}.
+	 * @return the given builder.
+	 */
+	public static StringBuilder appendEscapedString(StringBuilder sb, String s, boolean lenient) {
+		if (lenient && isUnquotedString(s)) {
+			return sb.append(s);
+		}
+		sb.append('"');
+		int copyFrom = 0;
+		for (int i = 0, len = s.length(); i < len; i++) {
+			final char c = s.charAt(i);
+			final String escape;
+			if (c < 128 && (escape = ESCAPES[c]) != null) {
+				sb.append(s, copyFrom, i).append(escape);
+				copyFrom = i + 1;
+			}
 		}
-		m.appendTail(sb);
-		m = LENIENT_NON_QUOTE_PATTERN.matcher(s);
-		if (!lenient || !m.matches()) {
-			sb.insert(0, "\"").append("\"");
+		return sb.append(s, copyFrom, s.length()).append('"');
+	}
+
+	/**
+	 * @return true if the string can be written without quotes: it starts with a letter or '_', continues with
+	 * letters, digits, '_' or '-', and does not start with "true" or "false" (ignoring case) so that it cannot be
+	 * mistaken for a boolean.
+	 */
+	private static boolean isUnquotedString(String s) {
+		final int len = s.length();
+		if (len == 0) return false;
+		char c = s.charAt(0);
+		if (c >= 128 || !UNQUOTED_CHARS[c] || c == '-' || (c >= '0' && c <= '9')) return false;
+		for (int i = 1; i < len; i++) {
+			c = s.charAt(i);
+			if (c >= 128 || !UNQUOTED_CHARS[c]) return false;
 		}
-		return sb.toString();
+		return !s.regionMatches(true, 0, "true", 0, 4) && !s.regionMatches(true, 0, "false", 0, 5);
 	}
 
 	@Override
@@ -2,11 +2,13 @@ package io.github.ensgijs.nbt.tag;
 
 import io.github.ensgijs.nbt.io.MaxDepthReachedException;
 import io.github.ensgijs.nbt.io.NamedTag;
+import io.github.ensgijs.nbt.util.RetainedSizeEstimator;
 
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Base class for all NBT tags.
@@ -30,6 +32,15 @@ import java.util.Objects;
  * is no guarantee that {@code MaxDepthReachedException}s are thrown for them. The respective class 
  * will document this behavior accordingly.</p>
  * 
+ * <h2>Freezing</h2>
+ * <p>{@link #freeze()} makes a tag, and every tag nested in it, permanently immutable. Mutators of a frozen tag
+ * throw an {@link UnsupportedOperationException}, so frozen trees can be shared between threads and consumers by
+ * reference instead of being defensively cloned. As usual, a frozen tree must be safely published (for example
+ * through a final field or a concurrent collection) when handing it to other threads. {@link #thaw()} and
+ * {@link #clone()} return a mutable copy of a frozen tag. For compound and list tags this copy is made lazily:
+ * it shares the frozen tags nested in it and copies each of them only once it is accessed.</p>
+ * <p>The arrays of frozen {@link ArrayTag}s are still returned by reference and must not be modified.</p>
+ * 
  * @param <T> The type of the contained value
  * */
 public abstract class Tag<T> implements Cloneable {
@@ -39,7 +50,32 @@ public abstract class Tag<T> implements Cloneable {
 	 * */
 	public static final int DEFAULT_MAX_DEPTH = 512;
 
+	/**
+	 * Hash epoch used to validate the structural hashes cached by {@link CompoundTag} and {@link ListTag}.
+	 * A cached hash is stamped with the epoch it was computed in and is trusted only while the epoch is unchanged.
+	 * A mutation of any tag whose hash was folded into a cached hash (see {@link #hashObserved}) ends the epoch,
+	 * which is how a change deep inside a tree also invalidates the cached hashes of every container above it
+	 * (tags do not know their parents, and may have more than one). Mutations of all other tags, such as those of
+	 * a tree being built or deserialized, neither touch this counter nor invalidate any cached hash.
+	 * <p>An odd value means a hash was cached during the epoch. Only then does a mutation need to move the epoch
+	 * forward (to the next, even, value), which keeps mutation heavy work like deserialization free of writes to
+	 * this shared counter.</p>
+	 */
+	private static final AtomicLong HASH_EPOCH = new AtomicLong();
+	/**
+	 * Stamp of the hash cached by a frozen tag, which stays valid forever. Written last when freezing, so that
+	 * checking the stamp alone is enough to safely read the hash from any thread.
+	 */
+	static final long FROZEN_HASH_STAMP = -1;
+
 	private T value;
+	private boolean frozen;
+	/**
+	 * True once the hash of this tag was folded into a cached structural hash - its own or that of a container it
+	 * is in. Only then can mutating this tag invalidate a cached hash. Never reset, as the containers which may
+	 * have folded in the hash are unknown.
+	 */
+	private boolean hashObserved;
 
 	/**
 	 * Initializes this Tag with some value. If the value is {@code null}, it will
@@ -50,6 +86,12 @@ public abstract class Tag<T> implements Cloneable {
 		setValue(value);
 	}
 
+	/**
+	 * For subclasses which store their value in their own fields, such as the primitive {@link NumberTag}s.
+	 * Such subclasses must override {@link #getValue()}, {@link #setValue(Object)} and {@link #hashCode()}.
+	 */
+	protected Tag() {}
+
 	/**
 	 * This Tag's ID, usually used for serialization and deserialization.
 	 */
@@ -68,7 +110,107 @@ public abstract class Tag<T> implements Cloneable {
 	 * @throws NullPointerException If the value is null
 	 */
 	protected void setValue(T value) {
+		checkNotFrozen();
 		this.value = checkValue(value);
+		markMutated();
+	}
+
+	/**
+	 * Makes this tag, and all tags nested within it, immutable. Has no effect on an already frozen tag.
+	 * Container tags must override this to also freeze their contents.
+	 * @return this tag
+	 * @see #thaw()
+	 */
+	public Tag<T> freeze() {
+		frozen = true;
+		return this;
+	}
+
+	/** @return true if this tag has been {@link #freeze() frozen}. */
+	public final boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * @return this tag if it is not frozen, otherwise a mutable copy of it.
+	 * @see #freeze()
+	 */
+	public Tag<T> thaw() {
+		return frozen ? clone() : this;
+	}
+
+	/**
+	 * Must be called by every operation which changes the value of a tag before making any change.
+	 * @throws UnsupportedOperationException if this tag is frozen.
+	 */
+	protected final void checkNotFrozen() {
+		if (frozen) {
+			throw new UnsupportedOperationException("tag is frozen, use thaw() to get a mutable copy");
+		}
+	}
+
+	/**
+	 * Must be called by every operation which changes the value of a tag, other than through
+	 * {@link #setValue(Object)}, so that cached structural hashes are invalidated. See {@link #HASH_EPOCH}.
+	 */
+	protected final void markMutated() {
+		if (hashObserved) {
+			long epoch;
+			while (((epoch = HASH_EPOCH.get()) & 1) != 0 && !HASH_EPOCH.compareAndSet(epoch, epoch + 1));
+		}
+	}
+
+	/** Records that the hash of this tag is being folded into a cached hash, see {@link #hashObserved}. */
+	final void markHashObserved() {
+		hashObserved = true;
+	}
+
+	/** @return true if the hash of this tag may be part of a cached hash, see {@link #hashObserved}. */
+	final boolean isHashObserved() {
+		return hashObserved;
+	}
+
+	/**
+	 * Replaces the value with an equal one, such as a private copy of a shared value, without checking for frozen
+	 * or invalidating any cached hash.
+	 */
+	final void replaceValue(T value) {
+		this.value = checkValue(value);
+	}
+
+	/** @return the current hash epoch, to be passed to {@link #claimHashEpoch(long)} once a hash is computed. */
+	static long currentHashEpoch() {
+		return HASH_EPOCH.get();
+	}
+
+	/**
+	 * Marks the current hash epoch as used for caching.
+	 * @param observed value of {@link #currentHashEpoch()} from before the hash was computed.
+	 * @return the stamp to store with the cached hash, or 0 if the epoch ended since {@code observed}.
+	 */
+	static long claimHashEpoch(long observed) {
+		final long stamp = observed | 1;
+		long epoch = HASH_EPOCH.get();
+		if (epoch == observed && HASH_EPOCH.compareAndSet(observed, stamp))
+			return stamp;
+		return HASH_EPOCH.get() == stamp ? stamp : 0;
+	}
+
+	/** @return true if a hash cached with the given stamp is still valid. */
+	static boolean isHashEpochCurrent(long stamp) {
+		return stamp == FROZEN_HASH_STAMP || (stamp & 1) != 0 && stamp == HASH_EPOCH.get();
+	}
+
+	/**
+	 * @return true if the given tag can be part of a cached structural hash - which is the case for tags that
+	 * report all of their mutations, or are frozen. Array tags are not, as their arrays are handed out and modified
+	 * in place.
+	 */
+	static boolean isHashCacheable(Tag<?> tag) {
+		if (tag.isFrozen()) return true;
+		if (tag instanceof CompoundTag compound) return compound.hasCachedHash();
+		if (tag instanceof ListTag<?> list) return list.hasCachedHash();
+		return tag instanceof NumberTag || tag instanceof StringTag || tag instanceof EndTag;
 	}
 
 	/**
@@ -142,6 +284,39 @@ public abstract class Tag<T> implements Cloneable {
 		return value.hashCode();
 	}
 
+	/**
+	 * Estimates the heap retained by this tag and everything nested in it, counting tags, strings and arrays which
+	 * are referenced more than once only once.
+	 * @return estimated size in bytes.
+	 * @see RetainedSizeEstimator
+	 */
+	public final long estimateRetainedBytes() {
+		return estimateRetainedBytes(new RetainedSizeEstimator());
+	}
+
+	/**
+	 * Adds the heap retained by this tag and everything nested in it to the given estimator, skipping anything the
+	 * estimator has already counted. Use this to estimate the combined size of several, possibly overlapping, trees.
+	 * @return number of bytes this call added to the estimator - 0 if this tag was already counted.
+	 */
+	public final long estimateRetainedBytes(RetainedSizeEstimator estimator) {
+		final long before = estimator.total();
+		if (estimator.visit(this)) {
+			addRetainedBytes(estimator);
+		}
+		return estimator.total() - before;
+	}
+
+	/**
+	 * Adds the shallow size of this tag and the size of all objects it references to the estimator. Called at most
+	 * once per estimator. Subclasses which declare fields of their own must override this.
+	 */
+	protected void addRetainedBytes(RetainedSizeEstimator estimator) {
+		// value, frozen, hashObserved
+		estimator.add(RetainedSizeEstimator.shallowSize(1, 2));
+		estimator.addValue(value);
+	}
+
 	/**
 	 * Creates a clone of this Tag.
 	 * @return A clone of this Tag.
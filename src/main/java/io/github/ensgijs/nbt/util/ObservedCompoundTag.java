@@ -483,6 +483,28 @@ public class ObservedCompoundTag extends CompoundTag {
         return wrappedTag.equals(other);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>Freezes the wrapped tag.</p>
+     */
+    @Override
+    public CompoundTag freeze() {
+        wrappedTag.freeze();
+        return super.freeze();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompoundTag thaw() {
+        return isFrozen() ? wrappedTag.thaw() : this;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return wrappedTag.hashCode();
+    }
+
     /** {@inheritDoc} */
     @Override
     public int compareTo(CompoundTag o) {
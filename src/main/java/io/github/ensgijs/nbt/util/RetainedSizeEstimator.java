@@ -0,0 +1,164 @@
+package io.github.ensgijs.nbt.util;
+
+import java.lang.reflect.Array;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Accumulates an estimate of the heap retained by a graph of objects, such as a tag tree or a chunk.
+ * <p>Each object is counted at most once per estimator (tracked by identity), so shared and interned
+ * references - the same {@link String} key used by thousands of compounds, a palette shared by a clone, a frozen
+ * tag reachable from several trees - only contribute to the total the first time they are reached. Reuse one
+ * estimator across several roots to get their combined, de-duplicated size.</p>
+ * <p>Sizes assume a 64-bit JVM with compressed object pointers (12 byte object headers, 16 byte array headers,
+ * 4 byte references, 8 byte alignment), which is the default for heaps below 32 GB. The result is an estimate
+ * intended for cache weighing and memory reports, not an exact measurement.</p>
+ * <p>Instances are not thread safe.</p>
+ * @see io.github.ensgijs.nbt.tag.Tag#estimateRetainedBytes()
+ */
+public final class RetainedSizeEstimator {
+    public static final int OBJECT_HEADER_BYTES = 12;
+    public static final int ARRAY_HEADER_BYTES = 16;
+    public static final int REFERENCE_BYTES = 4;
+    public static final int OBJECT_ALIGNMENT = 8;
+
+    private final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long total;
+
+    /** @return the total number of bytes counted so far. */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Marks the given object as visited.
+     * @return true if the object has not been visited before by this estimator (and should now be counted),
+     * false if it was already counted or is null.
+     */
+    public boolean visit(Object o) {
+        return o != null && seen.add(o);
+    }
+
+    /** Adds the given number of bytes to the total. */
+    public void add(long bytes) {
+        total += bytes;
+    }
+
+    /** @return {@code bytes} rounded up to the object alignment. */
+    public static long align(long bytes) {
+        return (bytes + OBJECT_ALIGNMENT - 1) & -OBJECT_ALIGNMENT;
+    }
+
+    /**
+     * @param referenceFields number of reference fields (including inherited ones).
+     * @param primitiveBytes summed width of all primitive fields (including inherited ones).
+     * @return the shallow size of an object with the given fields.
+     */
+    public static long shallowSize(int referenceFields, int primitiveBytes) {
+        return align(OBJECT_HEADER_BYTES + (long) referenceFields * REFERENCE_BYTES + primitiveBytes);
+    }
+
+    /** @return the size of an array of the given length and element width. */
+    public static long arraySize(int length, int elementBytes) {
+        return align(ARRAY_HEADER_BYTES + (long) length * elementBytes);
+    }
+
+    /**
+     * @return estimated size of a {@link java.util.LinkedHashMap} holding the given number of entries, created with
+     * the default load factor, excluding its keys and values.
+     */
+    public static long linkedHashMapSize(int size) {
+        int capacity = 16;
+        while (capacity * 3 / 4 < size) capacity <<= 1;
+        // table, entrySet, keySet, values, head, tail; size, modCount, threshold, loadFactor, accessOrder
+        return shallowSize(6, 4 * 4 + 1)
+                + arraySize(capacity, REFERENCE_BYTES)
+                // per entry: key, value, next, before, after; hash
+                + size * shallowSize(5, 4);
+    }
+
+    /**
+     * @return estimated size of an {@link java.util.ArrayList} holding the given number of elements, excluding the
+     * elements themselves. Spare capacity is not known and not counted.
+     */
+    public static long arrayListSize(int size) {
+        // elementData; size, modCount
+        return shallowSize(1, 8) + arraySize(size, REFERENCE_BYTES);
+    }
+
+    /**
+     * @return size of the given fields without an object header or alignment, for classes which add the fields they
+     * declare to the size counted by their super class.
+     */
+    public static long fieldsSize(int referenceFields, int primitiveBytes) {
+        return (long) referenceFields * REFERENCE_BYTES + primitiveBytes;
+    }
+
+    /** Adds the size of the given hash set of strings, and of the strings, if it has not been counted yet. */
+    public void addStringSet(Set<String> set) {
+        if (!visit(set)) return;
+        // a HashSet is a wrapper around a HashMap
+        add(shallowSize(1, 0) + linkedHashMapSize(set.size()));
+        for (String s : set) {
+            addString(s);
+        }
+    }
+
+    /** Adds the shallow size of the given object if it has not been counted yet. */
+    public void addShallow(Object o, int referenceFields, int primitiveBytes) {
+        if (visit(o)) {
+            add(shallowSize(referenceFields, primitiveBytes));
+        }
+    }
+
+    /**
+     * Adds the size of the given array if it has not been counted yet. For arrays of references only the array
+     * itself is counted, not the objects it references.
+     */
+    public void addArray(Object array) {
+        if (!visit(array)) return;
+        final Class<?> type = array.getClass().getComponentType();
+        final int width;
+        if (type == long.class || type == double.class) width = 8;
+        else if (type == int.class || type == float.class) width = 4;
+        else if (type == short.class || type == char.class) width = 2;
+        else if (type == byte.class || type == boolean.class) width = 1;
+        else width = REFERENCE_BYTES;
+        add(arraySize(Array.getLength(array), width));
+    }
+
+    /**
+     * Adds the size of the given string, including its backing byte array, if it has not been counted yet.
+     * Strings holding only Latin-1 characters are stored with one byte per character, others with two.
+     */
+    public void addString(String s) {
+        if (!visit(s)) return;
+        int width = 1;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            if (s.charAt(i) > 0xFF) {
+                width = 2;
+                break;
+            }
+        }
+        // value, hash, coder, hashIsZero
+        add(shallowSize(1, 4 + 1 + 1) + arraySize(s.length(), width));
+    }
+
+    /**
+     * Adds the size of a boxed primitive, string or array value. Other objects are counted as an object header.
+     */
+    public void addValue(Object value) {
+        if (value instanceof String s) {
+            addString(s);
+        } else if (value != null && value.getClass().isArray()) {
+            addArray(value);
+        } else if (value instanceof Long || value instanceof Double) {
+            addShallow(value, 0, 8);
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            addShallow(value, 0, 4);
+        } else {
+            addShallow(value, 0, 0);
+        }
+    }
+}
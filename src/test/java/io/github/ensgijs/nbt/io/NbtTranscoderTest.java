@@ -0,0 +1,90 @@
+package io.github.ensgijs.nbt.io;
+
+import io.github.ensgijs.nbt.NbtTestCase;
+import io.github.ensgijs.nbt.tag.CompoundTag;
+import io.github.ensgijs.nbt.tag.Tag;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class NbtTranscoderTest extends NbtTestCase {
+	private static final String[] SAMPLES = {
+			"1_20_4/region/r.0.0/0299.11.9.snbt",
+			"text_nbt_samples/little_of_everything.snbt",
+			"text_nbt_samples/named_item.snbt",
+			"text_nbt_samples/named_tag_sample-with_bom.snbt",
+			"text_nbt_samples/unnamed_tag_sample.snbt",
+	};
+
+	private String readSample(String resource) throws IOException {
+		return Files.readString(getResourceFile(resource).toPath());
+	}
+
+	public void testTextToBinary_matchesTagRoundTrip() throws IOException {
+		for (String sample : SAMPLES) {
+			String text = readSample(sample);
+			NamedTag tag = new TextNbtParser(text).readTag(Tag.DEFAULT_MAX_DEPTH);
+			for (boolean sort : new boolean[] {false, true}) {
+				byte[] expected = new BinaryNbtSerializer(CompressionType.NONE, false, sort).toBytes(tag);
+				assertArrayEquals(sample + " sort=" + sort, expected, NbtTranscoder.textToBinary(text, CompressionType.NONE, sort));
+			}
+		}
+	}
+
+	public void testBinaryToText_matchesTagRoundTrip() throws IOException {
+		for (String sample : SAMPLES) {
+			NamedTag tag = new TextNbtParser(readSample(sample)).readTag(Tag.DEFAULT_MAX_DEPTH);
+			byte[] binary = new BinaryNbtSerializer(CompressionType.GZIP).toBytes(tag);
+			NamedTag read = new BinaryNbtDeserializer(CompressionType.GZIP).fromBytes(binary);
+			if (read.getName().isEmpty()) read.setName(null);
+			for (boolean sort : new boolean[] {false, true}) {
+				for (boolean pretty : new boolean[] {false, true}) {
+					assertEquals(sample + " sort=" + sort + " pretty=" + pretty,
+							TextNbtHelpers.toTextNbt(read, pretty, sort),
+							NbtTranscoder.binaryToText(binary, CompressionType.GZIP, sort, pretty));
+				}
+			}
+		}
+	}
+
+	public void testRoundTrip_compressed() throws IOException {
+		String text = readSample("text_nbt_samples/little_of_everything.snbt");
+		byte[] binary = NbtTranscoder.textToBinary(text, CompressionType.ZLIB, true);
+		String sortedText = NbtTranscoder.binaryToText(binary, CompressionType.ZLIB, true, true);
+		assertEquals(new TextNbtParser(text).readTag(Tag.DEFAULT_MAX_DEPTH), new TextNbtParser(sortedText).readTag(Tag.DEFAULT_MAX_DEPTH));
+		assertArrayEquals(binary, NbtTranscoder.textToBinary(sortedText, CompressionType.ZLIB, true));
+	}
+
+	public void testTextToBinary_duplicateKeysKeepFirstPositionAndLastValue() throws IOException {
+		String text = "{a:1,b:{x:1b},c:3,b:[I;1,2],a:\"z\"}";
+		CompoundTag tag = (CompoundTag) new TextNbtParser(text).readTag(Tag.DEFAULT_MAX_DEPTH).getTag();
+		assertEquals(3, tag.size());
+		assertArrayEquals(new BinaryNbtSerializer(CompressionType.NONE).toBytes(new NamedTag(null, tag)),
+				NbtTranscoder.textToBinary(text, CompressionType.NONE, false));
+
+		// enough keys to be looked up by hash
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < 12; i++) {
+			sb.append('k').append(i).append(':').append(i).append(',');
+		}
+		text = sb.append("k3:\"three\",k11:11L}").toString();
+		tag = (CompoundTag) new TextNbtParser(text).readTag(Tag.DEFAULT_MAX_DEPTH).getTag();
+		for (boolean sort : new boolean[] {false, true}) {
+			assertArrayEquals(new BinaryNbtSerializer(CompressionType.NONE, false, sort).toBytes(new NamedTag(null, tag)),
+					NbtTranscoder.textToBinary(text, CompressionType.NONE, sort));
+		}
+	}
+
+	public void testTextToBinary_errors() throws IOException {
+		assertNull(NbtTranscoder.textToBinary("  \n ", CompressionType.NONE, false));
+		assertThrowsException(() -> NbtTranscoder.textToBinary("[1,2b]", CompressionType.NONE, false), ParseException.class);
+		assertThrowsException(() -> NbtTranscoder.textToBinary("{a:1} x", CompressionType.NONE, false), ParseException.class);
+		assertThrowsException(() -> NbtTranscoder.textToBinary("[B;1,1000]", CompressionType.NONE, false), ParseException.class);
+		assertThrowsException(() -> NbtTranscoder.textToBinary(new StringReader("[[[1]]]"), new ByteArrayOutputStream(), CompressionType.NONE, false, 2),
+				MaxDepthReachedException.class);
+	}
+}
@@ -4,7 +4,13 @@ import io.github.ensgijs.nbt.NbtTestCase;
 import io.github.ensgijs.nbt.tag.*;
 import org.junit.Assert;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
 
 public class TextNbtParserTest extends NbtTestCase {
 
@@ -264,4 +270,158 @@ public class TextNbtParserTest extends NbtTestCase {
 		assertEquals(StringTag.ID, namedTag.getTag().getID());
 		assertEquals("false", ((StringTag) namedTag.getTag()).getValue());
 	}
+
+	public void testLiteralClassification_matchesGrammar() {
+		// the literal grammar, as previously implemented with regular expressions
+		final Pattern floatPattern = Pattern.compile("[-+]?(?:\\d+\\.?|\\d*\\.\\d+)(?:e[-+]?\\d+)?f", Pattern.CASE_INSENSITIVE);
+		final Pattern doublePattern = Pattern.compile("[-+]?(?:\\d+\\.?|\\d*\\.\\d+)(?:e[-+]?\\d+)?d", Pattern.CASE_INSENSITIVE);
+		final Pattern doubleNoSuffixPattern = Pattern.compile("[-+]?(?:\\d+\\.|\\d*\\.\\d+)(?:e[-+]?\\d+)?", Pattern.CASE_INSENSITIVE);
+		final Pattern bytePattern = Pattern.compile("[-+]?\\d+b", Pattern.CASE_INSENSITIVE);
+		final Pattern shortPattern = Pattern.compile("[-+]?\\d+s", Pattern.CASE_INSENSITIVE);
+		final Pattern intPattern = Pattern.compile("[-+]?\\d+");
+		final Pattern longPattern = Pattern.compile("[-+]?\\d+l", Pattern.CASE_INSENSITIVE);
+		final String alphabet = "0123456789-+.eEfFdDbBsSlLx";
+		Random rand = new Random(46);
+		for (int n = 0; n < 20000; n++) {
+			StringBuilder sb = new StringBuilder();
+			for (int len = 1 + rand.nextInt(6); len > 0; len--) {
+				// favor digits
+				sb.append(rand.nextInt(3) == 0 ? alphabet.charAt(rand.nextInt(alphabet.length())) : (char) ('0' + rand.nextInt(10)));
+			}
+			final String s = sb.toString();
+			final String number = s.substring(0, s.length() - 1);
+			Tag<?> tag;
+			try {
+				tag = new TextNbtParser(s).parse();
+			} catch (ParseException ex) {
+				assertTrue(s, bytePattern.matcher(s).matches() || shortPattern.matcher(s).matches()
+						|| longPattern.matcher(s).matches() || intPattern.matcher(s).matches());
+				continue;
+			}
+			if (floatPattern.matcher(s).matches()) {
+				assertEquals(s, new FloatTag(Float.parseFloat(number)), tag);
+			} else if (bytePattern.matcher(s).matches()) {
+				assertEquals(s, new ByteTag(Byte.parseByte(number)), tag);
+			} else if (shortPattern.matcher(s).matches()) {
+				assertEquals(s, new ShortTag(Short.parseShort(number)), tag);
+			} else if (longPattern.matcher(s).matches()) {
+				assertEquals(s, new LongTag(Long.parseLong(number)), tag);
+			} else if (intPattern.matcher(s).matches()) {
+				assertEquals(s, new IntTag(Integer.parseInt(s)), tag);
+			} else if (doublePattern.matcher(s).matches()) {
+				assertEquals(s, new DoubleTag(Double.parseDouble(number)), tag);
+			} else if (doubleNoSuffixPattern.matcher(s).matches()) {
+				assertEquals(s, new DoubleTag(Double.parseDouble(s)), tag);
+			} else {
+				assertEquals(s, new StringTag(s), tag);
+			}
+		}
+	}
+
+	public void testFloatingPointLiterals_roundExactly() {
+		Random rand = new Random(47);
+		for (int n = 0; n < 20000; n++) {
+			double d = Double.longBitsToDouble(rand.nextLong());
+			if (Double.isNaN(d) || Double.isInfinite(d)) continue;
+			// short decimal representations exercise the fast path, full ones the fallback
+			String s = rand.nextBoolean() ? Double.toString(d) : String.format(Locale.ROOT, "%." + rand.nextInt(12) + "f", d % 1e6);
+			assertEquals(s, Double.parseDouble(s), ((DoubleTag) TextNbtParser.parseInline(s + "d")).asDouble());
+			assertEquals(s, Float.parseFloat(s), ((FloatTag) TextNbtParser.parseInline(s + "f")).asFloat());
+		}
+		assertEquals(-0d, ((DoubleTag) TextNbtParser.parseInline("-0.0")).asDouble());
+		assertEquals(1e-7f, ((FloatTag) TextNbtParser.parseInline("1e-7f")).asFloat());
+		assertEquals(123456789012345678e-30, ((DoubleTag) TextNbtParser.parseInline("123456789012345678e-30d")).asDouble());
+	}
+
+	public void testIntegralLiterals_rangeLimits() {
+		assertEquals(Long.MIN_VALUE, ((LongTag) TextNbtParser.parseInline("-9223372036854775808L")).asLong());
+		assertEquals(Long.MAX_VALUE, ((LongTag) TextNbtParser.parseInline("+9223372036854775807l")).asLong());
+		assertEquals(Integer.MIN_VALUE, ((IntTag) TextNbtParser.parseInline("-2147483648")).asInt());
+		assertThrowsException(() -> new TextNbtParser("9223372036854775808L").parse(), ParseException.class);
+		assertThrowsException(() -> new TextNbtParser("2147483648").parse(), ParseException.class);
+		assertThrowsException(() -> new TextNbtParser("128b").parse(), ParseException.class);
+		Assert.assertArrayEquals(new long[] {Long.MIN_VALUE, 0, Long.MAX_VALUE},
+				((LongArrayTag) TextNbtParser.parseInline("[L; -9223372036854775808, 0, 9223372036854775807]")).getValue());
+		assertThrowsException(() -> new TextNbtParser("[B; 1, 2.5]").parse(), ParseException.class);
+		assertThrowsException(() -> new TextNbtParser("[I; 2147483648]").parse(), ParseException.class);
+	}
+
+	private static CompoundTag newTestCompound(int seed) {
+		Random rand = new Random(seed);
+		CompoundTag tag = new CompoundTag();
+		ListTag<CompoundTag> list = new ListTag<>(CompoundTag.class);
+		for (int i = 0; i < 200; i++) {
+			CompoundTag entry = new CompoundTag();
+			entry.putString("Name", "minecraft:block_" + rand.nextInt(50));
+			entry.putString("quoted", "needs \"quotes\" and \\ escapes " + i);
+			entry.putDouble("d", rand.nextGaussian());
+			entry.putLongArray("longs", rand.longs(rand.nextInt(8)).toArray());
+			list.add(entry);
+		}
+		tag.put("entries", list);
+		tag.putString("long_value", "x".repeat(500));
+		return tag;
+	}
+
+	public void testReadFromReader_smallWindow() throws IOException {
+		CompoundTag expected = newTestCompound(47);
+		for (boolean pretty : new boolean[] {true, false}) {
+			String text = TextNbtHelpers.toTextNbt(new NamedTag("root", expected), pretty);
+			TextNbtParser parser = new TextNbtParser(new StringPointer(new StringReader(text), 16));
+			NamedTag actual = parser.readTag(Tag.DEFAULT_MAX_DEPTH);
+			assertEquals("root", actual.getName());
+			assertEquals(expected, actual.getTag());
+			assertFalse(parser.hasNextTag());
+			assertEquals(text.length() + 1, parser.getReadChars());
+		}
+	}
+
+	public void testReadFromReader_sequenceOfTags() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 5; i++) {
+			sb.append(TextNbtHelpers.toTextNbt(newTestCompound(i), i % 2 == 0)).append('\n');
+		}
+		sb.append("named: 12b  unnamed  \"quoted\"\n[I; 1, 2]{}");
+		TextNbtParser parser = new TextNbtParser(new StringPointer(new StringReader(sb.toString()), 64));
+		for (int i = 0; i < 5; i++) {
+			assertTrue(parser.hasNextTag());
+			assertEquals(newTestCompound(i), parser.readNextRawTag(Tag.DEFAULT_MAX_DEPTH));
+		}
+		NamedTag named = parser.readNextTag(Tag.DEFAULT_MAX_DEPTH);
+		assertEquals("named", named.getName());
+		assertEquals(new ByteTag((byte) 12), named.getTag());
+		NamedTag unnamed = parser.readNextTag(Tag.DEFAULT_MAX_DEPTH);
+		assertNull(unnamed.getName());
+		assertEquals(new StringTag("unnamed"), unnamed.getTag());
+		assertEquals(new StringTag("quoted"), parser.readNextTag(Tag.DEFAULT_MAX_DEPTH).getTag());
+		assertEquals(new IntArrayTag(new int[] {1, 2}), parser.readNextRawTag(Tag.DEFAULT_MAX_DEPTH));
+		assertEquals(new CompoundTag(), parser.readNextRawTag(Tag.DEFAULT_MAX_DEPTH));
+		assertFalse(parser.hasNextTag());
+		assertNull(parser.readNextTag(Tag.DEFAULT_MAX_DEPTH));
+	}
+
+	public void testReadFromReader_keepsNewlinesInQuotedStrings() throws IOException {
+		NamedTag namedTag = new TextNbtDeserializer().fromReader(new StringReader("{text: \"line 1\nline 2\"}"));
+		assertEquals("line 1\nline 2", ((CompoundTag) namedTag.getTag()).getString("text"));
+	}
+
+	public void testReadFromReader_propagatesReaderErrors() {
+		Reader failing = new Reader() {
+			int calls;
+			@Override
+			public int read(char[] cbuf, int off, int len) throws IOException {
+				if (calls++ > 0) throw new IOException("disk on fire");
+				"{a: 1, b: ".getChars(0, 10, cbuf, off);
+				return 10;
+			}
+			@Override
+			public void close() {}
+		};
+		try {
+			new TextNbtParser(failing).readTag(Tag.DEFAULT_MAX_DEPTH);
+			fail("expected an IOException");
+		} catch (IOException ex) {
+			assertEquals("disk on fire", ex.getMessage());
+		}
+	}
 }
@@ -2,7 +2,10 @@ package io.github.ensgijs.nbt.io;
 
 import io.github.ensgijs.nbt.NbtTestCase;
 import io.github.ensgijs.nbt.tag.*;
+import io.github.ensgijs.nbt.util.JsonPrettyPrinter;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.LinkedHashMap;
 
 public class TextNbtWriterTest extends NbtTestCase {
@@ -284,4 +287,70 @@ public class TextNbtWriterTest extends NbtTestCase {
 		ct.putString("not-a-bool-F", "false");
 		assertEquals("{not-a-bool-F:\"false\",not-a-bool-T:\"true\"}", TextNbtHelpers.toTextNbt(ct, false));
 	}
+
+	private void assertPrettyPrintMatchesJsonPrettyPrinter(NamedTag namedTag) {
+		for (boolean sorted : new boolean[] {true, false}) {
+			String compact = TextNbtHelpers.toTextNbt(namedTag, false, sorted);
+			assertEquals(JsonPrettyPrinter.prettyPrintJson(compact), TextNbtHelpers.toTextNbt(namedTag, true, sorted));
+		}
+	}
+
+	public void testPrettyPrint_matchesJsonPrettyPrinter() {
+		for (String file : new String[] {
+				"1_20_4/region/r.0.0/0299.11.9.snbt",
+				"1_20_4/entities/double_passengers.snbt",
+				"text_nbt_samples/little_of_everything.snbt",
+				"text_nbt_samples/named_item.snbt"}) {
+			assertPrettyPrintMatchesJsonPrettyPrinter(deserializeFromFile(file));
+		}
+
+		CompoundTag tag = new CompoundTag();
+		tag.put("empty compound", new CompoundTag());
+		tag.put("empty list", new ListTag<>(IntTag.class));
+		tag.put("packed", ListTag.ofDoubles(1.5, -0.0, 1e300));
+		tag.putIntArray("empty ints", new int[0]);
+		tag.putByteArray("bytes", new byte[] {-1, 0, 1});
+		tag.putString("quote\"d", "line\nbreak\ttab \"quoted\" 'single'");
+		tag.putString("new\nline\r", "x");
+		CompoundTag deep = tag;
+		for (int i = 0; i < 40; i++) {
+			CompoundTag next = new CompoundTag();
+			deep.put("d" + i, next);
+			deep = next;
+		}
+		deep.putLong("bottom", Long.MIN_VALUE);
+		assertPrettyPrintMatchesJsonPrettyPrinter(new NamedTag("root name", tag));
+		assertPrettyPrintMatchesJsonPrettyPrinter(new NamedTag(null, tag));
+	}
+
+	public void testPrettyPrint_stringsStartingWithSemicolonAreNotSplit() throws IOException {
+		CompoundTag tag = new CompoundTag();
+		ListTag<StringTag> list = new ListTag<>(StringTag.class);
+		list.add(new StringTag(";"));
+		list.add(new StringTag("a;b"));
+		tag.put("l", list);
+		tag.put("c", new CompoundTag());
+		tag.getCompoundTag("c").putString(";k", ";v");
+		String expected = """
+				{
+				  l: [
+				    ";",
+				    "a;b"
+				  ],
+				  c: {
+				    ";k": ";v"
+				  }
+				}""";
+		assertEquals(expected, TextNbtHelpers.toTextNbt(tag, true, false));
+		// the old JsonPrettyPrinter route took the leading ';' for an array type hint, such as in [I;1,2]
+		assertFalse(expected.equals(JsonPrettyPrinter.prettyPrintJson(TextNbtHelpers.toTextNbt(tag, false, false))));
+		assertEquals(tag, TextNbtHelpers.fromTextNbt(expected).getTag());
+	}
+
+	public void testWriteToWriter_matchesToString() throws IOException {
+		NamedTag namedTag = deserializeFromFile("1_20_4/region/r.0.0/0299.11.9.snbt");
+		StringWriter writer = new StringWriter();
+		new TextNbtSerializer(true, true).toWriter(namedTag, writer);
+		assertEquals(TextNbtHelpers.toTextNbt(namedTag, true, true), writer.toString());
+	}
 }
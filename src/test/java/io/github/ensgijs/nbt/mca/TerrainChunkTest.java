@@ -1,8 +1,14 @@
 package io.github.ensgijs.nbt.mca;
 
+import io.github.ensgijs.nbt.io.TextNbtParser;
+import io.github.ensgijs.nbt.mca.util.CuboidDiff;
+import io.github.ensgijs.nbt.mca.util.IntPointXYZ;
 import io.github.ensgijs.nbt.tag.CompoundTag;
 import io.github.ensgijs.nbt.tag.ListTag;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class TerrainChunkTest extends TerrainChunkBaseTest<TerrainChunk> {
     @Override
     protected TerrainChunk createChunk(DataVersion dataVersion) {
@@ -53,4 +59,33 @@ public class TerrainChunkTest extends TerrainChunkBaseTest<TerrainChunk> {
         assertEquals(expectedChunkX, chunk.getChunkX());
         assertEquals(expectedChunkZ, chunk.getChunkZ());
     }
+
+    public void testDiffBlockStates() {
+        TerrainChunk a = TerrainChunk.newChunk(DataVersion.latest().id());
+        TerrainChunk b = TerrainChunk.newChunk(DataVersion.latest().id());
+        a.createSection(0);
+        a.createSection(1);
+        b.createSection(0);
+        b.createSection(1);
+        b.createSection(2);
+        CompoundTag stone = TextNbtParser.parseInline("{Name: \"minecraft:stone\"}");
+        assertTrue(b.setBlockAt(3, 20, 5, stone));
+        assertTrue(b.setBlockAt(4, 22, 9, stone));
+
+        var diffs = a.diffBlockStates(b);
+        assertEquals(List.of(1, 2), new ArrayList<>(diffs.keySet()));
+        CuboidDiff section1 = diffs.get(1);
+        assertEquals(2, section1.changedCount());
+        assertTrue(section1.isChanged(3, 4, 5));
+        assertEquals(new IntPointXYZ(3, 4, 5), section1.getMin());
+        assertEquals(new IntPointXYZ(4, 6, 9), section1.getMax());
+        assertEquals(4096, diffs.get(2).changedCount());
+
+        assertTrue(b.diffBlockStates(b).isEmpty());
+        a.setBlockAt(3, 20, 5, stone);
+        a.setBlockAt(4, 22, 9, stone);
+        a.createSection(2);
+        assertTrue(a.diffBlockStates(b).isEmpty());
+        assertTrue(a.diffBiomes(b).isEmpty());
+    }
 }
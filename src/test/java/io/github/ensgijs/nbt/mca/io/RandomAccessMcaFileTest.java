@@ -1,8 +1,10 @@
 package io.github.ensgijs.nbt.mca.io;
 
+import io.github.ensgijs.nbt.io.CompressionType;
 import io.github.ensgijs.nbt.io.TextNbtParser;
 import io.github.ensgijs.nbt.mca.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
@@ -270,6 +272,21 @@ public class RandomAccessMcaFileTest extends McaTestCase {
         poiMca.close();
     }
 
+    public void testReadRaw() throws IOException {
+        File file = super.copyResourceToTmp("1_20_4/poi/r.-3.-3.mca");
+        var poiMca = new RandomAccessMcaFile<>(PoiChunk.class, file, "r");
+        int index = McaFileBase.getChunkIndex(14, 29);
+        byte[] raw = poiMca.readRaw(index);
+        assertNotNull(raw);
+        assertEquals(CompressionType.ZLIB.getID(), raw[0]);
+        PoiChunk chunk = new PoiChunk();
+        chunk.deserialize(new ByteArrayInputStream(raw), LoadFlags.LOAD_ALL_DATA, 0, -77, -73);
+        assertEquals(poiMca.read(index).getHandle(), chunk.getHandle());
+        assertNull(poiMca.readRaw(McaFileBase.getChunkIndex(25, 17)));
+        assertThrowsException(() -> poiMca.readRaw(1024), IndexOutOfBoundsException.class);
+        poiMca.close();
+    }
+
     public void testRead_chunkSectorPointsOutsideFile_throwsEOF() throws IOException {
         File file = getNewTmpFile("r.0.0.mca");
         RandomAccessFile raf = new RandomAccessFile(file, "rw");
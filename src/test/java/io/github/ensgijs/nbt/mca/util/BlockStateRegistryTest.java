@@ -0,0 +1,65 @@
+package io.github.ensgijs.nbt.mca.util;
+
+import io.github.ensgijs.nbt.NbtTestCase;
+import io.github.ensgijs.nbt.tag.CompoundTag;
+
+import java.util.Map;
+
+public class BlockStateRegistryTest extends NbtTestCase {
+
+    public void testIdOf_assignsStableSequentialIds() {
+        BlockStateRegistry registry = new BlockStateRegistry();
+        assertEquals(0, registry.size());
+        int air = registry.idOf(new BlockStateTag("minecraft:air"));
+        int stairs = registry.idOf(new BlockStateTag("minecraft:oak_stairs", Map.of("facing", "east")));
+        assertEquals(0, air);
+        assertEquals(1, stairs);
+        assertEquals(2, registry.size());
+
+        assertEquals(air, registry.idOf(new BlockStateTag("minecraft:air")));
+        assertEquals(stairs, registry.idOf(new BlockStateTag("minecraft:oak_stairs", Map.of("facing", "east"))));
+        assertEquals(2, registry.idOf(new BlockStateTag("minecraft:oak_stairs", Map.of("facing", "west"))));
+
+        // raw compound tags and BlockStateTags share ids
+        CompoundTag rawAir = new CompoundTag();
+        rawAir.putString("Name", "minecraft:air");
+        assertEquals(air, registry.idOf(rawAir));
+        assertEquals(3, registry.size());
+    }
+
+    public void testLookupId_doesNotRegister() {
+        BlockStateRegistry registry = new BlockStateRegistry();
+        assertEquals(-1, registry.lookupId(new BlockStateTag("minecraft:stone")));
+        assertEquals(0, registry.size());
+        int id = registry.idOf(new BlockStateTag("minecraft:stone"));
+        assertEquals(id, registry.lookupId(new BlockStateTag("minecraft:stone")));
+    }
+
+    public void testGet_returnsCanonicalCopy() {
+        BlockStateRegistry registry = new BlockStateRegistry();
+        BlockStateTag stone = new BlockStateTag("minecraft:stone");
+        int id = registry.idOf(stone);
+        CompoundTag canonical = registry.get(id);
+        assertEquals(stone.getHandle(), canonical);
+        assertNotSame(stone.getHandle(), canonical);
+        assertSame(canonical, registry.intern(stone.getHandle()));
+        // mutating the registered tag does not affect the registry
+        stone.setName("minecraft:dirt");
+        assertEquals("minecraft:stone", registry.get(id).getString("Name"));
+        assertNotSame(canonical, registry.getBlockState(id).getHandle());
+        assertEquals("minecraft:stone", registry.getBlockState(id).getName());
+
+        assertThrowsException(() -> registry.get(1), IndexOutOfBoundsException.class);
+        assertThrowsException(() -> registry.get(-1), IndexOutOfBoundsException.class);
+    }
+
+    public void testIdOf_growsBeyondInitialCapacity() {
+        BlockStateRegistry registry = new BlockStateRegistry();
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, registry.idOf(new BlockStateTag("minecraft:block_" + i)));
+        }
+        for (int i = 0; i < 200; i++) {
+            assertEquals("minecraft:block_" + i, registry.get(i).getString("Name"));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.ensgijs.nbt.mca.util;
+
+import io.github.ensgijs.nbt.mca.DataVersion;
+import io.github.ensgijs.nbt.mca.McaTestCase;
+import io.github.ensgijs.nbt.mca.TerrainChunk;
+import io.github.ensgijs.nbt.mca.VersionLacksSupportException;
+import io.github.ensgijs.nbt.mca.util.HeightmapCalculator.Heightmap;
+import io.github.ensgijs.nbt.tag.CompoundTag;
+import io.github.ensgijs.nbt.tag.LongArrayTag;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class HeightmapCalculatorTest extends McaTestCase {
+
+    private TerrainChunk newChunk() {
+        TerrainChunk chunk = TerrainChunk.newChunk(DataVersion.latest().id());
+        chunk.createSection(0);
+        chunk.createSection(1);
+        return chunk;
+    }
+
+    private int height(TerrainChunk chunk, Heightmap heightmap, int x, int z) {
+        return chunk.getHeightMap(heightmap.name()).get2d(x, z);
+    }
+
+    public void testRecompute() {
+        TerrainChunk chunk = newChunk();
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                chunk.setBlockAt(x, 4, z, block("minecraft:stone"));
+            }
+        }
+        // water over the floor
+        chunk.setBlockAt(1, 5, 1, block("minecraft:water"));
+        chunk.setBlockAt(1, 6, 1, block("minecraft:water"));
+        // leaves over a torch over the floor
+        chunk.setBlockAt(2, 5, 2, block("minecraft:torch"));
+        chunk.setBlockAt(2, 20, 2, block("minecraft:oak_leaves"));
+        // waterlogged fence in the upper section
+        CompoundTag fence = block("minecraft:oak_fence");
+        CompoundTag properties = new CompoundTag();
+        properties.putString("waterlogged", "true");
+        fence.put("Properties", properties);
+        chunk.setBlockAt(3, 31, 3, fence);
+        // a hole in the floor all the way down
+        chunk.setBlockAt(4, 4, 4, block("minecraft:air"));
+
+        new HeightmapCalculator().recompute(chunk);
+        assertNotNull(chunk.getHeightMaps());
+
+        assertEquals(4, height(chunk, Heightmap.WORLD_SURFACE, 0, 0));
+        assertEquals(4, height(chunk, Heightmap.OCEAN_FLOOR, 0, 0));
+        assertEquals(4, height(chunk, Heightmap.MOTION_BLOCKING, 0, 0));
+        assertEquals(4, height(chunk, Heightmap.MOTION_BLOCKING_NO_LEAVES, 15, 15));
+
+        assertEquals(6, height(chunk, Heightmap.WORLD_SURFACE, 1, 1));
+        assertEquals(4, height(chunk, Heightmap.OCEAN_FLOOR, 1, 1));
+        assertEquals(6, height(chunk, Heightmap.MOTION_BLOCKING, 1, 1));
+        assertEquals(6, height(chunk, Heightmap.MOTION_BLOCKING_NO_LEAVES, 1, 1));
+
+        assertEquals(20, height(chunk, Heightmap.WORLD_SURFACE, 2, 2));
+        assertEquals(20, height(chunk, Heightmap.OCEAN_FLOOR, 2, 2));
+        assertEquals(20, height(chunk, Heightmap.MOTION_BLOCKING, 2, 2));
+        assertEquals(4, height(chunk, Heightmap.MOTION_BLOCKING_NO_LEAVES, 2, 2));
+
+        assertEquals(31, height(chunk, Heightmap.WORLD_SURFACE, 3, 3));
+        assertEquals(31, height(chunk, Heightmap.OCEAN_FLOOR, 3, 3));
+        assertEquals(31, height(chunk, Heightmap.MOTION_BLOCKING, 3, 3));
+
+        final int voidY = chunk.getWorldMinBlockY() - 1;
+        for (Heightmap heightmap : Heightmap.values()) {
+            assertEquals(voidY, height(chunk, heightmap, 4, 4));
+        }
+    }
+
+    public void testRecompute_selectedHeightmapsOnly() {
+        TerrainChunk chunk = newChunk();
+        chunk.setBlockAt(0, 0, 0, block("minecraft:stone"));
+        CompoundTag heightMaps = new CompoundTag();
+        LongArrayTag worldGen = new LongArrayTag(new long[37]);
+        heightMaps.put("OCEAN_FLOOR_WG", worldGen);
+        chunk.setHeightMaps(heightMaps);
+
+        new HeightmapCalculator().recompute(chunk, Heightmap.WORLD_SURFACE);
+        assertEquals(0, height(chunk, Heightmap.WORLD_SURFACE, 0, 0));
+        assertFalse(heightMaps.containsKey(Heightmap.OCEAN_FLOOR.name()));
+        assertSame(worldGen, heightMaps.get("OCEAN_FLOOR_WG"));
+    }
+
+    public void testRecompute_uniformSections() {
+        TerrainChunk chunk = newChunk();
+        chunk.getSection(0).getBlockStates().fill(block("minecraft:dirt"));
+        chunk.getSection(1).getBlockStates().fill(block("minecraft:water"));
+
+        new HeightmapCalculator().recompute(chunk);
+        for (int i = 0; i < 256; i++) {
+            assertEquals(31, chunk.getHeightMap("WORLD_SURFACE").get(i));
+            assertEquals(15, chunk.getHeightMap("OCEAN_FLOOR").get(i));
+            assertEquals(31, chunk.getHeightMap("MOTION_BLOCKING").get(i));
+        }
+    }
+
+    public void testRecompute_customClassifier() {
+        TerrainChunk chunk = newChunk();
+        chunk.setBlockAt(5, 3, 7, block("mymod:force_field"));
+        chunk.setBlockAt(5, 2, 7, block("minecraft:stone"));
+        HeightmapCalculator calculator = new HeightmapCalculator(blockState ->
+                blockState.getString("Name").equals("mymod:force_field")
+                        ? Heightmap.WORLD_SURFACE.bit()
+                        : HeightmapCalculator.DEFAULT_CLASSIFIER.classify(blockState));
+        calculator.recompute(chunk);
+        assertEquals(3, height(chunk, Heightmap.WORLD_SURFACE, 5, 7));
+        assertEquals(2, height(chunk, Heightmap.MOTION_BLOCKING, 5, 7));
+    }
+
+    public void testRecompute_matchesVanilla() {
+        TerrainChunk chunk = new TerrainChunk((CompoundTag) deserializeFromFile("1_20_4/region/r.0.0/0299.11.9.snbt").getTag());
+        CompoundTag expected = chunk.getHeightMaps().clone();
+        chunk.getHeightMaps().clear();
+
+        new HeightmapCalculator().recompute(chunk);
+        for (Heightmap heightmap : Heightmap.values()) {
+            assertArrayEquals(heightmap.name(),
+                    expected.getLongArray(heightmap.name()),
+                    chunk.getHeightMaps().getLongArray(heightmap.name()));
+        }
+    }
+
+    public void testRecompute_unsupportedVersion() {
+        TerrainChunk chunk = TerrainChunk.newChunk(DataVersion.JAVA_1_12_2.id());
+        assertThrowsException(() -> new HeightmapCalculator().recompute(chunk), VersionLacksSupportException.class);
+    }
+}
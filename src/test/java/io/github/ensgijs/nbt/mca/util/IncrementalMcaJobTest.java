@@ -0,0 +1,143 @@
+package io.github.ensgijs.nbt.mca.util;
+
+import io.github.ensgijs.nbt.mca.McaFileBase;
+import io.github.ensgijs.nbt.mca.McaTestCase;
+import io.github.ensgijs.nbt.mca.TerrainChunk;
+import io.github.ensgijs.nbt.mca.io.LoadFlags;
+import io.github.ensgijs.nbt.mca.io.RandomAccessMcaFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class IncrementalMcaJobTest extends McaTestCase {
+
+    private int countChunks(File mcaFile) throws IOException {
+        int count = 0;
+        try (var ramf = new RandomAccessMcaFile<>(TerrainChunk.class, mcaFile, "r")) {
+            for (int i = 0; i < 1024; i++) {
+                if (ramf.hasChunk(i)) count++;
+            }
+        }
+        return count;
+    }
+
+    public void testRun_secondRunSkipsEverything() throws IOException {
+        File mcaFile = copyResourceToTmp("1_20_4/region/r.-3.-3.mca");
+        final int chunkCount = countChunks(mcaFile);
+        var job = new IncrementalMcaJob<>(TerrainChunk.class, new ChunkCheckpoints())
+                .setLoadFlags(LoadFlags.RAW);
+        List<IntPointXZ> visited = new ArrayList<>();
+        var stats = job.run(mcaFile.getParentFile(), (chunk, ramf) -> visited.add(chunk.getChunkXZ()));
+        assertEquals(new IncrementalMcaJob.RunStats(chunkCount, 0, 0, 0), stats);
+        assertEquals(chunkCount, visited.size());
+        assertEquals(chunkCount, job.getCheckpoints().size());
+
+        visited.clear();
+        stats = job.run(mcaFile.getParentFile(), (chunk, ramf) -> visited.add(chunk.getChunkXZ()));
+        assertEquals(new IncrementalMcaJob.RunStats(0, chunkCount, 0, 0), stats);
+        assertTrue(visited.isEmpty());
+    }
+
+    public void testRun_checkpointsSurviveSaveLoad() throws IOException {
+        File mcaFile = copyResourceToTmp("1_20_4/region/r.-3.-3.mca");
+        final int chunkCount = countChunks(mcaFile);
+        Path checkpointFile = getNewTmpFile("checkpoints.dat").toPath();
+        var checkpoints = ChunkCheckpoints.load(checkpointFile);
+        assertEquals(0, checkpoints.size());
+        new IncrementalMcaJob<>(TerrainChunk.class, checkpoints)
+                .setLoadFlags(LoadFlags.RAW)
+                .run(mcaFile.getParentFile(), (chunk, ramf) -> {});
+        checkpoints.save(checkpointFile);
+
+        var reloaded = ChunkCheckpoints.load(checkpointFile);
+        assertEquals(chunkCount, reloaded.size());
+        assertEquals(checkpoints.regions(), reloaded.regions());
+        var stats = new IncrementalMcaJob<>(TerrainChunk.class, reloaded)
+                .run(mcaFile.getParentFile(), (chunk, ramf) -> fail("nothing changed"));
+        assertEquals(chunkCount, stats.chunksUnchanged());
+    }
+
+    public void testRun_detectsChangedResavedAndRemovedChunks() throws IOException {
+        File mcaFile = copyResourceToTmp("1_20_4/region/r.-3.-3.mca");
+        final int chunkCount = countChunks(mcaFile);
+        var job = new IncrementalMcaJob<>(TerrainChunk.class, new ChunkCheckpoints()).setLoadFlags(LoadFlags.RAW);
+        job.run(mcaFile.getParentFile(), (chunk, ramf) -> {});
+
+        IntPointXZ modifiedXZ, removedXZ;
+        TerrainChunk modified;
+        try (var ramf = new RandomAccessMcaFile<>(TerrainChunk.class, mcaFile, "rw")) {
+            ramf.setAlwaysUpdateChunkLastUpdatedTimestamp(false);
+            List<Integer> present = new ArrayList<>();
+            for (int i = 0; i < 1024; i++) {
+                if (ramf.hasChunk(i)) present.add(i);
+            }
+            modified = ramf.read(present.get(0));
+            modifiedXZ = modified.getChunkXZ();
+            modified.getHandle().putString("touched", "yes");
+            modified.setLastMCAUpdate(modified.getLastMCAUpdate() + 10);
+            ramf.write(modified);
+            removedXZ = ramf.indexToAbsoluteXZ(present.get(1));
+            assertTrue(ramf.removeChunk(present.get(1)));
+        }
+
+        List<IntPointXZ> visited = new ArrayList<>();
+        var stats = job.run(mcaFile.getParentFile(), (chunk, ramf) -> visited.add(chunk.getChunkXZ()));
+        assertEquals(new IncrementalMcaJob.RunStats(1, chunkCount - 2, 0, 1), stats);
+        assertEquals(List.of(modifiedXZ), visited);
+        assertFalse(job.getCheckpoints().contains(removedXZ.transformChunkToRegion(),
+                McaFileBase.getChunkIndex(removedXZ.getX(), removedXZ.getZ())));
+
+        // same content, new timestamp
+        try (var ramf = new RandomAccessMcaFile<>(TerrainChunk.class, mcaFile, "rw")) {
+            ramf.setAlwaysUpdateChunkLastUpdatedTimestamp(false);
+            modified.setLastMCAUpdate(modified.getLastMCAUpdate() + 10);
+            ramf.write(modified);
+        }
+        stats = job.run(mcaFile.getParentFile(), (chunk, ramf) -> fail("content did not change"));
+        assertEquals(new IncrementalMcaJob.RunStats(0, chunkCount - 2, 1, 0), stats);
+
+        // without hash verification the chunk is visited
+        try (var ramf = new RandomAccessMcaFile<>(TerrainChunk.class, mcaFile, "rw")) {
+            ramf.setAlwaysUpdateChunkLastUpdatedTimestamp(false);
+            modified.setLastMCAUpdate(modified.getLastMCAUpdate() + 10);
+            ramf.write(modified);
+        }
+        job.setVerifyContentHash(false);
+        stats = job.run(mcaFile.getParentFile(), (chunk, ramf) -> {});
+        assertEquals(1, stats.chunksVisited());
+    }
+
+    public void testRun_rwVisitorWritesAreNotRevisited() throws IOException {
+        File mcaFile = copyResourceToTmp("1_20_4/region/r.-3.-3.mca");
+        final int chunkCount = countChunks(mcaFile);
+        var job = new IncrementalMcaJob<>(TerrainChunk.class, new ChunkCheckpoints()).setMode("rw");
+        var stats = job.run(mcaFile.getParentFile(), (chunk, ramf) -> {
+            chunk.getHandle().putString("touched", "yes");
+            ramf.setAlwaysUpdateChunkLastUpdatedTimestamp(false);
+            chunk.setLastMCAUpdate(chunk.getLastMCAUpdate() + 1);
+            ramf.write(chunk);
+        });
+        assertEquals(chunkCount, stats.chunksVisited());
+        stats = job.run(mcaFile.getParentFile(), (chunk, ramf) -> fail("job's own writes should be checkpointed"));
+        assertEquals(chunkCount, stats.chunksUnchanged());
+    }
+
+    public void testRun_regionFileRemoved() throws IOException {
+        File mcaFile = copyResourceToTmp("1_20_4/region/r.-3.-3.mca");
+        final int chunkCount = countChunks(mcaFile);
+        var job = new IncrementalMcaJob<>(TerrainChunk.class, new ChunkCheckpoints()).setLoadFlags(LoadFlags.RAW);
+        job.run(mcaFile.getParentFile(), (chunk, ramf) -> {});
+        assertTrue(mcaFile.delete());
+        var stats = job.run(mcaFile.getParentFile(), (chunk, ramf) -> {});
+        assertEquals(new IncrementalMcaJob.RunStats(0, 0, 0, chunkCount), stats);
+        assertEquals(0, job.getCheckpoints().size());
+    }
+
+    public void testSetMode_validatesArg() {
+        var job = new IncrementalMcaJob<>(TerrainChunk.class, new ChunkCheckpoints());
+        assertThrowsIllegalArgumentException(() -> job.setMode("w"));
+    }
+}
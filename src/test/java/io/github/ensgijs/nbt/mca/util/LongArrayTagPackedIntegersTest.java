@@ -4,6 +4,8 @@ import io.github.ensgijs.nbt.NbtTestCase;
 import io.github.ensgijs.nbt.mca.DataVersion;
 import io.github.ensgijs.nbt.tag.LongArrayTag;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
 
@@ -1126,4 +1128,371 @@ public class LongArrayTagPackedIntegersTest extends NbtTestCase {
             3 3 2 2
             3 3 2 4""", packed.toString3dGrid());
     }
+
+    public void testBulkKernels_matchPerIndexAccess_allBitWidths() {
+        java.util.Random rand = new java.util.Random(42);
+        for (var strategy : LongArrayTagPackedIntegers.PackingStrategy.values()) {
+            for (int bits = 1; bits < 32; bits++) {
+                for (int length : new int[] {64, 100, 4096}) {
+                    String msg = strategy + " bits=" + bits + " length=" + length;
+                    int[] values = new int[length];
+                    for (int i = 0; i < length; i++) {
+                        values[i] = rand.nextInt() >>> (32 - bits);
+                    }
+                    values[length - 1] = (1 << bits) - 1;  // force the full width to be used
+                    LongArrayTagPackedIntegers bulk = LongArrayTagPackedIntegers.builder()
+                            .packingStrategy(strategy).minBitsPerValue(1).build(values);
+                    LongArrayTagPackedIntegers single = LongArrayTagPackedIntegers.builder()
+                            .packingStrategy(strategy).length(length).minBitsPerValue(bits).build();
+                    for (int i = 0; i < length; i++) {
+                        single.set(i, values[i]);
+                    }
+                    assertEquals(msg, bits, bulk.getBitsPerValue());
+                    assertArrayEquals(msg, single.longs(), bulk.longs());
+                    assertArrayEquals(msg, values, bulk.toArray());
+                    assertEquals(msg, bits, bulk.getActualUsedBitsPerValue());
+                    for (int i = 0; i < length; i += 7) {
+                        assertEquals(msg, values[i], bulk.get(i));
+                    }
+                    int expectCount = 0;
+                    for (int v : values) if (v == values[3]) expectCount++;
+                    assertEquals(msg, expectCount, bulk.count(values[3]));
+                }
+            }
+        }
+    }
+
+    public void testToShortArray() {
+        LongArrayTagPackedIntegers packed = LongArrayTagPackedIntegers.builder()
+                .packingStrategy(SPLIT_VALUES_ACROSS_LONGS)
+                .length(256)
+                .minBitsPerValue(9)
+                .build(new LongArrayTag(getSplitValuesAcrossLongsTestData()));
+        packed.setValueOffset(-65);
+        short[] shorts = packed.toArray(new short[258], 2);
+        int[] ints = packed.toArray();
+        for (int i = 0; i < 256; i++) {
+            assertEquals(ints[i], shorts[i + 2]);
+        }
+        packed.set(0, 40000);
+        assertThrows(IllegalStateException.class, () -> packed.toArray(new short[256], 0));
+    }
+
+    public void testRemap_table() {
+        for (var strategy : LongArrayTagPackedIntegers.PackingStrategy.values()) {
+            LongArrayTagPackedIntegers packed = LongArrayTagPackedIntegers.builder()
+                    .packingStrategy(strategy)
+                    .minBitsPerValue(3)
+                    .build(new int[] {0, 1, 2, 3, 4, 5, 6, 7, 7, 6, 5, 4, 3, 2, 1, 0, 9});
+            assertEquals(4, packed.getBitsPerValue());
+            // in place - entries beyond the table are left as-is
+            packed.remap(new int[] {7, 6, 5, 4, 3, 2, 1, 0});
+            assertArrayEquals(new int[] {7, 6, 5, 4, 3, 2, 1, 0, 0, 1, 2, 3, 4, 5, 6, 7, 9}, packed.toArray());
+            assertEquals(4, packed.getBitsPerValue());
+            // requires growth
+            packed.remap(new int[] {100, 1, 2, 3, 4, 5, 6, 7, 8, 900});
+            assertArrayEquals(new int[] {7, 6, 5, 4, 3, 2, 1, 100, 100, 1, 2, 3, 4, 5, 6, 7, 900}, packed.toArray());
+            assertEquals(10, packed.getBitsPerValue());
+            assertSame(packed.getHandle().getValue(), packed.longs());
+            assertThrows(IllegalArgumentException.class, () -> packed.remap(new int[] {-1}));
+        }
+    }
+
+    public void testFill_range() {
+        java.util.Random rand = new java.util.Random(7);
+        for (var strategy : LongArrayTagPackedIntegers.PackingStrategy.values()) {
+            for (int bits : new int[] {1, 4, 5, 9, 16}) {
+                int[] values = new int[256];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = rand.nextInt(1 << bits);
+                }
+                LongArrayTagPackedIntegers packed = LongArrayTagPackedIntegers.builder()
+                        .packingStrategy(strategy).minBitsPerValue(bits).build(values);
+                for (int n = 0; n < 50; n++) {
+                    int from = rand.nextInt(257);
+                    int to = from + rand.nextInt(257 - from);
+                    int v = rand.nextInt(1 << bits);
+                    Arrays.fill(values, from, to, v);
+                    packed.fill(from, to, v);
+                    assertArrayEquals(strategy + " bits=" + bits + " [" + from + ", " + to + ")", values, packed.toArray());
+                }
+                // growing
+                Arrays.fill(values, 3, 70, 1 << bits);
+                packed.fill(3, 70, 1 << bits);
+                assertArrayEquals(values, packed.toArray());
+                assertEquals(bits + 1, packed.getBitsPerValue());
+            }
+        }
+        LongArrayTagPackedIntegers packed = LongArrayTagPackedIntegers.builder().length(64).minBitsPerValue(4).build();
+        assertThrows(IndexOutOfBoundsException.class, () -> packed.fill(-1, 5, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> packed.fill(0, 65, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> packed.fill(6, 5, 1));
+        assertThrows(IllegalArgumentException.class, () -> packed.fill(0, 5, -1));
+    }
+
+    public void testUniform_lifecycle() {
+        LongArrayTag tag = new LongArrayTag();
+        LongArrayTagPackedIntegers packed = LongArrayTagPackedIntegers.builder()
+                .length(4096).minBitsPerValue(4).valueOffset(-2).build(tag);
+        assertTrue(packed.isUniform());
+        assertEquals(0, tag.getValue().length);
+        assertEquals(-2, packed.get(4095));
+        assertEquals(4096, packed.count(-2));
+        assertEquals(0, packed.count(-1));
+        assertTrue(packed.contains(-2));
+        assertTrue(packed.allMatch(v -> v == -2));
+        assertEquals(0, packed.getActualUsedBitsPerValue());
+        int[] values = packed.toArray();
+        assertEquals(4096, values.length);
+        assertTrue(Arrays.stream(values).allMatch(v -> v == -2));
+
+        // storing the zero value does not allocate, neither does compacting or changing packing
+        packed.set(10, -2);
+        packed.fill(0, 100, -2);
+        packed.replaceAll(-1, 5);
+        packed.setPackingStrategy(SPLIT_VALUES_ACROSS_LONGS);
+        packed.setMinBitsPerValue(5);
+        packed.compactValues();
+        assertTrue(packed.isUniform());
+        assertEquals(0, tag.getValue().length);
+
+        // first differing set allocates
+        packed.set(10, 3);
+        assertFalse(packed.isUniform());
+        assertSame(tag.getValue(), packed.longs());
+        assertEquals(longsFor(4096, 5), tag.getValue().length);
+        assertEquals(3, packed.get(10));
+        assertEquals(4095, packed.count(-2));
+
+        // clear releases the long[]
+        packed.clear(true);
+        assertTrue(packed.isUniform());
+        assertEquals(5, packed.getBitsPerValue());
+
+        // asking for the handle or longs allocates
+        assertEquals(longsFor(4096, 5), packed.getHandle().getValue().length);
+        assertFalse(packed.isUniform());
+        assertTrue(packed.allMatch(-2));
+
+        // zero filling the full range releases the long[]
+        packed.set(7, 0);
+        packed.fill(0, 4096, -2);
+        assertTrue(packed.isUniform());
+        packed.replaceAll(-2, 1);
+        assertFalse(packed.isUniform());
+        assertEquals(4096, packed.count(1));
+        packed.setFromArray(new int[4096]);
+        assertFalse(packed.isUniform());
+        Arrays.fill(values, -2);
+        packed.setFromArray(values);
+        assertTrue(packed.isUniform());
+
+        LongArrayTagPackedIntegers clone = packed.clone();
+        assertTrue(clone.isUniform());
+        clone.set(0, 9);
+        assertTrue(packed.isUniform());
+        assertEquals(-2, packed.get(0));
+    }
+
+    private static int longsFor(int length, int bits) {
+        return (int) Math.ceil(length * bits / 64d);
+    }
+
+    public void testHistogram() {
+        for (var strategy : LongArrayTagPackedIntegers.PackingStrategy.values()) {
+            LongArrayTagPackedIntegers packed = LongArrayTagPackedIntegers.builder()
+                    .packingStrategy(strategy).minBitsPerValue(5).valueOffset(-1)
+                    .build(new int[] {-1, 3, 3, 0, 3, 9, 30, -1, -1});
+            int[] histogram = new int[5];
+            histogram[0] = 100;
+            assertEquals(30, packed.histogram(histogram));
+            assertArrayEquals(new int[] {103, 1, 0, 0, 3}, histogram);
+        }
+        LongArrayTagPackedIntegers uniform = LongArrayTagPackedIntegers.builder().length(64).minBitsPerValue(4).build();
+        int[] histogram = new int[2];
+        assertEquals(0, uniform.histogram(histogram));
+        assertArrayEquals(new int[] {64, 0}, histogram);
+    }
+
+    public void testClone_isIndependentOfSource() {
+        LongArrayTagPackedIntegers packed = LongArrayTagPackedIntegers.builder().length(64).minBitsPerValue(4).build();
+        for (int i = 0; i < 64; i++) {
+            packed.set(i, i % 7);
+        }
+        final int[] expected = packed.toArray();
+        LongArrayTagPackedIntegers clone = packed.clone();
+        assertNotSame(packed.getHandle(), clone.getHandle());
+        assertNotSame(packed.longs(), clone.longs());
+
+        clone = packed.clone();
+        clone.set(3, 42);
+        assertArrayEquals(expected, packed.toArray());
+        assertEquals(42, clone.get(3));
+
+        clone = packed.clone();
+        packed.fill(0, 10, 5);
+        assertArrayEquals(expected, clone.toArray());
+
+        final int[] filled = packed.toArray();
+        clone = packed.clone();
+        packed.replaceAll(5, 6);
+        packed.remap(new int[] {1, 1, 1, 1, 1, 1, 1});
+        assertArrayEquals(filled, clone.toArray());
+        assertEquals(1, packed.get(20));
+
+        clone = packed.clone();
+        clone.setFromArray(new int[64]);
+        assertTrue(clone.isUniform());
+        assertEquals(1, packed.get(20));
+    }
+
+    public void testForEachRun_forEachIndexOf_runEnd_matchPerIndexAccess() {
+        java.util.Random rand = new java.util.Random(7);
+        for (var strategy : LongArrayTagPackedIntegers.PackingStrategy.values()) {
+            for (int bits = 1; bits < 20; bits++) {
+                for (int length : new int[] {64, 100, 4096}) {
+                    String msg = strategy + " bits=" + bits + " length=" + length;
+                    // long runs of a few values with an occasional stray value
+                    int[] values = new int[length];
+                    int v = 0;
+                    for (int i = 0; i < length; i++) {
+                        if (rand.nextInt(40) == 0) v = rand.nextInt(3);
+                        values[i] = rand.nextInt(50) == 0 ? rand.nextInt() >>> (32 - bits) : v;
+                    }
+                    values[length - 1] = (1 << bits) - 1;
+                    LongArrayTagPackedIntegers packed = LongArrayTagPackedIntegers.builder()
+                            .packingStrategy(strategy).minBitsPerValue(1).valueOffset(-3).build(values);
+
+                    int[] rebuilt = new int[length];
+                    int[] next = {0};
+                    packed.forEachRun((value, start, runLength) -> {
+                        assertEquals(msg, next[0], start);
+                        assertTrue(msg, runLength > 0);
+                        if (start > 0) assertTrue(msg, rebuilt[start - 1] != value);
+                        Arrays.fill(rebuilt, start, start + runLength, value);
+                        next[0] = start + runLength;
+                    });
+                    assertEquals(msg, length, next[0]);
+                    assertArrayEquals(msg, values, rebuilt);
+
+                    for (int target : new int[] {-3, 0, 1, 2, values[length - 1]}) {
+                        int[] found = new int[length];
+                        int[] count = {0};
+                        packed.forEachIndexOf(target, i -> found[count[0]++] = i);
+                        int expectCount = 0;
+                        for (int i = 0; i < length; i++) {
+                            if (values[i] == target) {
+                                assertEquals(msg, i, found[expectCount++]);
+                            }
+                        }
+                        assertEquals(msg, expectCount, count[0]);
+                    }
+
+                    for (int i = 0; i < length; i += 5) {
+                        int expectEnd = i + 1;
+                        while (expectEnd < length && values[expectEnd] == values[i]) expectEnd++;
+                        assertEquals(msg + " i=" + i, expectEnd, packed.runEnd(i));
+                    }
+                }
+            }
+        }
+    }
+
+    public void testForEachRun_uniform() {
+        LongArrayTagPackedIntegers packed = LongArrayTagPackedIntegers.builder().length(64).minBitsPerValue(1).valueOffset(5).build();
+        assertTrue(packed.isUniform());
+        int[] calls = {0};
+        packed.forEachRun((value, start, length) -> {
+            calls[0]++;
+            assertEquals(5, value);
+            assertEquals(0, start);
+            assertEquals(64, length);
+        });
+        assertEquals(1, calls[0]);
+        assertEquals(64, packed.runEnd(10));
+        packed.forEachIndexOf(6, i -> fail());
+        int[] count = {0};
+        packed.forEachIndexOf(5, i -> count[0]++);
+        assertEquals(64, count[0]);
+        assertTrue(packed.isUniform());
+    }
+
+    public void testDiff() {
+        for (var strategy : LongArrayTagPackedIntegers.PackingStrategy.values()) {
+            for (int bits : new int[] {1, 4, 5, 8, 13}) {
+                String msg = strategy + " bits=" + bits;
+                LongArrayTagPackedIntegers a = LongArrayTagPackedIntegers.builder()
+                        .packingStrategy(strategy).length(100).minBitsPerValue(bits).build();
+                assertTrue(msg, a.diff(a.clone()).isEmpty());
+                for (int i = 0; i < 100; i += 3) {
+                    a.set(i, i % 2);
+                }
+                LongArrayTagPackedIntegers b = a.clone();
+                assertTrue(msg, a.diff(b).isEmpty());
+                b.set(0, 1);
+                b.set(50, 1);
+                b.set(51, 1);  // unchanged
+                b.set(99, 0);
+                BitSet expected = new BitSet();
+                expected.set(0);
+                expected.set(50);
+                expected.set(99);
+                assertEquals(msg, expected, a.diff(b));
+                assertEquals(msg, expected, b.diff(a));
+
+                // differing layouts fall back to comparing decoded values
+                LongArrayTagPackedIntegers c = b.clone();
+                c.setMinBitsPerValue(bits + 3);
+                assertEquals(msg, expected, a.diff(c));
+            }
+        }
+        LongArrayTagPackedIntegers zeros = LongArrayTagPackedIntegers.builder().length(64).minBitsPerValue(1).build();
+        LongArrayTagPackedIntegers fives = LongArrayTagPackedIntegers.builder().length(64).minBitsPerValue(1).valueOffset(5).build();
+        assertEquals(64, zeros.diff(fives).cardinality());
+        assertThrowsException(() -> zeros.diff(LongArrayTagPackedIntegers.builder().length(16).minBitsPerValue(1).build()),
+                IllegalArgumentException.class);
+    }
+
+    public void testWordParallelScans_matchNaive_allBitWidths() {
+        java.util.Random rand = new java.util.Random(37);
+        for (var strategy : LongArrayTagPackedIntegers.PackingStrategy.values()) {
+            for (int bits = 1; bits < 32; bits++) {
+                for (int length : new int[] {64, 100, 4096}) {
+                    String msg = strategy + " bits=" + bits + " length=" + length;
+                    final int maxValue = (1 << bits) - 1;
+                    int[] values = new int[length];
+                    for (int i = 0; i < length; i++) {
+                        // few distinct values, with some runs, so that values repeat within longs
+                        values[i] = i % 50 < 20 ? 1 : rand.nextInt(4) == 0 ? maxValue : rand.nextInt((int) Math.min(4, maxValue + 1L));
+                    }
+                    LongArrayTagPackedIntegers packed = LongArrayTagPackedIntegers.builder()
+                            .packingStrategy(strategy).minBitsPerValue(bits).length(length).build();
+                    packed.setFromArray(values);
+                    for (int target : new int[] {0, 1, 2, maxValue}) {
+                        int expectCount = 0;
+                        for (int v : values) if (v == target) expectCount++;
+                        assertEquals(msg, expectCount, packed.count(target));
+                        assertEquals(msg, expectCount > 0, packed.contains(target));
+                        assertEquals(msg, expectCount == length, packed.allMatch(target));
+                    }
+                    int[] histogram = new int[4];
+                    int[] expectHistogram = new int[4];
+                    for (int v : values) if (v < 4) expectHistogram[v]++;
+                    assertEquals(msg, maxValue, packed.histogram(histogram));
+                    assertArrayEquals(msg, expectHistogram, histogram);
+
+                    LongArrayTagPackedIntegers replaced = packed.clone();
+                    replaced.replaceAll(1, 0);
+                    for (int i = 0; i < length; i++) {
+                        assertEquals(msg, values[i] == 1 ? 0 : values[i], replaced.get(i));
+                    }
+                    LongArrayTagPackedIntegers uniform = packed.clone();
+                    uniform.fill(0, length, 1);
+                    assertTrue(msg, uniform.allMatch(1));
+                    uniform.set(length - 1, 0);
+                    assertFalse(msg, uniform.allMatch(1));
+                }
+            }
+        }
+    }
 }
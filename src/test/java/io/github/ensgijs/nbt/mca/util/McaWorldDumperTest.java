@@ -0,0 +1,128 @@
+package io.github.ensgijs.nbt.mca.util;
+
+import io.github.ensgijs.nbt.mca.McaTestCase;
+import io.github.ensgijs.nbt.mca.TerrainChunk;
+import io.github.ensgijs.nbt.mca.io.RandomAccessMcaFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class McaWorldDumperTest extends McaTestCase {
+
+    private List<Integer> presentChunks(File mcaFile) throws IOException {
+        List<Integer> present = new ArrayList<>();
+        try (var ramf = new RandomAccessMcaFile<>(TerrainChunk.class, mcaFile, "r")) {
+            for (int i = 0; i < 1024; i++) {
+                if (ramf.hasChunk(i)) present.add(i);
+            }
+        }
+        return present;
+    }
+
+    public void testDump_matchesSingleThreadedDumper() throws IOException {
+        File mcaFile = copyResourceToTmp("1_20_4/region/r.-3.-3.mca");
+        final int chunkCount = presentChunks(mcaFile).size();
+        Path worldDir = mcaFile.getParentFile().getParentFile().toPath();
+        Path out = getNewTmpDirectory().toPath();
+        var stats = new McaWorldDumper()
+                .setThreadCount(3)
+                .setMaxInFlightBytes(1)  // forces reading to wait on the workers for every chunk
+                .dump(worldDir, out);
+        assertEquals(new McaWorldDumper.DumpStats(1, chunkCount, 0, 0), stats);
+
+        Path expectedDir = McaDumper.dumpChunksAsTextNbt(mcaFile, getNewTmpDirectory().toPath());
+        File[] expected = expectedDir.toFile().listFiles();
+        assertNotNull(expected);
+        assertEquals(chunkCount, expected.length);
+        Path actualDir = out.resolve("region").resolve("r.-3.-3");
+        for (File file : expected) {
+            assertEquals(file.getName(),
+                    Files.readString(file.toPath()),
+                    Files.readString(actualDir.resolve(file.getName())));
+        }
+    }
+
+    public void testDump_incrementalSkipsUnchangedChunks() throws IOException {
+        File mcaFile = copyResourceToTmp("1_20_4/region/r.-3.-3.mca");
+        final List<Integer> present = presentChunks(mcaFile);
+        final int chunkCount = present.size();
+        Path worldDir = mcaFile.getParentFile().getParentFile().toPath();
+        Path out = getNewTmpDirectory().toPath();
+        var dumper = new McaWorldDumper().setIncremental(true).setThreadCount(2);
+        assertEquals(new McaWorldDumper.DumpStats(1, chunkCount, 0, 0), dumper.dump(worldDir, out));
+        assertEquals(new McaWorldDumper.DumpStats(1, 0, chunkCount, 0), dumper.dump(worldDir, out));
+
+        try (var ramf = new RandomAccessMcaFile<>(TerrainChunk.class, mcaFile, "rw")) {
+            ramf.setAlwaysUpdateChunkLastUpdatedTimestamp(false);
+            TerrainChunk modified = ramf.read(present.get(0));
+            modified.getHandle().putString("touched", "yes");
+            modified.setLastMCAUpdate(modified.getLastMCAUpdate() + 10);
+            ramf.write(modified);
+            assertTrue(ramf.removeChunk(present.get(1)));
+        }
+        assertEquals(new McaWorldDumper.DumpStats(1, 1, chunkCount - 2, 1), dumper.dump(worldDir, out));
+        File[] files = out.resolve("region").resolve("r.-3.-3").toFile().listFiles();
+        assertNotNull(files);
+        assertEquals(chunkCount - 1, files.length);
+        boolean found = false;
+        for (File file : files) {
+            if (file.getName().startsWith(String.format("%04d.", present.get(0)))) {
+                assertTrue(Files.readString(file.toPath()).contains("touched"));
+                found = true;
+            }
+        }
+        assertTrue(found);
+
+        // a non-incremental dump rewrites everything
+        assertEquals(chunkCount - 1, new McaWorldDumper().dump(worldDir, out).chunksWritten());
+    }
+
+    public void testDump_incrementalFailureKeepsUnscannedDumps() throws IOException {
+        File mcaFile = copyResourceToTmp("1_20_4/region/r.-3.-3.mca");
+        final List<Integer> present = presentChunks(mcaFile);
+        Path worldDir = mcaFile.getParentFile().getParentFile().toPath();
+        Path out = getNewTmpDirectory().toPath();
+        var dumper = new McaWorldDumper()
+                .setIncremental(true)
+                .setThreadCount(1)
+                .setMaxInFlightBytes(1);  // reading waits on the worker, so it stops right after the failure
+        dumper.dump(worldDir, out);
+
+        File[] files = out.resolve("region").resolve("r.-3.-3").toFile().listFiles();
+        assertNotNull(files);
+        assertEquals(present.size(), files.length);
+        File failing = null;
+        for (File file : files) {
+            // out of date, so every chunk is dumped again
+            assertTrue(file.setLastModified(1000L));
+            if (file.getName().startsWith(String.format("%04d.", present.get(0)))) {
+                failing = file;
+            }
+        }
+        assertNotNull(failing);
+        // a directory in place of its .snbt file makes the worker fail writing the first chunk
+        assertTrue(failing.delete());
+        assertTrue(failing.mkdir());
+
+        try {
+            dumper.dump(worldDir, out);
+            fail("expected the worker failure to be rethrown");
+        } catch (IOException expected) {
+            // which exact IOException depends on the file system
+        }
+        files = out.resolve("region").resolve("r.-3.-3").toFile().listFiles();
+        assertNotNull(files);
+        assertEquals(present.size(), files.length);
+    }
+
+    public void testDump_argumentValidation() {
+        assertThrowsException(() -> new McaWorldDumper().setThreadCount(0), IllegalArgumentException.class);
+        assertThrowsException(() -> new McaWorldDumper().setMaxInFlightBytes(0), IllegalArgumentException.class);
+        assertThrowsException(() -> new McaWorldDumper().dump(getNewTmpFile("nope").toPath(), getNewTmpDirectory().toPath()),
+                IllegalArgumentException.class);
+    }
+}
@@ -8,10 +8,13 @@ import io.github.ensgijs.nbt.tag.StringTag;
 import io.github.ensgijs.nbt.NbtTestCase;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Random;
 
 import static org.junit.Assert.assertArrayEquals;
 
@@ -142,6 +145,23 @@ public class PalettizedCuboidTest extends NbtTestCase {
         assertFalse(cuboid.contains(new StringTag("grass")));
     }
 
+    public void testDistinctValuesByRef() {
+        StringTag airTag = new StringTag("air");
+        StringTag stoneTag = new StringTag("stone");
+        StringTag[] tags = new StringTag[2 * 2 * 2];
+        Arrays.fill(tags, airTag);
+        tags[3] = stoneTag;
+        tags[5] = new StringTag("dirt");
+        PalettizedCuboid<StringTag> cuboid = new PalettizedCuboid<>(tags);
+        assertEquals(Arrays.asList(airTag, stoneTag, new StringTag("dirt")), cuboid.distinctValuesByRef());
+        assertSame(cuboid.palette.get(1), cuboid.distinctValuesByRef().get(1));
+
+        // no longer referenced palette entries are not included
+        cuboid.set(5, stoneTag);
+        assertEquals(3, cuboid.paletteSize());
+        assertEquals(Arrays.asList(airTag, stoneTag), cuboid.distinctValuesByRef());
+    }
+
     public void testCountIf() {
         StringTag airTag = new StringTag("air");
         StringTag stoneTag = new StringTag("stone");
@@ -437,6 +457,57 @@ public class PalettizedCuboidTest extends NbtTestCase {
         // optimizePalette will clean those up - tested in #testOptimizePalette
     }
 
+    public void testSet_largePaletteLookupStaysInSync() {
+        PalettizedCuboid<CompoundTag> cuboid = new PalettizedCuboid<>(16, new BlockStateTag("minecraft:air").getHandle());
+        for (int i = 0; i < cuboid.size(); i++) {
+            cuboid.set(i, new BlockStateTag("minecraft:block_" + (i % 200)).getHandle());
+        }
+        assertEquals(201, cuboid.paletteSize());
+        for (int i = 0; i < cuboid.size(); i++) {
+            assertEquals("minecraft:block_" + (i % 200), cuboid.getByRef(i).getString("Name"));
+            assertEquals(1 + (i % 200), cuboid.packedData.get(i));
+        }
+
+        // replace leaves an empty sentinel in the palette - the old value must no longer be found
+        CompoundTag block7 = new BlockStateTag("minecraft:block_7").getHandle();
+        CompoundTag other = new BlockStateTag("minecraft:other").getHandle();
+        assertTrue(cuboid.contains(block7));
+        assertTrue(cuboid.replace(block7, other));
+        assertFalse(cuboid.contains(block7));
+        assertTrue(cuboid.contains(other));
+        assertEquals(202, cuboid.paletteSize());
+        cuboid.set(7, block7);
+        assertEquals(203, cuboid.paletteSize());
+        assertEquals(202, cuboid.packedData.get(7));
+        cuboid.set(8, other);
+        assertEquals(201, cuboid.packedData.get(8));
+        assertEquals(203, cuboid.paletteSize());
+
+        // empty value sentinels are never matched
+        cuboid.set(9, new CompoundTag());
+        assertEquals(203, cuboid.packedData.get(9));
+        assertEquals(new CompoundTag(), cuboid.get(9));
+    }
+
+    public void testSet_lookupSeesValuesModifiedByRef() {
+        CompoundTag stone = new BlockStateTag("minecraft:stone").getHandle();
+        CompoundTag dirt = new BlockStateTag("minecraft:dirt").getHandle();
+        PalettizedCuboid<CompoundTag> cuboid = new PalettizedCuboid<>(4, new BlockStateTag("minecraft:air").getHandle());
+        cuboid.set(5, stone);
+        assertTrue(cuboid.contains(stone));  // builds the lookup
+        cuboid.getByRef(5).putString("Name", "minecraft:dirt");
+        assertTrue(cuboid.contains(dirt));
+        assertFalse(cuboid.contains(stone));
+        cuboid.set(6, dirt);
+        assertEquals(2, cuboid.paletteSize());
+        assertEquals(cuboid.packedData.get(5), cuboid.packedData.get(6));
+
+        cuboid.toArrayByRef()[0].putString("Name", "minecraft:stone");
+        assertEquals(0, cuboid.paletteIndexOf(stone));
+        cuboid.set(7, stone);
+        assertEquals(2, cuboid.paletteSize());
+    }
+
     public void testSet_throwsWhenIndexOutOfBounds() {
         PalettizedCuboid<StringTag> cuboid = new PalettizedCuboid<>(2, new StringTag("air"));
         assertThrowsException(() -> cuboid.set(-1, new StringTag("bam")), IndexOutOfBoundsException.class);
@@ -600,6 +671,65 @@ public class PalettizedCuboidTest extends NbtTestCase {
         assertNotSame(cuboid.palette.get(0), cuboid2.palette.get(0));
     }
 
+    public void testClone_isIndependentOfSource() {
+        StringTag airTag = new StringTag("air");
+        StringTag stoneTag = new StringTag("stone");
+        StringTag lavaTag = new StringTag("lava");
+        PalettizedCuboid<StringTag> cuboid = new PalettizedCuboid<>(4, airTag);
+        cuboid.set(1, 2, 3, stoneTag);
+        cuboid.set(3, 3, 3, lavaTag);
+        final StringTag[] expected = cuboid.toArray();
+
+        PalettizedCuboid<StringTag> clone = cuboid.clone();
+        assertNotSame(cuboid.palette, clone.palette);
+        assertNotSame(cuboid.packedData.longs(), clone.packedData.longs());
+        assertArrayEquals(expected, clone.toArray());
+
+        // modifying the clone leaves the source untouched
+        clone.set(0, 0, 0, lavaTag);
+        clone.set(1, 2, 3, new StringTag("dirt"));
+        assertArrayEquals(expected, cuboid.toArray());
+        assertEquals(new StringTag("dirt"), clone.get(1, 2, 3));
+        assertEquals(lavaTag, clone.get(0, 0, 0));
+
+        // and the other way around
+        PalettizedCuboid<StringTag> clone2 = cuboid.clone();
+        cuboid.replace(stoneTag, airTag);
+        assertEquals(airTag, cuboid.get(1, 2, 3));
+        assertArrayEquals(expected, clone2.toArray());
+
+        // as are handles and values obtained by reference
+        PalettizedCuboid<StringTag> clone3 = clone2.clone();
+        CompoundTag handle = clone3.toCompoundTag();
+        assertNotSame(clone2.packedData.getHandle().getValue(), handle.getLongArray("data"));
+        handle.getListTag("palette").asStringTagList().get(0).setValue("modified");
+        clone2.clone().getByRef(1, 2, 3).setValue("modified");
+        assertArrayEquals(expected, clone2.toArray());
+    }
+
+    public void testClone_modifyingByRefLeavesSourceUntouched() {
+        PalettizedCuboid<CompoundTag> cuboid = new PalettizedCuboid<>(4, new BlockStateTag("minecraft:air").getHandle());
+        cuboid.set(1, new BlockStateTag("minecraft:stone").getHandle());
+        final CompoundTag[] expected = cuboid.toArray();
+        PalettizedCuboid<CompoundTag> clone = cuboid.clone();
+        clone.getByRef(1).putString("Name", "minecraft:dirt");
+        assertArrayEquals(expected, cuboid.toArray());
+        assertEquals("minecraft:dirt", clone.get(1).getString("Name"));
+        assertEquals("minecraft:stone", cuboid.get(1).getString("Name"));
+    }
+
+    public void testClone_fillLeavesSourceUntouched() {
+        StringTag airTag = new StringTag("air");
+        PalettizedCuboid<StringTag> cuboid = new PalettizedCuboid<>(4, airTag);
+        cuboid.set(5, new StringTag("stone"));
+        PalettizedCuboid<StringTag> clone = cuboid.clone();
+        clone.fill(new StringTag("lava"));
+        assertEquals(1, clone.paletteSize());
+        assertEquals(2, cuboid.paletteSize());
+        assertEquals(new StringTag("stone"), cuboid.get(5));
+        assertEquals(airTag, cuboid.get(6));
+    }
+
     public void testCompoundTag_toAndFrom_moreThanOnePaletteIdInUse() {
         PalettizedCuboid<StringTag> cuboid = new PalettizedCuboid<>(4, new StringTag("desert"));
         cuboid.set(0, 0, 0, new StringTag("beach"));
@@ -930,4 +1060,367 @@ public class PalettizedCuboidTest extends NbtTestCase {
         assertEquals(24, cuboid.countIf(e -> e.getValue().equals("minecraft:dripstone_caves")));
         assertEquals(64 - 24, cuboid.countIf(e -> e.getValue().equals("minecraft:savanna")));
     }
+
+    public void testIdAccess_requiresRegistry() {
+        PalettizedCuboid<StringTag> cuboid = new PalettizedCuboid<>(4, new StringTag("a"));
+        assertThrowsException(() -> cuboid.getId(0), IllegalStateException.class);
+        assertThrowsException(cuboid::toIdArray, IllegalStateException.class);
+    }
+
+    public void testIdAccess() {
+        BlockStateRegistry registry = new BlockStateRegistry();
+        final int air = registry.idOf(new BlockStateTag("minecraft:air"));
+        final int stone = registry.idOf(new BlockStateTag("minecraft:stone"));
+        final int dirt = registry.idOf(new BlockStateTag("minecraft:dirt"));
+        PalettizedCuboid<CompoundTag> cuboid = new PalettizedCuboid<>(4, new BlockStateTag("minecraft:air").getHandle());
+        cuboid.setIdRegistry(registry);
+        assertSame(registry, cuboid.getIdRegistry());
+        assertEquals(air, cuboid.getId(1, 2, 3));
+
+        cuboid.setId(1, 2, 3, stone);
+        assertEquals(stone, cuboid.getId(1, 2, 3));
+        assertEquals("minecraft:stone", cuboid.getByRef(1, 2, 3).getString("Name"));
+        assertNotSame(registry.get(stone), cuboid.getByRef(1, 2, 3));
+        // values set through the non-id api are seen by the id api
+        cuboid.set(0, new BlockStateTag("minecraft:dirt").getHandle());
+        assertEquals(dirt, cuboid.getId(0));
+        cuboid.set(5, new BlockStateTag("minecraft:grass_block").getHandle());
+        assertEquals(registry.lookupId(new BlockStateTag("minecraft:grass_block")), cuboid.getId(5));
+        cuboid.setId(6, dirt);
+        assertEquals(3, cuboid.distinctValuesByRef().size() - 1);
+
+        int[] ids = cuboid.toIdArray();
+        assertEquals(64, ids.length);
+        assertEquals(dirt, ids[0]);
+        assertEquals(dirt, ids[6]);
+        assertEquals(stone, ids[cuboid.indexOf(1, 2, 3)]);
+        assertEquals(air, ids[63]);
+
+        cuboid.replace(new BlockStateTag("minecraft:dirt").getHandle(), new BlockStateTag("minecraft:stone").getHandle());
+        assertEquals(stone, cuboid.getId(0));
+
+        assertThrowsException(() -> cuboid.setId(64, air), IndexOutOfBoundsException.class);
+        assertThrowsException(() -> cuboid.setId(0, 999), IndexOutOfBoundsException.class);
+    }
+
+    public void testSetFromIdArray() {
+        BlockStateRegistry registry = new BlockStateRegistry();
+        final int air = registry.idOf(new BlockStateTag("minecraft:air"));
+        final int stone = registry.idOf(new BlockStateTag("minecraft:stone"));
+        PalettizedCuboid<CompoundTag> cuboid = new PalettizedCuboid<>(4, new BlockStateTag("minecraft:dirt").getHandle());
+        cuboid.setIdRegistry(registry);
+        int[] ids = new int[64];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i % 3 == 0 ? stone : air;
+        }
+        cuboid.setFromIdArray(ids);
+        assertEquals(2, cuboid.paletteSize());
+        assertArrayEquals(ids, cuboid.toIdArray());
+        assertEquals(22, cuboid.countIf(e -> e.getString("Name").equals("minecraft:stone")));
+
+        assertThrowsException(() -> cuboid.setFromIdArray(new int[63]), IllegalArgumentException.class);
+        ids[5] = 99;
+        assertThrowsException(() -> cuboid.setFromIdArray(ids), IndexOutOfBoundsException.class);
+        assertEquals(2, cuboid.paletteSize());
+    }
+
+    public void testInternPalette_sharesInstancesAcrossCuboids() {
+        BlockStateRegistry registry = new BlockStateRegistry();
+        PalettizedCuboid<CompoundTag> a = new PalettizedCuboid<>(4, new BlockStateTag("minecraft:stone").getHandle());
+        PalettizedCuboid<CompoundTag> b = new PalettizedCuboid<>(4, new BlockStateTag("minecraft:stone").getHandle());
+        assertNotSame(a.getByRef(0), b.getByRef(0));
+        a.setIdRegistry(registry);
+        b.setIdRegistry(registry);
+        a.internPalette();
+        b.internPalette();
+        assertSame(a.getByRef(0), b.getByRef(0));
+        assertTrue(a.contains(new BlockStateTag("minecraft:stone").getHandle()));
+        // clones are deep copies
+        assertNotSame(a.getByRef(0), a.clone().getByRef(0));
+    }
+
+    public void testSetRange_matchesPerEntrySet() {
+        final int[][] ranges = {
+                {0, 2, 0, 15, 5, 15},  // XZ planes
+                {0, 3, 4, 15, 9, 11},  // full X rows
+                {3, 0, 2, 12, 15, 7},  // partial rows
+                {7, 7, 7, 7, 7, 7},
+                {15, 15, 15, 0, 14, 3},
+        };
+        for (int[] r : ranges) {
+            PalettizedCuboid<StringTag> expected = new PalettizedCuboid<>(16, new StringTag("a"));
+            PalettizedCuboid<StringTag> actual = new PalettizedCuboid<>(16, new StringTag("a"));
+            expected.set(5, new StringTag("b"));
+            actual.set(5, new StringTag("b"));
+            for (int y = Math.min(r[1], r[4]); y <= Math.max(r[1], r[4]); y++) {
+                for (int z = Math.min(r[2], r[5]); z <= Math.max(r[2], r[5]); z++) {
+                    for (int x = Math.min(r[0], r[3]); x <= Math.max(r[0], r[3]); x++) {
+                        expected.set(x, y, z, new StringTag("c"));
+                    }
+                }
+            }
+            actual.set(r[0], r[1], r[2], new StringTag("c"), r[3], r[4], r[5]);
+            assertArrayEquals(Arrays.toString(r), expected.toArray(), actual.toArray());
+        }
+    }
+
+    public void testCopyFrom_region() {
+        PalettizedCuboid<StringTag> source = new PalettizedCuboid<>(4, new StringTag("s0"));
+        source.set(0, 0, 0, new StringTag("s1"), 1, 1, 1);
+        source.set(3, 3, 3, new StringTag("s2"));
+        source.set(2, 2, 0, new StringTag("unused"));  // outside the copied region
+
+        PalettizedCuboid<StringTag> dest = new PalettizedCuboid<>(16, new StringTag("d0"));
+        dest.set(0, new StringTag("s2"));
+        final int paletteSizeBefore = dest.paletteSize();
+        dest.copyFrom(source, 3, 3, 3, 0, 0, 1, 10, 11, 12);
+        assertEquals(paletteSizeBefore + 2, dest.paletteSize());  // s0 and s1 added, s2 reused
+        assertFalse(dest.contains(new StringTag("unused")));
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    StringTag expect;
+                    if (x >= 10 && x <= 13 && y >= 11 && y <= 14 && z >= 12 && z <= 14) {
+                        expect = source.get(x - 10, y - 11, z - 11);
+                    } else {
+                        expect = dest.indexOf(x, y, z) == 0 ? new StringTag("s2") : new StringTag("d0");
+                    }
+                    assertEquals(x + "," + y + "," + z, expect, dest.get(x, y, z));
+                }
+            }
+        }
+        assertThrowsException(() -> dest.copyFrom(source, 0, 0, 0, 3, 3, 3, 13, 0, 0), IndexOutOfBoundsException.class);
+        assertThrowsException(() -> dest.copyFrom(source, 0, 0, 0, 4, 3, 3, 0, 0, 0), IndexOutOfBoundsException.class);
+    }
+
+    public void testCopyFrom_self_overlapping() {
+        PalettizedCuboid<StringTag> cuboid = new PalettizedCuboid<>(4, new StringTag("a"));
+        for (int x = 0; x < 4; x++) {
+            cuboid.set(x, 0, 0, new StringTag("v" + x));
+        }
+        cuboid.copyFrom(cuboid, 0, 0, 0, 2, 0, 0, 1, 0, 0);
+        assertEquals(new StringTag("v0"), cuboid.get(0, 0, 0));
+        assertEquals(new StringTag("v0"), cuboid.get(1, 0, 0));
+        assertEquals(new StringTag("v1"), cuboid.get(2, 0, 0));
+        assertEquals(new StringTag("v2"), cuboid.get(3, 0, 0));
+    }
+
+    public void testCopyFrom_whole() {
+        PalettizedCuboid<StringTag> source = new PalettizedCuboid<>(4, new StringTag("a"));
+        source.set(1, 2, 3, new StringTag("b"));
+        PalettizedCuboid<StringTag> dest = new PalettizedCuboid<>(4, new StringTag("c"));
+        dest.copyFrom(source);
+        assertArrayEquals(source.toArray(), dest.toArray());
+        assertThrowsException(() -> dest.copyFrom(new PalettizedCuboid<>(16, new StringTag("a"))), IllegalArgumentException.class);
+    }
+
+    public void testCopyFrom_matchingPalette_copiesPackedLongs() {
+        final Random rand = new Random(31);
+        for (int paletteSize : new int[] {5, 20}) {
+            for (var strategy : LongArrayTagPackedIntegers.PackingStrategy.values()) {
+                PalettizedCuboid<StringTag> source = new PalettizedCuboid<>(16, new StringTag("v0"));
+                for (int i = 0; i < source.size(); i++) {
+                    source.set(i, new StringTag("v" + rand.nextInt(paletteSize)));
+                }
+                source.packedData.setPackingStrategy(strategy);
+                PalettizedCuboid<StringTag> dest = source.clone();
+                dest.set(0, 0, 0, new StringTag("v0"), 15, 7, 15);
+                final int destPaletteSize = dest.paletteSize();
+                final StringTag[] expected = dest.toArray();
+                // x aligned, x unaligned, and a region whose rows span several longs
+                final int[][] regions = {{0, 1, 2, 15, 3, 4, 0, 9, 1}, {3, 0, 5, 10, 2, 9, 1, 5, 6}, {1, 4, 4, 14, 15, 5, 0, 0, 0}};
+                for (int[] r : regions) {
+                    dest.copyFrom(source, r[0], r[1], r[2], r[3], r[4], r[5], r[6], r[7], r[8]);
+                    for (int y = r[1]; y <= r[4]; y++) {
+                        for (int z = r[2]; z <= r[5]; z++) {
+                            for (int x = r[0]; x <= r[3]; x++) {
+                                expected[dest.indexOf(r[6] + x - r[0], r[7] + y - r[1], r[8] + z - r[2])] = source.get(x, y, z);
+                            }
+                        }
+                    }
+                    assertArrayEquals(paletteSize + " " + strategy, expected, dest.toArray());
+                }
+                assertEquals(destPaletteSize, dest.paletteSize());
+
+                dest.copyFrom(source);
+                assertArrayEquals(source.packedData.longs(), dest.packedData.longs());
+                assertArrayEquals(source.toArray(), dest.toArray());
+            }
+        }
+    }
+
+    public void testUniform() {
+        PalettizedCuboid<StringTag> cuboid = new PalettizedCuboid<>(16, new StringTag("air"));
+        assertTrue(cuboid.isUniform());
+        assertEquals(4096, cuboid.countIf(e -> e.getValue().equals("air")));
+        assertEquals(new StringTag("air"), cuboid.get(3, 4, 5));
+        assertFalse(cuboid.iterator(e -> e.getValue().equals("stone")).hasNext());
+        assertEquals(4096, cuboid.stream().count());
+
+        cuboid.set(1, new StringTag("air"));
+        cuboid.set(0, 0, 0, new StringTag("air"), 15, 3, 15);
+        assertTrue(cuboid.isUniform());
+
+        CompoundTag tag = cuboid.toCompoundTag();
+        assertFalse(tag.containsKey("data"));
+        assertTrue(cuboid.isUniform());
+
+        cuboid.set(1, new StringTag("stone"));
+        assertFalse(cuboid.isUniform());
+        assertEquals(1, cuboid.countIf(e -> e.getValue().equals("stone")));
+        assertTrue(cuboid.toCompoundTag().containsKey("data"));
+
+        cuboid.fill(new StringTag("stone"));
+        assertTrue(cuboid.isUniform());
+        assertEquals(4096, cuboid.countIf(e -> e.getValue().equals("stone")));
+    }
+
+    public void testUniform_fromCompoundTagWithoutData() {
+        CompoundTag tag = new CompoundTag();
+        ListTag<StringTag> palette = new ListTag<>(StringTag.class);
+        palette.addString("minecraft:plains");
+        tag.put("palette", palette);
+        PalettizedCuboid<StringTag> cuboid = PalettizedCuboid.fromCompoundTag(tag, 4);
+        assertTrue(cuboid.isUniform());
+        assertEquals("minecraft:plains", cuboid.getByRef(63).getValue());
+        cuboid.set(63, new StringTag("minecraft:desert"));
+        assertFalse(cuboid.isUniform());
+        assertEquals(63, cuboid.countIf(e -> e.getValue().equals("minecraft:plains")));
+        CompoundTag out = cuboid.toCompoundTag();
+        assertEquals(1, out.getLongArray("data").length);
+    }
+
+    public void testOptimizePalette_keepsUsedEntriesEqualToTheEmptySentinel() {
+        // the empty value sentinel is a default constructed tag - a real palette value may be equal to it
+        PalettizedCuboid<StringTag> cuboid = new PalettizedCuboid<>(2, new StringTag(""));
+        cuboid.set(1, new StringTag("a"));
+        cuboid.set(2, new StringTag("b"));
+        cuboid.set(2, new StringTag(""));
+        assertTrue(cuboid.optimizePalette());
+        assertEquals(2, cuboid.paletteSize());
+        assertEquals(new StringTag(""), cuboid.get(0));
+        assertEquals(new StringTag("a"), cuboid.get(1));
+        assertEquals(new StringTag(""), cuboid.get(2));
+    }
+
+    public void testOptimizePalette_skippedWhenUnmodified() {
+        PalettizedCuboid<StringTag> cuboid = new PalettizedCuboid<>(2, new StringTag("a"));
+        cuboid.set(1, new StringTag("b"));
+        cuboid.set(1, new StringTag("c"));
+        assertTrue(cuboid.optimizePalette());
+        assertEquals(2, cuboid.paletteSize());
+        final int modCount = cuboid.paletteModCount;
+        assertFalse(cuboid.optimizePalette());
+        assertEquals(modCount, cuboid.paletteModCount);
+        // an iterator survives serialization when there is nothing to optimize
+        var iter = cuboid.iterator();
+        iter.next();
+        cuboid.toCompoundTag();
+        assertTrue(iter.hasNext());
+    }
+
+    public void testForEachRun_forEachIndexOf() {
+        StringTag air = new StringTag("air");
+        StringTag stone = new StringTag("stone");
+        PalettizedCuboid<StringTag> cuboid = new PalettizedCuboid<>(4, air);
+        cuboid.set(0, 1, 0, stone, 3, 1, 3);
+        cuboid.set(2, 3, 1, stone);
+        final int stoneIndex = cuboid.paletteIndexOf(stone);
+        assertEquals(0, cuboid.paletteIndexOf(air));
+        assertEquals(-1, cuboid.paletteIndexOf(new StringTag("lava")));
+
+        List<String> runs = new ArrayList<>();
+        cuboid.forEachRun((paletteIndex, start, length) -> runs.add(paletteIndex + "@" + start + "+" + length));
+        assertEquals(List.of("0@0+16", "1@16+16", "0@32+22", "1@54+1", "0@55+9"), runs);
+
+        List<String> stonePositions = new ArrayList<>();
+        cuboid.forEachIndexOf(stoneIndex, i -> {
+            if (cuboid.yOf(i) == 3) stonePositions.add(cuboid.xOf(i) + "," + cuboid.yOf(i) + "," + cuboid.zOf(i));
+        });
+        assertEquals(List.of("2,3,1"), stonePositions);
+        assertEquals(stoneIndex, cuboid.paletteIndexAt(cuboid.indexOf(2, 3, 1)));
+    }
+
+    public void testPaletteIndexCursor() {
+        StringTag air = new StringTag("air");
+        StringTag stone = new StringTag("stone");
+        PalettizedCuboid<StringTag> cuboid = new PalettizedCuboid<>(4, air);
+        cuboid.set(0, 1, 0, stone, 3, 1, 3);
+        cuboid.set(2, 3, 1, stone);
+
+        var cursor = cuboid.paletteIndexCursor();
+        assertThrowsException(cursor::index, NoSuchElementException.class);
+        List<String> runStarts = new ArrayList<>();
+        while (cursor.nextRun()) {
+            runStarts.add(cursor.index() + ":" + cursor.paletteIndex() + ":" + cursor.x() + "," + cursor.y() + "," + cursor.z());
+        }
+        assertEquals(List.of("0:0:0,0,0", "16:1:0,1,0", "32:0:0,2,0", "54:1:2,3,1", "55:0:3,3,1"), runStarts);
+        assertFalse(cursor.next());
+        assertThrowsException(cursor::index, NoSuchElementException.class);
+
+        cursor = cuboid.paletteIndexCursor();
+        int count = 0;
+        while (cursor.next()) {
+            assertEquals(cuboid.indexOf(cursor.x(), cursor.y(), cursor.z()), cursor.index());
+            count++;
+        }
+        assertEquals(64, count);
+
+        var cursor2 = cuboid.paletteIndexCursor();
+        cuboid.set(0, new StringTag("lava"));
+        assertThrowsException(cursor2::next, ConcurrentModificationException.class);
+    }
+
+    public void testDiff() {
+        StringTag air = new StringTag("air");
+        StringTag stone = new StringTag("stone");
+        StringTag lava = new StringTag("lava");
+        PalettizedCuboid<StringTag> a = new PalettizedCuboid<>(4, air);
+        a.set(0, 1, 0, stone, 3, 1, 3);
+        PalettizedCuboid<StringTag> b = a.clone();
+        assertTrue(a.diff(b).isEmpty());
+        assertNull(a.diff(b).getMin());
+
+        // same palette - compared word by word
+        b.set(1, 1, 2, air);
+        b.set(2, 3, 0, stone);
+        CuboidDiff diff = a.diff(b);
+        assertEquals(2, diff.changedCount());
+        assertTrue(diff.isChanged(1, 1, 2));
+        assertTrue(diff.isChanged(b.indexOf(2, 3, 0)));
+        assertEquals(new IntPointXYZ(1, 1, 0), diff.getMin());
+        assertEquals(new IntPointXYZ(2, 3, 2), diff.getMax());
+
+        // differently ordered palettes with a value only one side has
+        PalettizedCuboid<StringTag> c = new PalettizedCuboid<>(4, lava);
+        c.set(0, 0, 0, stone, 3, 3, 3);
+        c.set(0, 0, 0, air, 3, 0, 3);
+        c.set(0, 2, 0, air, 3, 3, 3);
+        c.set(3, 3, 3, lava);
+        assertNotSame(a.palette.get(0), c.palette.get(0));
+        diff = a.diff(c);
+        assertEquals(1, diff.changedCount());
+        assertTrue(diff.isChanged(3, 3, 3));
+        assertEquals(diff.changedIndices(), c.diff(a).changedIndices());
+
+        assertThrowsException(() -> a.diff(new PalettizedCuboid<>(16, air)), IllegalArgumentException.class);
+    }
+
+    public void testDiff_duplicatePaletteEntries() {
+        ListTag<StringTag> palette = new ListTag<>(StringTag.class);
+        palette.addString("air");
+        palette.addString("stone");
+        palette.addString("air");
+        CompoundTag tag = new CompoundTag();
+        tag.put("palette", palette);
+        LongArrayTagPackedIntegers data = LongArrayTagPackedIntegers.builder().length(64).minBitsPerValue(2).build();
+        data.set(0, 1);
+        data.set(1, 2);
+        tag.put("data", data.getHandle());
+        PalettizedCuboid<StringTag> a = PalettizedCuboid.fromCompoundTag(tag, 4);
+        PalettizedCuboid<StringTag> b = new PalettizedCuboid<>(4, new StringTag("air"));
+        b.set(0, new StringTag("stone"));
+        assertTrue(a.diff(b).isEmpty());
+        assertTrue(b.diff(a).isEmpty());
+    }
 }
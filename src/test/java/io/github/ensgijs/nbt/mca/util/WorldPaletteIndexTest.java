@@ -0,0 +1,87 @@
+package io.github.ensgijs.nbt.mca.util;
+
+import io.github.ensgijs.nbt.mca.McaTestCase;
+import io.github.ensgijs.nbt.mca.TerrainChunk;
+import io.github.ensgijs.nbt.mca.io.RandomAccessMcaFile;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+public class WorldPaletteIndexTest extends McaTestCase {
+
+    public void testUpdate_indexesPaletteNames() throws Exception {
+        File mcaFile = copyResourceToTmp("1_20_4/region/r.-3.-3.mca");
+        WorldPaletteIndex index = new WorldPaletteIndex();
+        int chunkCount;
+        try (var ramf = new RandomAccessMcaFile<>(TerrainChunk.class, mcaFile, "r")) {
+            chunkCount = 0;
+            for (int i = 0; i < 1024; i++) {
+                if (ramf.hasChunk(i)) chunkCount++;
+            }
+        }
+        assertTrue(chunkCount > 0);
+        assertEquals(chunkCount, index.update(mcaFile.getParentFile()));
+        assertEquals(1, index.indexedRegions().size());
+
+        List<IntPointXZ> bedrock = index.findChunksContainingBlock("minecraft:bedrock");
+        assertFalse(bedrock.isEmpty());
+        assertTrue(bedrock.size() <= chunkCount);
+        assertTrue(index.chunkContainsBlock(bedrock.get(0), "minecraft:bedrock"));
+        assertTrue(index.findChunksContainingBlock("minecraft:not_a_block").isEmpty());
+        assertTrue(index.blockNames().contains("minecraft:bedrock"));
+        assertFalse(index.biomeNames().isEmpty());
+        String biome = index.biomeNames().first();
+        assertFalse(index.findChunksContainingBiome(biome).isEmpty());
+
+        // verify against the chunk itself
+        try (var ramf = new RandomAccessMcaFile<>(TerrainChunk.class, mcaFile, "r")) {
+            TerrainChunk chunk = ramf.readAbsolute(bedrock.get(0));
+            assertEquals("minecraft:bedrock", chunk.getBlockAtByRef(
+                    chunk.getChunkX() * 16, chunk.getWorldMinBlockY(), chunk.getChunkZ() * 16).getString("Name"));
+        }
+
+        // nothing changed - nothing re-read
+        assertEquals(0, index.update(mcaFile.getParentFile()));
+    }
+
+    public void testSaveLoad_roundTrip() throws Exception {
+        File mcaFile = copyResourceToTmp("1_20_4/region/r.-3.-3.mca");
+        WorldPaletteIndex index = new WorldPaletteIndex();
+        index.update(mcaFile.getParentFile());
+        Path indexFile = getNewTmpFile("palette.idx").toPath();
+        index.save(indexFile);
+
+        WorldPaletteIndex loaded = WorldPaletteIndex.load(indexFile);
+        assertEquals(index.indexedRegions(), loaded.indexedRegions());
+        assertEquals(index.blockNames(), loaded.blockNames());
+        assertEquals(index.biomeNames(), loaded.biomeNames());
+        for (String name : index.blockNames()) {
+            assertEquals(name, index.findChunksContainingBlock(name), loaded.findChunksContainingBlock(name));
+        }
+        // the loaded index remembers timestamps so there is nothing to do
+        assertEquals(0, loaded.update(mcaFile.getParentFile()));
+
+        assertTrue(WorldPaletteIndex.load(getNewTmpFile("missing.idx").toPath()).indexedRegions().isEmpty());
+    }
+
+    public void testUpdate_onlyReindexesChangedChunks() throws Exception {
+        File mcaFile = copyResourceToTmp("1_20_4/region/r.-3.-3.mca");
+        WorldPaletteIndex index = new WorldPaletteIndex();
+        index.update(mcaFile.getParentFile());
+        IntPointXZ chunkXZ = index.findChunksContainingBlock("minecraft:bedrock").get(0);
+
+        try (var ramf = new RandomAccessMcaFile<>(TerrainChunk.class, mcaFile, "rw")) {
+            assertTrue(ramf.removeChunkAbsolute(chunkXZ));
+        }
+        assertEquals(1, index.updateRegion(mcaFile));
+        assertFalse(index.chunkContainsBlock(chunkXZ, "minecraft:bedrock"));
+        assertFalse(index.findChunksContainingBlock("minecraft:bedrock").contains(chunkXZ));
+
+        // region file removed
+        assertTrue(mcaFile.delete());
+        assertTrue(index.update(mcaFile.getParentFile()) > 0);
+        assertTrue(index.indexedRegions().isEmpty());
+        assertTrue(index.blockNames().isEmpty());
+    }
+}
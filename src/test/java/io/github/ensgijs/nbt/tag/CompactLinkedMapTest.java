@@ -0,0 +1,91 @@
+package io.github.ensgijs.nbt.tag;
+
+import io.github.ensgijs.nbt.NbtTestCase;
+
+import java.util.*;
+
+public class CompactLinkedMapTest extends NbtTestCase {
+
+	private static void assertSameContents(Map<String, Integer> expected, Map<String, Integer> actual) {
+		assertEquals(expected, actual);
+		assertEquals(actual, expected);
+		assertEquals(expected.hashCode(), actual.hashCode());
+		assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+		assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(actual.values()));
+	}
+
+	public void testMatchesLinkedHashMap() {
+		Map<String, Integer> expected = new LinkedHashMap<>();
+		CompactLinkedMap<String, Integer> actual = new CompactLinkedMap<>(2);
+		Random rand = new Random(7);
+		for (int step = 0; step < 2000; step++) {
+			String key = "k" + rand.nextInt(12);
+			switch (rand.nextInt(4)) {
+				case 0, 1 -> assertEquals(expected.put(key, step), actual.put(key, step));
+				case 2 -> assertEquals(expected.remove(key), actual.remove(key));
+				default -> {
+					assertEquals(expected.get(key), actual.get(key));
+					assertEquals(expected.containsKey(key), actual.containsKey(key));
+				}
+			}
+			assertSameContents(expected, actual);
+			if (step % 500 == 499) {
+				expected.clear();
+				actual.clear();
+				assertTrue(actual.isEmpty());
+			}
+		}
+	}
+
+	public void testInsertionOrderKeptWhenInflating() {
+		CompactLinkedMap<String, Integer> map = new CompactLinkedMap<>();
+		List<String> keys = new ArrayList<>();
+		for (int i = CompactLinkedMap.MAX_COMPACT_SIZE + 4; i > 0; i--) {
+			keys.add("key" + i);
+			map.put("key" + i, i);
+		}
+		map.put("key3", -3);
+		assertEquals(keys, new ArrayList<>(map.keySet()));
+		assertEquals(-3, (int) map.get("key3"));
+	}
+
+	public void testIteratorRemoveAndEntrySetValue() {
+		CompactLinkedMap<String, Integer> map = new CompactLinkedMap<>();
+		for (int i = 0; i < 5; i++) {
+			map.put("k" + i, i);
+		}
+		Iterator<Map.Entry<String, Integer>> iter = map.entrySet().iterator();
+		while (iter.hasNext()) {
+			Map.Entry<String, Integer> e = iter.next();
+			if (e.getValue() % 2 == 0) {
+				iter.remove();
+			} else {
+				assertEquals(e.getValue(), e.setValue(e.getValue() * 10));
+			}
+		}
+		assertEquals(List.of("k1", "k3"), new ArrayList<>(map.keySet()));
+		assertEquals(List.of(10, 30), new ArrayList<>(map.values()));
+		assertThrowsException(iter::remove, IllegalStateException.class);
+	}
+
+	public void testConcurrentModificationDetected() {
+		CompactLinkedMap<String, Integer> map = new CompactLinkedMap<>();
+		map.put("a", 1);
+		map.put("b", 2);
+		Iterator<String> iter = map.keySet().iterator();
+		iter.next();
+		map.put("c", 3);
+		assertThrowsException(iter::next, ConcurrentModificationException.class);
+	}
+
+	public void testCompoundTagUsesCompactMapWhileSmall() {
+		CompoundTag tag = new CompoundTag();
+		assertTrue(tag.getValue() instanceof CompactLinkedMap);
+		for (int i = 0; i < 20; i++) {
+			tag.putInt("i" + i, i);
+		}
+		assertEquals(20, tag.size());
+		assertEquals("i0", tag.keySet().iterator().next());
+		assertTrue(tag.clone().getValue() instanceof LinkedHashMap);
+	}
+}
@@ -582,4 +582,218 @@ public class CompoundTagTest extends NbtTestCase {
 		assertEquals("world", ct.get("hello").getValue());
 		assertEquals(-7, ct.get("goodbye").getValue());
 	}
+
+	public void testHashCode_cachedHashInvalidatedByNestedMutation() {
+		CompoundTag root = new CompoundTag();
+		CompoundTag level = root.getOrCreateCompoundTag("Level");
+		level.putInt("xPos", 3);
+		ListTag<CompoundTag> entities = new ListTag<>(CompoundTag.class);
+		CompoundTag entity = new CompoundTag();
+		entity.putString("id", "minecraft:pig");
+		entities.add(entity);
+		level.put("Entities", entities);
+
+		int hash = root.hashCode();
+		assertTrue(root.hasCachedHash());
+		assertEquals(hash, root.hashCode());
+
+		entity.getStringTag("id").setValue("minecraft:cow");
+		assertFalse(root.hasCachedHash());
+		int cowHash = root.hashCode();
+		assertEquals(root.clone().hashCode(), cowHash);
+
+		level.getIntTag("xPos").setValue(4);
+		assertFalse(root.hasCachedHash());
+		assertEquals(root.clone().hashCode(), root.hashCode());
+	}
+
+	public void testHashCode_cachedHashInvalidatedByViewMutation() {
+		CompoundTag t = new CompoundTag();
+		t.putInt("a", 1);
+		t.putInt("b", 2);
+		t.putInt("c", 3);
+		t.hashCode();
+		assertTrue(t.hasCachedHash());
+
+		t.keySet().remove("a");
+		assertFalse(t.hasCachedHash());
+		assertEquals(t.clone().hashCode(), t.hashCode());
+
+		Iterator<Tag<?>> iter = t.values().iterator();
+		iter.next();
+		iter.remove();
+		assertFalse(t.hasCachedHash());
+		assertEquals(t.clone().hashCode(), t.hashCode());
+
+		t.entrySet().iterator().next().setValue(new IntTag(42));
+		assertFalse(t.hasCachedHash());
+		assertEquals(42, t.getInt("c"));
+		assertEquals(t.clone().hashCode(), t.hashCode());
+
+		// large enough to no longer be stored compactly
+		CompoundTag large = new CompoundTag();
+		for (int i = 0; i < 20; i++) {
+			large.putInt("k" + i, i);
+		}
+		large.hashCode();
+		Map.Entry<String, Tag<?>> entry = large.entrySet().iterator().next();
+		entry.setValue(new IntTag(-1));
+		assertFalse(large.hasCachedHash());
+		assertEquals(-1, ((IntTag) entry.getValue()).asInt());
+		assertEquals(-1, large.getInt("k0"));
+		assertEquals(large.clone().hashCode(), large.hashCode());
+	}
+
+	public void testHashCode_unrelatedMutationsKeepCachedHash() {
+		CompoundTag t = new CompoundTag();
+		t.putInt("a", 1);
+		t.getOrCreateCompoundTag("nested").putString("s", "str");
+		t.hashCode();
+		assertTrue(t.hasCachedHash());
+
+		CompoundTag other = new CompoundTag();
+		other.putInt("x", 1);
+		other.getOrCreateCompoundTag("nested").putInt("y", 2);
+		other.remove("x");
+		assertTrue(t.hasCachedHash());
+
+		// once part of a cached hash, mutations invalidate again
+		other.hashCode();
+		other.getCompoundTag("nested").putInt("y", 3);
+		assertFalse(t.hasCachedHash());
+		assertFalse(other.hasCachedHash());
+	}
+
+	public void testHashCode_readingThawedCopyKeepsCachedHashes() {
+		CompoundTag frozen = new CompoundTag();
+		frozen.getOrCreateCompoundTag("a").putInt("v", 1);
+		frozen.put("list", ListTag.ofInts(1, 2, 3));
+		frozen.freeze();
+		CompoundTag t = new CompoundTag();
+		t.putInt("i", 1);
+		t.hashCode();
+
+		CompoundTag copy = frozen.thaw();
+		copy.getCompoundTag("a").getInt("v");
+		copy.getListTag("list").asIntTagList().get(0);
+		assertTrue(t.hasCachedHash());
+		assertTrue(copy.hasCachedHash());
+		assertEquals(frozen.hashCode(), copy.hashCode());
+
+		copy.getCompoundTag("a").putInt("v", 2);
+		assertFalse(copy.hasCachedHash());
+		assertEquals(copy.clone().hashCode(), copy.hashCode());
+		copy.getListTag("list").asIntTagList().get(0).setValue(5);
+		assertFalse(copy.hasCachedHash());
+		assertEquals(copy.clone().hashCode(), copy.hashCode());
+	}
+
+	public void testHashCode_arrayTagsAreNotCached() {
+		CompoundTag t = new CompoundTag();
+		t.putLongArray("data", new long[] {1, 2, 3});
+		int hash = t.hashCode();
+		assertFalse(t.hasCachedHash());
+		t.getLongArray("data")[1] = 7;
+		assertTrue(hash != t.hashCode());
+		assertEquals(t.clone().hashCode(), t.hashCode());
+	}
+
+	public void testEquals_cachedHashFastPath() {
+		CompoundTag a = new CompoundTag();
+		a.putString("name", "a");
+		CompoundTag b = a.clone();
+		assertEquals(a.hashCode(), b.hashCode());
+		assertTrue(a.equals(b));
+		b.putString("name", "b");
+		assertTrue(a.hashCode() != b.hashCode());
+		assertTrue(a.hasCachedHash() && b.hasCachedHash());
+		assertFalse(a.equals(b));
+	}
+
+	public void testFreeze() {
+		CompoundTag t = new CompoundTag();
+		t.putInt("i", 1);
+		t.putString("s", "str");
+		t.putLongArray("la", new long[] {1, 2});
+		CompoundTag nested = t.getOrCreateCompoundTag("nested");
+		nested.putByte("b", (byte) 2);
+		int hash = t.hashCode();
+
+		assertSame(t, t.freeze());
+		assertTrue(t.isFrozen());
+		assertTrue(nested.isFrozen());
+		assertTrue(t.getIntTag("i").isFrozen());
+		assertTrue(t.getLongArrayTag("la").isFrozen());
+		assertTrue(t.hasCachedHash());
+		assertEquals(hash, t.hashCode());
+
+		assertThrowsException(() -> t.putInt("j", 2), UnsupportedOperationException.class);
+		assertThrowsException(() -> t.remove("i"), UnsupportedOperationException.class);
+		assertThrowsException(t::clear, UnsupportedOperationException.class);
+		assertThrowsException(() -> t.keySet().remove("i"), UnsupportedOperationException.class);
+		assertThrowsException(() -> t.values().clear(), UnsupportedOperationException.class);
+		assertThrowsException(() -> t.entrySet().iterator().next().setValue(new IntTag(5)), UnsupportedOperationException.class);
+		assertThrowsException(() -> t.iterator().next().setTag(new IntTag(5)), UnsupportedOperationException.class);
+		assertThrowsException(() -> t.getIntTag("i").setValue(3), UnsupportedOperationException.class);
+		assertThrowsException(() -> t.getStringTag("s").setValue("other"), UnsupportedOperationException.class);
+		assertThrowsException(() -> nested.putByte("b", (byte) 3), UnsupportedOperationException.class);
+		assertEquals(1, t.getInt("i"));
+
+		// unrelated mutations do not affect the hash of frozen trees
+		new CompoundTag().putInt("x", 1);
+		assertTrue(t.hasCachedHash());
+	}
+
+	public void testThaw() {
+		CompoundTag t = new CompoundTag();
+		assertSame(t, t.thaw());
+		t.putInt("i", 1);
+		t.getOrCreateCompoundTag("nested").putString("s", "str");
+		t.freeze();
+
+		CompoundTag thawed = t.thaw();
+		assertNotSame(t, thawed);
+		assertFalse(thawed.isFrozen());
+		assertFalse(thawed.getCompoundTag("nested").isFrozen());
+		assertEquals(t, thawed);
+		thawed.getCompoundTag("nested").putString("s", "changed");
+		assertEquals("str", t.getCompoundTag("nested").getString("s"));
+		assertFalse(t.equals(thawed));
+		assertFalse(t.clone().isFrozen());
+	}
+
+	public void testThaw_copyOnWrite() {
+		CompoundTag t = new CompoundTag();
+		CompoundTag a = t.getOrCreateCompoundTag("a");
+		a.getOrCreateCompoundTag("deep").putInt("v", 1);
+		t.getOrCreateCompoundTag("b").putString("s", "str");
+		t.put("list", ListTag.ofInts(1, 2, 3));
+		t.freeze();
+
+		CompoundTag copy = t.clone();
+		assertFalse(copy.isFrozen());
+		assertTrue(copy.hasCachedHash());
+		assertEquals(t.hashCode(), copy.hashCode());
+		assertEquals(t, copy);
+
+		CompoundTag copyA = copy.getCompoundTag("a");
+		assertNotSame(a, copyA);
+		assertFalse(copyA.isFrozen());
+		assertSame(copyA, copy.getCompoundTag("a"));
+		copyA.getCompoundTag("deep").putInt("v", 2);
+		copy.getListTag("list").asIntTagList().addInt(4);
+		copy.remove("b");
+
+		assertEquals(1, t.getCompoundTag("a").getCompoundTag("deep").getInt("v"));
+		assertEquals(3, t.getListTag("list").size());
+		assertTrue(t.containsKey("b"));
+		assertEquals(2, copy.getCompoundTag("a").getCompoundTag("deep").getInt("v"));
+		assertEquals(4, copy.getListTag("list").size());
+		assertFalse(t.equals(copy));
+
+		// a thawed copy can be frozen again without touching its children
+		CompoundTag refrozen = t.thaw().freeze();
+		assertEquals(t, refrozen);
+		assertEquals(t.hashCode(), refrozen.hashCode());
+	}
 }
@@ -34,6 +34,15 @@ public class DoubleTagTest extends NbtTestCase {
 		assertEquals(new DoubleTag(Double.NaN), new DoubleTag(Double.NaN));
 	}
 
+	public void testEquals_matchesBoxedSemantics() {
+		assertNotEquals(new DoubleTag(0.0), new DoubleTag(-0.0));
+		assertEquals(Double.valueOf(-0.0).hashCode(), new DoubleTag(-0.0).hashCode());
+		assertEquals(new DoubleTag(Double.NaN).hashCode(), new DoubleTag(Double.NaN).hashCode());
+		assertTrue(new DoubleTag(Double.NaN).compareTo(new DoubleTag(Double.POSITIVE_INFINITY)) > 0);
+		assertEquals(-3, new DoubleTag(-3.9).asInt());
+		assertEquals((byte) 300, new DoubleTag(300.5).asByte());
+	}
+
 	public void testClone() {
 		DoubleTag t = new DoubleTag(Double.MAX_VALUE);
 		DoubleTag tc = t.clone();
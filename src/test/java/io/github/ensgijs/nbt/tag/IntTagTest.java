@@ -35,6 +35,22 @@ public class IntTagTest extends NbtTestCase {
 		assertFalse(t.equals(t3));
 	}
 
+	public void testBoxedValueAccess() {
+		IntTag t = new IntTag(42);
+		assertEquals(Integer.valueOf(42), invokeGetValue(t));
+		invokeSetValue(t, -7);
+		assertEquals(-7, t.asInt());
+		assertEquals(Integer.valueOf(-7).hashCode(), t.hashCode());
+	}
+
+	public void testNarrowingConversions() {
+		IntTag t = new IntTag(0x12345678);
+		assertEquals((byte) 0x78, t.asByte());
+		assertEquals((short) 0x5678, t.asShort());
+		assertEquals(0x12345678L, t.asLong());
+		assertEquals((double) 0x12345678, t.asDouble());
+	}
+
 	public void testClone() {
 		IntTag t = new IntTag(Integer.MAX_VALUE);
 		IntTag tc = t.clone();
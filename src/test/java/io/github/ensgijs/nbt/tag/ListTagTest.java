@@ -1,12 +1,19 @@
 package io.github.ensgijs.nbt.tag;
 
+import io.github.ensgijs.nbt.io.BinaryNbtDeserializer;
+import io.github.ensgijs.nbt.io.BinaryNbtSerializer;
+import io.github.ensgijs.nbt.io.CompressionType;
 import io.github.ensgijs.nbt.io.MaxDepthReachedException;
+import io.github.ensgijs.nbt.io.NamedTag;
 import junit.framework.TestCase;
 import io.github.ensgijs.nbt.NbtTestCase;
 
+import java.io.EOFException;
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertNotEquals;
 
 public class ListTagTest extends NbtTestCase {
@@ -510,4 +517,317 @@ public class ListTagTest extends NbtTestCase {
 		assertEquals("A quick dog almost jumps over the lazy dog",
 				tag.stream().map(StringTag::getValue).collect(Collectors.joining(" ")));
 	}
+
+	public void testPacked_primitiveAddsStayPacked() {
+		ListTag<DoubleTag> tag = new ListTag<>(DoubleTag.class);
+		for (int i = 0; i < 10; i++) {
+			tag.addDouble(i + 0.5);
+		}
+		assertTrue(tag.isPacked());
+		assertEquals(10, tag.size());
+		assertEquals(3.5, tag.getDouble(3));
+		assertEquals(3, tag.getInt(3));
+		assertEquals(9.5f, tag.getFloat(9));
+		assertArrayEquals(new long[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, tag.toLongArray());
+		assertThrowsRuntimeException(() -> tag.getDouble(10), IndexOutOfBoundsException.class);
+		assertTrue(tag.isPacked());
+
+		// a tag list is never packed
+		ListTag<DoubleTag> tagAdded = new ListTag<>(DoubleTag.class);
+		tagAdded.add(new DoubleTag(1));
+		tagAdded.addDouble(2);
+		assertFalse(tagAdded.isPacked());
+		assertEquals(2.0, tagAdded.getDouble(1));
+
+		// nor is a list backed by a caller provided list, as adds must write through
+		List<IntTag> backing = new ArrayList<>();
+		ListTag<IntTag> external = new ListTag<>(backing);
+		external.addInt(5);
+		assertFalse(external.isPacked());
+		assertEquals(1, backing.size());
+		ListTag<IntTag> parent = new ListTag<>(IntTag.class);
+		parent.add(new IntTag(1));
+		parent.add(new IntTag(2));
+		parent.subList(2, 2).addInt(7);
+		assertEquals(3, parent.size());
+		assertEquals(7, parent.getInt(2));
+
+		// type is still enforced
+		ListTag<IntTag> ints = ListTag.ofInts(1, 2);
+		assertThrowsRuntimeException(() -> ints.addUnchecked(new LongTag(3)), IllegalArgumentException.class);
+		assertThrowsRuntimeException(() -> new ListTag<>(StringTag.class).addInt(1), IllegalArgumentException.class);
+	}
+
+	public void testPacked_unpacksOnElementAccess() {
+		ListTag<FloatTag> tag = ListTag.ofFloats(1f, 2f, 3f);
+		assertTrue(tag.isPacked());
+		FloatTag second = tag.get(1);
+		assertFalse(tag.isPacked());
+		assertSame(second, tag.get(1));
+		second.setValue(20f);
+		assertEquals(20f, tag.getFloat(1));
+		tag.addFloat(4f);
+		assertArrayEquals(new float[]{1f, 20f, 3f, 4f}, tag.toFloatArray(), 0f);
+
+		tag.clear();
+		tag.addFloat(5f);
+		assertTrue(tag.isPacked());
+		assertEquals(1, tag.size());
+	}
+
+	public void testPacked_concurrentReadsShareOneUnpacking() throws InterruptedException {
+		for (int round = 0; round < 20; round++) {
+			final ListTag<LongTag> tag = ListTag.ofLongs(new long[1000]);
+			final Thread[] threads = new Thread[4];
+			final LongTag[][] seen = new LongTag[threads.length][];
+			for (int t = 0; t < threads.length; t++) {
+				final int ti = t;
+				threads[t] = new Thread(() -> {
+					seen[ti] = new LongTag[tag.size()];
+					for (int i = 0; i < seen[ti].length; i++) {
+						seen[ti][i] = tag.get(i);
+					}
+				});
+				threads[t].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			for (LongTag[] s : seen) {
+				assertEquals(1000, s.length);
+				for (int i = 0; i < s.length; i++) {
+					assertSame(tag.get(i), s[i]);
+				}
+			}
+			assertEquals(1000, tag.size());
+		}
+	}
+
+	public void testPacked_equalsHashCodeCompareToMatchUnpacked() {
+		ListTag<DoubleTag> packed = ListTag.ofDoubles(1.0, -0.0, Double.NaN);
+		ListTag<DoubleTag> unpacked = new ListTag<>(DoubleTag.class);
+		unpacked.add(new DoubleTag(1.0));
+		unpacked.add(new DoubleTag(-0.0));
+		unpacked.add(new DoubleTag(Double.NaN));
+		assertEquals(unpacked.hashCode(), packed.hashCode());
+		assertEquals(unpacked, packed);
+		assertEquals(packed, unpacked);
+		assertEquals(0, packed.compareTo(unpacked));
+		assertTrue(packed.isPacked());
+		assertNotEquals(packed, ListTag.ofDoubles(1.0, 0.0, Double.NaN));
+		assertTrue(packed.compareTo(ListTag.ofDoubles(1.0, 0.0, Double.NaN)) < 0);
+		assertNotEquals(ListTag.ofInts(1, 2), ListTag.ofLongs(1, 2));
+		assertEquals(unpacked.toString(), packed.toString());
+		assertTrue(packed.isPacked());
+
+		ListTag<DoubleTag> clone = packed.clone();
+		assertTrue(clone.isPacked());
+		assertEquals(packed, clone);
+		clone.addDouble(4);
+		assertEquals(3, packed.size());
+	}
+
+	public void testPacked_serializeDeserialize() throws IOException {
+		CompoundTag root = new CompoundTag();
+		root.put("i", ListTag.ofInts(1, -2, Integer.MAX_VALUE));
+		root.put("l", ListTag.ofLongs(Long.MIN_VALUE, 7));
+		root.put("f", ListTag.ofFloats(1.5f, Float.NaN));
+		root.put("d", ListTag.ofDoubles(-0.0, 1e300));
+		ListTag<LongTag> big = new ListTag<>(LongTag.class);
+		for (int i = 0; i < 1500; i++) {
+			big.addLong(i * 31L);
+		}
+		root.put("big", big);
+		root.put("empty", new ListTag<>(IntTag.class));
+
+		for (boolean littleEndian : new boolean[]{false, true}) {
+			ListTag<IntTag> tagged = new ListTag<>(IntTag.class);
+			tagged.add(new IntTag(1));
+			tagged.add(new IntTag(-2));
+			tagged.add(new IntTag(Integer.MAX_VALUE));
+			CompoundTag taggedRoot = root.clone();
+			taggedRoot.put("i", tagged);
+			byte[] packedBytes = new BinaryNbtSerializer(CompressionType.NONE, littleEndian).toBytes(new NamedTag("", root));
+			byte[] taggedBytes = new BinaryNbtSerializer(CompressionType.NONE, littleEndian).toBytes(new NamedTag("", taggedRoot));
+			assertArrayEquals(taggedBytes, packedBytes);
+
+			CompoundTag read = (CompoundTag) new BinaryNbtDeserializer(CompressionType.NONE, littleEndian)
+					.fromBytes(packedBytes).getTag();
+			assertTrue(read.getListTag("d").isPacked());
+			assertTrue(read.getListTag("big").isPacked());
+			assertEquals(root, read);
+			assertEquals(1499 * 31L, read.getListTag("big").getLong(1499));
+			assertEquals(0, read.getListTag("empty").size());
+		}
+	}
+
+	public void testPacked_deserializeTruncatedHugeList() {
+		for (boolean littleEndian : new boolean[]{false, true}) {
+			final int length = Integer.MAX_VALUE - 8;
+			// unnamed root list of doubles declaring length values, followed by less than one value
+			byte[] bytes = littleEndian
+					? new byte[] {9, 0, 0, 6, (byte) length, (byte) (length >>> 8), (byte) (length >>> 16), (byte) (length >>> 24), 1, 2, 3, 4, 5, 6, 7}
+					: new byte[] {9, 0, 0, 6, (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length, 1, 2, 3, 4, 5, 6, 7};
+			assertThrowsException(() -> new BinaryNbtDeserializer(CompressionType.NONE, littleEndian).fromBytes(bytes),
+					EOFException.class);
+		}
+	}
+
+	public void testWrapInts_doesNotCopyArray() {
+		int[] values = {1, 2, 3};
+		ListTag<IntTag> list = ListTag.wrapInts(values);
+		values[0] = 9;
+		assertEquals(9, list.getInt(0));
+		assertTrue(ListTag.wrapInts(new int[0]).isPacked());
+		ListTag<IntTag> empty = ListTag.wrapInts(new int[0]);
+		empty.addInt(4);
+		assertEquals(4, empty.getInt(0));
+	}
+
+	public void testHashCode_cachedHashInvalidatedByMutation() {
+		ListTag<ListTag<IntTag>> outer = new ListTag<>(ListTag.class);
+		ListTag<IntTag> packed = ListTag.ofInts(1, 2, 3);
+		outer.add(packed);
+		int hash = outer.hashCode();
+		assertTrue(outer.hasCachedHash());
+		assertEquals(hash, outer.hashCode());
+
+		packed.addInt(4);
+		assertFalse(outer.hasCachedHash());
+		assertEquals(outer.clone().hashCode(), outer.hashCode());
+
+		packed.get(0).setValue(-1);
+		assertFalse(outer.hasCachedHash());
+		assertEquals(outer.clone().hashCode(), outer.hashCode());
+
+		ListIterator<IntTag> iter = packed.listIterator();
+		iter.next();
+		iter.set(new IntTag(5));
+		assertFalse(outer.hasCachedHash());
+		assertEquals(outer.clone().hashCode(), outer.hashCode());
+	}
+
+	public void testHashCode_unpackingKeepsCachedHashes() {
+		ListTag<IntTag> cached = ListTag.ofInts(7, 8);
+		cached.hashCode();
+		ListTag<IntTag> packed = ListTag.ofInts(1, 2, 3);
+		packed.hashCode();
+		assertTrue(packed.hasCachedHash());
+
+		packed.get(1);
+		assertTrue(cached.hasCachedHash());
+		assertTrue(packed.hasCachedHash());
+
+		packed.get(0).setValue(-1);
+		assertFalse(cached.hasCachedHash());
+		assertFalse(packed.hasCachedHash());
+		assertEquals(packed.clone().hashCode(), packed.hashCode());
+
+		// an unrelated list, whose hash is not part of any cached hash, leaves them valid
+		ListTag<IntTag> unrelated = ListTag.ofInts(1, 2);
+		unrelated.get(0).setValue(3);
+		unrelated.addInt(4);
+		assertTrue(packed.hasCachedHash());
+	}
+
+	public void testHashCode_subListWritesInvalidateCachedHash() {
+		ListTag<StringTag> list = new ListTag<>(StringTag.class);
+		list.addString("a");
+		list.addString("b");
+		CompoundTag c = new CompoundTag();
+		c.put("list", list);
+		int hash = list.hashCode();
+		c.hashCode();
+		assertTrue(c.hasCachedHash());
+
+		list.subList(0, 1).clear();
+		assertEquals(1, list.size());
+		assertFalse(list.hasCachedHash());
+		assertFalse(c.hasCachedHash());
+		assertTrue(hash != list.hashCode());
+		assertEquals(list.clone().hashCode(), list.hashCode());
+		assertEquals(c.clone(), c);
+
+		list.subList(0, 1).set(0, new StringTag("x"));
+		assertEquals("x", list.get(0).getValue());
+		assertEquals(list.clone().hashCode(), list.hashCode());
+		assertEquals(c.clone(), c);
+	}
+
+	public void testHashCode_externalListIsNotCached() {
+		List<StringTag> backing = new ArrayList<>();
+		backing.add(new StringTag("a"));
+		ListTag<StringTag> list = new ListTag<>(backing);
+		int hash = list.hashCode();
+		assertFalse(list.hasCachedHash());
+		backing.add(new StringTag("b"));
+		assertTrue(hash != list.hashCode());
+	}
+
+	public void testOfInts_copiesArray() {
+		int[] values = {1, 2, 3};
+		ListTag<IntTag> list = ListTag.ofInts(values);
+		values[0] = 9;
+		assertEquals(1, list.getInt(0));
+	}
+
+	public void testFreeze() {
+		ListTag<DoubleTag> packed = ListTag.ofDoubles(1, 2, 3);
+		ListTag<ListTag<?>> outer = new ListTag<>(ListTag.class);
+		outer.add(packed);
+		ListTag<StringTag> empty = new ListTag<>(StringTag.class);
+		outer.add(empty);
+		int hash = outer.hashCode();
+
+		assertSame(outer, outer.freeze());
+		assertTrue(packed.isFrozen());
+		assertFalse(packed.isPacked());
+		assertTrue(packed.get(0).isFrozen());
+		assertEquals(hash, outer.hashCode());
+		assertEquals(2.0, packed.getDouble(1));
+
+		assertThrowsException(() -> packed.addDouble(4), UnsupportedOperationException.class);
+		assertThrowsException(() -> packed.remove(0), UnsupportedOperationException.class);
+		assertThrowsException(() -> packed.set(0, new DoubleTag(9)), UnsupportedOperationException.class);
+		assertThrowsException(() -> packed.sort(DoubleTag::compareTo), UnsupportedOperationException.class);
+		assertThrowsException(() -> packed.iterator().remove(), UnsupportedOperationException.class);
+		assertThrowsException(() -> packed.get(0).setValue(9), UnsupportedOperationException.class);
+		assertThrowsException(() -> empty.addString("a"), UnsupportedOperationException.class);
+		assertThrowsException(empty::clear, UnsupportedOperationException.class);
+		assertEquals(3, packed.size());
+
+		ListTag<ListTag<?>> thawed = outer.thaw();
+		assertFalse(thawed.isFrozen());
+		assertEquals(outer, thawed);
+		thawed.get(1).asStringTagList().addString("a");
+		assertEquals(0, empty.size());
+	}
+
+	public void testThaw_copyOnWrite() {
+		ListTag<CompoundTag> list = new ListTag<>(CompoundTag.class);
+		for (int i = 0; i < 3; i++) {
+			CompoundTag entry = new CompoundTag();
+			entry.putInt("i", i);
+			list.add(entry);
+		}
+		list.freeze();
+
+		ListTag<CompoundTag> copy = list.clone();
+		assertFalse(copy.isFrozen());
+		assertEquals(3, copy.size());
+		assertEquals(list, copy);
+		assertEquals(0, list.compareTo(copy));
+		assertEquals(list.hashCode(), copy.hashCode());
+
+		copy.get(1).putInt("i", 10);
+		assertFalse(copy.get(0).isFrozen());
+		assertEquals(1, list.get(1).getInt("i"));
+		assertEquals(10, copy.get(1).getInt("i"));
+		assertTrue(list.get(1).isFrozen());
+
+		ListTag<CompoundTag> cleared = list.thaw();
+		cleared.clear();
+		assertEquals(3, list.size());
+		assertTrue(cleared.isEmpty());
+	}
 }
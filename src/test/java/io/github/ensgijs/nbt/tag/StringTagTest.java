@@ -3,6 +3,10 @@ package io.github.ensgijs.nbt.tag;
 import io.github.ensgijs.nbt.NbtTestCase;
 
 import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class StringTagTest extends NbtTestCase {
 
@@ -59,4 +63,30 @@ public class StringTagTest extends NbtTestCase {
 		assertTrue(0 < t3.compareTo(t));
 		assertThrowsRuntimeException(() -> t.compareTo(null), NullPointerException.class);
 	}
+
+	public void testEscapeString_matchesRegexEscaping() {
+		// the escaping rules, as previously implemented with regular expressions
+		Pattern escapePattern = Pattern.compile("[\\\\\n\t\r\"]");
+		Pattern lenientNonQuotePattern = Pattern.compile("(?!true|false)[a-z_][a-z0-9_\\-]*", Pattern.CASE_INSENSITIVE);
+		Map<String, String> replacements = Map.of("\\", "\\\\\\\\", "\n", "\\\\n", "\t", "\\\\t", "\r", "\\\\r", "\"", "\\\\\"");
+		String[] parts = {"a", "Z", "_", "-", "0", "9", "+", ".", " ", "\\", "\n", "\t", "\r", "\"", "ö", "true", "FALSE", "x"};
+		Random rand = new Random(48);
+		for (int n = 0; n < 5000; n++) {
+			StringBuilder sb = new StringBuilder();
+			for (int len = rand.nextInt(5); len > 0; len--) {
+				sb.append(parts[rand.nextInt(parts.length)]);
+			}
+			String s = sb.toString();
+			StringBuffer expected = new StringBuffer();
+			Matcher m = escapePattern.matcher(s);
+			while (m.find()) {
+				m.appendReplacement(expected, replacements.get(m.group()));
+			}
+			m.appendTail(expected);
+			String strict = "\"" + expected + "\"";
+			assertEquals(s, strict, StringTag.escapeString(s, false));
+			assertEquals(s, lenientNonQuotePattern.matcher(s).matches() ? expected.toString() : strict,
+					StringTag.escapeString(s, true));
+		}
+	}
 }
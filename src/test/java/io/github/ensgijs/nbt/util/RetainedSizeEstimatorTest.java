@@ -0,0 +1,85 @@
+package io.github.ensgijs.nbt.util;
+
+import io.github.ensgijs.nbt.NbtTestCase;
+import io.github.ensgijs.nbt.mca.TerrainChunk;
+import io.github.ensgijs.nbt.tag.CompoundTag;
+import io.github.ensgijs.nbt.tag.IntTag;
+import io.github.ensgijs.nbt.tag.ListTag;
+import io.github.ensgijs.nbt.tag.StringTag;
+
+public class RetainedSizeEstimatorTest extends NbtTestCase {
+
+    public void testPrimitiveSizes() {
+        assertEquals(16, RetainedSizeEstimator.shallowSize(0, 4));
+        assertEquals(24, RetainedSizeEstimator.shallowSize(1, 5));
+        assertEquals(16, RetainedSizeEstimator.arraySize(0, 8));
+        assertEquals(48, RetainedSizeEstimator.arraySize(4, 8));
+        assertEquals(24, new IntTag(7).estimateRetainedBytes());
+        // tag + "abc" (string header and backing array)
+        assertEquals(24 + 24 + 24, new StringTag("abc").estimateRetainedBytes());
+    }
+
+    public void testSharedReferencesCountedOnce() {
+        CompoundTag shared = new CompoundTag();
+        for (int i = 0; i < 10; i++) {
+            shared.putString("k" + i, "value " + i);
+        }
+        CompoundTag a = new CompoundTag();
+        a.put("x", shared);
+        CompoundTag b = new CompoundTag();
+        b.put("x", shared);
+        CompoundTag root = new CompoundTag();
+        root.put("a", a);
+        root.put("b", b);
+
+        CompoundTag copies = new CompoundTag();
+        copies.put("a", a.clone());
+        copies.put("b", b.clone());
+        // clones share keys and strings but not tags
+        assertTrue(root.estimateRetainedBytes() < copies.estimateRetainedBytes());
+    }
+
+    public void testEstimatorReusedAcrossRoots() {
+        CompoundTag tag = new CompoundTag();
+        tag.putString("name", "minecraft:stone");
+        RetainedSizeEstimator estimator = new RetainedSizeEstimator();
+        long first = tag.estimateRetainedBytes(estimator);
+        assertEquals(tag.estimateRetainedBytes(), first);
+        assertEquals(0, tag.estimateRetainedBytes(estimator));
+        assertEquals(first, estimator.total());
+    }
+
+    public void testPackedListSmallerThanTagList() {
+        int[] values = new int[256];
+        ListTag<IntTag> packed = ListTag.ofInts(values);
+        ListTag<IntTag> unpacked = new ListTag<>(IntTag.class);
+        for (int v : values) {
+            unpacked.add(new IntTag(v));
+        }
+        assertTrue(packed.isPacked());
+        assertFalse(unpacked.isPacked());
+        assertTrue(packed.estimateRetainedBytes() * 4 < unpacked.estimateRetainedBytes());
+    }
+
+    public void testThawedCopySharesFrozenMap() {
+        CompoundTag frozen = new CompoundTag();
+        for (int i = 0; i < 20; i++) {
+            frozen.putString("k" + i, "value " + i);
+        }
+        frozen.freeze();
+        CompoundTag thawed = frozen.thaw();
+        RetainedSizeEstimator estimator = new RetainedSizeEstimator();
+        long frozenBytes = frozen.estimateRetainedBytes(estimator);
+        long thawedBytes = thawed.estimateRetainedBytes(estimator);
+        assertTrue(thawedBytes < frozenBytes / 10);
+    }
+
+    public void testChunkEstimate() {
+        TerrainChunk chunk = new TerrainChunk((CompoundTag) deserializeFromFile("1_20_4/region/r.0.0/0299.11.9.snbt").getTag());
+        long chunkBytes = chunk.estimateRetainedBytes();
+        // the chunk retains its data tag, and the sections share palette tags with it
+        long tagBytes = chunk.getHandle().estimateRetainedBytes();
+        assertTrue(chunkBytes > tagBytes);
+        assertTrue(chunkBytes < tagBytes * 3);
+    }
+}